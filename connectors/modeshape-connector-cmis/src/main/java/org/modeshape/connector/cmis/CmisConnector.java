@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +38,7 @@ import org.apache.chemistry.opencmis.client.api.FileableCmisObject;
 import org.apache.chemistry.opencmis.client.api.Folder;
 import org.apache.chemistry.opencmis.client.api.ItemIterable;
 import org.apache.chemistry.opencmis.client.api.ObjectType;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.Property;
 import org.apache.chemistry.opencmis.client.api.Session;
 import org.apache.chemistry.opencmis.client.api.Tree;
@@ -49,6 +51,7 @@ import org.apache.chemistry.opencmis.commons.data.RepositoryInfo;
 import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
 import org.apache.chemistry.opencmis.commons.enums.BindingType;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
 import org.apache.chemistry.opencmis.commons.enums.VersioningState;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ContentStreamImpl;
@@ -101,6 +104,13 @@ import org.w3c.dom.Element;
  * repositories available from this CMIS service endpoint.</li>
  * <li><strong><code>versioningService</code></strong> URL of the Policy service binding entry point. Create a private working
  * copy (PWC) of the document.</li>
+ * <li><strong><code>pageSize</code></strong> The maximum number of children of a folder that are fetched with each request. The
+ * default is 100.</li>
+ * <li><strong><code>objectCacheSize</code></strong> The maximum number of CMIS objects that are kept in memory, so that the
+ * children listed with their folder are not fetched again one by one. The default is
+ * {@value CmisObjectCache#DEFAULT_MAX_SIZE}.</li>
+ * <li><strong><code>objectCacheTtlSeconds</code></strong> The number of seconds a CMIS object is kept in memory. The default is
+ * {@value CmisObjectCache#DEFAULT_TTL_SECONDS}.</li>
  * </ul>
  * </p>
  * <p>
@@ -129,6 +139,9 @@ public class CmisConnector extends Connector {
     // path and id for the repository node
     private static final String REPOSITORY_INFO_ID = "repositoryInfo";
     private static final String REPOSITORY_INFO_NODE_NAME = "repositoryInfo";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    // the renditions are never used by the connector
+    private static final Set<String> NO_RENDITIONS = Collections.singleton("cmis:none");
     private Session session;
     private ValueFactories factories;
     // binding parameters
@@ -143,6 +156,17 @@ public class CmisConnector extends Connector {
     private String versioningService;
     // repository id
     private String repositoryId;
+
+    // the maximum number of children fetched with each request, set via reflection
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    // the size and expiration of the object cache, set via reflection
+    private int objectCacheSize = CmisObjectCache.DEFAULT_MAX_SIZE;
+    private int objectCacheTtlSeconds = CmisObjectCache.DEFAULT_TTL_SECONDS;
+
+    private OperationContext objectContext;
+    private OperationContext parentsContext;
+    private CmisObjectCache objectCache;
+
     private Properties properties;
     private Nodes nodes;
 
@@ -194,11 +218,34 @@ public class CmisConnector extends Connector {
             }
         }, null);
 
+        // the objects and the children of folders are read with all their properties, since they are all converted, but
+        // without ACLs, allowable actions, policies, relationships and renditions that are never used by the connector.
+        // The session's own cache is disabled, since the objects are cached by the connector ...
+        int maxItemsPerPage = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+        objectContext = session.createOperationContext(Collections.singleton("*"), false, false, false,
+                                                       IncludeRelationships.NONE, NO_RENDITIONS, false, null, false,
+                                                       maxItemsPerPage);
+        // only the identifiers and paths of the parents are used ...
+        Set<String> parentProperties = new HashSet<String>();
+        parentProperties.add(PropertyIds.OBJECT_ID);
+        parentProperties.add(PropertyIds.NAME);
+        parentProperties.add(PropertyIds.PATH);
+        parentsContext = session.createOperationContext(parentProperties, false, false, false, IncludeRelationships.NONE,
+                                                        NO_RENDITIONS, false, null, false, maxItemsPerPage);
+        objectCache = new CmisObjectCache(objectCacheSize > 0 ? objectCacheSize : CmisObjectCache.DEFAULT_MAX_SIZE,
+                                          objectCacheTtlSeconds > 0 ? objectCacheTtlSeconds : CmisObjectCache.DEFAULT_TTL_SECONDS);
+
         registry.registerNamespace(CmisLexicon.Namespace.PREFIX, CmisLexicon.Namespace.URI);
         importTypes(session.getTypeDescendants(null, Integer.MAX_VALUE, true), nodeTypeManager, registry);
         registerRepositoryInfoType(nodeTypeManager);
     }
 
+    @Override
+    public void shutdown() {
+        if (objectCache != null) objectCache.clear();
+        super.shutdown();
+    }
+
     @Override
     public Document getDocumentById( String id ) {
         // object id is a composite key which holds information about
@@ -228,21 +275,21 @@ public class CmisConnector extends Connector {
     @Override
     public String getDocumentId( String path ) {
         // establish relation between path and object identifier
-        return session.getObjectByPath(path).getId();
+        return objectCache.put(session.getObjectByPath(path, objectContext)).getId();
     }
 
     @Override
     public Collection<String> getDocumentPathsById( String id ) {
-        CmisObject obj = session.getObject(id);
+        CmisObject obj = cmisObjectFor(id);
         // check that object exist
         if (obj instanceof Folder) {
             return Collections.singletonList(((Folder)obj).getPath());
         }
         if (obj instanceof org.apache.chemistry.opencmis.client.api.Document) {
             org.apache.chemistry.opencmis.client.api.Document doc = (org.apache.chemistry.opencmis.client.api.Document)obj;
-            List<Folder> parents = doc.getParents();
+            List<Folder> parents = doc.getParents(parentsContext);
             List<String> paths = new ArrayList<String>(parents.size());
-            for (Folder parent : doc.getParents()) {
+            for (Folder parent : parents) {
                 paths.add(parent.getPath() + "/" + doc.getName());
             }
             return paths;
@@ -278,6 +325,7 @@ public class CmisConnector extends Connector {
                 }
 
                 // delete content stream
+                objectCache.remove(cmisId);
                 doc.deleteContentStream();
                 return true;
             case OBJECT:
@@ -291,6 +339,7 @@ public class CmisConnector extends Connector {
                 }
 
                 // just delete object
+                objectCache.remove(object.getId());
                 object.delete(true);
                 return true;
             default:
@@ -317,10 +366,10 @@ public class CmisConnector extends Connector {
                 String cmisId = objectId.getIdentifier();
 
                 // now checking that this document exists
-                return session.getObject(cmisId) != null;
+                return cmisObjectFor(cmisId) != null;
             default:
                 // here we checking cmis:folder and cmis:document
-                return session.getObject(id) != null;
+                return cmisObjectFor(id) != null;
         }
     }
 
@@ -356,6 +405,7 @@ public class CmisConnector extends Connector {
                 // updating original cmis:document
                 ContentStream stream = jcrBinaryContent(document);
                 if (stream != null) {
+                    objectCache.remove(cmisId);
                     ((org.apache.chemistry.opencmis.client.api.Document)cmisObject).setContentStream(stream, true);
                 }
                 break;
@@ -427,6 +477,7 @@ public class CmisConnector extends Connector {
 
                 // finaly execute update action
                 if (!updateProperties.isEmpty()) {
+                    objectCache.remove(cmisObject.getId());
                     cmisObject.updateProperties(updateProperties);
                 }
                 break;
@@ -464,6 +515,7 @@ public class CmisConnector extends Connector {
                 PropertyChanges changes = delta.getPropertyChanges();
                 // for this case we have only one property jcr:data
                 // what we need to understant it is what kind of action
+                objectCache.remove(cmisId);
 
                 if (!changes.getRemoved().isEmpty()) {
                     // we need to remove
@@ -487,6 +539,7 @@ public class CmisConnector extends Connector {
                     // unknown object
                     return;
                 }
+                objectCache.remove(cmisObject.getId());
 
                 // Prepare store for the cmis properties
                 Map<String, Object> updateProperties = new HashMap<String, Object>();
@@ -559,6 +612,7 @@ public class CmisConnector extends Connector {
                 for (String key : renamed.keySet()) {
                     CmisObject object = session.getObject(key);
                     if (object == null) continue;
+                    objectCache.remove(object.getId());
 
                     // check if name was changed
                     before = object.getName();
@@ -579,6 +633,8 @@ public class CmisConnector extends Connector {
                     FileableCmisObject object = (FileableCmisObject)cmisObject;
                     CmisObject source = object.getParents().get(0);
                     CmisObject destination = session.getObject(delta.getParentChanges().getNewPrimaryParent());
+                    objectCache.remove(source.getId());
+                    objectCache.remove(destination.getId());
 
                     object.move(source, destination);
 
@@ -643,6 +699,7 @@ public class CmisConnector extends Connector {
         String cmisObjectTypeName = nodes.findCmisName(jcrNodeType);
 
         Folder parent = (Folder)session.getObject(parentId);
+        objectCache.remove(parentId);
 
         // Ivan, we can pick up object type and prperty definition map from CMIS repo
         ObjectType objectType = session.getTypeDefinition(cmisObjectTypeName);
@@ -681,7 +738,7 @@ public class CmisConnector extends Connector {
      * @return JCR node document.
      */
     private Document cmisObject( String id ) {
-        CmisObject cmisObject = session.getObject(id);
+        CmisObject cmisObject = cmisObjectFor(id);
 
         // object does not exist? return null
         if (cmisObject == null) {
@@ -751,7 +808,7 @@ public class CmisConnector extends Connector {
             writer.setPrimaryType(objectType.getId());
         }
 
-        List<Folder> parents = doc.getParents();
+        List<Folder> parents = doc.getParents(parentsContext);
         ArrayList<String> parentIds = new ArrayList<String>();
         for (Folder f : parents) {
             parentIds.add(ObjectId.toString(ObjectId.Type.OBJECT, f.getId()));
@@ -776,15 +833,17 @@ public class CmisConnector extends Connector {
     private Document cmisContent( String id ) {
         DocumentWriter writer = newDocument(ObjectId.toString(ObjectId.Type.CONTENT, id));
 
-        org.apache.chemistry.opencmis.client.api.Document doc = (org.apache.chemistry.opencmis.client.api.Document)session.getObject(id);
+        org.apache.chemistry.opencmis.client.api.Document doc = (org.apache.chemistry.opencmis.client.api.Document)cmisObjectFor(id);
         writer.setPrimaryType(NodeType.NT_RESOURCE);
         writer.setParent(id);
 
-        if (doc.getContentStream() != null) {
-            InputStream is = doc.getContentStream().getStream();
+        // each call to getContentStream() downloads the content again ...
+        ContentStream contentStream = doc.getContentStream();
+        if (contentStream != null) {
+            InputStream is = contentStream.getStream();
             BinaryValue content = factories.getBinaryFactory().create(is);
             writer.addProperty(JcrConstants.JCR_DATA, content);
-            writer.addProperty(JcrConstants.JCR_MIME_TYPE, doc.getContentStream().getMimeType());
+            writer.addProperty(JcrConstants.JCR_MIME_TYPE, contentStream.getMimeType());
         }
 
         Property<Object> lastModified = doc.getProperty(PropertyIds.LAST_MODIFICATION_DATE);
@@ -822,12 +881,29 @@ public class CmisConnector extends Connector {
      */
     private void cmisChildren( Folder folder,
                                DocumentWriter writer ) {
-        ItemIterable<CmisObject> it = folder.getChildren();
+        // the children are fetched one page at a time, with all the properties needed to convert them, so they are cached
+        // and won't have to be fetched again one by one ...
+        ItemIterable<CmisObject> it = folder.getChildren(objectContext);
         for (CmisObject obj : it) {
+            objectCache.put(obj);
             writer.addChild(obj.getId(), obj.getName());
         }
     }
 
+    /**
+     * Finds the CMIS object with the given identifier, in the cache of recently read objects or else in the CMIS repository.
+     * 
+     * @param id the identifier of the CMIS object
+     * @return the CMIS object
+     */
+    private CmisObject cmisObjectFor( String id ) {
+        CmisObject cmisObject = objectCache.get(id);
+        if (cmisObject == null) {
+            cmisObject = objectCache.put(session.getObject(id, objectContext));
+        }
+        return cmisObject;
+    }
+
     /**
      * Translates CMIS repository information into Node.
      * 
@@ -0,0 +1,150 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.cmis;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.modeshape.common.annotation.ThreadSafe;
+
+/**
+ * A bounded cache of the CMIS objects read by the {@link CmisConnector}, so that the objects listed as the children of a folder
+ * don't have to be fetched again, one by one, when their documents are read. The objects are only kept for a limited time,
+ * since they can be changed directly in the CMIS repository.
+ * <p>
+ * The objects are keyed by their identifier and their change token: when a newer copy of an object with the same change token is
+ * put into the cache, the cached copy is kept and only its expiration time is extended, whereas a copy with a different change
+ * token replaces the cached one.
+ * </p>
+ */
+@ThreadSafe
+public class CmisObjectCache {
+
+    /**
+     * The default maximum number of objects kept in the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * The default number of seconds an object is kept in the cache.
+     */
+    public static final int DEFAULT_TTL_SECONDS = 30;
+
+    private final Map<String, Entry> objects;
+    private final long ttlInMillis;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the maximum number of objects kept in the cache; must be positive
+     * @param ttlSeconds the number of seconds an object is kept in the cache; must be positive
+     */
+    public CmisObjectCache( final int maxSize,
+                            int ttlSeconds ) {
+        assert maxSize > 0;
+        assert ttlSeconds > 0;
+        this.ttlInMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.objects = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest ) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Get the cached object with the supplied identifier.
+     *
+     * @param id the CMIS identifier of the object; may not be null
+     * @return the object, or null if it is not in the cache or has expired
+     */
+    public CmisObject get( String id ) {
+        Entry entry = objects.get(id);
+        if (entry == null) return null;
+        if (entry.isExpired(System.currentTimeMillis())) {
+            objects.remove(id);
+            return null;
+        }
+        return entry.object;
+    }
+
+    /**
+     * Put an object that was just read from the CMIS repository into the cache.
+     *
+     * @param object the object; may be null, in which case this method does nothing
+     * @return the object that is cached, which is the previously cached object if it has the same change token; null only if the
+     *         supplied object is null
+     */
+    public CmisObject put( CmisObject object ) {
+        if (object == null) return null;
+        long expires = System.currentTimeMillis() + ttlInMillis;
+        String changeToken = object.getChangeToken();
+        synchronized (objects) {
+            Entry existing = objects.get(object.getId());
+            if (existing != null && changeToken != null && changeToken.equals(existing.changeToken)) {
+                existing.expires = expires;
+                return existing.object;
+            }
+            objects.put(object.getId(), new Entry(object, changeToken, expires));
+        }
+        return object;
+    }
+
+    /**
+     * Remove the object with the supplied identifier, because it is being changed.
+     *
+     * @param id the CMIS identifier of the object; may be null, in which case this method does nothing
+     */
+    public void remove( String id ) {
+        if (id != null) objects.remove(id);
+    }
+
+    /**
+     * Remove all of the objects from this cache.
+     */
+    public void clear() {
+        objects.clear();
+    }
+
+    /**
+     * @return the number of objects currently in the cache, including those that have expired but were not yet removed
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    protected static final class Entry {
+        protected final CmisObject object;
+        protected final String changeToken;
+        protected volatile long expires;
+
+        protected Entry( CmisObject object,
+                         String changeToken,
+                         long expires ) {
+            this.object = object;
+            this.changeToken = changeToken;
+            this.expires = expires;
+        }
+
+        protected boolean isExpired( long now ) {
+            return now > expires;
+        }
+    }
+}
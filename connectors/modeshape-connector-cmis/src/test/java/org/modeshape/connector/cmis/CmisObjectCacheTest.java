@@ -0,0 +1,109 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.cmis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.apache.chemistry.opencmis.client.api.CmisObject;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CmisObjectCache}
+ */
+public class CmisObjectCacheTest {
+
+    @Test
+    public void shouldReturnCachedObjects() {
+        CmisObjectCache cache = new CmisObjectCache(10, 60);
+        CmisObject object = cmisObject("id1", "token1");
+        assertThat(cache.put(object), is(sameInstance(object)));
+        assertThat(cache.get("id1"), is(sameInstance(object)));
+        assertThat(cache.get("id2"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepCachedObjectWithSameChangeToken() {
+        CmisObjectCache cache = new CmisObjectCache(10, 60);
+        CmisObject object = cmisObject("id1", "token1");
+        cache.put(object);
+        assertThat(cache.put(cmisObject("id1", "token1")), is(sameInstance(object)));
+        assertThat(cache.get("id1"), is(sameInstance(object)));
+
+        CmisObject changed = cmisObject("id1", "token2");
+        assertThat(cache.put(changed), is(sameInstance(changed)));
+        assertThat(cache.get("id1"), is(sameInstance(changed)));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedObjects() {
+        CmisObjectCache cache = new CmisObjectCache(2, 60);
+        cache.put(cmisObject("id1", "token1"));
+        cache.put(cmisObject("id2", "token1"));
+        cache.get("id1");
+        cache.put(cmisObject("id3", "token1"));
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("id2"), is(nullValue()));
+        assertThat(cache.get("id1").getId(), is("id1"));
+    }
+
+    @Test
+    public void shouldRemoveObjects() {
+        CmisObjectCache cache = new CmisObjectCache(10, 60);
+        cache.put(cmisObject("id1", "token1"));
+        cache.remove("id1");
+        assertThat(cache.get("id1"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldExpireObjects() throws Exception {
+        CmisObjectCache cache = new CmisObjectCache(10, 1);
+        cache.put(cmisObject("id1", "token1"));
+        Thread.sleep(1100);
+        assertThat(cache.get("id1"), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    private static CmisObject cmisObject( final String id,
+                                          final String changeToken ) {
+        return (CmisObject)Proxy.newProxyInstance(CmisObject.class.getClassLoader(), new Class<?>[] {CmisObject.class},
+                                                  new InvocationHandler() {
+                                                      @Override
+                                                      public Object invoke( Object proxy,
+                                                                            Method method,
+                                                                            Object[] args ) {
+                                                          switch (method.getName()) {
+                                                              case "getId":
+                                                                  return id;
+                                                              case "getChangeToken":
+                                                                  return changeToken;
+                                                              case "hashCode":
+                                                                  return System.identityHashCode(proxy);
+                                                              case "equals":
+                                                                  return proxy == args[0];
+                                                              case "toString":
+                                                                  return id + "@" + changeToken;
+                                                              default:
+                                                                  throw new UnsupportedOperationException(method.getName());
+                                                          }
+                                                      }
+                                                  });
+    }
+}
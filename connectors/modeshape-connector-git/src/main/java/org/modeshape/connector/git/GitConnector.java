@@ -56,6 +56,9 @@ import org.modeshape.jcr.value.binary.ExternalBinaryValue;
  * should be searched; the first one to match an existing remote will be used.</li>
  * <li><strong><code>queryableBranches</code></strong> - An array with the names of the branches that should be queryable by the
  * repository. By default, only the master branch is queryable.</li>
+ * <li><strong><code>cacheSize</code></strong> - The maximum number of commits, trees and paths that the connector keeps in
+ * memory, so that it doesn't have to read them again from the Git repository. The default is
+ * {@value GitObjectCache#DEFAULT_MAX_SIZE}.</li>
  * </ul>
  * </p>
  * <p>
@@ -122,7 +125,14 @@ public class GitConnector extends ReadOnlyConnector implements Pageable {
      */
     private boolean includeMimeType = DEFAULT_INCLUDE_MIME_TYPE;
 
+    /**
+     * The optional maximum number of commits, trees and paths kept in memory by the connector. By default this is
+     * '{@value GitObjectCache#DEFAULT_MAX_SIZE}'. This is set via reflection.
+     */
+    private int cacheSize = GitObjectCache.DEFAULT_MAX_SIZE;
+
     private Repository repository;
+    private GitObjectCache objectCache;
     private Git git;
     private Map<String, GitFunction> functions;
     private Map<String, PageableGitFunction> pageableFunctions;
@@ -158,6 +168,7 @@ public class GitConnector extends ReadOnlyConnector implements Pageable {
         // that no working directory will be used nor needs to exist) ...
         repository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).setBare().build();
         git = new Git(repository);
+        objectCache = new GitObjectCache(cacheSize > 0 ? cacheSize : GitObjectCache.DEFAULT_MAX_SIZE);
 
         parsedRemoteNames = new ArrayList<String>();
         if (this.remoteName != null) {
@@ -207,8 +218,14 @@ public class GitConnector extends ReadOnlyConnector implements Pageable {
         return includeMimeType;
     }
 
+    protected GitObjectCache objectCache() {
+        return objectCache;
+    }
+
     @Override
     public void shutdown() {
+        if (objectCache != null) objectCache.clear();
+        objectCache = null;
         repository = null;
         git = null;
         functions = null;
@@ -0,0 +1,220 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+
+/**
+ * A bounded cache of the Git objects read by the {@link GitConnector}. Git objects are immutable and addressed by their
+ * {@link ObjectId}, so the cached commits and tree entries never have to be invalidated; the least-recently used ones are simply
+ * discarded once the cache holds more than the maximum number of objects.
+ * <p>
+ * The entries of a path within a commit are resolved from the cached entries of the parent path, so browsing a deep path only
+ * reads the trees that were not read before.
+ * </p>
+ */
+@ThreadSafe
+public class GitObjectCache {
+
+    /**
+     * The default maximum number of commits, trees and paths kept in the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final Map<ObjectId, RevCommit> commits;
+    private final Map<ObjectId, List<Entry>> trees;
+    private final Map<String, Entry> paths;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the maximum number of commits, of trees and of paths kept in the cache; must be positive
+     */
+    public GitObjectCache( int maxSize ) {
+        assert maxSize > 0;
+        this.commits = lruMap(maxSize);
+        this.trees = lruMap(maxSize);
+        this.paths = lruMap(maxSize);
+    }
+
+    private static <K, V> Map<K, V> lruMap( final int maxSize ) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, V> eldest ) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Get the commit with the supplied identifier.
+     *
+     * @param repository the Repository object; may not be null
+     * @param commitId the identifier of the commit; may not be null
+     * @return the parsed commit, including its message; never null
+     * @throws IOException if there is a problem reading the Git repository
+     */
+    public RevCommit commit( Repository repository,
+                             ObjectId commitId ) throws IOException {
+        RevCommit commit = commits.get(commitId);
+        if (commit == null) {
+            RevWalk walker = new RevWalk(repository);
+            walker.setRetainBody(true); // we need the message and the identities
+            try {
+                commit = walker.parseCommit(commitId);
+            } finally {
+                walker.dispose();
+            }
+            commits.put(commitId.copy(), commit);
+        }
+        return commit;
+    }
+
+    /**
+     * Get the entries of the tree with the supplied identifier, in the order in which they are stored in the tree.
+     *
+     * @param repository the Repository object; may not be null
+     * @param treeId the identifier of the tree; may not be null
+     * @return the immutable list of entries; never null
+     * @throws IOException if there is a problem reading the Git repository
+     */
+    public List<Entry> entries( Repository repository,
+                                ObjectId treeId ) throws IOException {
+        List<Entry> entries = trees.get(treeId);
+        if (entries == null) {
+            List<Entry> read = new ArrayList<Entry>();
+            TreeWalk tw = new TreeWalk(repository);
+            try {
+                tw.addTree(treeId);
+                tw.setRecursive(false);
+                while (tw.next()) {
+                    read.add(new Entry(tw.getNameString(), tw.getObjectId(0), tw.getFileMode(0)));
+                }
+            } finally {
+                tw.release();
+            }
+            entries = Collections.unmodifiableList(read);
+            trees.put(treeId.copy(), entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Find the entry at the supplied path within a commit.
+     *
+     * @param repository the Repository object; may not be null
+     * @param commit the commit; may not be null
+     * @param path the path of the file or folder, relative to the top-level directory and without a leading '/'; may not be
+     *        null or empty
+     * @return the entry, or null if there is no file or folder at that path in the commit
+     * @throws IOException if there is a problem reading the Git repository
+     */
+    public Entry entry( Repository repository,
+                        RevCommit commit,
+                        String path ) throws IOException {
+        String key = commit.getId().name() + ':' + path;
+        Entry entry = paths.get(key);
+        if (entry != null) return entry;
+
+        // Find the tree that contains the entry, using the cached entries of the parent ...
+        ObjectId parentTreeId = null;
+        String name = path;
+        int lastSlash = path.lastIndexOf('/');
+        if (lastSlash == -1) {
+            parentTreeId = commit.getTree().getId();
+        } else {
+            Entry parent = entry(repository, commit, path.substring(0, lastSlash));
+            if (parent == null || !parent.isTree()) return null;
+            parentTreeId = parent.getObjectId();
+            name = path.substring(lastSlash + 1);
+        }
+        for (Entry child : entries(repository, parentTreeId)) {
+            if (child.getName().equals(name)) {
+                paths.put(key, child);
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove all of the objects from this cache.
+     */
+    public void clear() {
+        commits.clear();
+        trees.clear();
+        paths.clear();
+    }
+
+    /**
+     * An entry within a Git tree.
+     */
+    @Immutable
+    public static final class Entry {
+        private final String name;
+        private final ObjectId objectId;
+        private final FileMode mode;
+
+        protected Entry( String name,
+                         ObjectId objectId,
+                         FileMode mode ) {
+            this.name = name;
+            this.objectId = objectId;
+            this.mode = mode;
+        }
+
+        /**
+         * @return the name of the file or folder; never null
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the identifier of the blob or tree; never null
+         */
+        public ObjectId getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * @return true if this entry is a folder, or false otherwise
+         */
+        public boolean isTree() {
+            return (mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_TREE;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + objectId.name() + ")";
+        }
+    }
+}
@@ -23,9 +23,6 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.infinispan.schematic.document.Document;
 import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.api.value.DateTime;
@@ -51,6 +48,12 @@ public class GitTree extends GitFunction implements PageableGitFunction {
     protected static final String NAME = "tree";
     protected static final String ID = "/tree";
 
+    /**
+     * The cache TTL of the documents within a tree addressed by a commit identifier, which never expire since they can never
+     * change.
+     */
+    protected static final int IMMUTABLE_CACHE_TTL_SECONDS = -1;
+
     protected static Object referenceToTree( ObjectId commitId,
                                              String branchOrTagOrCommitId,
                                              Values values ) {
@@ -80,36 +83,30 @@ public class GitTree extends GitFunction implements PageableGitFunction {
             // This is a particular branch/tag/commit node ...
             String branchOrTagOrObjectId = spec.parameter(0);
             ObjectId objId = resolveBranchOrTagOrCommitId(repository, branchOrTagOrObjectId);
-            RevWalk walker = new RevWalk(repository);
-            walker.setRetainBody(true); // we need to parse the commit for the top-level
-            try {
-                RevCommit commit = walker.parseCommit(objId);
-
-                // could happen if not enough permissions, for example
-                if (commit != null) {
-                    // Add the properties for this node ...
-                    String committer = commiterName(commit);
-                    String author = authorName(commit);
-                    DateTime committed = values.dateFrom(commit.getCommitTime());
-                    writer.setPrimaryType(GitLexicon.FOLDER);
-                    writer.addProperty(JcrLexicon.CREATED, committed);
-                    writer.addProperty(JcrLexicon.CREATED_BY, committer);
-                    writer.addProperty(GitLexicon.OBJECT_ID, objId.name());
-                    writer.addProperty(GitLexicon.AUTHOR, author);
-                    writer.addProperty(GitLexicon.COMMITTER, committer);
-                    writer.addProperty(GitLexicon.COMMITTED, committed);
-                    writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
-                    writer.addProperty(GitLexicon.HISTORY, GitHistory.referenceToHistory(objId, branchOrTagOrObjectId, values));
-                    writer.addProperty(GitLexicon.DETAIL, GitCommitDetails.referenceToCommit(objId, values));
+            RevCommit commit = connector.objectCache().commit(repository, objId);
 
-                    // Add the top-level children of the directory ...
-                    addInformationForPath(repository, writer, commit, "", spec, values);
-                } else {
-                    connector.getLogger().warn(GitI18n.cannotReadCommit, objId);
+            // could happen if not enough permissions, for example
+            if (commit != null) {
+                // Add the properties for this node ...
+                String committer = commiterName(commit);
+                String author = authorName(commit);
+                DateTime committed = values.dateFrom(commit.getCommitTime());
+                writer.setPrimaryType(GitLexicon.FOLDER);
+                writer.addProperty(JcrLexicon.CREATED, committed);
+                writer.addProperty(JcrLexicon.CREATED_BY, committer);
+                writer.addProperty(GitLexicon.OBJECT_ID, objId.name());
+                writer.addProperty(GitLexicon.AUTHOR, author);
+                writer.addProperty(GitLexicon.COMMITTER, committer);
+                writer.addProperty(GitLexicon.COMMITTED, committed);
+                writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
+                writer.addProperty(GitLexicon.HISTORY, GitHistory.referenceToHistory(objId, branchOrTagOrObjectId, values));
+                writer.addProperty(GitLexicon.DETAIL, GitCommitDetails.referenceToCommit(objId, values));
 
-                }
-            } finally {
-                walker.dispose();
+                // Add the top-level children of the directory ...
+                addInformationForPath(repository, writer, commit, "", spec, values);
+                if (isCommitId(objId, branchOrTagOrObjectId)) writer.setCacheTtlSeconds(IMMUTABLE_CACHE_TTL_SECONDS);
+            } else {
+                connector.getLogger().warn(GitI18n.cannotReadCommit, objId);
             }
 
         } else {
@@ -117,23 +114,31 @@ public class GitTree extends GitFunction implements PageableGitFunction {
             String branchOrTagOrObjectId = spec.parameter(0);
             String path = spec.parametersAsPath(1);
             ObjectId objId = resolveBranchOrTagOrCommitId(repository, branchOrTagOrObjectId);
-            RevWalk walker = new RevWalk(repository);
-            walker.setRetainBody(true);
-            try {
-                // Get the commit information ...
-                RevCommit commit = walker.parseCommit(objId);
+            // Get the commit information ...
+            RevCommit commit = connector.objectCache().commit(repository, objId);
 
-                if (commit != null) {
-                    // Add the top-level children of the directory ...
-                    addInformationForPath(repository, writer, commit, path, spec, values);
-                }
-            } finally {
-                walker.dispose();
+            if (commit != null) {
+                // Add the top-level children of the directory ...
+                addInformationForPath(repository, writer, commit, path, spec, values);
+                if (isCommitId(objId, branchOrTagOrObjectId)) writer.setCacheTtlSeconds(IMMUTABLE_CACHE_TTL_SECONDS);
             }
         }
         return writer.document();
     }
 
+    /**
+     * Determine whether the tree was addressed by the full identifier of its commit, in which case its content can never change
+     * (unlike the trees addressed by the name of a branch or tag, which may be moved to another commit).
+     * 
+     * @param objId the identifier of the commit; may not be null
+     * @param branchOrTagOrObjectId the name of the branch or tag, or the commit identifier, used in the path; may not be null
+     * @return true if the commit was addressed by its full identifier, or false otherwise
+     */
+    protected static boolean isCommitId( ObjectId objId,
+                                         String branchOrTagOrObjectId ) {
+        return objId.name().equalsIgnoreCase(branchOrTagOrObjectId);
+    }
+
     protected void addInformationForPath( Repository repository,
                                           DocumentWriter writer,
                                           RevCommit commit,
@@ -153,122 +158,106 @@ public class GitTree extends GitFunction implements PageableGitFunction {
             path = path.substring(0, path.length() - JCR_CONTENT_SUFFIX.length());
         }
 
-        // Create the TreeWalk that we'll use to navigate the files/directories ...
-        final TreeWalk tw = new TreeWalk(repository);
-        tw.addTree(commit.getTree());
+        GitObjectCache cache = connector.objectCache();
         if ("".equals(path)) {
-            // This is the top-level directory, so we don't need to pre-walk to find anything ...
-            tw.setRecursive(false);
-            while (tw.next()) {
-                String childName = tw.getNameString();
+            // This is the top-level directory, so we don't need to find anything ...
+            for (GitObjectCache.Entry child : cache.entries(repository, commit.getTree().getId())) {
+                String childName = child.getName();
                 String childId = spec.childId(childName);
                 writer.addChild(childId, childName);
             }
-        } else {
-            // We need to first find our path *before* we can walk the children ...
-            PathFilter filter = PathFilter.create(path);
-            tw.setFilter(filter);
-            while (tw.next()) {
-                if (filter.isDone(tw)) {
-                    break;
-                } else if (tw.isSubtree()) {
-                    tw.enterSubtree();
-                }
-            }
-            // Now that the TreeWalk is the in right location given by the 'path', we can get the
-            if (tw.isSubtree()) {
-                // The object at the 'path' is a directory, so go into it ...
-                tw.enterSubtree();
-
-                // Find the commit in which this folder was last modified ...
-                // This may not be terribly efficient, but it seems to work faster on subsequent runs ...
-                writer.setPrimaryType(GitLexicon.FOLDER);
+            return;
+        }
 
-                // Add folder-related properties ...
-                String committer = commiterName(commit);
-                String author = authorName(commit);
-                DateTime committed = values.dateFrom(commit.getCommitTime());
-                writer.addProperty(JcrLexicon.CREATED, committed);
-                writer.addProperty(JcrLexicon.CREATED_BY, committer);
-                writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
-                writer.addProperty(GitLexicon.AUTHOR, author);
-                writer.addProperty(GitLexicon.COMMITTER, committer);
-                writer.addProperty(GitLexicon.COMMITTED, committed);
-                writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
-              
-                // And now walk the contents of the directory ...
-                while (tw.next()) {
-                    String childName = tw.getNameString();
-                    String childId = spec.childId(childName);
-                    writer.addChild(childId, childName);
-                }
-            } else {
-                // The path specifies a file (or a content node) ...
-                
-                if (isContentNode) {
-                    writer.setPrimaryType(GitLexicon.RESOURCE);
+        // Find the entry at the 'path', which reuses the trees of the parent folders that were already read ...
+        GitObjectCache.Entry entry = cache.entry(repository, commit, path);
+        if (entry == null) return;
+        if (entry.isTree()) {
+            // The object at the 'path' is a directory ...
+            writer.setPrimaryType(GitLexicon.FOLDER);
 
-                    // Add file-related properties ...
-                    String committer = commiterName(commit);
-                    String author = authorName(commit);
-                    DateTime committed = values.dateFrom(commit.getCommitTime());
+            // Add folder-related properties ...
+            String committer = commiterName(commit);
+            String author = authorName(commit);
+            DateTime committed = values.dateFrom(commit.getCommitTime());
+            writer.addProperty(JcrLexicon.CREATED, committed);
+            writer.addProperty(JcrLexicon.CREATED_BY, committer);
+            writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
+            writer.addProperty(GitLexicon.AUTHOR, author);
+            writer.addProperty(GitLexicon.COMMITTER, committer);
+            writer.addProperty(GitLexicon.COMMITTED, committed);
+            writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
 
-                    writer.addProperty(JcrLexicon.LAST_MODIFIED, committed);
-                    writer.addProperty(JcrLexicon.LAST_MODIFIED_BY, committer);
-                    writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
-                    writer.addProperty(GitLexicon.AUTHOR, author);
-                    writer.addProperty(GitLexicon.COMMITTER, committer);
-                    writer.addProperty(GitLexicon.COMMITTED, committed);
-                    writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
-                    // Create the BinaryValue ...
-                    ObjectId fileObjectId = tw.getObjectId(0);
-                    ObjectLoader fileLoader = repository.open(fileObjectId);
-                    BinaryKey key = new BinaryKey(fileObjectId.getName());
-                    BinaryValue value = values.binaryFor(key, fileLoader.getSize());
-                    if (value == null) {
-                        // It wasn't found in the binary store ...
-                        if (fileLoader.isLarge()) {
-                            // Too large to hold in memory, so use the binary store (which reads the file immediately) ...
-                            value = values.binaryFrom(fileLoader.openStream());
-                        } else {
-                            // This is small enough to fit into a byte[], but it still may be pretty big ...
-                            value = new GitBinaryValue(fileObjectId, fileLoader, connector.getSourceName(), name,
-                                                       connector.getMimeTypeDetector());
-                        }
-                    }
-                    writer.addProperty(JcrLexicon.DATA, value);
-                    if (connector.includeMimeType()) {
-                        try {
-                            String filename = spec.parameter(spec.parameterCount() - 1); // the last is 'jcr:content'
-                            String mimeType = value.getMimeType(filename);
-                            if (mimeType != null) writer.addProperty(JcrLexicon.MIMETYPE, mimeType);
-                        } catch (RepositoryException e) {
-                            // do nothing
-                        } catch (IOException e) {
-                            // do nothing
-                        }
-                    }
-                } else {
-                    writer.setPrimaryType(GitLexicon.FILE);
-                  
-                    // Add file-related properties ...
-                    String committer = commiterName(commit);
-                    String author = authorName(commit);
-                    DateTime committed = values.dateFrom(commit.getCommitTime());
+            // And now add the contents of the directory ...
+            for (GitObjectCache.Entry child : cache.entries(repository, entry.getObjectId())) {
+                String childName = child.getName();
+                String childId = spec.childId(childName);
+                writer.addChild(childId, childName);
+            }
+        } else if (isContentNode) {
+            // The path specifies a content node ...
+            writer.setPrimaryType(GitLexicon.RESOURCE);
 
-                    writer.addProperty(JcrLexicon.CREATED, committed);
-                    writer.addProperty(JcrLexicon.CREATED_BY, committer);
-                    writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
-                    writer.addProperty(GitLexicon.AUTHOR, author);
-                    writer.addProperty(GitLexicon.COMMITTER, committer);
-                    writer.addProperty(GitLexicon.COMMITTED, committed);
-                    writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
+            // Add file-related properties ...
+            String committer = commiterName(commit);
+            String author = authorName(commit);
+            DateTime committed = values.dateFrom(commit.getCommitTime());
 
-                    // Add the "jcr:content" child node ...
-                    String childId = spec.childId(JCR_CONTENT);
-                    writer.addChild(childId, JCR_CONTENT);
+            writer.addProperty(JcrLexicon.LAST_MODIFIED, committed);
+            writer.addProperty(JcrLexicon.LAST_MODIFIED_BY, committer);
+            writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
+            writer.addProperty(GitLexicon.AUTHOR, author);
+            writer.addProperty(GitLexicon.COMMITTER, committer);
+            writer.addProperty(GitLexicon.COMMITTED, committed);
+            writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
+            // Create the BinaryValue ...
+            ObjectId fileObjectId = entry.getObjectId();
+            ObjectLoader fileLoader = repository.open(fileObjectId);
+            BinaryKey key = new BinaryKey(fileObjectId.getName());
+            BinaryValue value = values.binaryFor(key, fileLoader.getSize());
+            if (value == null) {
+                // It wasn't found in the binary store ...
+                if (fileLoader.isLarge()) {
+                    // Too large to hold in memory, so use the binary store (which reads the file immediately) ...
+                    value = values.binaryFrom(fileLoader.openStream());
+                } else {
+                    // This is small enough to fit into a byte[], but it still may be pretty big ...
+                    value = new GitBinaryValue(fileObjectId, fileLoader, connector.getSourceName(), name,
+                                               connector.getMimeTypeDetector());
                 }
             }
+            writer.addProperty(JcrLexicon.DATA, value);
+            if (connector.includeMimeType()) {
+                try {
+                    String filename = spec.parameter(spec.parameterCount() - 1); // the last is 'jcr:content'
+                    String mimeType = value.getMimeType(filename);
+                    if (mimeType != null) writer.addProperty(JcrLexicon.MIMETYPE, mimeType);
+                } catch (RepositoryException e) {
+                    // do nothing
+                } catch (IOException e) {
+                    // do nothing
+                }
+            }
+        } else {
+            // The path specifies a file ...
+            writer.setPrimaryType(GitLexicon.FILE);
+
+            // Add file-related properties ...
+            String committer = commiterName(commit);
+            String author = authorName(commit);
+            DateTime committed = values.dateFrom(commit.getCommitTime());
+
+            writer.addProperty(JcrLexicon.CREATED, committed);
+            writer.addProperty(JcrLexicon.CREATED_BY, committer);
+            writer.addProperty(GitLexicon.OBJECT_ID, commit.getId().name());
+            writer.addProperty(GitLexicon.AUTHOR, author);
+            writer.addProperty(GitLexicon.COMMITTER, committer);
+            writer.addProperty(GitLexicon.COMMITTED, committed);
+            writer.addProperty(GitLexicon.TITLE, commit.getShortMessage());
+
+            // Add the "jcr:content" child node ...
+            String childId = spec.childId(JCR_CONTENT);
+            writer.addChild(childId, JCR_CONTENT);
         }
     }
 
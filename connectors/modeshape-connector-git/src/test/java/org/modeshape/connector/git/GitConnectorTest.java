@@ -293,6 +293,20 @@ public class GitConnectorTest extends MultiUseAbstractTest {
         }
     }
 
+    @Test
+    public void shouldReadFilesDeepWithinTreeOfCommit() throws Exception {
+        String treePath = "/repos/git-modeshape-remote/tree/72ea74be3b3a50345a1b2f543f78fd6be00caa35";
+        Node folder = session.getNode(treePath + "/modeshape-jcr/src/main/java/org/modeshape/jcr");
+        assertThat(folder.getPrimaryNodeType().getName(), is("git:folder"));
+        assertChildrenInclude(folder, "JcrSession.java");
+        Node content = folder.getNode("JcrSession.java/jcr:content");
+        assertThat(content.getProperty("jcr:data").getBinary().getSize() > 0L, is(true));
+
+        // Sibling folders are resolved from the same parent tree ...
+        Node sibling = session.getNode(treePath + "/modeshape-jcr/src/test/java/org/modeshape/jcr");
+        assertThat(sibling.getPrimaryNodeType().getName(), is("git:folder"));
+    }
+
     protected void assertNodeHasObjectIdProperty( Node node ) throws Exception {
         assertThat(node.getProperty("git:objectId").getString(), is(notNullValue()));
     }
@@ -15,6 +15,7 @@
  */
 package org.modeshape.connector.meta.jdbc;
 
+import java.io.Serializable;
 import org.modeshape.common.annotation.Immutable;
 
 /**
@@ -24,7 +25,9 @@ import org.modeshape.common.annotation.Immutable;
  * @author Horia Chiorean (hchiorea@redhat.com)
  */
 @Immutable
-public class DBMetadata {
+public class DBMetadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String databaseProductName;
     private final String databaseProductVersion;
@@ -16,6 +16,7 @@
 package org.modeshape.connector.meta.jdbc;
 
 import java.beans.PropertyVetoException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -55,6 +56,7 @@ public class JdbcMetadataConnector extends ReadOnlyConnector {
     private static final int DEFAULT_MAXIMUM_NUMBER_OF_STATEMENTS_TO_CACHE = 100;
     private static final int DEFAULT_NUMBER_OF_CONNECTIONS_TO_ACQUIRE_AS_NEEDED = 1;
     private static final int DEFAULT_IDLE_TIME_IN_SECONDS_BEFORE_TESTING_CONNECTIONS = 60 * 3; // 3 minutes
+    private static final int DEFAULT_SNAPSHOT_THREADS = 4;
 
     /**
      * The JNDI name of the JDBC DataSource instance that should be used. If not specified, the other driver properties must be set.
@@ -150,6 +152,29 @@ public class JdbcMetadataConnector extends ReadOnlyConnector {
      */
     protected boolean closeDataSourceOnShutdown = false;
 
+    /**
+     * Whether the documents should be served from an in-memory snapshot of the metadata of the whole database, which is loaded in
+     * the background, rather than by querying the database for each document. The default is "false".
+     */
+    protected boolean useMetadataSnapshot = false;
+
+    /**
+     * The number of seconds between two refreshes of the metadata snapshot. The default is "0", which means the snapshot is only
+     * loaded when the connector starts and then refreshed on demand.
+     */
+    protected int snapshotRefreshIntervalInSeconds = 0;
+
+    /**
+     * The number of threads (and connections) used to load the metadata snapshot. The default is "4".
+     */
+    protected int snapshotThreads = DEFAULT_SNAPSHOT_THREADS;
+
+    /**
+     * The path of the file to which the metadata snapshot is written, so that it can be used right away after a restart. If not
+     * specified, the snapshot is only kept in memory.
+     */
+    protected String snapshotFilePath;
+
     protected DataSource dataSource;
     protected MetadataCollector metadataCollector;
     protected List<? extends AbstractMetadataRetriever> metadataRetrievers;
@@ -159,6 +184,7 @@ public class JdbcMetadataConnector extends ReadOnlyConnector {
                             NodeTypeManager nodeTypeManager ) throws RepositoryException, IOException {
         initMetadataCollector();
         initDataSource();
+        initMetadataSnapshot();
         initNodeTypes(nodeTypeManager);
         initRetrievers();
     }
@@ -223,6 +249,34 @@ public class JdbcMetadataConnector extends ReadOnlyConnector {
         }
     }
 
+    protected void initMetadataSnapshot() {
+        if (!useMetadataSnapshot) {
+            return;
+        }
+        File file = StringUtil.isBlank(snapshotFilePath) ? null : new File(snapshotFilePath);
+        int threads = snapshotThreads > 0 ? snapshotThreads : DEFAULT_SNAPSHOT_THREADS;
+        SnapshotMetadataCollector snapshotCollector = new SnapshotMetadataCollector(this.metadataCollector, this.dataSource,
+                                                                                    defaultCatalogName, defaultSchemaName,
+                                                                                    threads, file);
+        snapshotCollector.start(snapshotRefreshIntervalInSeconds);
+        this.metadataCollector = snapshotCollector;
+    }
+
+    /**
+     * Reload the snapshot of the metadata of the database, if the connector uses one. This blocks until the new snapshot is
+     * loaded.
+     *
+     * @return true if the snapshot was reloaded, or false if the connector does not use a snapshot
+     * @throws JdbcMetadataException if the metadata cannot be loaded, in which case the previous snapshot is still used
+     */
+    public boolean refreshMetadataSnapshot() {
+        if (metadataCollector instanceof SnapshotMetadataCollector) {
+            ((SnapshotMetadataCollector)metadataCollector).refresh();
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public Document getDocumentById( String id ) {
         DocumentWriter writer = newDocument(id);
@@ -291,6 +345,9 @@ public class JdbcMetadataConnector extends ReadOnlyConnector {
 
     @Override
     public void shutdown() {
+        if (metadataCollector instanceof SnapshotMetadataCollector) {
+            ((SnapshotMetadataCollector)metadataCollector).stop();
+        }
         if (closeDataSourceOnShutdown && this.dataSource instanceof ComboPooledDataSource) {
             ((ComboPooledDataSource)this.dataSource).close();
         }
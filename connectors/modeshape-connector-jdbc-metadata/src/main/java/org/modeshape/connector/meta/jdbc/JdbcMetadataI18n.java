@@ -28,6 +28,10 @@ public final class JdbcMetadataI18n {
     public static I18n errorFindingDataSourceInJndi;
     public static I18n driverClassNameAndUrlAreRequired;
 
+    public static I18n errorLoadingMetadataSnapshot;
+    public static I18n errorReadingMetadataSnapshot;
+    public static I18n errorWritingMetadataSnapshot;
+
     private JdbcMetadataI18n() {
     }
 
@@ -0,0 +1,202 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.meta.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.modeshape.common.annotation.ThreadSafe;
+
+/**
+ * An in-memory model of the metadata of a database, as returned by a {@link MetadataCollector}. The lists are keyed by the exact
+ * arguments that were passed to the collector (e.g., a null catalog or schema name), so that a snapshot can answer the same
+ * requests the collector would.
+ *
+ * @see SnapshotMetadataCollector
+ */
+@ThreadSafe
+public class MetadataSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long createdMillis;
+    private volatile DBMetadata database;
+    private volatile List<String> catalogNames;
+    private final ConcurrentMap<List<String>, List<String>> schemaNames = new ConcurrentHashMap<List<String>, List<String>>();
+    private final ConcurrentMap<List<String>, List<TableMetadata>> tables = new ConcurrentHashMap<List<String>, List<TableMetadata>>();
+    private final ConcurrentMap<List<String>, List<ProcedureMetadata>> procedures = new ConcurrentHashMap<List<String>, List<ProcedureMetadata>>();
+    private final ConcurrentMap<List<String>, List<ColumnMetadata>> columns = new ConcurrentHashMap<List<String>, List<ColumnMetadata>>();
+    private final ConcurrentMap<List<String>, List<ForeignKeyMetadata>> foreignKeys = new ConcurrentHashMap<List<String>, List<ForeignKeyMetadata>>();
+
+    protected MetadataSnapshot() {
+        this.createdMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the time at which this snapshot was created, in milliseconds since the epoch
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    protected DBMetadata getDatabase() {
+        return database;
+    }
+
+    protected void setDatabase( DBMetadata database ) {
+        this.database = database;
+    }
+
+    protected List<String> getCatalogNames() {
+        return catalogNames;
+    }
+
+    protected void setCatalogNames( List<String> catalogNames ) {
+        this.catalogNames = immutableCopy(catalogNames);
+    }
+
+    protected List<String> getSchemaNames( String catalogName ) {
+        return schemaNames.get(key(catalogName));
+    }
+
+    protected List<String> putSchemaNames( String catalogName,
+                                           List<String> names ) {
+        return putIfAbsent(schemaNames, key(catalogName), names);
+    }
+
+    protected List<TableMetadata> getTables( String catalogName,
+                                             String schemaName ) {
+        return tables.get(key(catalogName, schemaName));
+    }
+
+    protected List<TableMetadata> putTables( String catalogName,
+                                             String schemaName,
+                                             List<TableMetadata> metadata ) {
+        return putIfAbsent(tables, key(catalogName, schemaName), metadata);
+    }
+
+    protected List<ProcedureMetadata> getProcedures( String catalogName,
+                                                     String schemaName ) {
+        return procedures.get(key(catalogName, schemaName));
+    }
+
+    protected List<ProcedureMetadata> putProcedures( String catalogName,
+                                                     String schemaName,
+                                                     List<ProcedureMetadata> metadata ) {
+        return putIfAbsent(procedures, key(catalogName, schemaName), metadata);
+    }
+
+    protected List<ColumnMetadata> getColumns( String catalogName,
+                                               String schemaName,
+                                               String tableName ) {
+        return columns.get(key(catalogName, schemaName, tableName));
+    }
+
+    protected List<ColumnMetadata> putColumns( String catalogName,
+                                               String schemaName,
+                                               String tableName,
+                                               List<ColumnMetadata> metadata ) {
+        return putIfAbsent(columns, key(catalogName, schemaName, tableName), metadata);
+    }
+
+    protected List<ForeignKeyMetadata> getForeignKeys( String catalogName,
+                                                       String schemaName,
+                                                       String tableName ) {
+        return foreignKeys.get(key(catalogName, schemaName, tableName));
+    }
+
+    protected List<ForeignKeyMetadata> putForeignKeys( String catalogName,
+                                                       String schemaName,
+                                                       String tableName,
+                                                       List<ForeignKeyMetadata> metadata ) {
+        return putIfAbsent(foreignKeys, key(catalogName, schemaName, tableName), metadata);
+    }
+
+    /**
+     * @return the number of tables in this snapshot
+     */
+    public int getTableCount() {
+        int count = 0;
+        for (List<TableMetadata> list : tables.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    /**
+     * Write this snapshot to the supplied file, replacing any existing content.
+     *
+     * @param file the file; may not be null
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeTo( File file ) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeObject(this);
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file.getAbsolutePath());
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Read a snapshot that was previously {@link #writeTo(File) written} to the supplied file.
+     *
+     * @param file the file; may not be null
+     * @return the snapshot; never null
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static MetadataSnapshot readFrom( File file ) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (MetadataSnapshot)in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<String> key( String... names ) {
+        return Arrays.asList(names);
+    }
+
+    private static <T> List<T> putIfAbsent( ConcurrentMap<List<String>, List<T>> map,
+                                            List<String> key,
+                                            List<T> values ) {
+        List<T> copy = immutableCopy(values);
+        List<T> existing = map.putIfAbsent(key, copy);
+        return existing != null ? existing : copy;
+    }
+
+    private static <T> List<T> immutableCopy( List<T> values ) {
+        return Collections.unmodifiableList(new ArrayList<T>(values));
+    }
+}
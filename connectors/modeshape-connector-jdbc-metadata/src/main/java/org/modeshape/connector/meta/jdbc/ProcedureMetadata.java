@@ -15,11 +15,15 @@
  */
 package org.modeshape.connector.meta.jdbc;
 
+import java.io.Serializable;
+
 /**
  * Container for column-level metadata. The fields in this class roughly parallel the information returned from the
  * {@link java.sql.DatabaseMetaData#getProcedures(String, String, String)} method.
  */
-public class ProcedureMetadata {
+public class ProcedureMetadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String name;
     private final String description;
@@ -0,0 +1,429 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.meta.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.common.util.StringUtil;
+
+/**
+ * A {@link MetadataCollector} that answers the requests from a {@link MetadataSnapshot snapshot} of the metadata of the whole
+ * database, rather than querying the database every time. The snapshot is loaded in the background, by several threads that
+ * each use their own connection, and is replaced by a new one on a schedule or {@link #refresh() on demand}. Until the first
+ * snapshot is loaded, the requests are passed to the underlying collector and their results are added to the current snapshot.
+ * <p>
+ * The snapshot can optionally be written to a file, so that it can be used as soon as the connector is restarted while a new
+ * snapshot is being loaded.
+ * </p>
+ */
+@ThreadSafe
+public class SnapshotMetadataCollector implements MetadataCollector {
+
+    private static final Logger LOGGER = Logger.getLogger(SnapshotMetadataCollector.class);
+
+    /**
+     * The number of tables whose columns and foreign keys are loaded by each task.
+     */
+    private static final int TABLES_PER_TASK = 50;
+
+    private final MetadataCollector delegate;
+    private final DataSource dataSource;
+    private final String defaultCatalogName;
+    private final String defaultSchemaName;
+    private final int threads;
+    private final File file;
+    private final Object refreshLock = new Object();
+    private volatile MetadataSnapshot snapshot = new MetadataSnapshot();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Create a new collector.
+     *
+     * @param delegate the collector that queries the database; may not be null
+     * @param dataSource the data source from which the connections used to load the snapshots are obtained; may not be null
+     * @param defaultCatalogName the name used for the catalog if the database does not support catalogs; may not be null
+     * @param defaultSchemaName the name used for the schema if the database does not support schemas; may not be null
+     * @param threads the number of threads (and connections) used to load a snapshot; must be positive
+     * @param file the file to which the snapshots are written, or null if they should only be kept in memory
+     */
+    public SnapshotMetadataCollector( MetadataCollector delegate,
+                                      DataSource dataSource,
+                                      String defaultCatalogName,
+                                      String defaultSchemaName,
+                                      int threads,
+                                      File file ) {
+        CheckArg.isNotNull(delegate, "delegate");
+        CheckArg.isNotNull(dataSource, "dataSource");
+        CheckArg.isNotNull(defaultCatalogName, "defaultCatalogName");
+        CheckArg.isNotNull(defaultSchemaName, "defaultSchemaName");
+        CheckArg.isPositive(threads, "threads");
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        this.defaultCatalogName = defaultCatalogName;
+        this.defaultSchemaName = defaultSchemaName;
+        this.threads = threads;
+        this.file = file;
+    }
+
+    /**
+     * Start using this collector: read the snapshot from the file (if there is one), and load a new snapshot in the background
+     * now and then every {@code refreshIntervalInSeconds}.
+     *
+     * @param refreshIntervalInSeconds the number of seconds between two refreshes of the snapshot, or 0 if the snapshot should
+     *        only be refreshed on demand
+     */
+    public synchronized void start( int refreshIntervalInSeconds ) {
+        if (scheduler != null) return;
+        if (file != null && file.exists()) {
+            try {
+                snapshot = MetadataSnapshot.readFrom(file);
+            } catch (IOException e) {
+                LOGGER.warn(e, JdbcMetadataI18n.errorReadingMetadataSnapshot, file.getAbsolutePath());
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("modeshape-jdbc-metadata-snapshot"));
+        Runnable refresher = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    LOGGER.error(e, JdbcMetadataI18n.errorLoadingMetadataSnapshot);
+                }
+            }
+        };
+        if (refreshIntervalInSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(refresher, 0, refreshIntervalInSeconds, TimeUnit.SECONDS);
+        } else {
+            scheduler.execute(refresher);
+        }
+    }
+
+    /**
+     * Stop refreshing the snapshot.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * @return the snapshot that is currently used to answer the requests; never null
+     */
+    public MetadataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Load a complete snapshot of the metadata and use it instead of the current one. Only one snapshot is loaded at a time, so
+     * this method blocks while another thread is refreshing the snapshot.
+     *
+     * @return the new snapshot; never null
+     * @throws JdbcMetadataException if the metadata cannot be loaded, in which case the current snapshot is still used
+     */
+    public MetadataSnapshot refresh() throws JdbcMetadataException {
+        synchronized (refreshLock) {
+            long start = System.currentTimeMillis();
+            MetadataSnapshot newSnapshot = load();
+            snapshot = newSnapshot;
+            LOGGER.debug("Loaded the metadata of {0} tables in {1} ms", newSnapshot.getTableCount(),
+                         System.currentTimeMillis() - start);
+            if (file != null) {
+                try {
+                    newSnapshot.writeTo(file);
+                } catch (IOException e) {
+                    LOGGER.warn(e, JdbcMetadataI18n.errorWritingMetadataSnapshot, file.getAbsolutePath());
+                }
+            }
+            return newSnapshot;
+        }
+    }
+
+    protected MetadataSnapshot load() throws JdbcMetadataException {
+        final MetadataSnapshot newSnapshot = new MetadataSnapshot();
+        final List<String[]> schemas = new ArrayList<String[]>();
+
+        // Load the catalogs and schemas, exactly as the retrievers request them ...
+        Connection connection = connection();
+        try {
+            newSnapshot.setDatabase(delegate.getDatabaseMetadata(connection));
+            List<String> catalogNames = delegate.getCatalogNames(connection);
+            newSnapshot.setCatalogNames(catalogNames);
+            List<String> catalogIds = withoutBlanks(catalogNames, defaultCatalogName);
+            for (String catalogId : catalogIds) {
+                String catalog = catalogId.equalsIgnoreCase(defaultCatalogName) ? catalogId : null;
+                List<String> schemaNames = newSnapshot.getSchemaNames(catalog);
+                if (schemaNames == null) {
+                    schemaNames = newSnapshot.putSchemaNames(catalog, delegate.getSchemaNames(connection, catalog));
+                }
+                for (String schemaId : withoutBlanks(schemaNames, defaultSchemaName)) {
+                    schemas.add(new String[] {catalogFor(catalogId), schemaFor(schemaId)});
+                }
+            }
+        } finally {
+            close(connection);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("modeshape-jdbc-metadata-loader"));
+        try {
+            // Load the tables and procedures of each schema in parallel ...
+            List<Future<List<Callable<Void>>>> schemaResults = new ArrayList<Future<List<Callable<Void>>>>();
+            for (final String[] schema : schemas) {
+                schemaResults.add(executor.submit(new Callable<List<Callable<Void>>>() {
+                    @Override
+                    public List<Callable<Void>> call() {
+                        return loadSchema(newSnapshot, schema[0], schema[1]);
+                    }
+                }));
+            }
+            List<Callable<Void>> tableTasks = new ArrayList<Callable<Void>>();
+            for (Future<List<Callable<Void>>> result : schemaResults) {
+                tableTasks.addAll(get(result));
+            }
+
+            // And then the columns and foreign keys of the tables, in batches ...
+            List<Future<Void>> tableResults = new ArrayList<Future<Void>>();
+            for (Callable<Void> task : tableTasks) {
+                tableResults.add(executor.submit(task));
+            }
+            for (Future<Void> result : tableResults) {
+                get(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return newSnapshot;
+    }
+
+    private List<Callable<Void>> loadSchema( final MetadataSnapshot newSnapshot,
+                                             final String catalog,
+                                             final String schema ) {
+        List<TableMetadata> tables = null;
+        Connection connection = connection();
+        try {
+            tables = newSnapshot.putTables(catalog, schema, delegate.getTables(connection, catalog, schema, null));
+            newSnapshot.putProcedures(catalog, schema, delegate.getProcedures(connection, catalog, schema, null));
+        } finally {
+            close(connection);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < tables.size(); i += TABLES_PER_TASK) {
+            final List<TableMetadata> batch = tables.subList(i, Math.min(i + TABLES_PER_TASK, tables.size()));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Connection connection = connection();
+                    try {
+                        for (TableMetadata table : batch) {
+                            String tableName = table.getName();
+                            newSnapshot.putColumns(catalog, schema, tableName,
+                                                   delegate.getColumns(connection, catalog, schema, tableName, null));
+                            newSnapshot.putForeignKeys(catalog, schema, tableName,
+                                                       delegate.getForeignKeys(connection, catalog, schema, tableName, null));
+                        }
+                    } finally {
+                        close(connection);
+                    }
+                    return null;
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private String catalogFor( String catalogId ) {
+        return catalogId.equalsIgnoreCase(defaultCatalogName) ? null : catalogId;
+    }
+
+    private String schemaFor( String schemaId ) {
+        return schemaId.equalsIgnoreCase(defaultSchemaName) ? null : schemaId;
+    }
+
+    private static List<String> withoutBlanks( List<String> names,
+                                               String defaultName ) {
+        List<String> result = new ArrayList<String>(names);
+        for (Iterator<String> it = result.iterator(); it.hasNext();) {
+            if (StringUtil.isBlank(it.next())) it.remove();
+        }
+        if (result.isEmpty()) result.add(defaultName);
+        return result;
+    }
+
+    private Connection connection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new JdbcMetadataException(JdbcMetadataI18n.errorObtainingConnection, e);
+        }
+    }
+
+    private static void close( Connection connection ) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.debug(e, "Cannot close JDBC connection");
+        }
+    }
+
+    private static <T> T get( Future<T> future ) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JdbcMetadataException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JdbcMetadataException) throw (JdbcMetadataException)cause;
+            throw new JdbcMetadataException(cause);
+        }
+    }
+
+    @Override
+    public DBMetadata getDatabaseMetadata( Connection conn ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        DBMetadata database = snapshot.getDatabase();
+        if (database == null) {
+            database = delegate.getDatabaseMetadata(conn);
+            snapshot.setDatabase(database);
+        }
+        return database;
+    }
+
+    @Override
+    public List<String> getCatalogNames( Connection conn ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<String> catalogNames = snapshot.getCatalogNames();
+        if (catalogNames == null) {
+            catalogNames = delegate.getCatalogNames(conn);
+            snapshot.setCatalogNames(catalogNames);
+        }
+        // the callers may modify the list ...
+        return new ArrayList<String>(catalogNames);
+    }
+
+    @Override
+    public List<String> getSchemaNames( Connection conn,
+                                        String catalogName ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<String> schemaNames = snapshot.getSchemaNames(catalogName);
+        if (schemaNames == null) {
+            schemaNames = snapshot.putSchemaNames(catalogName, delegate.getSchemaNames(conn, catalogName));
+        }
+        // the callers may modify the list ...
+        return new ArrayList<String>(schemaNames);
+    }
+
+    @Override
+    public List<TableMetadata> getTables( Connection conn,
+                                          String catalogName,
+                                          String schemaName,
+                                          String tableName ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<TableMetadata> tables = snapshot.getTables(catalogName, schemaName);
+        if (tables == null) {
+            tables = snapshot.putTables(catalogName, schemaName, delegate.getTables(conn, catalogName, schemaName, null));
+        }
+        if (tableName == null) return tables;
+        for (TableMetadata table : tables) {
+            if (tableName.equals(table.getName())) return Collections.singletonList(table);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<ColumnMetadata> getColumns( Connection conn,
+                                            String catalogName,
+                                            String schemaName,
+                                            String tableName,
+                                            String columnName ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<ColumnMetadata> columns = snapshot.getColumns(catalogName, schemaName, tableName);
+        if (columns == null) {
+            columns = snapshot.putColumns(catalogName, schemaName, tableName,
+                                          delegate.getColumns(conn, catalogName, schemaName, tableName, null));
+        }
+        if (columnName == null) return columns;
+        for (ColumnMetadata column : columns) {
+            if (columnName.equals(column.getName())) return Collections.singletonList(column);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<ProcedureMetadata> getProcedures( Connection conn,
+                                                  String catalogName,
+                                                  String schemaName,
+                                                  String procedureName ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<ProcedureMetadata> procedures = snapshot.getProcedures(catalogName, schemaName);
+        if (procedures == null) {
+            procedures = snapshot.putProcedures(catalogName, schemaName,
+                                                delegate.getProcedures(conn, catalogName, schemaName, null));
+        }
+        if (procedureName == null) return procedures;
+        List<ProcedureMetadata> result = new ArrayList<ProcedureMetadata>();
+        for (ProcedureMetadata procedure : procedures) {
+            // overloaded procedures have the same name ...
+            if (procedureName.equals(procedure.getName())) result.add(procedure);
+        }
+        return result;
+    }
+
+    @Override
+    public List<ForeignKeyMetadata> getForeignKeys( Connection conn,
+                                                    String catalogName,
+                                                    String schemaName,
+                                                    String tableName,
+                                                    String fkColumnName ) throws JdbcMetadataException {
+        MetadataSnapshot snapshot = this.snapshot;
+        List<ForeignKeyMetadata> foreignKeys = snapshot.getForeignKeys(catalogName, schemaName, tableName);
+        if (foreignKeys == null) {
+            foreignKeys = snapshot.putForeignKeys(catalogName, schemaName, tableName,
+                                                  delegate.getForeignKeys(conn, catalogName, schemaName, tableName, null));
+        }
+        if (fkColumnName == null) return foreignKeys;
+        List<ForeignKeyMetadata> result = new ArrayList<ForeignKeyMetadata>();
+        for (ForeignKeyMetadata foreignKey : foreignKeys) {
+            if (fkColumnName.equalsIgnoreCase(foreignKey.getForeignKeyColumnName())) result.add(foreignKey);
+        }
+        return result;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.modeshape.connector.meta.jdbc;
 
+import java.io.Serializable;
 import org.modeshape.common.annotation.Immutable;
 
 /**
@@ -22,7 +23,9 @@ import org.modeshape.common.annotation.Immutable;
  * {@link java.sql.DatabaseMetaData#getTables(String, String, String, String[])} method.
  */
 @Immutable
-public class TableMetadata {
+public class TableMetadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String name;
     private final String type;
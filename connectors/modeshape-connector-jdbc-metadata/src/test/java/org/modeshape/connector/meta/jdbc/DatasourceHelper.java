@@ -145,5 +145,6 @@ public class DatasourceHelper {
 
     public static void closeDataSource() {
         dataSource.close();
+        dataSource = null;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.meta.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+
+/**
+ * Unit test for {@link SnapshotMetadataCollector}
+ */
+public class SnapshotMetadataCollectorTest {
+
+    private static DataSource dataSource;
+    private static String catalogName;
+    private static String schemaName;
+    private static String districtTableName;
+
+    private File snapshotFile;
+    private SnapshotMetadataCollector collector;
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        dataSource = DatasourceHelper.getDataSource();
+        DatasourceHelper.executeDdl("create.ddl");
+
+        Connection connection = dataSource.getConnection();
+        try {
+            DatabaseMetaData dmd = connection.getMetaData();
+            districtTableName = dmd.storesUpperCaseIdentifiers() ? "DISTRICT" : "district";
+            ResultSet rs = dmd.getTables(null, null, districtTableName, null);
+            try {
+                assertTrue(rs.next());
+                catalogName = rs.getString("TABLE_CAT");
+                schemaName = rs.getString("TABLE_SCHEM");
+            } finally {
+                rs.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    @AfterClass
+    public static void afterAll() throws Exception {
+        DatasourceHelper.executeDdl("drop.ddl");
+        DatasourceHelper.closeDataSource();
+    }
+
+    @Before
+    public void beforeEach() {
+        snapshotFile = new File("target/metadata-snapshot/snapshot.ser");
+        FileUtil.delete(snapshotFile.getParentFile());
+        collector = new SnapshotMetadataCollector(new JdbcMetadataCollector(), dataSource,
+                                                  JdbcMetadataConnector.DEFAULT_NAME_OF_DEFAULT_CATALOG,
+                                                  JdbcMetadataConnector.DEFAULT_NAME_OF_DEFAULT_SCHEMA, 2, snapshotFile);
+    }
+
+    @After
+    public void afterEach() {
+        collector.stop();
+        FileUtil.delete(snapshotFile.getParentFile());
+    }
+
+    @Test
+    public void shouldServeMetadataFromSnapshotWithoutQueryingTheDatabase() throws Exception {
+        MetadataSnapshot snapshot = collector.refresh();
+        assertTrue(snapshot.getTableCount() >= 5);
+
+        // A null connection would fail if the database were queried ...
+        assertNotNull(collector.getDatabaseMetadata(null));
+        List<TableMetadata> tables = collector.getTables(null, catalogName, schemaName, districtTableName);
+        assertEquals(1, tables.size());
+        assertEquals(districtTableName, tables.get(0).getName());
+        assertEquals(3, collector.getColumns(null, catalogName, schemaName, districtTableName, null).size());
+        assertEquals(1, collector.getForeignKeys(null, catalogName, schemaName, districtTableName, null).size());
+        assertTrue(collector.getTables(null, catalogName, schemaName, "nonExistingTable").isEmpty());
+    }
+
+    @Test
+    public void shouldAddMetadataToSnapshotWhenNotYetLoaded() throws Exception {
+        Connection connection = dataSource.getConnection();
+        try {
+            assertFalse(collector.getTables(connection, catalogName, schemaName, null).isEmpty());
+        } finally {
+            connection.close();
+        }
+        assertEquals(1, collector.getTables(null, catalogName, schemaName, districtTableName).size());
+    }
+
+    @Test
+    public void shouldWriteSnapshotToFile() throws Exception {
+        collector.refresh();
+        assertTrue(snapshotFile.exists());
+
+        MetadataSnapshot snapshot = MetadataSnapshot.readFrom(snapshotFile);
+        assertEquals(collector.getSnapshot().getTableCount(), snapshot.getTableCount());
+        assertNotNull(snapshot.getColumns(catalogName, schemaName, districtTableName));
+    }
+}
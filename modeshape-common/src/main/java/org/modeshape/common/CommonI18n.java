@@ -97,6 +97,11 @@ public final class CommonI18n {
     public static I18n expectingValidLongAtLineAndColumn;
     public static I18n expectingValidBooleanAtLineAndColumn;
     public static I18n endPositionMustBeGreaterThanStartingPosition;
+    public static I18n streamingTokenStreamCannotBeRewound;
+    public static I18n tokenNoLongerAvailableInTokenStream;
+    public static I18n contentNoLongerAvailableInTokenStream;
+    public static I18n errorReadingTokenStreamContent;
+    public static I18n tokenStreamHasBeenClosed;
 
     // ComponentConfig annotations
     public static I18n componentConfigNamePropertyDescription;
@@ -15,11 +15,19 @@
  */
 package org.modeshape.common.text;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.modeshape.common.CommonI18n;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.annotation.NotThreadSafe;
@@ -351,9 +359,17 @@ import org.modeshape.common.xml.XmlCharacters;
  * Tokenizers with exactly this behavior can actually be created using the {@link #basicTokenizer(boolean)} method.  So while this very
  * basic implementation is not meant to be used in all situations, it may be useful in some situations.
  * </p>
+ * <h3>Streaming very large content</h3>
+ * <p>
+ * Normally all of the content is held in memory and tokenized when the stream is {@link #start() started}. When the content is
+ * very large, the TokenStream can instead be created with a {@link Reader}. In this <i>streaming</i> mode, the existing
+ * {@link Tokenizer} runs on a separate thread and produces tokens on demand as the parser consumes them, and only a sliding window
+ * of the most recent tokens (and the content they cover) is kept in memory. Parsers work exactly the same way, except that they
+ * can only look ahead (or back) as far as the window allows, and the stream cannot be {@link #rewind() rewound}.
+ * </p>
  */
 @NotThreadSafe
-public class TokenStream {
+public class TokenStream implements Closeable {
 
     /**
      * A constant that can be used with the {@link #matches(String)}, {@link #matches(String, String...)},
@@ -369,12 +385,22 @@ public class TokenStream {
      * {@link #canConsume(int)} methods to signal that any token type is allowed to be matched.
      */
     public static final int ANY_TYPE = Integer.MIN_VALUE;
+    /**
+     * The default number of tokens retained in memory by a TokenStream that {@link #TokenStream(Reader, Tokenizer, boolean) reads
+     * its content from a Reader}.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
 
     protected final String inputString;
     protected final String inputUppercased;
     private final char[] inputContent;
+    private final Reader inputReader;
+    private final int windowSize;
     private final boolean caseSensitive;
     private final Tokenizer tokenizer;
+    private ReaderCharacterStream streamedContent;
+    private TokenProducer producer;
+    private Position retainedContentPosition;
     private List<Token> tokens;
     /**
      * This class navigates the Token objects using this iterator. However, because it very often needs to access the
@@ -403,6 +429,51 @@ public class TokenStream {
         this.inputContent = content.toCharArray();
         this.caseSensitive = caseSensitive;
         this.inputUppercased = caseSensitive ? inputString : content.toUpperCase();
+        this.inputReader = null;
+        this.windowSize = 0;
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Create a token stream that reads its content from the supplied reader, retaining at most {@link #DEFAULT_WINDOW_SIZE}
+     * tokens in memory.
+     * 
+     * @param content the reader for the content; may not be null
+     * @param tokenizer the tokenizer; may not be null
+     * @param caseSensitive true if matching should be case-sensitive, or false otherwise
+     * @see #TokenStream(Reader, Tokenizer, boolean, int)
+     */
+    public TokenStream( Reader content,
+                        Tokenizer tokenizer,
+                        boolean caseSensitive ) {
+        this(content, tokenizer, caseSensitive, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Create a token stream that reads its content from the supplied reader. Rather than tokenizing all of the content when the
+     * stream is {@link #start() started}, the tokenizer is run on a separate thread and tokens are produced only as the parser
+     * needs them. At most <code>windowSize</code> tokens (and the content they span) are kept in memory, so the parser can look
+     * ahead or back only as far as this window allows. Such a stream cannot be {@link #rewind() rewound}, and any errors from the
+     * tokenizer are thrown when the parser reaches the problematic content.
+     * 
+     * @param content the reader for the content; may not be null
+     * @param tokenizer the tokenizer; may not be null
+     * @param caseSensitive true if matching should be case-sensitive, or false otherwise
+     * @param windowSize the maximum number of tokens retained in memory; must be greater than 2
+     */
+    public TokenStream( Reader content,
+                        Tokenizer tokenizer,
+                        boolean caseSensitive,
+                        int windowSize ) {
+        CheckArg.isNotNull(content, "content");
+        CheckArg.isNotNull(tokenizer, "tokenizer");
+        CheckArg.isGreaterThan(windowSize, 2, "windowSize");
+        this.inputString = null;
+        this.inputUppercased = null;
+        this.inputContent = null;
+        this.inputReader = content;
+        this.windowSize = windowSize;
+        this.caseSensitive = caseSensitive;
         this.tokenizer = tokenizer;
     }
 
@@ -415,10 +486,14 @@ public class TokenStream {
     public TokenStream start() throws ParsingException {
         // Create the tokens ...
         if (tokens == null) {
-            TokenFactory tokenFactory = caseSensitive ? new CaseSensitiveTokenFactory() : new CaseInsensitiveTokenFactory();
-            CharacterStream characterStream = new CharacterArrayStream(inputContent);
-            tokenizer.tokenize(characterStream, tokenFactory);
-            this.tokens = initializeTokens(tokenFactory.getTokens());
+            if (inputReader != null) {
+                this.tokens = startStreaming();
+            } else {
+                TokenFactory tokenFactory = caseSensitive ? new CaseSensitiveTokenFactory() : new CaseInsensitiveTokenFactory();
+                CharacterStream characterStream = new CharacterArrayStream(inputContent);
+                tokenizer.tokenize(characterStream, tokenFactory);
+                this.tokens = initializeTokens(tokenFactory.getTokens());
+            }
         }
 
         // Create the iterator ...
@@ -438,10 +513,68 @@ public class TokenStream {
         return tokens;
     }
 
+    /**
+     * Method to allow subclasses to preprocess the tokens of a stream that {@link #TokenStream(Reader, Tokenizer, boolean, int)
+     * reads its content from a Reader}, and return the correct tokens to use. Since the tokens are produced lazily, the returned
+     * iterator should only consume as many of the supplied tokens as it needs. The default behavior is to simply return the
+     * supplied tokens.
+     * 
+     * @param tokens the iterator over the tokens produced by the tokenizer
+     * @return iterator over the tokens
+     */
+    protected Iterator<Token> initializeTokens( Iterator<Token> tokens ) {
+        return tokens;
+    }
+
+    private List<Token> startStreaming() {
+        streamedContent = new ReaderCharacterStream(inputReader);
+        producer = new TokenProducer(this, streamedContent, tokenizer, caseSensitive, windowSize);
+        producer.start();
+        return new TokenWindow(initializeTokens(producer), windowSize);
+    }
+
+    /**
+     * Release the resources used by this stream. A {@link #isStreaming() streaming} token stream tokenizes its content on a
+     * separate thread, and closing the stream stops that thread even when the parser did not consume all of the tokens (for
+     * example, because parsing failed); such a stream should therefore always be closed once it is no longer needed. The supplied
+     * {@link Reader} is not closed. This method does nothing if the stream is not streaming or was already closed.
+     */
+    @Override
+    public void close() {
+        if (producer != null) producer.abandon();
+    }
+
+    /**
+     * Determine whether this stream {@link #TokenStream(Reader, Tokenizer, boolean, int) reads its content from a Reader} and
+     * therefore only retains a window of tokens.
+     * 
+     * @return true if the tokens are being streamed, or false if all of the content and tokens are held in memory
+     */
+    public boolean isStreaming() {
+        return inputReader != null;
+    }
+
+    /**
+     * In a {@link #isStreaming() streaming} token stream, ensure that the content starting at the supplied position remains
+     * available to {@link #getContentBetween(Position, Position)} even after the tokens at that position are no longer in the
+     * window. This method does nothing if the stream is not streaming, since then all content is always available.
+     * 
+     * @param position the position of the first character to be retained, or null if only the content spanned by the tokens in
+     *        the window needs to be retained
+     */
+    protected void retainContentFrom( Position position ) {
+        this.retainedContentPosition = position;
+    }
+
     /**
      * Method to allow tokens to be re-used from the start without re-tokenizing content.
+     * 
+     * @throws IllegalStateException if this stream is {@link #isStreaming() streaming} its content
      */
     public void rewind() {
+        if (isStreaming()) {
+            throw new IllegalStateException(CommonI18n.streamingTokenStreamCannotBeRewound.text());
+        }
         // recreate the iterator ...
         tokenIterator = this.tokens.listIterator();
         completed = false;
@@ -1276,6 +1409,7 @@ public class TokenStream {
         CheckArg.isNotNull(starting, "starting");
 
         int startIndex = starting.getIndexInContent();
+        if (isStreaming()) return getStreamedContentBetween(startIndex, end);
         int endIndex = inputString.length();
         if (end != null) {
             endIndex = end.getIndexInContent();
@@ -1288,6 +1422,45 @@ public class TokenStream {
         return inputString.substring(startIndex, endIndex);
     }
 
+    private String getStreamedContentBetween( int startIndex,
+                                              Position end ) {
+        int endIndex = 0;
+        if (end != null) {
+            endIndex = end.getIndexInContent();
+        } else {
+            // We have to read all of the remaining content, but make sure the starting content is kept ...
+            Position retained = retainedContentPosition;
+            if (retained == null || retained.getIndexInContent() > startIndex) {
+                retainedContentPosition = new Position(startIndex, 1, 0);
+            }
+            try {
+                if (tokens != null) tokens.size();
+                endIndex = streamedContent != null ? streamedContent.length() : 0;
+            } finally {
+                retainedContentPosition = retained;
+            }
+        }
+
+        if (startIndex >= endIndex) {
+            throw new IllegalArgumentException(CommonI18n.endPositionMustBeGreaterThanStartingPosition.text(startIndex, endIndex));
+        }
+        if (streamedContent == null) {
+            throw new IllegalStateException(CommonI18n.startMethodMustBeCalledBeforeConsumingOrMatching.text());
+        }
+        return streamedContent.content(startIndex, endIndex);
+    }
+
+    /**
+     * Release the streamed content before the supplied index, unless it is to be {@link #retainContentFrom(Position) retained}.
+     * 
+     * @param index the index of the first character of the oldest token still in the window
+     */
+    final void releaseContentBefore( int index ) {
+        Position retained = retainedContentPosition;
+        if (retained != null) index = Math.min(index, retained.getIndexInContent());
+        streamedContent.release(index);
+    }
+
     /**
      * Get the previous token. This does not modify the state.
      * 
@@ -1315,6 +1488,7 @@ public class TokenStream {
         // Find the current position ...
         assert currentToken != null;
         int startIndex = currentToken.startIndex();
+        if (isStreaming()) return streamedContent.fragment(startIndex, 20, " ===>> ");
         return generateFragment(inputString, startIndex, 20, " ===>> ");
     }
 
@@ -1892,6 +2066,568 @@ public class TokenStream {
         }
     }
 
+    /**
+     * An immutable {@link Token} used by {@link TokenStream#isStreaming() streaming} token streams, which owns its value rather
+     * than referencing the (no longer available) content.
+     */
+    @Immutable
+    protected static final class StreamedToken implements Token {
+        private final String value;
+        private final String matchValue;
+        private final int startIndex;
+        private final int endIndex;
+        private final int type;
+        private final Position position;
+
+        public StreamedToken( String value,
+                              String matchValue,
+                              int startIndex,
+                              int endIndex,
+                              int type,
+                              Position position ) {
+            this.value = value;
+            this.matchValue = matchValue;
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.type = type;
+            this.position = position;
+        }
+
+        @Override
+        public Token withType( int typeMask ) {
+            return new StreamedToken(value, matchValue, startIndex, endIndex, type | typeMask, position);
+        }
+
+        @Override
+        public int type() {
+            return type;
+        }
+
+        @Override
+        public int startIndex() {
+            return startIndex;
+        }
+
+        @Override
+        public int endIndex() {
+            return endIndex;
+        }
+
+        @Override
+        public int length() {
+            return endIndex - startIndex;
+        }
+
+        @Override
+        public boolean matches( char expected ) {
+            return matchValue.length() == 1 && matchValue.charAt(0) == expected;
+        }
+
+        @Override
+        public boolean matches( String expected ) {
+            return matchValue.equals(expected);
+        }
+
+        @Override
+        public boolean matches( int expectedType ) {
+            return expectedType == ANY_TYPE || (type & expectedType) == expectedType;
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public Position position() {
+            return position;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /**
+     * A list of tokens that is lazily populated from an iterator and that retains only a sliding window of the most recently
+     * obtained tokens. Only the sequential, index-based access used by the {@link TokenStream} is supported; {@link #size()}
+     * forces all remaining tokens to be read.
+     */
+    protected final class TokenWindow extends AbstractList<Token> {
+        private final Iterator<Token> source;
+        private final Token[] window;
+        private int firstIndex = 0;
+        private int endIndex = 0;
+        private boolean exhausted;
+
+        protected TokenWindow( Iterator<Token> source,
+                               int windowSize ) {
+            this.source = source;
+            this.window = new Token[windowSize];
+        }
+
+        /**
+         * Read tokens from the source until the token at the supplied index has been read.
+         * 
+         * @param index the index of the token
+         * @return true if there is a token at the supplied index, or false if there are not that many tokens
+         */
+        private boolean fill( int index ) {
+            while (index >= endIndex) {
+                if (exhausted) return false;
+                if (!source.hasNext()) {
+                    exhausted = true;
+                    return false;
+                }
+                Token token = source.next();
+                if (endIndex - firstIndex == window.length) {
+                    // The window is full, so slide it and release the content no longer needed ...
+                    ++firstIndex;
+                    releaseContentBefore(window[firstIndex % window.length].startIndex());
+                }
+                window[endIndex % window.length] = token;
+                ++endIndex;
+            }
+            return true;
+        }
+
+        @Override
+        public Token get( int index ) {
+            if (index < firstIndex) {
+                throw new IllegalStateException(CommonI18n.tokenNoLongerAvailableInTokenStream.text(index, window.length));
+            }
+            if (index < 0 || !fill(index)) throw new IndexOutOfBoundsException(Integer.toString(index));
+            return window[index % window.length];
+        }
+
+        @Override
+        public int size() {
+            fill(Integer.MAX_VALUE - 1);
+            return endIndex;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstIndex == 0 && !fill(0);
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<Token> listIterator( final int index ) {
+            return new ListIterator<Token>() {
+                private int cursor = index;
+
+                @Override
+                public boolean hasNext() {
+                    return fill(cursor);
+                }
+
+                @Override
+                public Token next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return get(cursor++);
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return cursor > 0;
+                }
+
+                @Override
+                public Token previous() {
+                    if (!hasPrevious()) throw new NoSuchElementException();
+                    return get(--cursor);
+                }
+
+                @Override
+                public int nextIndex() {
+                    return cursor;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return cursor - 1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void set( Token e ) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void add( Token e ) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Runs the {@link Tokenizer} of a {@link TokenStream#isStreaming() streaming} token stream (on its own thread) and hands the
+     * tokens to the parser's thread through a bounded queue, so that the tokenizer never gets more than a window ahead of the
+     * parser. The producer stops when the owning TokenStream is {@link TokenStream#close() closed}, or (as a last resort) if it is
+     * garbage collected before all content is tokenized.
+     */
+    private static final class TokenProducer implements Runnable, Tokens, Iterator<Token> {
+        private static final Object END = new Object();
+
+        private final WeakReference<TokenStream> owner;
+        private final ReaderCharacterStream input;
+        private final Tokenizer tokenizer;
+        private final boolean caseSensitive;
+        private final BlockingQueue<Object> queue;
+        private volatile boolean abandoned;
+        private Thread thread;
+        private Object next;
+
+        protected TokenProducer( TokenStream owner,
+                                 ReaderCharacterStream input,
+                                 Tokenizer tokenizer,
+                                 boolean caseSensitive,
+                                 int windowSize ) {
+            this.owner = new WeakReference<TokenStream>(owner);
+            this.input = input;
+            this.tokenizer = tokenizer;
+            this.caseSensitive = caseSensitive;
+            this.queue = new ArrayBlockingQueue<Object>(windowSize);
+        }
+
+        protected void start() {
+            thread = new Thread(this, "modeshape-tokenizer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Stop tokenizing, waking up the tokenizer's thread if it is waiting for the parser to consume tokens.
+         */
+        protected void abandon() {
+            abandoned = true;
+            if (thread != null) thread.interrupt();
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            Object last = END;
+            try {
+                tokenizer.tokenize(input, this);
+            } catch (AbandonedException e) {
+                return;
+            } catch (RuntimeException e) {
+                last = e;
+            }
+            try {
+                put(last);
+            } catch (AbandonedException e) {
+                // nobody is listening ...
+            }
+        }
+
+        @Override
+        public void addToken( Position position,
+                              int index ) {
+            addToken(position, index, index + 1, 0);
+        }
+
+        @Override
+        public void addToken( Position position,
+                              int startIndex,
+                              int endIndex ) {
+            addToken(position, startIndex, endIndex, 0);
+        }
+
+        @Override
+        public void addToken( Position position,
+                              int startIndex,
+                              int endIndex,
+                              int type ) {
+            String value = input.content(startIndex, endIndex);
+            String matchValue = caseSensitive ? value : value.toUpperCase();
+            put(new StreamedToken(value, matchValue, startIndex, endIndex, type, position));
+        }
+
+        private void put( Object item ) {
+            try {
+                do {
+                    if (abandoned || owner.get() == null) throw new AbandonedException();
+                } while (!queue.offer(item, 1, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                throw new AbandonedException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != END;
+        }
+
+        @Override
+        public Token next() {
+            Object result = peek();
+            if (result == END) throw new NoSuchElementException();
+            next = null;
+            return (Token)result;
+        }
+
+        private Object peek() {
+            if (next == null) {
+                if (abandoned) throw new IllegalStateException(CommonI18n.tokenStreamHasBeenClosed.text());
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                if (next instanceof RuntimeException) {
+                    RuntimeException error = (RuntimeException)next;
+                    next = END;
+                    throw error;
+                }
+            }
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Signals that the owner of a {@link TokenProducer} is gone and that tokenizing should stop.
+     */
+    private static final class AbandonedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * An implementation of {@link CharacterStream} that reads the content from a {@link Reader}, used by
+     * {@link TokenStream#isStreaming() streaming} token streams. Only a small buffer is used for reading, but all content from the
+     * oldest token still needed by the parser is retained so that token values and {@link TokenStream#getContentBetween content}
+     * can be obtained; that retained content is shared between the tokenizer's thread and the parser's thread.
+     */
+    public static final class ReaderCharacterStream implements CharacterStream {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int bufferStart = 0;
+        private int bufferLength = 0;
+        private boolean endOfContent;
+        private int lastIndex = -1;
+        private int lineNumber = 1;
+        private int columnNumber = 0;
+        private boolean nextCharMayBeLineFeed;
+        private final StringBuilder retained = new StringBuilder();
+        private int retainedStart = 0;
+
+        public ReaderCharacterStream( Reader reader ) {
+            this.reader = reader;
+        }
+
+        /**
+         * Make sure the character at the supplied index has been read into the buffer.
+         * 
+         * @param index the index of the character
+         * @return true if there is a character at the index, or false if the content ends before that
+         */
+        private boolean available( int index ) {
+            while (index >= bufferStart + bufferLength) {
+                if (endOfContent) return false;
+                // Move the characters not yet returned by 'next()' to the front of the buffer, and read more ...
+                int keepFrom = Math.max(lastIndex + 1, bufferStart);
+                int keep = bufferStart + bufferLength - keepFrom;
+                System.arraycopy(buffer, keepFrom - bufferStart, buffer, 0, keep);
+                bufferStart = keepFrom;
+                bufferLength = keep;
+                int read = 0;
+                try {
+                    read = reader.read(buffer, keep, buffer.length - keep);
+                } catch (IOException e) {
+                    Position pos = position(lastIndex);
+                    String msg = CommonI18n.errorReadingTokenStreamContent.text(pos.getLine(), pos.getColumn(), e.getMessage());
+                    throw new ParsingException(pos, msg, e);
+                }
+                if (read < 0) {
+                    endOfContent = true;
+                    return false;
+                }
+                bufferLength += read;
+                synchronized (this) {
+                    retained.append(buffer, keep, read);
+                }
+            }
+            return true;
+        }
+
+        private char charAt( int index ) {
+            return buffer[index - bufferStart];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return available(lastIndex + 1);
+        }
+
+        @Override
+        public int index() {
+            return lastIndex;
+        }
+
+        @Override
+        public Position position( int startIndex ) {
+            return new Position(startIndex, lineNumber, columnNumber);
+        }
+
+        @Override
+        public char next() {
+            if (!available(lastIndex + 1)) {
+                throw new NoSuchElementException();
+            }
+            char result = charAt(++lastIndex);
+            ++columnNumber;
+            if (result == '\r') {
+                nextCharMayBeLineFeed = true;
+                ++lineNumber;
+                columnNumber = 0;
+            } else if (result == '\n') {
+                if (!nextCharMayBeLineFeed) ++lineNumber;
+                columnNumber = 0;
+            } else if (nextCharMayBeLineFeed) {
+                nextCharMayBeLineFeed = false;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isNext( char c ) {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && charAt(nextIndex) == c;
+        }
+
+        @Override
+        public boolean isNext( char nextChar1,
+                               char nextChar2 ) {
+            int nextIndex1 = lastIndex + 1;
+            int nextIndex2 = lastIndex + 2;
+            return available(nextIndex2) && charAt(nextIndex1) == nextChar1 && charAt(nextIndex2) == nextChar2;
+        }
+
+        @Override
+        public boolean isNext( char nextChar1,
+                               char nextChar2,
+                               char nextChar3 ) {
+            int nextIndex1 = lastIndex + 1;
+            int nextIndex2 = lastIndex + 2;
+            int nextIndex3 = lastIndex + 3;
+            return available(nextIndex3) && charAt(nextIndex1) == nextChar1 && charAt(nextIndex2) == nextChar2
+                   && charAt(nextIndex3) == nextChar3;
+        }
+
+        @Override
+        public boolean isNextAnyOf( char[] characters ) {
+            int nextIndex = lastIndex + 1;
+            if (available(nextIndex)) {
+                char nextChar = charAt(nextIndex);
+                for (char c : characters) {
+                    if (c == nextChar) return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isNextAnyOf( String characters ) {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && characters.indexOf(charAt(nextIndex)) != -1;
+        }
+
+        @Override
+        public boolean isNextWhitespace() {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && Character.isWhitespace(charAt(nextIndex));
+        }
+
+        @Override
+        public boolean isNextLetterOrDigit() {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && Character.isLetterOrDigit(charAt(nextIndex));
+        }
+
+        @Override
+        public boolean isNextValidXmlCharacter() {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && XmlCharacters.isValid(charAt(nextIndex));
+        }
+
+        @Override
+        public boolean isNextValidXmlNameCharacter() {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && XmlCharacters.isValidName(charAt(nextIndex));
+        }
+
+        @Override
+        public boolean isNextValidXmlNcNameCharacter() {
+            int nextIndex = lastIndex + 1;
+            return available(nextIndex) && XmlCharacters.isValidNcName(charAt(nextIndex));
+        }
+
+        /**
+         * Get the retained content between the supplied indexes.
+         * 
+         * @param startIndex the index of the first character
+         * @param endIndex the index past the last character
+         * @return the content; never null
+         * @throws IllegalStateException if the content at the starting index is no longer retained
+         */
+        synchronized String content( int startIndex,
+                                     int endIndex ) {
+            if (startIndex < retainedStart) {
+                throw new IllegalStateException(CommonI18n.contentNoLongerAvailableInTokenStream.text(startIndex));
+            }
+            return retained.substring(startIndex - retainedStart, endIndex - retainedStart);
+        }
+
+        synchronized int length() {
+            return retainedStart + retained.length();
+        }
+
+        synchronized String fragment( int indexOfProblem,
+                                      int charactersToIncludeBeforeAndAfter,
+                                      String highlightText ) {
+            int from = Math.max(retainedStart, indexOfProblem - charactersToIncludeBeforeAndAfter);
+            int to = Math.min(retainedStart + retained.length(), indexOfProblem + charactersToIncludeBeforeAndAfter);
+            String content = retained.substring(from - retainedStart, to - retainedStart);
+            return generateFragment(content, indexOfProblem - from, charactersToIncludeBeforeAndAfter, highlightText);
+        }
+
+        /**
+         * Allow the content before the supplied index to be discarded. To keep this cheap, the content is only actually discarded
+         * once it makes up at least half of the retained content.
+         * 
+         * @param index the index of the first character that must be retained
+         */
+        synchronized void release( int index ) {
+            int releasable = index - retainedStart;
+            if (releasable > 0 && releasable >= retained.length() / 2) {
+                retained.delete(0, releasable);
+                retainedStart = index;
+            }
+        }
+    }
+
     /**
      * Obtain a basic {@link Tokenizer} implementation that ignores whitespace but includes tokens for individual symbols, the
      * period ('.'), single-quoted strings, double-quoted strings, whitespace-delimited words, and optionally comments.
@@ -17,7 +17,11 @@ package org.modeshape.common.text;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.common.text.TokenStream.BasicTokenizer;
@@ -42,6 +46,11 @@ public class TokenStreamTest {
         makeCaseInsensitive();
     }
 
+    @After
+    public void afterEach() {
+        tokens.close();
+    }
+
     public void makeCaseSensitive() {
         tokens = new TokenStream(content, tokenizer, true);
         tokens.start();
@@ -443,4 +452,132 @@ public class TokenStreamTest {
         assertThat(tokens.nextPosition().getColumn(), is(7));
 
     }
+
+    protected void makeStreaming( String content,
+                                  int windowSize ) {
+        tokens = new TokenStream(new StringReader(content), tokenizer, false, windowSize);
+        tokens.start();
+    }
+
+    @Test
+    public void shouldConsumeTokensReadFromReader() {
+        makeStreaming(content, 4);
+        assertThat(tokens.isStreaming(), is(true));
+        tokens.consume("SELECT");
+        tokens.consume("ALL");
+        assertThat(tokens.matches("COLUMNS", "FROM"), is(true));
+        assertThat(tokens.canConsume("COLUMNS", "FROM"), is(true));
+        assertThat(tokens.matches(WORD), is(true));
+        assertThat(tokens.consume(), is("this"));
+        assertThat(tokens.previousPosition().getIndexInContent(), is(24));
+        tokens.consume("TABLE");
+        assertThat(tokens.hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldFindPositionsOfTokensReadFromReader() {
+        String content = "ALTER DATABASE \n" + "DO SOMETHING; \n" + "ALTER DATABASE \n" + "      SET DEFAULT BIGFILE TABLESPACE;";
+        makeStreaming(content, 4);
+        tokens.consume("ALTER", "DATABASE", "DO", "SOMETHING", ";");
+        assertThat(tokens.nextPosition().getIndexInContent(), is(31));
+        assertThat(tokens.nextPosition().getColumn(), is(1));
+        tokens.consume(); // ALTER
+        assertThat(tokens.nextPosition().getIndexInContent(), is(37));
+        assertThat(tokens.nextPosition().getColumn(), is(7));
+        assertThat(tokens.nextPosition().getLine(), is(3));
+    }
+
+    @Test
+    public void shouldGetContentBetweenPositionsOfTokensReadFromReader() {
+        makeStreaming(content, 4);
+        Position start = tokens.nextPosition();
+        tokens.consume("SELECT", "ALL");
+        assertThat(tokens.getContentBetween(start, tokens.nextPosition()), is("Select all "));
+        assertThat(tokens.getContentBetween(tokens.nextPosition(), null), is("columns from this table"));
+    }
+
+    @Test
+    public void shouldStreamContentLargerThanWindow() {
+        final int count = 100000;
+        Reader reader = new Reader() {
+            private int word = 0;
+            private String next = "";
+            private int index = 0;
+
+            @Override
+            public int read( char[] cbuf,
+                             int off,
+                             int len ) {
+                if (index == next.length()) {
+                    if (word == count) return -1;
+                    next = "word" + (word++) + (word % 10 == 0 ? "\n" : " ");
+                    index = 0;
+                }
+                int num = Math.min(len, next.length() - index);
+                next.getChars(index, index + num, cbuf, off);
+                index += num;
+                return num;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        tokens = new TokenStream(reader, tokenizer, true, 16);
+        tokens.start();
+        for (int i = 0; i != count; ++i) {
+            tokens.consume("word" + i);
+        }
+        assertThat(tokens.hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldStopTokenizingWhenStreamIsClosed() throws Exception {
+        final AtomicReference<Thread> tokenizerThread = new AtomicReference<>();
+        Reader endless = new Reader() {
+            @Override
+            public int read( char[] cbuf,
+                             int off,
+                             int len ) {
+                tokenizerThread.set(Thread.currentThread());
+                int num = Math.min(len, 5);
+                "word ".getChars(0, num, cbuf, off);
+                return num;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        tokens = new TokenStream(endless, tokenizer, true, 4);
+        tokens.start();
+        tokens.consume("word");
+        tokens.close();
+        tokenizerThread.get().join(10000);
+        assertThat(tokenizerThread.get().isAlive(), is(false));
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void shouldNotAllowTokensReadFromReaderToBeRewound() {
+        makeStreaming(content, 4);
+        tokens.consume();
+        tokens.rewind();
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void shouldNotAllowGettingContentOutsideOfWindowOfTokensReadFromReader() {
+        makeStreaming("a b c d e f g h i j k l m n o p q r s t u v w x y z", 4);
+        Position start = tokens.nextPosition();
+        while (tokens.hasNext()) {
+            tokens.consume();
+        }
+        tokens.getContentBetween(start, tokens.previousPosition());
+    }
+
+    @Test( expected = ParsingException.class )
+    public void shouldFailWhenReachingInvalidContentReadFromReader() {
+        makeStreaming("Select 'all columns from this table", 4);
+        tokens.consume("SELECT");
+        tokens.consume();
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr.api;
 
+import java.util.concurrent.Future;
 import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
@@ -82,4 +83,40 @@ public interface Session extends javax.jcr.Session {
      */
     String decode( final String localName );
 
+    /**
+     * Save all of the changes made in this session in the background, and return a future that completes once the changes have
+     * been durably persisted. This allows the saves of many sessions to be committed concurrently, so that clients that load
+     * large amounts of content can prepare the next batch of changes (in another session) while the previous batch is being
+     * saved.
+     * <p>
+     * The changes are saved in the background by the same process as {@link #save()}, so they are not staged separately from
+     * this session. Instead, any use of this session's nodes or transient state (including {@link #save()},
+     * {@link #saveAsync()}, {@link #refresh(boolean)} and {@link #logout()}) first waits for the pending save to complete, so the
+     * changes can't be modified while they are being saved. When a transaction is active, the changes are saved within that
+     * transaction before this method returns.
+     * </p>
+     * 
+     * @return the future that completes when the changes have been saved, or that fails with the exception that {@link #save()}
+     *         would have thrown; never null
+     * @throws RepositoryException if this session is no longer live or if there is a problem submitting the save
+     * @see #save()
+     */
+    Future<Void> saveAsync() throws RepositoryException;
+
+    /**
+     * Obtain a new read-only session that sees the workspace exactly as it is now, even as this and other sessions save changes.
+     * This is useful for long-running reads (such as exports, reports, or traversals of large subgraphs) that need a consistent
+     * view of the content without blocking writers. The snapshot session does not see any transient changes in this session.
+     * <p>
+     * The earlier state of changed content is retained (in memory) only while a snapshot session is open, so snapshot sessions
+     * should be {@link #logout() logged out} as soon as they are no longer needed. A snapshot is consistent on a best-effort
+     * basis: the repository bounds how much earlier state it retains, and content that was not cached when it was changed may be
+     * seen in its changed form.
+     * </p>
+     * 
+     * @return the new read-only session; never null
+     * @throws RepositoryException if this session is no longer live or if there is a problem creating the snapshot
+     */
+    Session snapshot() throws RepositoryException;
+
 }
@@ -17,7 +17,9 @@ package org.modeshape.jcr.api;
 
 import java.util.concurrent.Future;
 import javax.jcr.AccessDeniedException;
+import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
 import org.modeshape.jcr.api.federation.FederationManager;
 import org.modeshape.jcr.api.index.IndexManager;
 import org.modeshape.jcr.api.nodetype.NodeTypeManager;
@@ -118,4 +120,30 @@ public interface Workspace extends javax.jcr.Workspace {
     Future<Boolean> reindexAsync( String path ) throws RepositoryException;
 
     FederationManager getFederationManager() throws RepositoryException;
+
+    /**
+     * Creates a new workspace with the specified name, initialized with the content of <code>srcWorkspace</code>, just like
+     * {@link #createWorkspace(String, String)} does. However, rather than copying every node of the source workspace, the new
+     * workspace initially shares all of its content with the source workspace, and content is copied into the new workspace only
+     * when it is first changed in either workspace. This makes it cheap to create a workspace from a workspace with a large amount
+     * of content (e.g., a test workspace from a production workspace), and changes made in either workspace are never visible in
+     * the other.
+     * <p>
+     * The new workspace is accessible by name immediately after this method returns. However, its content is indexed
+     * asynchronously in the background, so queries against the new workspace may not find all of its content until the indexes
+     * have been populated.
+     * </p>
+     *
+     * @param name the name of the new workspace
+     * @param srcWorkspace the name of the workspace from which the new workspace is created
+     * @throws AccessDeniedException if the session through which this <code>Workspace</code> object was acquired does not have
+     *         sufficient access to create the new workspace
+     * @throws UnsupportedRepositoryOperationException if the repository does not support the creation of workspaces
+     * @throws NoSuchWorkspaceException if <code>srcWorkspace</code> does not exist
+     * @throws RepositoryException if another error occurs
+     * @see #createWorkspace(String, String)
+     */
+    void createCopyOnWriteWorkspace( String name,
+                                     String srcWorkspace )
+        throws AccessDeniedException, UnsupportedRepositoryOperationException, NoSuchWorkspaceException, RepositoryException;
 }
@@ -44,7 +44,14 @@ public enum DurationMetric {
      * instances are strings containing the sequencer name and the input and output paths.
      */
     SEQUENCER_EXECUTION_TIME("sequencer-execution-time", "Sequencing duration",
-                             "The metric measuring how long sequencers take to run and save the changes.");
+                             "The metric measuring how long sequencers take to run and save the changes."),
+    /**
+     * The metric that captures how long saves wait to acquire the storage locks on the existing nodes they change. Note that
+     * the payload of the {@link DurationActivity} instances contains the workspace name, the number of locked nodes, and the
+     * number of failed attempts.
+     */
+    LOCK_ACQUISITION_TIME("lock-acquisition-time", "Lock acquisition duration",
+                          "The metric measuring how long saves wait to lock the nodes they change.");
 
     private static final Map<String, DurationMetric> BY_LITERAL;
     private static final Map<String, DurationMetric> BY_NAME;
@@ -99,7 +99,25 @@ public enum ValueMetric {
     /**
      * The metric that records the number of nodes that were sequenced.
      */
-    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window.");
+    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window."),
+    /**
+     * The metric that records the number of executed queries whose optimized plan was found in the query plan cache. Together
+     * with {@link #QUERY_PLAN_CACHE_MISSES} this gives the hit rate of the cache.
+     */
+    QUERY_PLAN_CACHE_HITS("query-plan-cache-hits", false, "Query plan cache hits",
+                          "The number of executed queries during the window that reused a cached query plan."),
+    /**
+     * The metric that records the number of executed queries that had to be planned and optimized because their plan was not
+     * found in the query plan cache.
+     */
+    QUERY_PLAN_CACHE_MISSES("query-plan-cache-misses", false, "Query plan cache misses",
+                            "The number of executed queries during the window that had to be planned and optimized."),
+    /**
+     * The metric that records the number of failed attempts to acquire the storage locks on the nodes being saved, which is a
+     * measure of the contention between concurrent saves.
+     */
+    LOCK_ACQUISITION_FAILURES("lock-acquisition-failures", false, "Lock acquisition failures",
+                              "The number of failed attempts during the window to lock the nodes being saved.");
 
     private static final Map<String, ValueMetric> BY_LITERAL;
     private static final Map<String, ValueMetric> BY_NAME;
@@ -37,6 +37,16 @@ public interface Query extends javax.jcr.query.Query {
      */
     public void includeSystemContent( boolean includeSystemContent );
 
+    /**
+     * Specify whether the {@link javax.jcr.RangeIterator#getSize() size} of the node and row iterators of the query results should
+     * always be computed. By default it is, even though that requires reading all of the results before the first one is
+     * returned. Otherwise, the size is -1 unless it is already known, and the results are only read as they are consumed.
+     * 
+     * @param computeResultSize true if the size of the results should always be computed, or false if it should only be
+     *        returned when it is known
+     */
+    public void computeResultSize( boolean computeResultSize );
+
     /**
      * Signal that the query, if currently {@link Query#execute() executing}, should be cancelled and stopped (with an exception).
      * This method does not block until the query is actually stopped.
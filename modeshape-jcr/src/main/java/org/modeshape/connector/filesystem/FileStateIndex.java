@@ -0,0 +1,400 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.filesystem;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.FileUtil;
+
+/**
+ * A persistent index of the state (type, size, modification time, file key, owner, content hash and child names) of the files
+ * and directories exposed by a {@link FileSystemConnector}. The index allows the connector to serve directory listings and
+ * property values without listing or hashing the file system again, and to find the entries that changed while the repository
+ * was not running by comparing a single stat of each entry with the recorded state.
+ * <p>
+ * Entries are always validated against a fresh {@link BasicFileAttributes stat} of the file before they are used. Because file
+ * systems record modification times with a limited granularity, an entry that was recorded less than {@link #RACY_WINDOW_MILLIS}
+ * after the file was last modified is never trusted, since the file might have changed again within the same time slot.
+ * </p>
+ */
+@ThreadSafe
+final class FileStateIndex {
+
+    /**
+     * The number of milliseconds after a modification within which the recorded state of an entry is not trusted.
+     */
+    protected static final long RACY_WINDOW_MILLIS = 2000L;
+
+    private static final String STATES_FIELD = "fileStates";
+    private static final Logger LOGGER = Logger.getLogger(FileStateIndex.class);
+
+    private final File rootDirectory;
+    private final Path rootPath;
+    private final FilenameFilter filenameFilter;
+    private final DB db;
+    private final ConcurrentMap<String, FileState> states;
+
+    protected FileStateIndex( File indexDirectory,
+                              File rootDirectory,
+                              FilenameFilter filenameFilter ) {
+        this.rootDirectory = rootDirectory.getAbsoluteFile();
+        this.rootPath = this.rootDirectory.toPath();
+        this.filenameFilter = filenameFilter;
+        if (!indexDirectory.exists()) indexDirectory.mkdirs();
+        File file = new File(indexDirectory, STATES_FIELD);
+        DB db = null;
+        try {
+            db = DBMaker.newFileDB(file).transactionDisable().make();
+        } catch (RuntimeException e) {
+            // The index only caches what is on the file system, so a damaged index is simply rebuilt ...
+            LOGGER.debug(e, "Unable to open the file state index at '{0}'; rebuilding it", file);
+            FileUtil.delete(file);
+            FileUtil.delete(new File(indexDirectory, STATES_FIELD + ".p"));
+            FileUtil.delete(new File(indexDirectory, STATES_FIELD + ".t"));
+            db = DBMaker.newFileDB(file).transactionDisable().make();
+        }
+        this.db = db;
+        this.states = db.createTreeMap(STATES_FIELD).makeOrGet();
+    }
+
+    /**
+     * Get the validated state of the supplied file or directory, refreshing the recorded state if it is missing or stale.
+     *
+     * @param file the file or directory; may not be null
+     * @return the state, or null if the file does not exist or cannot be read
+     */
+    public FileState stateOf( File file ) {
+        BasicFileAttributes attributes = attributesOf(file.toPath());
+        if (attributes == null) return null;
+        String key = keyFor(file);
+        FileState existing = states.get(key);
+        if (existing != null && existing.isCurrent(attributes)) return existing;
+        FileState state = FileState.create(file, attributes, filenameFilter);
+        states.put(key, state);
+        return state;
+    }
+
+    /**
+     * Record the SHA-1 of the content of the supplied file, but only if the file did not change since the supplied state was
+     * obtained (and therefore while the hash was being computed).
+     *
+     * @param file the file; may not be null
+     * @param state the state of the file before the hash was computed; may not be null
+     * @param sha1 the SHA-1 of the file's content; may not be null
+     */
+    public void recordSha1( File file,
+                            FileState state,
+                            String sha1 ) {
+        BasicFileAttributes attributes = attributesOf(file.toPath());
+        if (attributes == null || !state.isCurrent(attributes)) return;
+        states.replace(keyFor(file), state, state.withSha1(sha1));
+    }
+
+    /**
+     * Forget the recorded state of the supplied file and of its parent directory.
+     *
+     * @param file the file or directory that was changed; may not be null
+     */
+    public void invalidate( File file ) {
+        states.remove(keyFor(file));
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && parent.toPath().startsWith(rootPath)) {
+            states.remove(keyFor(parent));
+        }
+    }
+
+    /**
+     * Walk the whole directory tree once, comparing a stat of each entry with the recorded state and refreshing only the entries
+     * that changed. When the index is empty (e.g., the first time it is used) the entries are recorded without being reported as
+     * changes.
+     *
+     * @return the changes found on the file system since the index was last updated; never null
+     */
+    public Reconciliation reconcile() {
+        final boolean report = !states.isEmpty();
+        final Set<String> seen = new HashSet<>();
+        final Reconciliation result = new Reconciliation();
+        try {
+            Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory( Path dir,
+                                                          BasicFileAttributes attrs ) {
+                    if (!isIncluded(dir)) return FileVisitResult.SKIP_SUBTREE;
+                    record(dir, attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile( Path file,
+                                                  BasicFileAttributes attrs ) {
+                    if (attrs.isRegularFile() && isIncluded(file)) record(file, attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed( Path file,
+                                                        IOException exc ) {
+                    LOGGER.debug(exc, "Unable to read '{0}' while reconciling the file state index", file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void record( Path path,
+                                     BasicFileAttributes attrs ) {
+                    File file = path.toFile();
+                    String key = keyFor(file);
+                    seen.add(key);
+                    FileState existing = states.get(key);
+                    if (existing != null && existing.isCurrent(attrs)) return;
+                    states.put(key, FileState.create(file, attrs, filenameFilter));
+                    if (!report) return;
+                    if (existing == null) {
+                        result.created.add(file);
+                    } else if (!attrs.isDirectory() && !existing.matches(attrs)) {
+                        result.modified.add(file);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.debug(e, "Unable to reconcile the file state index of '{0}'", rootDirectory);
+        }
+        List<String> removedKeys = new ArrayList<>();
+        for (String key : states.keySet()) {
+            if (!seen.contains(key)) removedKeys.add(key);
+        }
+        Set<String> removed = new HashSet<>(removedKeys);
+        for (String key : removedKeys) {
+            states.remove(key);
+            // Only report the top-most removed entries ...
+            if (report && !removed.contains(parentKeyOf(key))) result.removed.add(fileFor(key));
+        }
+        return result;
+    }
+
+    /**
+     * Close the index, writing any pending changes to disk.
+     */
+    public void close() {
+        if (!db.isClosed()) db.close();
+    }
+
+    protected boolean isIncluded( Path path ) {
+        if (path.equals(rootPath)) return true;
+        return filenameFilter.accept(path.getParent().toFile(), path.getFileName().toString());
+    }
+
+    protected String keyFor( File file ) {
+        Path path = file.getAbsoluteFile().toPath();
+        String relative = rootPath.relativize(path).toString().replace(File.separatorChar, '/');
+        return "/" + relative;
+    }
+
+    protected File fileFor( String key ) {
+        return new File(rootDirectory, key.substring(1));
+    }
+
+    private static String parentKeyOf( String key ) {
+        int index = key.lastIndexOf('/');
+        return index <= 0 ? "/" : key.substring(0, index);
+    }
+
+    private static BasicFileAttributes attributesOf( Path path ) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Obtain the names of the readable files and directories within the supplied directory which are accepted by the filter.
+     * Permissions might prevent us from reading a file, and a file might not exist if it is a broken symlink (see MODE-1768).
+     *
+     * @param directory the directory; may not be null
+     * @param filenameFilter the filter; may not be null
+     * @return the names of the children; never null
+     */
+    static List<String> childNamesOf( File directory,
+                                      FilenameFilter filenameFilter ) {
+        File[] children = directory.listFiles(filenameFilter);
+        if (children == null) return Collections.emptyList();
+        List<String> names = new ArrayList<>(children.length);
+        for (File child : children) {
+            if (child.exists() && child.canRead() && (child.isFile() || child.isDirectory())) {
+                names.add(child.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The changes found by {@link FileStateIndex#reconcile()}.
+     */
+    static final class Reconciliation {
+        protected final List<File> created = new ArrayList<>();
+        protected final List<File> modified = new ArrayList<>();
+        protected final List<File> removed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return created.isEmpty() && modified.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return created.size() + " created, " + modified.size() + " modified, " + removed.size() + " removed";
+        }
+    }
+
+    /**
+     * The recorded state of a single file or directory.
+     */
+    @Immutable
+    static final class FileState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+        private final long created;
+        private final String fileKey;
+        private final String owner;
+        private final String sha1;
+        private final String[] childNames;
+        private final long indexedAt;
+
+        private FileState( boolean directory,
+                           long size,
+                           long lastModified,
+                           long created,
+                           String fileKey,
+                           String owner,
+                           String sha1,
+                           String[] childNames,
+                           long indexedAt ) {
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.created = created;
+            this.fileKey = fileKey;
+            this.owner = owner;
+            this.sha1 = sha1;
+            this.childNames = childNames;
+            this.indexedAt = indexedAt;
+        }
+
+        protected static FileState create( File file,
+                                           BasicFileAttributes attributes,
+                                           FilenameFilter filenameFilter ) {
+            // Record the time before reading anything else, so that concurrent changes fall into the racy window ...
+            long indexedAt = System.currentTimeMillis();
+            String owner = null;
+            try {
+                owner = Files.getOwner(file.toPath(), LinkOption.NOFOLLOW_LINKS).getName();
+            } catch (IOException | UnsupportedOperationException e) {
+                // no owner information available
+            }
+            String[] childNames = null;
+            if (attributes.isDirectory()) {
+                List<String> names = childNamesOf(file, filenameFilter);
+                childNames = names.toArray(new String[names.size()]);
+            }
+            return new FileState(attributes.isDirectory(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                                 attributes.creationTime().toMillis(), fileKeyOf(attributes), owner, null, childNames,
+                                 indexedAt);
+        }
+
+        private static String fileKeyOf( BasicFileAttributes attributes ) {
+            Object key = attributes.fileKey();
+            return key != null ? key.toString() : null;
+        }
+
+        protected FileState withSha1( String sha1 ) {
+            return new FileState(directory, size, lastModified, created, fileKey, owner, sha1, childNames, indexedAt);
+        }
+
+        protected boolean matches( BasicFileAttributes attributes ) {
+            if (directory != attributes.isDirectory()) return false;
+            if (lastModified != attributes.lastModifiedTime().toMillis()) return false;
+            if (!directory && size != attributes.size()) return false;
+            String key = fileKeyOf(attributes);
+            return fileKey == null ? key == null : fileKey.equals(key);
+        }
+
+        protected boolean isCurrent( BasicFileAttributes attributes ) {
+            return matches(attributes) && lastModified < indexedAt - RACY_WINDOW_MILLIS;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public List<String> getChildNames() {
+            return childNames != null ? Arrays.asList(childNames) : Collections.<String>emptyList();
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)(lastModified ^ (lastModified >>> 32));
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof FileState) {
+                FileState that = (FileState)obj;
+                return this.directory == that.directory && this.size == that.size && this.lastModified == that.lastModified
+                       && this.indexedAt == that.indexedAt && (fileKey == null ? that.fileKey == null : fileKey.equals(that.fileKey))
+                       && (sha1 == null ? that.sha1 == null : sha1.equals(that.sha1));
+            }
+            return false;
+        }
+    }
+}
@@ -39,10 +39,13 @@ import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.RepositoryException;
@@ -224,6 +227,19 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
      */
     private boolean contentBasedSha1 = true;
 
+    /**
+     * The optional path to a directory in which the connector keeps a persistent index of the state of the files and directories
+     * (see {@link FileStateIndex}). When set, directory listings, timestamps, owners and content hashes are served from the index
+     * (each entry being validated with a single stat), and only the entries that changed while the repository was not running
+     * are reconciled at startup. This field is set via reflection, and by default no index is used.
+     */
+    private String stateIndexPath;
+
+    /**
+     * The index of the file states, or null if {@link #stateIndexPath} is not set.
+     */
+    private FileStateIndex stateIndex;
+
     private NamespaceRegistry registry;
 
     @Override
@@ -266,11 +282,20 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
         }
         // otherwise use the default extra properties storage
 
+        // Set up the file state index and find what changed since it was last used ...
+        FileStateIndex.Reconciliation reconciliation = null;
+        if (stateIndexPath != null) {
+            stateIndex = new FileStateIndex(new File(stateIndexPath), directory, filenameFilter);
+            reconciliation = stateIndex.reconcile();
+            log().debug("Reconciled the file state index of the '{0}' source: {1}", getSourceName(), reconciliation);
+        }
+
         if (enableEvents) {
             try {
                 WatchService watchService = FileSystems.getDefault().newWatchService();
                 monitoringTask = Executors.newSingleThreadExecutor(new NamedThreadFactory("modeshape-fs-connector-monitor"))
-                                          .submit(new MonitoringTask(watchService, this, Paths.get(directoryAbsolutePath)));
+                                          .submit(new MonitoringTask(watchService, this, Paths.get(directoryAbsolutePath),
+                                                                     reconciliation));
             } catch (UnsupportedOperationException e) {
                 log().warn("Unable to to turn on monitoring, because it is not supported on this OS");
             }
@@ -286,6 +311,13 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
                 monitoringTask = null;
             }
         }
+        if (stateIndex != null) {
+            try {
+                stateIndex.close();
+            } finally {
+                stateIndex = null;
+            }
+        }
     }
 
     /**
@@ -417,8 +449,12 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
     protected String sha1( File file ) {
         try {
             if (contentBasedSha1()) {
+                FileStateIndex.FileState state = stateFor(file);
+                if (state != null && state.getSha1() != null) return state.getSha1();
                 byte[] hash = SecureHash.getHash(SecureHash.Algorithm.SHA_1, file);
-                return StringUtil.getHexString(hash);
+                String sha1 = StringUtil.getHexString(hash);
+                if (state != null) stateIndex.recordSha1(file, state, sha1);
+                return sha1;
             }
             return SecureHash.sha1(createUrlForFile(file).toString());
         } catch (Exception e) {
@@ -542,13 +578,33 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
         return writer.document();
     }
 
+    /**
+     * Get the validated state of the supplied file from the {@link FileStateIndex file state index}.
+     * 
+     * @param file the file or directory; may not be null
+     * @return the state, or null if no index is used or the file cannot be read
+     */
+    private FileStateIndex.FileState stateFor( File file ) {
+        FileStateIndex index = stateIndex;
+        return index != null ? index.stateOf(file) : null;
+    }
+
+    private void invalidateState( File file ) {
+        FileStateIndex index = stateIndex;
+        if (index != null) index.invalidate(file);
+    }
+
     private DateTime createdTimeFor( File file ) {
+        FileStateIndex.FileState state = stateFor(file);
+        if (state != null) return factories().getDateFactory().create(state.getCreated());
         BasicFileAttributes basicFileAttributes = basicAttributesFor(file);
         return basicFileAttributes != null ? factories().getDateFactory().create(basicFileAttributes.creationTime().toMillis()) : factories().getDateFactory()
                                                                                                                                              .create(file.lastModified());
     }
 
     private DateTime lastModifiedTimeFor( File file ) {
+        FileStateIndex.FileState state = stateFor(file);
+        if (state != null) return factories().getDateFactory().create(state.getLastModified());
         BasicFileAttributes basicFileAttributes = basicAttributesFor(file);
         return basicFileAttributes != null ? factories().getDateFactory().create(basicFileAttributes.lastModifiedTime()
                                                                                                     .toMillis()) : factories().getDateFactory()
@@ -556,6 +612,8 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
     }
 
     private String ownerFor( File file ) {
+        FileStateIndex.FileState state = stateFor(file);
+        if (state != null) return state.getOwner();
         Path filePath = Paths.get(file.toURI());
         try {
             return Files.getOwner(filePath).getName();
@@ -589,25 +647,17 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
         writer.addProperty(JCR_CREATED, createdTimeFor(file));
         writer.addProperty(JCR_CREATED_BY, ownerFor(file));
         if (!isQueryable()) writer.setNotQueryable();
-        File[] children = file.listFiles(filenameFilter);
-        long totalChildren = 0;
+        // Only accessible children are included (see FileStateIndex#childNamesOf), and the index already has them ...
+        FileStateIndex.FileState state = stateFor(file);
+        List<String> children = state != null ? state.getChildNames() : FileStateIndex.childNamesOf(file, filenameFilter);
+        long totalChildren = children.size();
         int nextOffset = 0;
-        for (int i = 0; i < children.length; i++) {
-            File child = children[i];
-            // Only include as a child if we can access and read the file. Permissions might prevent us from
-            // reading the file, and the file might not exist if it is a broken symlink (see MODE-1768 for details).
-            if (child.exists() && child.canRead() && (child.isFile() || child.isDirectory())) {
-                // we need to count the total accessible children
-                totalChildren++;
-                // only add a child if it's in the current page
-                if (i >= offset && i < offset + pageSize) {
-                    // We use identifiers that contain the file/directory name ...
-                    String childName = child.getName();
-                    String childId = root ? DELIMITER + childName : id + DELIMITER + childName;
-                    writer.addChild(childId, childName);
-                    nextOffset = i + 1;
-                }
-            }
+        for (int i = offset; i < children.size() && i < offset + pageSize; i++) {
+            // We use identifiers that contain the file/directory name ...
+            String childName = children.get(i);
+            String childId = root ? DELIMITER + childName : id + DELIMITER + childName;
+            writer.addChild(childId, childName);
+            nextOffset = i + 1;
         }
         // if there are still accessible children add the next page
         if (nextOffset < totalChildren) {
@@ -648,6 +698,7 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
         // Now remove the file (if it is there) ...
         if (!file.exists()) return false;
         FileUtil.delete(file); // recursive delete
+        invalidateState(file);
         return true;
     }
 
@@ -689,6 +740,8 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
             extraProperties.save();
         } catch (RepositoryException | IOException e) {
             throw new DocumentStoreException(id, e);
+        } finally {
+            invalidateState(file);
         }
     }
 
@@ -754,6 +807,8 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
                 if (!file.renameTo(newFile)) {
                     getLogger().debug("Cannot move {0} to {1}", file.getAbsolutePath(), newFile.getAbsolutePath());
                 } else {
+                    invalidateState(file);
+                    invalidateState(newFile);
                     id = idFor(newFile);
                     // Make sure any existing extra properties are also kept up-to-date
                     // Note that if the children ar folders, we don't need to walk them recursively because the node id will
@@ -784,6 +839,8 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
             if (!child.renameTo(renamedChild)) {
                 getLogger().debug("Cannot rename {0} to {1}", child, renamedChild);
             } else {
+                invalidateState(child);
+                invalidateState(renamedChild);
                 // Make sure any existing extra properties are also kept up-to-date
                 // Note that if the children ar folders, we don't need to walk them recursively because the node id will reflect
                 // the new folder structure of the rename
@@ -814,6 +871,8 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
             extraProperties.save();
         } catch (RepositoryException | IOException e) {
             throw new DocumentStoreException(id, e);
+        } finally {
+            invalidateState(file);
         }
     }
 
@@ -834,8 +893,48 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
             ENTRY_DELETE};
         protected final static java.nio.file.WatchEvent.Modifier WATCH_MODIFIER;
 
+        /**
+         * The number of milliseconds to wait for further watch keys after one has been signalled, so that the events of bursts of
+         * changes (e.g., copying a directory) are coalesced and published as a single change set.
+         */
+        protected final static long COALESCE_WINDOW_MILLIS = 50L;
+
+        /**
+         * The maximum number of distinct paths that are coalesced into a single change set.
+         */
+        protected final static int MAX_BATCH_SIZE = 1000;
+
+        /**
+         * The net change of a single path within a batch of watch events.
+         */
+        private static enum Change {
+            CREATED,
+            MODIFIED,
+            DELETED,
+            REPLACED;
+
+            protected Change merge( WatchEvent.Kind<?> kind ) {
+                if (kind == ENTRY_DELETE) {
+                    // an entry which was created and removed within the batch was never visible ...
+                    return this == CREATED ? null : DELETED;
+                }
+                if (kind == ENTRY_CREATE) {
+                    return this == DELETED || this == REPLACED ? REPLACED : CREATED;
+                }
+                // a modification doesn't change the net effect of a creation, replacement or removal ...
+                return this;
+            }
+
+            protected static Change of( WatchEvent.Kind<?> kind ) {
+                if (kind == ENTRY_CREATE) return CREATED;
+                if (kind == ENTRY_DELETE) return DELETED;
+                return MODIFIED;
+            }
+        }
+
         private final WatchService watchService;
         private final FileSystemConnector connector;
+        private final FileStateIndex.Reconciliation reconciliation;
 
         static {
             java.nio.file.WatchEvent.Modifier modifier = null;
@@ -858,41 +957,32 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
 
         protected MonitoringTask( WatchService watchService,
                                   FileSystemConnector connector,
-                                  Path rootPath ) {
+                                  Path rootPath,
+                                  FileStateIndex.Reconciliation reconciliation ) {
             this.watchService = watchService;
             this.connector = connector;
+            this.reconciliation = reconciliation;
             recursiveWatch(rootPath, watchService);
         }
 
         @Override
-        @SuppressWarnings( "unchecked" )
         public Void call() throws Exception {
+            if (reconciliation != null && !reconciliation.isEmpty()) {
+                // publish the changes that were made while the repository was not running ...
+                publishReconciliation();
+            }
             for (;;) {
                 try {
+                    // Wait for the first key, and then coalesce the events of any keys signalled shortly afterwards ...
+                    Map<Path, Change> changes = new LinkedHashMap<>();
                     WatchKey watchKey = watchService.take();
-                    @SuppressWarnings( "synthetic-access" )
-                    ConnectorChangeSet connectorChangeSet = connector.newConnectorChangedSet();
-                    for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
-                        WatchEvent.Kind<?> kind = watchEvent.kind();
-
-                        Path eventPath = ((WatchEvent<Path>)watchEvent).context();
-                        Path resolvedPath = ((Path)watchKey.watchable()).resolve(eventPath);
-                        File resolvedFile = resolvedPath.toFile();
-
-                        if (connector.isExcluded(resolvedFile)) {
-                            continue;
-                        }
-
-                        if (kind == ENTRY_CREATE) {
-                            fireEntryCreated(connectorChangeSet, resolvedPath);
-                        } else if (kind == ENTRY_DELETE) {
-                            fireEntryDeleted(connectorChangeSet, resolvedPath);
-                        } else if (kind == ENTRY_MODIFY) {
-                            fireEntryModified(connectorChangeSet, resolvedPath);
-                        }
+                    while (watchKey != null) {
+                        collectEvents(watchKey, changes);
+                        watchKey.reset();
+                        if (changes.size() >= MAX_BATCH_SIZE) break;
+                        watchKey = watchService.poll(COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
                     }
-                    watchKey.reset();
-                    connectorChangeSet.publish(null);
+                    publish(changes);
                 } catch (InterruptedException e) {
                     Thread.interrupted();
                     watchService.close();
@@ -902,6 +992,71 @@ public class FileSystemConnector extends WritableConnector implements Pageable {
             return null;
         }
 
+        @SuppressWarnings( "unchecked" )
+        private void collectEvents( WatchKey watchKey,
+                                    Map<Path, Change> changes ) {
+            for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                WatchEvent.Kind<?> kind = watchEvent.kind();
+                if (kind != ENTRY_CREATE && kind != ENTRY_DELETE && kind != ENTRY_MODIFY) {
+                    // e.g., OVERFLOW
+                    continue;
+                }
+                Path eventPath = ((WatchEvent<Path>)watchEvent).context();
+                Path resolvedPath = ((Path)watchKey.watchable()).resolve(eventPath);
+                if (connector.isExcluded(resolvedPath.toFile())) {
+                    continue;
+                }
+                Change existing = changes.remove(resolvedPath);
+                Change merged = existing == null ? Change.of(kind) : existing.merge(kind);
+                if (merged != null) {
+                    // (re)inserting keeps the paths in the order of their last event ...
+                    changes.put(resolvedPath, merged);
+                }
+            }
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        private void publish( Map<Path, Change> changes ) {
+            if (changes.isEmpty()) return;
+            ConnectorChangeSet connectorChangeSet = connector.newConnectorChangedSet();
+            for (Map.Entry<Path, Change> entry : changes.entrySet()) {
+                Path resolvedPath = entry.getKey();
+                connector.invalidateState(resolvedPath.toFile());
+                switch (entry.getValue()) {
+                    case CREATED:
+                        fireEntryCreated(connectorChangeSet, resolvedPath);
+                        break;
+                    case DELETED:
+                        fireEntryDeleted(connectorChangeSet, resolvedPath);
+                        break;
+                    case REPLACED:
+                        fireEntryDeleted(connectorChangeSet, resolvedPath);
+                        fireEntryCreated(connectorChangeSet, resolvedPath);
+                        break;
+                    case MODIFIED:
+                        fireEntryModified(connectorChangeSet, resolvedPath);
+                        break;
+                }
+            }
+            connectorChangeSet.publish(null);
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        private void publishReconciliation() {
+            connector.log().debug("Publishing the changes found while reconciling the file state index: {0}", reconciliation);
+            ConnectorChangeSet connectorChangeSet = connector.newConnectorChangedSet();
+            for (File file : reconciliation.removed) {
+                fireEntryDeleted(connectorChangeSet, file.toPath());
+            }
+            for (File file : reconciliation.created) {
+                fireEntryCreated(connectorChangeSet, file.toPath());
+            }
+            for (File file : reconciliation.modified) {
+                fireEntryModified(connectorChangeSet, file.toPath());
+            }
+            connectorChangeSet.publish(null);
+        }
+
         @SuppressWarnings( "synthetic-access" )
         private void fireEntryModified( ConnectorChangeSet connectorChangeSet,
                                         Path resolvedPath ) {
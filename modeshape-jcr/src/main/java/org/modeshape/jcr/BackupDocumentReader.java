@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.DocumentSequence;
@@ -45,6 +47,7 @@ public final class BackupDocumentReader {
     protected DocumentSequence documents;
     protected long fileCount = 0L;
     private File currentFile;
+    private final File singleFile;
 
     public BackupDocumentReader( File parentDirectory,
                                  String filenamePrefix,
@@ -54,6 +57,57 @@ public final class BackupDocumentReader {
         this.parentDirectory = parentDirectory;
         this.filenamePrefix = filenamePrefix;
         this.problems = problems;
+        this.singleFile = null;
+    }
+
+    /**
+     * Create a reader of the documents in a single backup file, so that several files can be read concurrently.
+     * 
+     * @param file the (compressed or uncompressed) backup file; may not be null
+     * @param problems the problems to which any errors are added; may not be null
+     * @see #documentFiles(File, String)
+     */
+    public BackupDocumentReader( File file,
+                                 Problems problems ) {
+        CheckArg.isNotNull(file, "file");
+        this.parentDirectory = file.getParentFile();
+        this.filenamePrefix = file.getName();
+        this.problems = problems;
+        this.singleFile = file;
+    }
+
+    /**
+     * Find the sequential files containing the backed-up documents with the given prefix, in the order they were written.
+     * 
+     * @param parentDirectory the directory containing the backup files; may not be null
+     * @param filenamePrefix the prefix of the backup file names; may not be empty
+     * @return the files; never null but possibly empty
+     */
+    public static List<File> documentFiles( File parentDirectory,
+                                            String filenamePrefix ) {
+        CheckArg.isNotNull(parentDirectory, "parentDirectory");
+        CheckArg.isNotEmpty(filenamePrefix, "filenamePrefix");
+        List<File> files = new ArrayList<>();
+        for (long fileCount = 1L;; ++fileCount) {
+            File file = fileFor(parentDirectory, filenamePrefix, fileCount);
+            if (file == null) return files;
+            files.add(file);
+        }
+    }
+
+    private static File fileFor( File parentDirectory,
+                                 String filenamePrefix,
+                                 long fileCount ) {
+        String suffix = StringUtil.justifyRight(Long.toString(fileCount), BackupService.NUM_CHARS_IN_FILENAME_SUFFIX, '0');
+        String filename = filenamePrefix + "_" + suffix + DOCUMENTS_EXTENSION + GZIP_EXTENSION;
+        File file = new File(parentDirectory, filename);
+        if (!file.exists()) {
+            // Try the uncompressed form ...
+            filename = filenamePrefix + "_" + suffix + DOCUMENTS_EXTENSION;
+            file = new File(parentDirectory, filename);
+            if (!file.exists()) return null;
+        }
+        return file;
     }
 
     /**
@@ -92,17 +146,13 @@ public final class BackupDocumentReader {
     protected InputStream openNextFile() throws IOException {
         // Open the stream to the next file ...
         ++fileCount;
-        String suffix = StringUtil.justifyRight(Long.toString(fileCount), BackupService.NUM_CHARS_IN_FILENAME_SUFFIX, '0');
-        String filename = filenamePrefix + "_" + suffix + DOCUMENTS_EXTENSION + GZIP_EXTENSION;
-        currentFile = new File(parentDirectory, filename);
-        boolean compressed = true;
-        if (!currentFile.exists()) {
-            // Try the uncompressed form ...
-            filename = filenamePrefix + "_" + suffix + DOCUMENTS_EXTENSION;
-            currentFile = new File(parentDirectory, filename);
-            if (!currentFile.exists()) return null;
-            compressed = false;
+        if (singleFile != null) {
+            currentFile = fileCount == 1L && singleFile.exists() ? singleFile : null;
+        } else {
+            currentFile = fileFor(parentDirectory, filenamePrefix, fileCount);
         }
+        if (currentFile == null) return null;
+        boolean compressed = currentFile.getName().endsWith(GZIP_EXTENSION);
         if (!currentFile.canRead() || !currentFile.isFile()) return null;
         InputStream fileStream = new FileInputStream(currentFile);
         if (compressed) fileStream = new GZIPInputStream(fileStream);
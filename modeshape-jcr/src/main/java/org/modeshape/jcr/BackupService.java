@@ -22,18 +22,26 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.jcr.RepositoryException;
 import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
 import org.infinispan.Cache;
 import org.infinispan.schematic.Schematic;
 import org.infinispan.schematic.SchematicEntry;
@@ -55,6 +63,7 @@ import org.modeshape.jcr.api.BackupOptions;
 import org.modeshape.jcr.api.RestoreOptions;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.cache.document.DocumentConstants;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
@@ -158,7 +167,7 @@ public class BackupService {
             if (!problems.hasProblems()) {
                 // restart the repository ...
                 try {
-                    repository.completeRestore(options);
+                    repository.completeRestore(options, restoreActivity.restoredNodeKeys());
                 } catch (Throwable t) {
                     restoreActivity.problems.addError(JcrI18n.repositoryCannotBeRestartedAfterRestore, repository.getName(),
                                                       t.getMessage());
@@ -384,8 +393,8 @@ public class BackupService {
                                 NodeKey key = changedDocumentQueue.poll(1L, TimeUnit.SECONDS);
                                 if (key != null) {
                                     // Write out the document to the changed area ...
-                                    SchematicEntry entry = documentStore.get(key.toString());
-                                    writeToChangedArea(entry, changesWriter);
+                                    SchematicEntry entry = documentStore.getStored(key.toString());
+                                    if (entry != null) writeToChangedArea(entry, changesWriter);
                                 }
                             }
                         } catch (InterruptedException e) {
@@ -398,8 +407,8 @@ public class BackupService {
                             NodeKey key = changedDocumentQueue.poll();
                             if (key != null) {
                                 // Write out the document to the changed area ...
-                                SchematicEntry entry = documentStore.get(key.toString());
-                                writeToChangedArea(entry, changesWriter);
+                                SchematicEntry entry = documentStore.getStored(key.toString());
+                                if (entry != null) writeToChangedArea(entry, changesWriter);
                             }
                         }
                         changesLatch.countDown();
@@ -420,7 +429,9 @@ public class BackupService {
                     while (true) {
                         String key = sequence.next();
                         if (key == null) break;
-                        SchematicEntry entry = documentStore.get(key);
+                        // Include the tombstones of nodes removed from copy-on-write workspaces, or else the removed nodes
+                        // would again be shared from the source workspace after restoring ...
+                        SchematicEntry entry = documentStore.getStored(key);
                         if (entry != null) {
                             writeToContentArea(entry, contentWriter);
                             ++counter;
@@ -514,11 +525,30 @@ public class BackupService {
     }
 
     /**
-     * The {@link Activity} subclass that performs content restore operations.
+     * The {@link Activity} subclass that performs content restore operations. The documents in each backup file are read by a
+     * separate thread and handed through a bounded queue to the restoring thread, which stores them in the order of the files and
+     * in batches (each within a single transaction when the cache is transactional), while the binary values are restored
+     * concurrently by other threads.
      */
     @NotThreadSafe
     public static final class RestoreActivity extends Activity {
+        /**
+         * The number of documents stored in the document store with a single operation.
+         */
+        protected static final int BATCH_SIZE = 500;
+
+        /**
+         * The approximate maximum number of documents that have been read but not yet stored, shared by the queues of the files
+         * that are read concurrently.
+         */
+        protected static final int QUEUE_CAPACITY = BATCH_SIZE * 4;
+
+        private static final Document END_OF_FILE = Schematic.newDocument();
+
         private final RestoreOptions options;
+        private final int parallelism;
+        private ExecutorService binaryRestorers;
+        private final List<Future<Problems>> binaryResults = new ArrayList<>();
 
         protected RestoreActivity( File backupDirectory,
                                    org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
@@ -528,6 +558,7 @@ public class BackupService {
             super(backupDirectory, documentStore, binaryStore, repositoryCache);
             CheckArg.isNotNull(options, "restoreOptions");
             this.options = options;
+            this.parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
         }
 
         @Override
@@ -535,15 +566,34 @@ public class BackupService {
             boolean includeBinaries = binaryDirectory.exists() && binaryDirectory.canRead() && options.includeBinaries(); 
             if (includeBinaries) {
                 removeExistingBinaryFiles();
-                restoreBinaryFiles();
+                startRestoringBinaryFiles();
+            }
+            try {
+                removeExistingDocuments();
+                restoreDocuments(backupDirectory); // first pass of documents
+                restoreDocuments(changeDirectory); // documents changed while backup was being made
+            } finally {
+                if (includeBinaries) waitForBinaryFiles();
             }
-
-            removeExistingDocuments();
-            restoreDocuments(backupDirectory); // first pass of documents
-            restoreDocuments(changeDirectory); // documents changed while backup was being made
             return problems;
         }
 
+        /**
+         * Get the keys of the node documents that were restored, so that their content can be indexed without crawling the
+         * restored workspaces. The keys are read again from the backup files as they are iterated, so they never all have to be
+         * held in memory.
+         * 
+         * @return the keys of the restored nodes; never null
+         */
+        public Iterable<NodeKey> restoredNodeKeys() {
+            return new Iterable<NodeKey>() {
+                @Override
+                public Iterator<NodeKey> iterator() {
+                    return new RestoredNodeKeys(backupDirectory, changeDirectory);
+                }
+            };
+        }
+
         public void removeExistingBinaryFiles() {
             // simply mark all of the existing binary values as unused; if an unused binary value is restored,
             // it will simply be kept without having store it ...
@@ -585,18 +635,56 @@ public class BackupService {
         }
 
         public void restoreBinaryFiles() {
+            startRestoringBinaryFiles();
+            waitForBinaryFiles();
+        }
+
+        protected void startRestoringBinaryFiles() {
+            binaryRestorers = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("modeshape-restore-binaries"));
             for (File segment1Dir : binaryDirectory.listFiles()) {
-                for (File segment2Dir : segment1Dir.listFiles()) {
-                    for (File segment3Dir : segment2Dir.listFiles()) {
-                        for (File binaryFile : segment3Dir.listFiles()) {
-                            restoreBinaryFile(binaryFile);
+                // each thread restores all of the binary files within a top-level segment directory ...
+                final File segment = segment1Dir;
+                binaryResults.add(binaryRestorers.submit(new Callable<Problems>() {
+                    @Override
+                    public Problems call() {
+                        SimpleProblems segmentProblems = new SimpleProblems();
+                        for (File segment2Dir : segment.listFiles()) {
+                            for (File segment3Dir : segment2Dir.listFiles()) {
+                                for (File binaryFile : segment3Dir.listFiles()) {
+                                    restoreBinaryFile(binaryFile, segmentProblems);
+                                }
+                            }
                         }
+                        return segmentProblems;
                     }
+                }));
+            }
+            binaryRestorers.shutdown();
+        }
+
+        protected void waitForBinaryFiles() {
+            try {
+                for (Future<Problems> result : binaryResults) {
+                    problems.addAll(result.get());
                 }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                binaryRestorers.shutdownNow();
+                problems.addError(JcrI18n.interruptedWhilePerformingBackup, repositoryName(), backupLocation(), e.getMessage());
+            } catch (ExecutionException e) {
+                problems.addError(e.getCause(), JcrI18n.problemsRestoringBinaryFromBackup, "", repositoryName(), backupLocation(),
+                                  e.getCause().getMessage());
+            } finally {
+                binaryResults.clear();
             }
         }
 
         public void restoreBinaryFile( File binaryFile ) {
+            restoreBinaryFile(binaryFile, problems);
+        }
+
+        protected void restoreBinaryFile( File binaryFile,
+                                          Problems problems ) {
             if (!binaryFile.exists()) return;
             if (!binaryFile.canRead()) {
                 I18n msg = JcrI18n.problemsReadingBinaryFromBackup;
@@ -634,18 +722,153 @@ public class BackupService {
         }
 
         protected void restoreDocuments( File directory ) {
-            BackupDocumentReader reader = new BackupDocumentReader(directory, DOCUMENTS_FILENAME_PREFIX, problems);
-            LOGGER.debug("Restoring documents from {0}", directory.getAbsolutePath());
-            int count = 0;
-            while (true) {
-                Document doc = reader.read();
-                if (doc == null) break;
-                documentStore.put(doc);
+            List<File> files = BackupDocumentReader.documentFiles(directory, DOCUMENTS_FILENAME_PREFIX);
+            if (files.isEmpty()) return;
+            LOGGER.debug("Restoring documents from {0} files in {1}", files.size(), directory.getAbsolutePath());
+
+            // Start a reader for each file, each with its own queue. The same document can appear in more than one file (with
+            // the newer copies in the later files), so the documents are stored in the order of the files ...
+            int readerCount = Math.min(files.size(), parallelism);
+            int queueCapacity = Math.max(BATCH_SIZE, QUEUE_CAPACITY / readerCount);
+            ExecutorService readers = Executors.newFixedThreadPool(readerCount, new NamedThreadFactory("modeshape-restore-reader"));
+            List<BlockingQueue<Document>> queues = new ArrayList<>(files.size());
+            List<Future<Problems>> readerResults = new ArrayList<>(files.size());
+            for (final File file : files) {
+                final BlockingQueue<Document> queue = new LinkedBlockingQueue<>(queueCapacity);
+                queues.add(queue);
+                // The readers start in file order, so the file being stored always has a reader ...
+                readerResults.add(readers.submit(new Callable<Problems>() {
+                    @Override
+                    public Problems call() throws InterruptedException {
+                        SimpleProblems fileProblems = new SimpleProblems();
+                        BackupDocumentReader reader = new BackupDocumentReader(file, fileProblems);
+                        try {
+                            while (true) {
+                                Document doc = reader.read();
+                                if (doc == null) break;
+                                queue.put(doc);
+                            }
+                        } finally {
+                            reader.close();
+                            queue.put(END_OF_FILE);
+                        }
+                        return fileProblems;
+                    }
+                }));
+            }
+            readers.shutdown();
 
-                ++count;
-                LOGGER.debug("restoring {0} doc {1}", (count + 1), doc);
+            // And store the documents in batches using this thread ...
+            long count = 0L;
+            try {
+                List<Document> batch = new ArrayList<>(BATCH_SIZE);
+                for (BlockingQueue<Document> queue : queues) {
+                    while (true) {
+                        Document doc = queue.take();
+                        if (doc == END_OF_FILE) break;
+                        batch.add(doc);
+                        if (batch.size() >= BATCH_SIZE) {
+                            count += storeBatch(batch);
+                        }
+                    }
+                }
+                count += storeBatch(batch);
+                for (Future<Problems> result : readerResults) {
+                    problems.addAll(result.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                problems.addError(JcrI18n.interruptedWhilePerformingBackup, repositoryName(), backupLocation(), e.getMessage());
+            } catch (ExecutionException e) {
+                problems.addError(e.getCause(), JcrI18n.problemsRestoringDocumentsFromBackup, repositoryName(),
+                                  directory.getAbsolutePath(), e.getCause().getMessage());
+            } finally {
+                // in case the restore failed, stop any readers that are still waiting for room in the queue ...
+                readers.shutdownNow();
             }
             LOGGER.debug("Restored {0} documents from {1}", count, directory.getAbsolutePath());
         }
+
+        private int storeBatch( List<Document> batch ) {
+            if (batch.isEmpty()) return 0;
+            TransactionManager txnMgr = documentStore.transactionManager();
+            try {
+                if (txnMgr != null) txnMgr.begin();
+                documentStore.putAll(batch);
+                if (txnMgr != null) txnMgr.commit();
+            } catch (Exception e) {
+                if (txnMgr != null) {
+                    try {
+                        txnMgr.rollback();
+                    } catch (Exception e2) {
+                        LOGGER.debug(e2, "Error while rolling back the restore of a batch of documents");
+                    }
+                }
+                problems.addError(e, JcrI18n.problemsRestoringDocumentsFromBackup, repositoryName(), backupLocation(),
+                                  e.getMessage());
+            }
+            int size = batch.size();
+            batch.clear();
+            return size;
+        }
+
+    }
+
+    /**
+     * An iterator over the keys of the node documents in the backup files of one or more directories, which reads the files
+     * one document at a time.
+     */
+    protected static final class RestoredNodeKeys implements Iterator<NodeKey> {
+        private final Iterator<File> directories;
+        private BackupDocumentReader reader;
+        private NodeKey next;
+
+        protected RestoredNodeKeys( File... directories ) {
+            this.directories = Arrays.asList(directories).iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (reader == null) {
+                    if (!directories.hasNext()) return false;
+                    // any problems reading the files were already recorded when the documents were restored ...
+                    reader = new BackupDocumentReader(directories.next(), DOCUMENTS_FILENAME_PREFIX, new SimpleProblems());
+                }
+                Document doc = reader.read();
+                if (doc == null) {
+                    reader.close();
+                    reader = null;
+                } else {
+                    next = nodeKeyOf(doc);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public NodeKey next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            NodeKey result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private static NodeKey nodeKeyOf( Document doc ) {
+            Document metadata = doc.getDocument(SchematicEntry.FieldName.METADATA);
+            Document content = doc.getDocument(SchematicEntry.FieldName.CONTENT);
+            String key = metadata != null ? metadata.getString(SchematicEntry.FieldName.ID) : null;
+            // only node documents (rather than blocks of children, binary reference counts, etc.) have properties ...
+            if (key != null && content != null && content.containsField(DocumentConstants.PROPERTIES)
+                && NodeKey.isValidFormat(key)) {
+                return new NodeKey(key);
+            }
+            return null;
+        }
     }
 }
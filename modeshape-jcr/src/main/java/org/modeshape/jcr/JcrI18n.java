@@ -95,6 +95,7 @@ public final class JcrI18n {
     public static I18n problemsReadingBinaryFromBackup;
     public static I18n problemsGettingBinaryKeysFromBinaryStore;
     public static I18n problemsRestoringBinaryFromBackup;
+    public static I18n problemsRestoringDocumentsFromBackup;
     public static I18n interruptedWhilePerformingBackup;
     public static I18n problemObtainingDocumentsToBackup;
     public static I18n backupOperationWasCancelled;
@@ -435,6 +436,7 @@ public final class JcrI18n {
     public static I18n unableToDestroyPredefinedWorkspaceInRepository;
     public static I18n unableToDestroyDefaultWorkspaceInRepository;
     public static I18n unableToDestroySystemWorkspaceInRepository;
+    public static I18n unableToCreateCopyOnWriteWorkspaceFromSystemWorkspace;
     public static I18n workspaceNotFound;
     public static I18n unableToRestoreAtAbsPathNodeAlreadyExists;
 
@@ -486,6 +488,7 @@ public final class JcrI18n {
     public static I18n unableToDeleteTemporaryFile;
     public static I18n unableToFindBinaryValue;
     public static I18n unableToFindBinaryValueInCache;
+    public static I18n unableToCopyCachedBinaryValue;
     public static I18n tempDirectorySystemPropertyMustBeSet;
     public static I18n errorReadingBinaryValue;
     public static I18n errorStoringBinaryValue;
@@ -554,6 +557,10 @@ public final class JcrI18n {
     public static I18n beginChildrenOptimization;
     public static I18n completeChildrenOptimization;
     public static I18n errorDuringChildrenOptimization;
+    public static I18n bulkLoadParentIsNotOpen;
+    public static I18n bulkLoadAlreadyFinished;
+    public static I18n bulkLoadDanglingReferences;
+    public static I18n bulkLoadNotSupportedInExternalWorkspace;
 
     public static I18n mBeanAlreadyRegistered;
     public static I18n cannotRegisterMBean;
@@ -579,6 +586,9 @@ public final class JcrI18n {
     public static I18n localIndexProviderDirectoryMustBeWritable;
     public static I18n localIndexMustHaveOneColumnOfSpecificType;
     public static I18n localIndexProviderDoesNotSupportTextIndexes;
+    public static I18n localIndexWithMultipleColumnsMustBeValueIndex;
+    public static I18n localIndexWithMultipleColumnsMustUseStoredProperties;
+    public static I18n localIndexProviderUnableToCommit;
 
     private JcrI18n() {
     }
@@ -49,6 +49,7 @@ import javax.jcr.AccessDeniedException;
 import javax.jcr.Credentials;
 import javax.jcr.LoginException;
 import javax.jcr.NoSuchWorkspaceException;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -78,6 +79,7 @@ import org.modeshape.common.collection.Problems;
 import org.modeshape.common.collection.SimpleProblems;
 import org.modeshape.common.i18n.I18n;
 import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.ModeShapeEngine.State;
 import org.modeshape.jcr.RepositoryConfiguration.AnonymousSecurity;
@@ -100,12 +102,15 @@ import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.bus.ChangeBus;
 import org.modeshape.jcr.bus.ClusteredChangeBus;
 import org.modeshape.jcr.bus.RepositoryChangeBus;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.RepositoryCache;
 import org.modeshape.jcr.cache.SessionCache;
 import org.modeshape.jcr.cache.SessionEnvironment;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
+import org.modeshape.jcr.cache.document.BulkLoader;
 import org.modeshape.jcr.cache.document.DocumentStore;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.cache.document.TransactionalWorkspaceCaches;
@@ -134,7 +139,9 @@ import org.modeshape.jcr.txn.SynchronizedTransactions;
 import org.modeshape.jcr.txn.Transactions;
 import org.modeshape.jcr.value.DateTimeFactory;
 import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.Path.Segment;
 import org.modeshape.jcr.value.ValueFactories;
+import org.modeshape.jcr.value.ValueFormatException;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
 import org.modeshape.jmx.RepositoryStatisticsBean;
@@ -275,6 +282,53 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         return statistics();
     }
 
+    /**
+     * Create a loader that writes a large amount of new content below an existing node directly into this repository's storage,
+     * without using a session. The children are written in blocks of the {@link DocumentOptimization#getChildCountTarget()
+     * optimization's child count target} (or of {@link BulkLoader#DEFAULT_CHILD_COUNT_TARGET} when optimization is not enabled),
+     * and the loaded nodes are added to the indexes as they are written.
+     * <p>
+     * The loader does not check any permissions, does not validate the content against the node types, and fires no events for
+     * the loaded nodes; see {@link BulkLoader} for details.
+     * </p>
+     *
+     * @param workspaceName the name of the workspace; may be null if the default workspace is to be used
+     * @param parentPath the absolute path of the existing node below which the content is to be loaded; may not be null
+     * @return the loader; never null
+     * @throws NoSuchWorkspaceException if the workspace does not exist
+     * @throws PathNotFoundException if there is no node at the supplied path
+     * @throws IllegalStateException if the repository is not {@link #getState() running}
+     */
+    public BulkLoader createBulkLoader( String workspaceName,
+                                        String parentPath ) throws RepositoryException {
+        CheckArg.isNotNull(parentPath, "parentPath");
+        RunningState running = runningState();
+        workspaceName = validateWorkspaceName(running, workspaceName);
+        ExecutionContext context = running.context();
+        try {
+            NodeCache cache = running.repositoryCache().getWorkspaceCache(workspaceName);
+            CachedNode node = cache.getNode(cache.getRootKey());
+            for (Segment segment : context.getValueFactories().getPathFactory().create(parentPath)) {
+                ChildReference ref = node.getChildReferences(cache).getChild(segment);
+                node = ref != null ? cache.getNode(ref) : null;
+                if (node == null) {
+                    throw new PathNotFoundException(JcrI18n.pathNotFound.text(parentPath, workspaceName));
+                }
+            }
+
+            DocumentOptimization optimization = config.get().getDocumentOptimization();
+            int childCountTarget = optimization.isEnabled() ? optimization.getChildCountTarget() :
+                                                                   BulkLoader.DEFAULT_CHILD_COUNT_TARGET;
+            return running.repositoryCache().createBulkLoader(context, workspaceName, node.getKey(),
+                                                              running.queryManager().getIndexWriter(), childCountTarget,
+                                                              BulkLoader.DEFAULT_BATCH_SIZE);
+        } catch (WorkspaceNotFoundException e) {
+            throw new NoSuchWorkspaceException(e.getMessage(), e);
+        } catch (ValueFormatException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Starts this repository instance (if not already started) and returns all the possible startup problems & warnings which did
      * not prevent the repository from starting up.
@@ -530,6 +584,11 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
     }
 
     protected final void completeRestore(RestoreOptions options) throws ExecutionException, Exception {
+        completeRestore(options, null);
+    }
+
+    protected final void completeRestore( RestoreOptions options,
+                                          Iterable<NodeKey> restoredNodeKeys ) throws ExecutionException, Exception {
         if (getState() == State.RESTORING) {
             logger.debug("Performing custom system initialization on '{0}' after content has been restored", getName());
             runningState().completeRestore();
@@ -539,8 +598,13 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             start();
             logger.debug("Started '{0}' after content has been restored; beginning indexing of content", getName());
             if (options.reindexContentOnFinish()) {
-                // Reindex all content ...
-                queryManager().cleanAndReindex(false);
+                if (restoredNodeKeys != null) {
+                    // Index the restored nodes without crawling the workspaces ...
+                    queryManager().cleanAndReindex(restoredNodeKeys);
+                } else {
+                    // Reindex all content ...
+                    queryManager().cleanAndReindex(false);
+                }
                 logger.debug("Completed reindexing all content in '{0}' after restore.", getName());
             }
         }
@@ -956,6 +1020,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         private final QueryParsers queryParsers;
         private final RepositoryQueryManager repositoryQueryManager;
         private final ExecutorService indexingExecutor;
+        private final ExecutorService saveExecutor;
         private final TextExtractors extractors;
         private final ChangeBus changeBus;
         private final ExecutorService changeDispatchingQueue;
@@ -1131,7 +1196,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
 
                     // Set up the repository cache ...
                     String journalId = this.journal != null ? this.journal.journalId() : null;
-                    final SessionEnvironment sessionEnv = new RepositorySessionEnvironment(this.transactions, journalId);
+                    final SessionEnvironment sessionEnv = new RepositorySessionEnvironment(this.transactions, journalId, statistics);
                     CacheContainer workspaceCacheContainer = this.config.getWorkspaceContentCacheContainer();
                     this.cache = new RepositoryCache(context, documentStore, clusteringService, config, systemContentInitializer,
                                                      sessionEnv, changeBus, workspaceCacheContainer, Upgrades.STANDARD_UPGRADES);
@@ -1198,6 +1263,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 }
 
                 this.indexingExecutor = this.context.getThreadPool("modeshape-reindexing");
+                this.saveExecutor = this.context.getThreadPool("modeshape-save");
                 this.queryParsers = new QueryParsers(new JcrSql2QueryParser(), new XPathQueryParser(),
                                                      new FullTextSearchParser(), new JcrSqlQueryParser(), new JcrQomQueryParser());
                 this.repositoryQueryManager = new RepositoryQueryManager(this, indexingExecutor, config);
@@ -1472,6 +1538,19 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             return config.environment();
         }
 
+        protected final Transactions transactions() {
+            return transactions;
+        }
+
+        /**
+         * Get the executor used to {@link JcrSession#saveAsync() save sessions asynchronously}.
+         * 
+         * @return the executor; never null
+         */
+        final ExecutorService saveExecutor() {
+            return saveExecutor;
+        }
+
         protected final TransactionManager txnManager() {
             TransactionManager mgr = documentStore().transactionManager();
             assert mgr != null;
@@ -1674,6 +1753,14 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 }
             }
 
+            // Let the asynchronous saves that were already submitted complete ...
+            this.saveExecutor.shutdown();
+            try {
+                this.saveExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+            }
+
             // Now shutdown the repository caches ...
             this.cache.startShutdown();
 
@@ -1894,16 +1981,19 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         private final Transactions transactions;
         private final TransactionalWorkspaceCaches transactionalWorkspaceCacheFactory;
         private final String journalId;
+        private final RepositoryStatistics statistics;
 
         protected RepositorySessionEnvironment( Transactions transactions ) {
-            this(transactions, null);
+            this(transactions, null, null);
         }
 
         protected RepositorySessionEnvironment( Transactions transactions,
-                                                String journalId ) {
+                                                String journalId,
+                                                RepositoryStatistics statistics ) {
             this.transactions = transactions;
             this.transactionalWorkspaceCacheFactory = new TransactionalWorkspaceCaches(transactions);
             this.journalId = journalId;
+            this.statistics = statistics;
         }
 
         @Override
@@ -1920,6 +2010,16 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         public String journalId() {
             return journalId;
         }
+
+        @Override
+        public void recordLockAcquisition( String workspaceName,
+                                           List<String> keys,
+                                           int failedAttempts,
+                                           long durationInNanos ) {
+            if (statistics != null) {
+                statistics.recordLockAcquisition(workspaceName, keys, failedAttempts, durationInNanos, TimeUnit.NANOSECONDS);
+            }
+        }
     }
 
     private final class InternalSecurityContext implements SecurityContext {
@@ -29,8 +29,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -59,6 +64,7 @@ import javax.jcr.security.AccessControlManager;
 import javax.jcr.version.Version;
 import javax.jcr.version.VersionException;
 import javax.jcr.version.VersionIterator;
+import javax.transaction.SystemException;
 import org.infinispan.schematic.SchematicEntry;
 import org.modeshape.common.collection.LinkedListMultimap;
 import org.modeshape.common.collection.Multimap;
@@ -95,6 +101,7 @@ import org.modeshape.jcr.cache.SiblingCounter;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
 import org.modeshape.jcr.cache.WrappedException;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
+import org.modeshape.jcr.cache.document.WorkspaceSnapshot;
 import org.modeshape.jcr.query.BufferManager;
 import org.modeshape.jcr.security.AdvancedAuthorizationProvider;
 import org.modeshape.jcr.security.AuthorizationProvider;
@@ -138,6 +145,9 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     private final AtomicReference<Map<NodeKey, NodeKey>> originalVersionKeys = new AtomicReference<>();
     private final AtomicReference<JcrSharedNodeCache> shareableNodeCache = new AtomicReference<>();
     private final AtomicLong aclChangesCount = new AtomicLong(0);
+    private final AtomicReference<Future<Void>> pendingSave = new AtomicReference<>();
+    private volatile Thread savingThread;
+    private final WorkspaceSnapshot snapshot;
     private volatile JcrValueFactory valueFactory;
     private volatile boolean isLive = true;
     private final long nanosCreated;
@@ -202,6 +212,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
         // Create the session cache ...
         this.cache = repositoryCache.createSession(this.context, workspaceName, readOnly);
+        this.snapshot = null;
         this.rootNode = new JcrRootNode(this, this.cache.getRootKey());
         this.jcrNodes.put(this.rootNode.key(), this.rootNode);
         this.sessionAttributes = sessionAttributes != null ? sessionAttributes : Collections.<String, Object>emptyMap();
@@ -223,6 +234,12 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
     protected JcrSession( JcrSession original,
                           boolean readOnly ) {
+        this(original, original.repository.repositoryCache().createSession(original.context, original.workspace.getName(),
+                                                                           readOnly));
+    }
+
+    protected JcrSession( JcrSession original,
+                          SessionCache cache ) {
         // Most of the components can be reused from the original session ...
         this.repository = original.repository;
         this.context = original.context;
@@ -232,8 +249,10 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         this.workspace = original.workspace;
         this.hasCustomAuthorizationProvider = original.hasCustomAuthorizationProvider;
 
-        // Create a new session cache and root node ...
-        this.cache = repository.repositoryCache().createSession(context, this.workspace.getName(), readOnly);
+        // Use the supplied session cache with a new root node ...
+        this.cache = cache;
+        NodeCache workspaceCache = cache.getWorkspace();
+        this.snapshot = workspaceCache instanceof WorkspaceSnapshot ? (WorkspaceSnapshot)workspaceCache : null;
         this.rootNode = new JcrRootNode(this, this.cache.getRootKey());
         this.jcrNodes.put(this.rootNode.key(), this.rootNode);
 
@@ -283,7 +302,12 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
         cleanLocks();
         if (removeFromActiveSession) this.repository.runningState().removeSession(this);
-        this.context.getSecurityContext().logout();
+        if (snapshot != null) {
+            // The security context belongs to the session that created the snapshot ...
+            snapshot.close();
+        } else {
+            this.context.getSecurityContext().logout();
+        }
     }
 
     private void cleanLocks() {
@@ -366,7 +390,15 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         return valueFactory;
     }
 
+    /**
+     * Get the session cache holding this session's transient changes. While the changes are being {@link #saveAsync() saved
+     * asynchronously}, any thread other than the one saving them waits for the save to complete, so the transient changes never
+     * change while they are being saved.
+     * 
+     * @return the session cache; never null
+     */
     final SessionCache cache() {
+        if (pendingSave.get() != null && Thread.currentThread() != savingThread) awaitPendingSaveUninterruptibly();
         return cache;
     }
 
@@ -430,7 +462,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     final void addContextData( String key,
                                String value ) {
         this.context = context.with(key, value);
-        this.cache.addContextData(key, value);
+        cache().addContextData(key, value);
     }
 
     final JcrSharedNodeCache shareableNodeCache() {
@@ -495,7 +527,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     AbstractJcrNode node( NodeKey nodeKey,
                           AbstractJcrNode.Type expectedType,
                           NodeKey parentKey ) throws ItemNotFoundException {
-        CachedNode cachedNode = cache.getNode(nodeKey);
+        CachedNode cachedNode = cache().getNode(nodeKey);
         if (cachedNode == null) {
             // The node must not exist or must have been deleted ...
             throw new ItemNotFoundException(nodeKey.toString());
@@ -613,6 +645,19 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
                                  CachedNode node,
                                  Path path,
                                  String... actions ) throws PathNotFoundException, AccessDeniedException, RepositoryException {
+        if (path.isAbsolute() && path.isNormalized() && !cache.hasChanges() && node.getKey().equals(cache.getRootKey())) {
+            // The session sees the workspace's nodes, so use the workspace to find the node (using its cached paths) ...
+            NodeCache workspaceCache = cache.getWorkspace();
+            if (workspaceCache instanceof WorkspaceCache) {
+                NodeKey key = ((WorkspaceCache)workspaceCache).getNodeKey(path);
+                if (key == null) {
+                    throw new PathNotFoundException(JcrI18n.nodeNotFound.text(stringFactory().create(path), workspaceName()));
+                }
+                CachedNode found = cache.getNode(key);
+                // The node may have been removed since it was found, in which case we have to look again ...
+                if (found != null) return found;
+            }
+        }
         // We treat the path as a relative path, but the algorithm actually works for absolute, too. So don't enforce.
         for (Segment segment : path) {
             if (segment.isSelfReference()) continue;
@@ -959,7 +1004,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
      * @return true if the node exists, or false if it does not
      */
     protected boolean nodeExists( NodeKey key ) {
-        return cache.getNode(key) != null;
+        return cache().getNode(key) != null;
     }
 
     @Override
@@ -1156,7 +1201,107 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         throws AccessDeniedException, ItemExistsException, ReferentialIntegrityException, ConstraintViolationException,
         InvalidItemStateException, VersionException, LockException, NoSuchNodeTypeException, RepositoryException {
         checkLive();
+        awaitPendingSave();
+        saveChanges();
+    }
+
+    @Override
+    public Future<Void> saveAsync() throws RepositoryException {
+        checkLive();
+        awaitPendingSave();
+        FutureTask<Void> save = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                savingThread = Thread.currentThread();
+                try {
+                    saveChanges();
+                } finally {
+                    savingThread = null;
+                }
+                return null;
+            }
+        });
+        if (!cache().hasChanges() || isInTransaction()) {
+            // There's nothing to save, or the changes have to be saved on this thread within the active transaction ...
+            save.run();
+            return save;
+        }
+        pendingSave.set(save);
+        try {
+            repository.runningState().saveExecutor().execute(save);
+        } catch (RejectedExecutionException e) {
+            // The repository is shutting down, so just save the changes now ...
+            save.run();
+        }
+        return save;
+    }
+
+    @Override
+    public JcrSession snapshot() throws RepositoryException {
+        checkLive();
+        SessionCache snapshotCache;
+        try {
+            snapshotCache = repository.repositoryCache().createSnapshotSession(context, workspaceName());
+        } catch (WorkspaceNotFoundException e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
+        JcrSession snapshotSession = new JcrSession(this, snapshotCache);
+        repository.runningState().addSession(snapshotSession, false);
+        return snapshotSession;
+    }
+
+    /**
+     * Wait for the changes that are being {@link #saveAsync() saved asynchronously}, if there are any. Failures are reported
+     * through the future returned by {@link #saveAsync()}, and the changes that could not be saved remain in this session.
+     * 
+     * @throws RepositoryException if the thread is interrupted while waiting
+     */
+    private void awaitPendingSave() throws RepositoryException {
+        Future<Void> pending = pendingSave.get();
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        } catch (ExecutionException e) {
+            // Already reported via the future ...
+        }
+        pendingSave.compareAndSet(pending, null);
+    }
+
+    private void awaitPendingSaveUninterruptibly() {
+        Future<Void> pending = pendingSave.get();
+        if (pending == null) return;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    pending.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // The transient changes can't be used until the save completes, so keep waiting ...
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // Already reported via the future ...
+                    break;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        pendingSave.compareAndSet(pending, null);
+    }
+
+    private boolean isInTransaction() throws RepositoryException {
+        try {
+            return repository.runningState().transactions().isCurrentlyInTransaction();
+        } catch (SystemException e) {
+            throw new RepositoryException(e);
+        }
+    }
 
+    private void saveChanges() throws RepositoryException {
         // Perform the save, using 'JcrPreSave' operations ...
         SessionCache systemCache = createSystemCache(false);
         SystemContent systemContent = new SystemContent(systemCache);
@@ -1267,6 +1412,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     @Override
     public void refresh( boolean keepChanges ) throws RepositoryException {
         checkLive();
+        awaitPendingSave();
         if (!keepChanges) {
             cache.clear();
             aclChangesCount.set(0);
@@ -1765,6 +1911,11 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
     @Override
     public synchronized void logout() {
+        try {
+            awaitPendingSave();
+        } catch (RepositoryException e) {
+            // The thread was interrupted, but continue logging out ...
+        }
         terminate(true);
         try {
             RunningState running = repository.runningState();
@@ -801,6 +801,27 @@ class JcrWorkspace implements org.modeshape.jcr.api.Workspace {
                   newWorkspaceSession.getRootNode().key());
     }
 
+    @Override
+    public void createCopyOnWriteWorkspace( String name,
+                                            String srcWorkspace )
+        throws AccessDeniedException, UnsupportedRepositoryOperationException, NoSuchWorkspaceException, RepositoryException {
+        validateCrossWorkspaceAction(srcWorkspace);
+        try {
+            session.checkWorkspacePermission(name, ModeShapePermissions.CREATE_WORKSPACE);
+            JcrRepository repository = session.repository();
+            if (repository.hasWorkspace(name)) {
+                String msg = GraphI18n.workspaceAlreadyExistsInRepository.text(name, getName());
+                throw new RepositoryException(msg);
+            }
+            repository.repositoryCache().createWorkspace(name, srcWorkspace);
+        } catch (UnsupportedOperationException e) {
+            throw new UnsupportedRepositoryOperationException(e.getMessage());
+        }
+
+        // None of the shared content was written, but the index providers create the indexes for the new workspace when they see
+        // that it was added, and ask for them to be populated in the background (like any other new index) ...
+    }
+
     protected void deepClone( JcrSession sourceSession,
                               NodeKey sourceNodeKey,
                               JcrSession cloneSession,
@@ -75,6 +75,8 @@ import org.modeshape.jcr.value.PropertyType;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStoreException;
+import org.modeshape.jcr.value.binary.BinaryCompression;
+import org.modeshape.jcr.value.binary.CachingBinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
 import org.modeshape.jcr.value.binary.DatabaseBinaryStore;
 import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
@@ -371,6 +373,23 @@ public class RepositoryConfiguration {
          */
         public static final String COMPOSITE_STORE_NAMED_BINARY_STORES = "namedStores";
 
+        /**
+         * The name for the field whose value is a document containing the binary storage information of the store whose values
+         * are cached on the local disk.
+         */
+        public static final String CACHED_BINARY_STORE = "cachedStore";
+
+        /**
+         * The name for the field whose value is the maximum total size, in bytes, of the binary values cached on the local disk.
+         */
+        public static final String CACHE_MAX_SIZE_IN_BYTES = "maxCacheSizeInBytes";
+
+        /**
+         * The name for the field whose boolean value specifies whether new binary values are copied to the cached store in the
+         * background.
+         */
+        public static final String CACHE_WRITE_BACK = "writeBack";
+
         /**
          * The name for the field whose value is a document containing security information.
          */
@@ -441,6 +460,10 @@ public class RepositoryConfiguration {
         public static final String INDEXES = "indexes";
         public static final String METADATA_CACHE_NAME = "metadataCacheName";
         public static final String CHUNK_SIZE = "chunkSize";
+        public static final String COMPRESSION_LEVEL = "compressionLevel";
+        public static final String UNCOMPRESSED_MIME_TYPES = "uncompressedMimeTypes";
+        public static final String READ_AHEAD_CHUNKS = "readAheadChunks";
+        public static final String PARALLEL_CHUNK_WRITES = "parallelChunkWrites";
         public static final String TEXT_EXTRACTION = "textExtraction";
         public static final String EXTRACTORS = "extractors";
         public static final String SEQUENCING = "sequencing";
@@ -616,6 +639,7 @@ public class RepositoryConfiguration {
         public static final String BINARY_STORAGE_TYPE_CACHE = "cache";
         public static final String BINARY_STORAGE_TYPE_DATABASE = "database";
         public static final String BINARY_STORAGE_TYPE_COMPOSITE = "composite";
+        public static final String BINARY_STORAGE_TYPE_CACHED = "cached";
         public static final String BINARY_STORAGE_TYPE_CUSTOM = "custom";
 
         public static final String KIND_VALUE = "value";
@@ -1168,7 +1192,19 @@ public class RepositoryConfiguration {
                 String directory = binaryStorage.getString(FieldName.DIRECTORY);
                 assert directory != null;
                 File dir = new File(directory);
-                store = FileSystemBinaryStore.create(dir);
+                FileSystemBinaryStore fileStore = FileSystemBinaryStore.create(dir);
+                int compressionLevel = binaryStorage.getInteger(FieldName.COMPRESSION_LEVEL, 0);
+                if (compressionLevel > 0) {
+                    List<String> uncompressedMimeTypes = new ArrayList<String>(BinaryCompression.DEFAULT_UNCOMPRESSED_MIME_TYPES);
+                    if (binaryStorage.containsField(FieldName.UNCOMPRESSED_MIME_TYPES)) {
+                        uncompressedMimeTypes.clear();
+                        for (Object mimeType : binaryStorage.getArray(FieldName.UNCOMPRESSED_MIME_TYPES)) {
+                            uncompressedMimeTypes.add(mimeType.toString());
+                        }
+                    }
+                    fileStore.setCompression(new BinaryCompression(compressionLevel, uncompressedMimeTypes));
+                }
+                store = fileStore;
             } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_DATABASE)) {
                 String driverClass = binaryStorage.getString(FieldName.JDBC_DRIVER_CLASS);
                 String connectionURL = binaryStorage.getString(FieldName.CONNECTION_URL);
@@ -1187,6 +1223,10 @@ public class RepositoryConfiguration {
                 String blobCacheName = binaryStorage.getString(FieldName.DATA_CACHE_NAME, getName());
                 String cacheConfiguration = binaryStorage.getString(FieldName.CACHE_CONFIGURATION); // may be null
                 int chunkSize = binaryStorage.getInteger(FieldName.CHUNK_SIZE, InfinispanBinaryStore.DEFAULT_CHUNK_SIZE);
+                int readAheadChunks = binaryStorage.getInteger(FieldName.READ_AHEAD_CHUNKS,
+                                                               InfinispanBinaryStore.DEFAULT_READ_AHEAD_CHUNKS);
+                int parallelChunkWrites = binaryStorage.getInteger(FieldName.PARALLEL_CHUNK_WRITES,
+                                                                   InfinispanBinaryStore.DEFAULT_PARALLEL_CHUNK_WRITES);
                 boolean dedicatedCacheContainer = false;
                 if (cacheConfiguration == null) {
                     cacheConfiguration = getCacheConfiguration();
@@ -1198,7 +1238,7 @@ public class RepositoryConfiguration {
                 // String cacheTransactionManagerLookupClass = binaryStorage.getString(FieldName.CACHE_TRANSACTION_MANAGER_LOOKUP,
                 // Default.CACHE_TRANSACTION_MANAGER_LOOKUP);
                 store = new InfinispanBinaryStore(cacheContainer, dedicatedCacheContainer, metadataCacheName, blobCacheName,
-                                                  chunkSize);
+                                                  chunkSize, readAheadChunks, parallelChunkWrites);
             } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_COMPOSITE)) {
 
                 Map<String, BinaryStore> binaryStores = new LinkedHashMap<String, BinaryStore>();
@@ -1217,6 +1257,19 @@ public class RepositoryConfiguration {
 
                 store = new CompositeBinaryStore(binaryStores);
 
+            } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_CACHED)) {
+                Document cachedStoreConfig = binaryStorage.getDocument(FieldName.CACHED_BINARY_STORE);
+                if (cachedStoreConfig == null) {
+                    throw new BinaryStoreException(JcrI18n.missingVariableValue.text(FieldName.CACHED_BINARY_STORE));
+                }
+                String directory = binaryStorage.getString(FieldName.DIRECTORY);
+                assert directory != null;
+                long maxCacheSize = binaryStorage.getLong(FieldName.CACHE_MAX_SIZE_IN_BYTES,
+                                                          CachingBinaryStore.DEFAULT_MAX_CACHE_SIZE_IN_BYTES);
+                boolean writeBack = binaryStorage.getBoolean(FieldName.CACHE_WRITE_BACK, false);
+                BinaryStore cachedStore = new BinaryStorage(cachedStoreConfig).getBinaryStore();
+                store = new CachingBinaryStore(cachedStore, new File(directory), maxCacheSize, writeBack);
+
             } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_CUSTOM)) {
                 classname = binaryStorage.getString(FieldName.CLASSNAME);
                 classPath = binaryStorage.getString(FieldName.CLASSLOADER);
@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
@@ -36,6 +37,7 @@ import org.modeshape.jcr.RepositoryIndexManager.ScanningRequest;
 import org.modeshape.jcr.RepositoryIndexManager.ScanningTasks;
 import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.index.IndexManager;
+import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.query.QueryCancelledException;
 import org.modeshape.jcr.api.query.qom.QueryCommand;
 import org.modeshape.jcr.cache.CachedNode;
@@ -54,6 +56,7 @@ import org.modeshape.jcr.query.QueryEngine;
 import org.modeshape.jcr.query.QueryEngineBuilder;
 import org.modeshape.jcr.query.QueryResults;
 import org.modeshape.jcr.query.engine.IndexQueryEngine;
+import org.modeshape.jcr.query.engine.QueryPlanCache;
 import org.modeshape.jcr.query.engine.ScanningQueryEngine;
 import org.modeshape.jcr.query.plan.PlanHints;
 import org.modeshape.jcr.query.validate.Schemata;
@@ -68,12 +71,18 @@ import org.modeshape.jcr.value.Path.Segment;
  */
 class RepositoryQueryManager implements ChangeSetListener {
 
+    /**
+     * The number of nodes indexed by key before the cached paths of their ancestors are discarded.
+     */
+    private static final int REINDEX_BATCH_SIZE = 1000;
+
     private final Logger logger = Logger.getLogger(getClass());
     private final Logger indexLogger = Logger.getLogger(getClass().getPackage().getName() + ".index");
     private final RunningState runningState;
     private final ExecutorService indexingExecutorService;
     private final RepositoryConfiguration repoConfig;
     private final RepositoryIndexManager indexManager;
+    private final QueryPlanCache planCache;
     private final Lock engineInitLock = new ReentrantLock();
     @GuardedBy( "engineInitLock" )
     private volatile QueryEngine queryEngine;
@@ -88,6 +97,17 @@ class RepositoryQueryManager implements ChangeSetListener {
         this.indexingExecutorService = indexingExecutorService;
         this.repoConfig = config;
         this.indexManager = new RepositoryIndexManager(runningState, config);
+        this.planCache = new QueryPlanCache() {
+            @Override
+            protected void recordHit() {
+                RepositoryQueryManager.this.runningState.statistics().increment(ValueMetric.QUERY_PLAN_CACHE_HITS);
+            }
+
+            @Override
+            protected void recordMiss() {
+                RepositoryQueryManager.this.runningState.statistics().increment(ValueMetric.QUERY_PLAN_CACHE_MISSES);
+            }
+        };
     }
 
     synchronized void initialize() {
@@ -124,6 +144,7 @@ class RepositoryQueryManager implements ChangeSetListener {
                         queryEngine.shutdown();
                     } finally {
                         queryEngine = null;
+                        planCache.clear();
                     }
                 }
             } finally {
@@ -219,6 +240,15 @@ class RepositoryQueryManager implements ChangeSetListener {
         return indexManager.getIndexes();
     }
 
+    /**
+     * Get the cache of the optimized query plans, which is shared by all the sessions of the repository.
+     *
+     * @return the plan cache; never null
+     */
+    QueryPlanCache getPlanCache() {
+        return planCache;
+    }
+
     /**
      * Obtain the query engine, which is created lazily and in a thread-safe manner.
      *
@@ -241,7 +271,7 @@ class RepositoryQueryManager implements ChangeSetListener {
                         logger.debug("Queries with no indexes are enabled for the '{0}' repository. Executing queries will always scan the repository contents.",
                                      repoConfig.getName());
                     }
-                    queryEngine = builder.using(repoConfig, indexManager, runningState.context()).build();
+                    queryEngine = builder.using(repoConfig, indexManager, runningState.context()).with(planCache).build();
                 }
             } finally {
                 engineInitLock.unlock();
@@ -316,6 +346,75 @@ class RepositoryQueryManager implements ChangeSetListener {
         });
     }
 
+    /**
+     * Clean all indexes and index the supplied nodes (e.g., those that were just restored from a backup) rather than crawling all
+     * of the workspaces. The system content is always crawled. This is done using this thread.
+     *
+     * @param nodeKeys the keys of the nodes in the non-system workspaces that should be indexed, which are only iterated once;
+     *        may not be null
+     */
+    protected void cleanAndReindex( final Iterable<NodeKey> nodeKeys ) {
+        final IndexWriter writer = getIndexWriter();
+        scan(false, writer, new Callable<Void>() {
+            @SuppressWarnings( "synthetic-access" )
+            @Override
+            public Void call() throws Exception {
+                writer.clearAllIndexes();
+                reindexSystemContent();
+                reindexNodes(nodeKeys, writer);
+                return null;
+            }
+        });
+    }
+
+    private void reindexNodes( Iterable<NodeKey> nodeKeys,
+                               IndexWriter indexes ) {
+        RepositoryCache repoCache = runningState.repositoryCache();
+        Map<String, String> workspaceNamesByKey = new HashMap<>();
+        for (String workspaceName : repoCache.getWorkspaceNames()) {
+            String workspaceKey = NodeKey.keyForWorkspaceName(workspaceName);
+            if (!workspaceKey.equals(runningState.systemWorkspaceKey())) {
+                workspaceNamesByKey.put(workspaceKey, workspaceName);
+            }
+        }
+        for (String workspaceName : workspaceNamesByKey.values()) {
+            updateIndexesStatus(workspaceName, IndexManager.IndexStatus.ENABLED, IndexManager.IndexStatus.REINDEXING);
+        }
+        try {
+            Map<String, PathCache> pathsByWorkspaceName = new HashMap<>();
+            int count = 0;
+            for (NodeKey key : nodeKeys) {
+                // nodes in the system area (or in workspaces that no longer exist) are skipped ...
+                String workspaceName = workspaceNamesByKey.get(key.getWorkspaceKey());
+                if (workspaceName == null) continue;
+                if (++count % REINDEX_BATCH_SIZE == 0) {
+                    // The paths are only needed for nearby nodes, so don't let the caches of paths grow without bound ...
+                    pathsByWorkspaceName.clear();
+                }
+                PathCache paths = pathsByWorkspaceName.get(workspaceName);
+                if (paths == null) {
+                    paths = new PathCache(repoCache.getWorkspaceCache(workspaceName));
+                    pathsByWorkspaceName.put(workspaceName, paths);
+                }
+                NodeCache cache = paths.getCache();
+                CachedNode node = cache.getNode(key);
+                if (node == null || node.isExcludedFromSearch(cache)) continue;
+                Path nodePath = paths.getPath(node);
+                if (indexLogger.isTraceEnabled()) {
+                    String path = runningState.context().getValueFactories().getStringFactory().create(nodePath);
+                    indexLogger.debug("Reindexing node '{0}' in workspace '{1}' of repository '{2}': {3}", path, workspaceName,
+                                      runningState.name(), node);
+                }
+                indexes.add(workspaceName, key, nodePath, node.getPrimaryType(cache), node.getMixinTypes(cache),
+                            node.getPropertiesByName(cache));
+            }
+        } finally {
+            for (String workspaceName : workspaceNamesByKey.values()) {
+                updateIndexesStatus(workspaceName, IndexManager.IndexStatus.REINDEXING, IndexManager.IndexStatus.ENABLED);
+            }
+        }
+    }
+
     private void scan( boolean async,
                        final IndexWriter indexes,
                        Callable<Void> callable ) {
@@ -17,16 +17,21 @@ package org.modeshape.jcr;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -67,6 +72,11 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * <li><b>{@link ValueMetric#SESSION_SAVES save operations}</b> - the number of Session save operations performed the window;</li>
  * <li><b>{@link ValueMetric#NODE_CHANGES changed nodes}</b> - the number of nodes that were created, updated, or deleted during
  * the window;</li>
+ * <li><b>{@link ValueMetric#QUERY_PLAN_CACHE_HITS query plan cache hits}</b> and <b>{@link ValueMetric#QUERY_PLAN_CACHE_MISSES
+ * misses}</b> - the number of executed queries that did and did not reuse a cached plan during the window, from which the hit
+ * rate of the query plan cache can be computed;</li>
+ * <li><b>{@link ValueMetric#LOCK_ACQUISITION_FAILURES lock acquisition failures}</b> - the number of failed attempts to lock the
+ * nodes being saved during the window;</li>
  * </ol>
  * and the metrics that record durations include:
  * <ol>
@@ -75,7 +85,10 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * window;</li>
  * <li><b>{@link DurationMetric#SEQUENCER_EXECUTION_TIME sequencer execution time}</b> - the duration of sequencing operations
  * completed during the window;</li>
+ * <li><b>{@link DurationMetric#LOCK_ACQUISITION_TIME lock acquisition time}</b> - the time that saves completed during the window
+ * waited to lock the nodes they changed;</li>
  * </ol>
+ * The nodes whose locks were most often contended are also {@link #getMostContendedNodes() tracked}.
  * This class provides a way to obtain the {@link History history} for a particular metric during a specified window, where the
  * window is comprised of the {@link Statistics statistics} (the average value, minimum value, maximum value, variance, standard
  * deviation, number of samples, and time interval of the statistics) for:
@@ -112,6 +125,16 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
      */
     public static final int MAXIMUM_LONG_RUNNING_SESSION_COUNT = 15;
 
+    /**
+     * The maximum number of longest lock acquisitions to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_LOCK_ACQUISITION_COUNT = 15;
+
+    /**
+     * The maximum number of most contended nodes to report.
+     */
+    public static final int MAXIMUM_CONTENDED_NODE_COUNT = 15;
+
     /**
      * The frequency at which the metric values are rolled into statistics.
      */
@@ -135,6 +158,7 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
     private final ConcurrentMap<ValueMetric, ValueHistory> values = new ConcurrentHashMap<ValueMetric, ValueHistory>();
     private final AtomicReference<ScheduledFuture<?>> rollupFuture = new AtomicReference<ScheduledFuture<?>>();
     private final DateTimeFactory timeFactory;
+    private final ContendedNodes contendedNodes = new ContendedNodes(MAXIMUM_CONTENDED_NODE_COUNT * 10);
 
     private final AtomicReference<DateTime> secondsStartTime = new AtomicReference<DateTime>();
     private final AtomicReference<DateTime> minutesStartTime = new AtomicReference<DateTime>();
@@ -164,6 +188,8 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
                                                                                    MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
         durations.put(DurationMetric.SESSION_LIFETIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                            MAXIMUM_LONG_RUNNING_SESSION_COUNT));
+        durations.put(DurationMetric.LOCK_ACQUISITION_TIME, new DurationHistory(TimeUnit.MICROSECONDS,
+                                                                                MAXIMUM_LONG_RUNNING_LOCK_ACQUISITION_COUNT));
 
         for (ValueMetric metric : EnumSet.allOf(ValueMetric.class)) {
             boolean resetUponRollup = !metric.isContinuous();
@@ -374,6 +400,49 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         if (history != null) history.recordDuration(duration, timeUnit, payload);
     }
 
+    /**
+     * Record the acquisition of the storage locks on the nodes being saved, called by the sessions after they've locked the nodes
+     * or given up trying.
+     * 
+     * @param workspaceName the name of the workspace containing the nodes; may not be null
+     * @param keys the keys of the nodes; may not be null
+     * @param failedAttempts the number of attempts to acquire the locks that failed
+     * @param duration the total time spent acquiring the locks
+     * @param timeUnit the time unit of the duration
+     */
+    void recordLockAcquisition( String workspaceName,
+                                List<String> keys,
+                                int failedAttempts,
+                                long duration,
+                                TimeUnit timeUnit ) {
+        Map<String, String> payload = new HashMap<String, String>();
+        payload.put("workspace", workspaceName);
+        payload.put("nodes", Integer.toString(keys.size()));
+        payload.put("failedAttempts", Integer.toString(failedAttempts));
+        recordDuration(DurationMetric.LOCK_ACQUISITION_TIME, duration, timeUnit, payload);
+        if (failedAttempts > 0) {
+            increment(ValueMetric.LOCK_ACQUISITION_FAILURES, failedAttempts);
+            if (keys.isEmpty()) return;
+            // The storage doesn't say which of the locks could not be acquired, so charge each failure to a randomly sampled node.
+            // The nodes that were actually contended are involved in more failures, so they accumulate the highest counts ...
+            Random random = ThreadLocalRandom.current();
+            for (int i = 0; i != failedAttempts; ++i) {
+                contendedNodes.record(keys.get(random.nextInt(keys.size())));
+            }
+        }
+    }
+
+    /**
+     * Get the keys of the nodes whose locks were most often contended by concurrent saves, along with the (approximate) number of
+     * failed attempts to lock each of them. The counts are only approximate because each failed attempt is counted against one
+     * randomly sampled node of those that the save was trying to lock, and because only a limited number of nodes are tracked.
+     * 
+     * @return the node keys and failure counts, ordered from the most contended; never null but possibly empty
+     */
+    public Map<String, Long> getMostContendedNodes() {
+        return contendedNodes.mostContended(MAXIMUM_CONTENDED_NODE_COUNT);
+    }
+
     @Override
     public void notify( ChangeSet changeSet ) {
         // Track all changes, even those that originate in remote processes ...
@@ -920,4 +989,68 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
             return sb.toString();
         }
     }
+
+    /**
+     * Tracks the nodes involved in the most failed lock attempts, using the "space-saving" algorithm to bound the number of
+     * tracked nodes: when the table is full, the least contended node is replaced and the new node inherits its count. The
+     * counters are also kept sorted by count, so that the least contended node is found in logarithmic time.
+     */
+    @ThreadSafe
+    protected static final class ContendedNodes {
+        private final Map<String, Counter> countersByKey = new HashMap<String, Counter>();
+        private final TreeSet<Counter> countersByCount = new TreeSet<Counter>();
+        private final int capacity;
+        private long sequence;
+
+        protected ContendedNodes( int capacity ) {
+            this.capacity = capacity;
+        }
+
+        protected synchronized void record( String key ) {
+            Counter counter = countersByKey.get(key);
+            long count = 1L;
+            if (counter != null) {
+                countersByCount.remove(counter);
+                count += counter.count;
+            } else if (countersByKey.size() >= capacity) {
+                Counter least = countersByCount.pollFirst();
+                countersByKey.remove(least.key);
+                count += least.count;
+            }
+            // Counters are immutable while they're in the sorted set ...
+            counter = new Counter(key, count, ++sequence);
+            countersByKey.put(key, counter);
+            countersByCount.add(counter);
+        }
+
+        protected synchronized Map<String, Long> mostContended( int maxCount ) {
+            Map<String, Long> result = new LinkedHashMap<String, Long>();
+            for (Counter counter : countersByCount.descendingSet()) {
+                if (result.size() == maxCount) break;
+                result.put(counter.key, counter.count);
+            }
+            return result;
+        }
+
+        private static final class Counter implements Comparable<Counter> {
+            protected final String key;
+            protected final long count;
+            private final long sequence;
+
+            protected Counter( String key,
+                               long count,
+                               long sequence ) {
+                this.key = key;
+                this.count = count;
+                this.sequence = sequence;
+            }
+
+            @Override
+            public int compareTo( Counter that ) {
+                if (this.count != that.count) return this.count < that.count ? -1 : 1;
+                // Of the nodes with the same count, the one that was least recently contended is replaced first ...
+                return this.sequence < that.sequence ? -1 : (this.sequence == that.sequence ? 0 : 1);
+            }
+        }
+    }
 }
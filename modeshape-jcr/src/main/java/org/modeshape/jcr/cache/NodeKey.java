@@ -15,9 +15,20 @@
  */
 package org.modeshape.jcr.cache;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.infinispan.schematic.SchematicDb;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.util.ObjectUtil;
@@ -36,7 +47,17 @@ import org.modeshape.jcr.JcrRepository;
  * </ol>
  * </p>
  * <p>
- * This class contains methods for
+ * Most node keys have a UUID identifier, and such keys are stored in a compact form: the identifier as two longs, plus the source
+ * and workspace keys, which are shared by all keys through a small bounded table. These keys are compared and hashed without
+ * converting the identifier to a string, and the string representation of the whole key is created each time it is needed
+ * rather than being stored (though the JCR identifier is kept once it has been requested). All other keys are stored as
+ * strings. Every key has exactly one form, so keys with different forms are never equal.
+ * </p>
+ * <p>
+ * Java serialization always writes the string representation, so serialized keys can be exchanged with other versions (e.g.,
+ * between the processes of a cluster during a rolling upgrade). Only the {@link #write(DataOutput) binary form}, which is used
+ * by the local indexes, stores the compact form.
+ * </p>
  */
 @Immutable
 public final class NodeKey implements Serializable, Comparable<NodeKey> {
@@ -108,10 +129,32 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         return false;
     }
 
-    private final String key;
+    private static final int COMPACT_KEY_LENGTH = IDENTIFIER_START_INDEX + UUID_LENGTH;
+    private static final int COMPACT_FORM = 0xFF;
+    private static final int STRING_FORM = 0xFE;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The source and workspace keys shared by the node keys. A repository has few sources and workspaces, so the table is
+     * bounded only to protect against keys from unexpected sources; once full, the keys simply aren't shared.
+     */
+    private static final ConcurrentMap<String, String> SHARED_KEY_PARTS = new ConcurrentHashMap<>();
+    private static final int MAX_SHARED_KEY_PARTS = 1024;
+
+    /**
+     * The key is serialized in its string form, just as it was when the key was the only field.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("key", String.class)};
+
+    // These fields are only set by the constructors and when deserializing, except that the parts of string keys and the
+    // identifier are computed lazily. The string form of compact keys is never stored ...
+    private transient String key;
     private transient String sourceKey;
     private transient String workspaceKey;
     private transient String identifier;
+    private transient boolean compact;
+    private transient long mostSignificantBits;
+    private transient long leastSignificantBits;
 
     /**
      * Reconstitute a node key from the supplied string.
@@ -121,7 +164,14 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public NodeKey( String key ) {
         assert key != null;
         assert key.length() > IDENTIFIER_START_INDEX;
-        this.key = key;
+        if (key.length() == COMPACT_KEY_LENGTH && isCanonicalUuid(key, IDENTIFIER_START_INDEX)) {
+            initialize(shared(key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX)),
+                       shared(key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX)),
+                       parseHex(key, IDENTIFIER_START_INDEX, IDENTIFIER_START_INDEX + 18),
+                       parseHex(key, IDENTIFIER_START_INDEX + 19, COMPACT_KEY_LENGTH));
+        } else {
+            this.key = key;
+        }
     }
 
     /**
@@ -140,7 +190,39 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         assert sourceKey.length() == SOURCE_LENGTH;
         assert workspaceKey.length() == WORKSPACE_LENGTH;
         assert workspaceKey.length() > 0;
-        this.key = sourceKey + workspaceKey + identifier;
+        if (sourceKey.length() == SOURCE_LENGTH && workspaceKey.length() == WORKSPACE_LENGTH
+            && identifier.length() == UUID_LENGTH && isCanonicalUuid(identifier, 0)) {
+            initialize(shared(sourceKey), shared(workspaceKey), parseHex(identifier, 0, 18),
+                       parseHex(identifier, 19, UUID_LENGTH));
+        } else {
+            this.key = sourceKey + workspaceKey + identifier;
+        }
+    }
+
+    private NodeKey( String sourceKey,
+                     String workspaceKey,
+                     long mostSignificantBits,
+                     long leastSignificantBits ) {
+        initialize(shared(sourceKey), shared(workspaceKey), mostSignificantBits, leastSignificantBits);
+    }
+
+    private void initialize( String sourceKey,
+                             String workspaceKey,
+                             long mostSignificantBits,
+                             long leastSignificantBits ) {
+        this.sourceKey = sourceKey;
+        this.workspaceKey = workspaceKey;
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.compact = true;
+    }
+
+    private void initialize( NodeKey other ) {
+        if (other.compact) {
+            initialize(other.sourceKey, other.workspaceKey, other.mostSignificantBits, other.leastSignificantBits);
+        } else {
+            this.key = other.key;
+        }
     }
 
     /**
@@ -151,7 +233,7 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public String getSourceKey() {
         if (sourceKey == null) {
             // Value is idempotent, so it's okay to do this without synchronizing ...
-            sourceKey = key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX);
+            sourceKey = shared(key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX));
         }
         return sourceKey;
     }
@@ -164,7 +246,7 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public String getWorkspaceKey() {
         if (workspaceKey == null) {
             // Value is idempotent, so it's okay to do this without synchronizing ...
-            workspaceKey = key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX);
+            workspaceKey = shared(key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX));
         }
         return workspaceKey;
     }
@@ -177,7 +259,7 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public String getIdentifier() {
         if (identifier == null) {
             // Value is idempotent, so it's okay to do this without synchronizing ...
-            identifier = key.substring(IDENTIFIER_START_INDEX);
+            identifier = compact ? new String(uuidChars(new char[UUID_LENGTH], 0)) : key.substring(IDENTIFIER_START_INDEX);
         }
         return identifier;
     }
@@ -194,12 +276,25 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     @Override
     public int compareTo( NodeKey that ) {
         if (that == this) return 0;
-        return this.key.compareTo(that.key);
+        if (this.compact && that.compact) {
+            // The source and workspace keys have fixed lengths, and the hexadecimal digits of the identifiers sort in the
+            // same order as their (unsigned) values, so this is the same order as the string representations ...
+            int diff = this.sourceKey.compareTo(that.sourceKey);
+            if (diff != 0) return diff;
+            diff = this.workspaceKey.compareTo(that.workspaceKey);
+            if (diff != 0) return diff;
+            diff = compareUnsigned(this.mostSignificantBits, that.mostSignificantBits);
+            if (diff != 0) return diff;
+            return compareUnsigned(this.leastSignificantBits, that.leastSignificantBits);
+        }
+        return this.toString().compareTo(that.toString());
     }
 
     @Override
     public int hashCode() {
-        return key.hashCode();
+        if (!compact) return key.hashCode();
+        long bits = mostSignificantBits ^ leastSignificantBits;
+        return (int)(bits >> 32) ^ (int)bits ^ (31 * workspaceKey.hashCode());
     }
 
     @Override
@@ -207,21 +302,167 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         if (obj == this) return true;
         if (obj instanceof NodeKey) {
             NodeKey that = (NodeKey)obj;
-            return this.key.equals(that.key);
+            if (this.compact != that.compact) return false;
+            if (!compact) return this.key.equals(that.key);
+            return this.mostSignificantBits == that.mostSignificantBits && this.leastSignificantBits == that.leastSignificantBits
+                   && this.workspaceKey.equals(that.workspaceKey) && this.sourceKey.equals(that.sourceKey);
         }
         return false;
     }
 
     @Override
     public String toString() {
-        return key;
+        if (!compact) return key;
+        char[] chars = new char[COMPACT_KEY_LENGTH];
+        sourceKey.getChars(0, SOURCE_LENGTH, chars, SOURCE_START_INDEX);
+        workspaceKey.getChars(0, WORKSPACE_LENGTH, chars, WORKSPACE_START_INDEX);
+        return new String(uuidChars(chars, IDENTIFIER_START_INDEX));
+    }
+
+    /**
+     * Write this key to the supplied output in a binary form, which is far smaller than the string representation for keys with
+     * UUID identifiers.
+     * 
+     * @param output the output; may not be null
+     * @throws IOException if there is a problem writing to the output
+     * @see #read(DataInput)
+     */
+    public void write( DataOutput output ) throws IOException {
+        if (compact) {
+            output.writeByte(COMPACT_FORM);
+            output.writeUTF(sourceKey);
+            output.writeUTF(workspaceKey);
+            output.writeLong(mostSignificantBits);
+            output.writeLong(leastSignificantBits);
+        } else {
+            output.writeByte(STRING_FORM);
+            output.writeUTF(key);
+        }
+    }
+
+    /**
+     * Read a key that was {@link #write(DataOutput) written} in the binary form, or that was written as a string with
+     * {@link DataOutput#writeUTF(String)}.
+     * 
+     * @param input the input; may not be null
+     * @return the node key; never null
+     * @throws IOException if there is a problem reading from the input
+     */
+    public static NodeKey read( DataInput input ) throws IOException {
+        int first = input.readUnsignedByte();
+        switch (first) {
+            case COMPACT_FORM:
+                String sourceKey = input.readUTF();
+                String workspaceKey = input.readUTF();
+                long mostSignificantBits = input.readLong();
+                return new NodeKey(sourceKey, workspaceKey, mostSignificantBits, input.readLong());
+            case STRING_FORM:
+                return new NodeKey(input.readUTF());
+            default:
+                // This was written as a string, and we've read the first byte of the (much smaller) length ...
+                int second = input.readUnsignedByte();
+                byte[] bytes = new byte[2 + ((first << 8) | second)];
+                bytes[0] = (byte)first;
+                bytes[1] = (byte)second;
+                input.readFully(bytes, 2, bytes.length - 2);
+                return new NodeKey(new DataInputStream(new ByteArrayInputStream(bytes)).readUTF());
+        }
+    }
+
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("key", toString());
+        out.writeFields();
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        String key = (String)in.readFields().get("key", null);
+        if (key == null) throw new InvalidObjectException("The node key is missing");
+        initialize(new NodeKey(key));
+    }
+
+    private static String shared( String keyPart ) {
+        String existing = SHARED_KEY_PARTS.get(keyPart);
+        if (existing != null) return existing;
+        if (SHARED_KEY_PARTS.size() >= MAX_SHARED_KEY_PARTS) return keyPart;
+        existing = SHARED_KEY_PARTS.putIfAbsent(keyPart, keyPart);
+        return existing != null ? existing : keyPart;
+    }
+
+    private char[] uuidChars( char[] chars,
+                              int offset ) {
+        // Use the same format as UUID.toString() ...
+        hexChars(mostSignificantBits >>> 32, 8, chars, offset);
+        chars[offset + 8] = '-';
+        hexChars(mostSignificantBits >>> 16, 4, chars, offset + 9);
+        chars[offset + 13] = '-';
+        hexChars(mostSignificantBits, 4, chars, offset + 14);
+        chars[offset + 18] = '-';
+        hexChars(leastSignificantBits >>> 48, 4, chars, offset + 19);
+        chars[offset + 23] = '-';
+        hexChars(leastSignificantBits, 12, chars, offset + 24);
+        return chars;
+    }
+
+    private static void hexChars( long value,
+                                  int digits,
+                                  char[] chars,
+                                  int offset ) {
+        for (int i = offset + digits - 1; i >= offset; --i) {
+            chars[i] = HEX_DIGITS[(int)(value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * Determine whether the supplied string contains, starting at the given offset, a UUID in the format produced by
+     * {@link UUID#toString()}, which uses lowercase hexadecimal digits.
+     */
+    private static boolean isCanonicalUuid( String value,
+                                            int offset ) {
+        for (int i = 0; i != UUID_LENGTH; ++i) {
+            char c = value.charAt(offset + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the hexadecimal digits (ignoring dashes) between the given offsets of a canonical UUID.
+     */
+    private static long parseHex( String value,
+                                  int start,
+                                  int end ) {
+        long result = 0L;
+        for (int i = start; i != end; ++i) {
+            char c = value.charAt(i);
+            if (c == '-') continue;
+            result = (result << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return result;
+    }
+
+    private static int compareUnsigned( long value1,
+                                        long value2 ) {
+        value1 += Long.MIN_VALUE;
+        value2 += Long.MIN_VALUE;
+        return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
     }
 
     public NodeKey withRandomId() {
-        return new NodeKey(getSourceKey(), getWorkspaceKey(), UUID.randomUUID().toString());
+        return withRandomIdAndWorkspace(getWorkspaceKey());
     }
 
     public NodeKey withRandomIdAndWorkspace( String workspaceKey ) {
+        if (compact && workspaceKey.length() == WORKSPACE_LENGTH) {
+            // There's no need to create and then parse the string representation of the UUID ...
+            UUID uuid = UUID.randomUUID();
+            return new NodeKey(sourceKey, workspaceKey, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
         return new NodeKey(getSourceKey(), workspaceKey, UUID.randomUUID().toString());
     }
 
@@ -230,6 +471,9 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     }
 
     public NodeKey withWorkspaceKey( String workspaceKey ) {
+        if (compact && workspaceKey.length() == WORKSPACE_LENGTH) {
+            return new NodeKey(sourceKey, workspaceKey, mostSignificantBits, leastSignificantBits);
+        }
         return new NodeKey(getSourceKey(), workspaceKey, getIdentifier());
     }
 
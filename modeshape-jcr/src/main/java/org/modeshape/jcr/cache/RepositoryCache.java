@@ -36,6 +36,7 @@ import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.schematic.Schematic;
 import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.Document.Field;
 import org.infinispan.schematic.document.EditableDocument;
 import org.infinispan.transaction.TransactionMode;
 import org.modeshape.common.SystemFailureException;
@@ -61,6 +62,7 @@ import org.modeshape.jcr.cache.change.RecordingChanges;
 import org.modeshape.jcr.cache.change.RepositoryMetadataChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.cache.document.BulkLoader;
 import org.modeshape.jcr.cache.document.DocumentOptimizer;
 import org.modeshape.jcr.cache.document.DocumentStore;
 import org.modeshape.jcr.cache.document.DocumentTranslator;
@@ -69,9 +71,11 @@ import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperation;
 import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperationResults;
 import org.modeshape.jcr.cache.document.ReadOnlySessionCache;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
+import org.modeshape.jcr.cache.document.WorkspaceSnapshot;
 import org.modeshape.jcr.cache.document.WritableSessionCache;
 import org.modeshape.jcr.clustering.ClusteringService;
 import org.modeshape.jcr.federation.ExternalDocumentStore;
+import org.modeshape.jcr.spi.index.IndexWriter;
 import org.modeshape.jcr.txn.Transactions;
 import org.modeshape.jcr.txn.Transactions.Transaction;
 import org.modeshape.jcr.value.Name;
@@ -99,6 +103,7 @@ public class RepositoryCache {
     private static final String REPOSITORY_UPGRADE_ID_FIELD_NAME = "lastUpgradeId";
     private static final String REPOSITORY_UPGRADED_AT_FIELD_NAME = "lastUpgradedAt";
     private static final String REPOSITORY_UPGRADER_FIELD_NAME = "upgrader";
+    private static final String WORKSPACE_OVERLAYS_FIELD_NAME = "workspaceOverlays";
 
     private final ExecutionContext context;
     private final RepositoryConfiguration configuration;
@@ -115,6 +120,7 @@ public class RepositoryCache {
     protected final NodeKey systemMetadataKey;
     private final NodeKey systemKey;
     protected final Set<String> workspaceNames;
+    private final ConcurrentHashMap<String, String> overlaySourceNamesByWorkspaceName = new ConcurrentHashMap<>();
     protected final String systemWorkspaceName;
     protected final Logger logger;
     private final SessionEnvironment sessionContext;
@@ -592,6 +598,19 @@ public class RepositoryCache {
                 }
             }
             this.workspaceNames.addAll(persistedWorkspaceNames);
+
+            Document overlays = doc.getDocument(WORKSPACE_OVERLAYS_FIELD_NAME);
+            if (overlays != null) {
+                for (Field overlay : overlays.fields()) {
+                    registerWorkspaceOverlay(overlay.getName(), overlay.getValueAsString());
+                }
+            }
+            for (String overlayName : overlaySourceNamesByWorkspaceName.keySet()) {
+                if (overlays == null || !overlays.containsField(overlayName)) {
+                    // The copy-on-write workspace was destroyed by another process ...
+                    unregisterWorkspaceOverlay(overlayName);
+                }
+            }
             if (!workspaceNotYetPersisted) {
                 // only exit if there isn't a new workspace present. Otherwise, the config added a new workspace so we need
                 // to make sure the meta-information is updated.
@@ -619,6 +638,10 @@ public class RepositoryCache {
                     PropertyFactory propFactory = context().getPropertyFactory();
                     translator.setProperty(doc, propFactory.create(name("workspaces"), workspaceNames), null, null);
                     translator.setProperty(doc, propFactory.create(name("accessControl"), accessControlEnabled), null, null);
+                    EditableDocument overlays = doc.setDocument(WORKSPACE_OVERLAYS_FIELD_NAME);
+                    for (Map.Entry<String, String> overlay : overlaySourceNamesByWorkspaceName.entrySet()) {
+                        overlays.setString(overlay.getKey(), overlay.getValue());
+                    }
 
                     return null;
                 }
@@ -753,6 +776,8 @@ public class RepositoryCache {
                     // And remove any already-cached workspaces. Note any open sessions to these workspaces will
                     for (String removedName : removedNames) {
                         removeWorkspaceCaches(removedName);
+                        // The workspace may have been a copy-on-write workspace destroyed by another process ...
+                        unregisterWorkspaceOverlay(removedName);
                     }
                 }
             }
@@ -980,6 +1005,100 @@ public class RepositoryCache {
         return workspace(name);
     }
 
+    /**
+     * Create a new copy-on-write workspace from an existing workspace, if the repository is appropriately configured. The new
+     * workspace initially shares all of the documents of the source workspace, so creating it does not copy any content: each
+     * document is copied into the new workspace only when it is first changed in either of the two workspaces. The nodes in the
+     * new workspace have the same identifiers as the corresponding nodes in the source workspace.
+     * <p>
+     * If the repository already contains a workspace with the supplied name, then this method simply returns that workspace.
+     * </p>
+     *
+     * @param name the name of the new workspace; may not be null
+     * @param sourceName the name of the existing workspace; may not be null
+     * @return the workspace cache for the new (or existing) workspace; never null
+     * @throws UnsupportedOperationException if this repository was not configured to allow
+     *         {@link RepositoryConfiguration#isCreatingWorkspacesAllowed() creation of workspaces}, or if the source workspace is
+     *         the system workspace
+     * @throws WorkspaceNotFoundException if the source workspace does not exist
+     */
+    public WorkspaceCache createWorkspace( final String name,
+                                           final String sourceName ) {
+        if (workspaceNames.contains(name)) {
+            return workspace(name);
+        }
+        if (!configuration.isCreatingWorkspacesAllowed()) {
+            throw new UnsupportedOperationException(JcrI18n.creatingWorkspacesIsNotAllowedInRepository.text(getName()));
+        }
+        if (this.systemWorkspaceName.equals(sourceName)) {
+            throw new UnsupportedOperationException(JcrI18n.unableToCreateCopyOnWriteWorkspaceFromSystemWorkspace.text(sourceName,
+                                                                                                                      getName()));
+        }
+        final NodeKey sourceRootKey = workspace(sourceName).getRootKey();
+        final NodeKey rootKey = new NodeKey(sourceKey, NodeKey.keyForWorkspaceName(name), rootNodeId);
+
+        runInTransaction(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                RepositoryCache.this.workspaceNames.add(name);
+                registerWorkspaceOverlay(name, sourceName);
+                refreshRepositoryMetadata(true);
+
+                // The root node is the only one that differs from the source, since the "/jcr:system" node is shared by all the
+                // workspaces and lists each root node as a parent. So copy the root now, without the "/jcr:system" node ...
+                LocalDocumentStore store = documentStore().localStore();
+                EditableDocument root = store.edit(rootKey.toString(), false);
+                translator.removeChildReference(root, getSystemKey());
+                translator.setProperty(root, context.getPropertyFactory().create(JcrLexicon.UUID, rootKey.toString()), null,
+                                       null);
+                return null;
+            }
+        });
+
+        // Now link the "/jcr:system" node under the new root, just like with any new workspace ...
+        SessionCache session = createSession(context, name, false);
+        MutableCachedNode root = session.mutable(session.getRootKey());
+        root.linkChild(session, systemKey, JcrLexicon.SYSTEM);
+        session.save();
+        logger.debug("Created copy-on-write workspace '{0}' (root {1}) from '{2}' (root {3}) in repository '{4}'", name,
+                     rootKey, sourceName, sourceRootKey, getName());
+
+        // And notify the others ...
+        String userId = context.getSecurityContext().getUserName();
+        Map<String, String> userData = context.getData();
+        DateTime timestamp = context.getValueFactories().getDateFactory().create();
+        RecordingChanges changes = new RecordingChanges(context.getId(), context.getProcessId(), this.getKey(), null,
+                                                        sessionContext.journalId());
+        changes.workspaceAdded(name);
+        changes.freeze(userId, userData, timestamp);
+        this.changeBus.notify(changes);
+        return workspace(name);
+    }
+
+    /**
+     * Determine whether the named workspace was created as a {@link #createWorkspace(String, String) copy-on-write workspace}.
+     *
+     * @param name the workspace name; may not be null
+     * @return the name of the workspace from which the named workspace was created, or null if the named workspace is not a
+     *         copy-on-write workspace
+     */
+    public String getOverlaySourceName( String name ) {
+        return overlaySourceNamesByWorkspaceName.get(name);
+    }
+
+    private void unregisterWorkspaceOverlay( String name ) {
+        if (overlaySourceNamesByWorkspaceName.remove(name) != null) {
+            documentStore.localStore().removeWorkspaceOverlay(NodeKey.keyForWorkspaceName(name));
+        }
+    }
+
+    private void registerWorkspaceOverlay( String name,
+                                           String sourceName ) {
+        overlaySourceNamesByWorkspaceName.put(name, sourceName);
+        documentStore.localStore().addWorkspaceOverlay(NodeKey.keyForWorkspaceName(name),
+                                                       NodeKey.keyForWorkspaceName(sourceName));
+    }
+
     /**
      * Permanently destroys the workspace with the supplied name, if the repository is appropriately configured, also unlinking
      * the jcr:system node from the root node . If no such workspace exists in this repository, this method simply returns.
@@ -1016,6 +1135,7 @@ public class RepositoryCache {
                     removeSession.mutable(removeSession.getRootKey()).removeChild(removeSession, getSystemKey());
                     // remove the workspace and persist it
                     RepositoryCache.this.workspaceNames.remove(name);
+                    unregisterWorkspaceOverlay(name);
                     refreshRepositoryMetadata(true);
                     // persist the active changes in the session
                     removeSession.save();
@@ -1117,6 +1237,49 @@ public class RepositoryCache {
         return new WritableSessionCache(context, workspaceCache, sessionContext);
     }
 
+    /**
+     * Create a read-only session that sees the workspace with the given name as it is now, even as other sessions change it. The
+     * {@link WorkspaceSnapshot snapshot} used by the session must be closed when the session is no longer needed.
+     *
+     * @param context the context for the new session; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @return the new read-only session; never null
+     * @throws WorkspaceNotFoundException if no such workspace exists
+     * @see WorkspaceCache#snapshot()
+     */
+    public SessionCache createSnapshotSession( ExecutionContext context,
+                                               String workspaceName ) {
+        return new ReadOnlySessionCache(context, workspace(workspaceName).snapshot(), sessionContext);
+    }
+
+    /**
+     * Create a loader that writes new content below an existing node directly into the document store, bypassing the session
+     * layer.
+     *
+     * @param context the context for the loader; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @param parentKey the key of the existing node below which the content is to be loaded; may not be null
+     * @param indexWriter the writer to which the loaded nodes are added; may be null if the nodes should not be indexed
+     * @param childCountTarget the number of children in each block of children; must be positive
+     * @param batchSize the number of nodes that are stored in each transaction; must be positive
+     * @return the new loader; never null
+     * @throws WorkspaceNotFoundException if no such workspace exists
+     * @throws NodeNotFoundException if the parent node does not exist
+     */
+    public BulkLoader createBulkLoader( ExecutionContext context,
+                                        String workspaceName,
+                                        NodeKey parentKey,
+                                        IndexWriter indexWriter,
+                                        int childCountTarget,
+                                        int batchSize ) {
+        WorkspaceCache workspaceCache = workspace(workspaceName);
+        if (workspaceCache.isExternal()) {
+            throw new UnsupportedOperationException(JcrI18n.bulkLoadNotSupportedInExternalWorkspace.text(workspaceName));
+        }
+        return new BulkLoader(context, workspaceCache, sessionContext.getTransactions(), indexWriter, sessionContext.journalId(),
+                              parentKey, childCountTarget, batchSize);
+    }
+
     /**
      * Optimize the children in the supplied node document
      * <p>
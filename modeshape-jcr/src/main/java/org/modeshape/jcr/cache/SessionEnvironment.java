@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr.cache;
 
+import java.util.List;
 import org.modeshape.jcr.cache.document.TransactionalWorkspaceCaches;
 import org.modeshape.jcr.txn.Transactions;
 
@@ -43,4 +44,17 @@ public interface SessionEnvironment {
      * @return either a {@link String} or {@code null} if no journal is configured.
      */
     String journalId();
+
+    /**
+     * Record the acquisition of the storage locks on the existing nodes that a session is about to change.
+     * 
+     * @param workspaceName the name of the workspace containing the nodes; never null
+     * @param keys the keys of the nodes, in the order in which they were locked; never null
+     * @param failedAttempts the number of attempts to acquire the locks that failed
+     * @param durationInNanos the total time spent acquiring the locks, including any pauses between the attempts
+     */
+    void recordLockAcquisition( String workspaceName,
+                                List<String> keys,
+                                int failedAttempts,
+                                long durationInNanos );
 }
@@ -103,6 +103,8 @@ public abstract class AbstractSessionCache implements SessionCache, DocumentCach
      */
     @Override
     public void checkForTransaction() {
+        // A snapshot always sees the same state, regardless of any transaction ...
+        if (sharedWorkspaceCache instanceof WorkspaceSnapshot) return;
         try {
             Transactions transactions = sessionContext.getTransactions();
             Transaction txn = transactions.getTransactionManager().getTransaction();
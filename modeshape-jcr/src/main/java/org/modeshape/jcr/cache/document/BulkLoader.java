@@ -0,0 +1,642 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.JcrNtLexicon;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNode.ReferenceType;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.DocumentNotFoundException;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.spi.index.IndexWriter;
+import org.modeshape.jcr.txn.Transactions;
+import org.modeshape.jcr.txn.Transactions.Transaction;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+import org.modeshape.jcr.value.Reference;
+import org.modeshape.jcr.value.basic.NodeKeyReference;
+import org.modeshape.jcr.value.basic.StringReference;
+import org.modeshape.jcr.value.binary.BinaryStoreException;
+
+/**
+ * A loader that writes large amounts of new content below an existing node directly into the {@link DocumentStore}, without
+ * going through a session. Each node is written as soon as all of its children have been added, so the loader only keeps in
+ * memory the nodes that are still "open": the ancestors of the most recently added node. The nodes therefore must be added in
+ * depth-first order, and each node's parent must be either the existing node below which the content is loaded or one of the
+ * open nodes.
+ * <p>
+ * The children of each node are written in blocks of the optimizer's target size, the documents are stored in transactions of
+ * a fixed number of nodes, and after each transaction the stored nodes are added to the indexes. The referrers of the nodes
+ * referenced by the loaded content are recorded in a temporary file and resolved in a second pass by {@link #finish()}, which
+ * also links the loaded content into the existing node. Until then, the loaded content is not reachable by path.
+ * </p>
+ * <p>
+ * The loader bypasses the validation and the events of a session: the content is not checked against the node types, no
+ * events are fired for the new nodes (so listeners and sequencers will not see them), and the caller is responsible for
+ * supplying all of the properties (e.g., "jcr:uuid" for referenceable nodes). If loading fails, the documents stored so far are
+ * left unreachable in the store.
+ * </p>
+ */
+@NotThreadSafe
+public class BulkLoader implements DocumentConstants {
+
+    /**
+     * The default number of nodes that are stored in each transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The number of children per block that is used when document optimization is not enabled.
+     */
+    public static final int DEFAULT_CHILD_COUNT_TARGET = 1000;
+
+    /**
+     * The number of spilled references that are read and applied at once during the second pass.
+     */
+    protected static final int REFERENCE_CHUNK_SIZE = 100000;
+
+    private static final Logger LOGGER = Logger.getLogger(BulkLoader.class);
+
+    private final ExecutionContext context;
+    private final WorkspaceCache workspaceCache;
+    private final DocumentStore documentStore;
+    private final DocumentTranslator translator;
+    private final Transactions transactions;
+    private final IndexWriter indexWriter;
+    private final String journalId;
+    private final int childCountTarget;
+    private final int batchSize;
+    private final PathFactory paths;
+    private final PropertyFactory propertyFactory;
+    private final Deque<Frame> openNodes = new ArrayDeque<>();
+
+    private Transaction txn;
+    private int storedInBatch;
+    private final List<IndexEntry> pendingIndexEntries = new ArrayList<>();
+    private final Set<BinaryKey> usedBinaryKeys = new HashSet<>();
+    private File referencesFile;
+    private BufferedWriter references;
+    private long nodeCount;
+    private boolean finished;
+
+    public BulkLoader( ExecutionContext context,
+                       WorkspaceCache workspaceCache,
+                       Transactions transactions,
+                       IndexWriter indexWriter,
+                       String journalId,
+                       NodeKey parentKey,
+                       int childCountTarget,
+                       int batchSize ) {
+        CheckArg.isPositive(childCountTarget, "childCountTarget");
+        CheckArg.isPositive(batchSize, "batchSize");
+        this.context = context;
+        this.workspaceCache = workspaceCache;
+        this.documentStore = workspaceCache.documentStore();
+        this.translator = workspaceCache.translator();
+        this.transactions = transactions;
+        this.indexWriter = indexWriter != null && !indexWriter.canBeSkipped() ? indexWriter : null;
+        this.journalId = journalId;
+        this.childCountTarget = childCountTarget;
+        this.batchSize = batchSize;
+        this.paths = context.getValueFactories().getPathFactory();
+        this.propertyFactory = context.getPropertyFactory();
+
+        CachedNode parent = workspaceCache.getNode(parentKey);
+        if (parent == null) throw new NodeNotFoundException(parentKey);
+        this.openNodes.push(new Frame(parentKey, null, parent.getPath(workspaceCache), parent));
+    }
+
+    /**
+     * Get the context whose value factories should be used to create the names and properties of the loaded nodes.
+     *
+     * @return the execution context; never null
+     */
+    public ExecutionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Get the key of the existing node below which the content is loaded.
+     *
+     * @return the key of the node; never null
+     */
+    public NodeKey getParentKey() {
+        return openNodes.getLast().key;
+    }
+
+    /**
+     * Add a new node. All of the previously added nodes that are not ancestors of the new node are considered complete and are
+     * written to the store.
+     *
+     * @param parentKey the key of the new node's parent, which must be either the {@link #getParentKey() existing node} below which
+     *        the content is loaded or an ancestor-or-self of the most recently added node; may not be null
+     * @param name the name of the new node; may not be null
+     * @param key the key of the new node, or null if a new key should be generated
+     * @param primaryType the name of the new node's primary type; may not be null
+     * @param mixinTypes the names of the new node's mixin types; may be null or empty
+     * @param properties the other properties of the new node; may be null or empty
+     * @return the key of the new node; never null
+     * @throws IllegalArgumentException if the parent is not one of the nodes to which children can still be added
+     * @throws DocumentAlreadyExistsException if a node with the supplied key already exists
+     */
+    public NodeKey addNode( NodeKey parentKey,
+                            Name name,
+                            NodeKey key,
+                            Name primaryType,
+                            Set<Name> mixinTypes,
+                            Iterable<Property> properties ) {
+        CheckArg.isNotNull(parentKey, "parentKey");
+        CheckArg.isNotNull(name, "name");
+        CheckArg.isNotNull(primaryType, "primaryType");
+        checkNotFinished();
+        if (key == null) key = workspaceCache.getRootKey().withRandomId();
+
+        // Close all of the nodes that were added after the parent ...
+        Frame parent = openNode(parentKey);
+        if (parent == null) {
+            throw new IllegalArgumentException(JcrI18n.bulkLoadParentIsNotOpen.text(key, name, parentKey,
+                                                                                    workspaceCache.getWorkspaceName()));
+        }
+        while (openNodes.peek() != parent) {
+            close(openNodes.pop());
+        }
+
+        // Create the document of the new node, which is stored when it's closed ...
+        EditableDocument doc = Schematic.newDocument();
+        translator.setKey(doc, key);
+        translator.setParents(doc, parentKey, null, null);
+        Map<Name, Property> props = new LinkedHashMap<>();
+        props.put(JcrLexicon.PRIMARY_TYPE, propertyFactory.create(JcrLexicon.PRIMARY_TYPE, primaryType));
+        if (mixinTypes != null && !mixinTypes.isEmpty()) {
+            props.put(JcrLexicon.MIXIN_TYPES, propertyFactory.create(JcrLexicon.MIXIN_TYPES, mixinTypes));
+        }
+        if (properties != null) {
+            for (Property property : properties) {
+                props.put(property.getName(), property);
+            }
+        }
+        boolean isFrozenNode = JcrNtLexicon.FROZEN_NODE.equals(primaryType);
+        for (Property property : props.values()) {
+            translator.setProperty(doc, property, null, usedBinaryKeys);
+            if (property.isReference()) {
+                spillReferences(key, property, isFrozenNode);
+            }
+        }
+
+        // Add the new node to its parent and open it ...
+        ChildReference ref = new ChildReference(key, name, 1);
+        Path path = paths.create(parent.path, name, parent.appendChild(ref));
+        openNodes.push(new Frame(key, doc, path, null));
+        if (indexWriter != null) {
+            pendingIndexEntries.add(new IndexEntry(key, path, primaryType, mixinTypes, props));
+        }
+        return key;
+    }
+
+    /**
+     * Write all of the remaining nodes, resolve the references, link the loaded content into the existing parent node, and add
+     * the remaining nodes to the indexes.
+     *
+     * @return the number of nodes that were loaded
+     */
+    public long finish() {
+        checkNotFinished();
+        try {
+            while (openNodes.size() > 1) {
+                close(openNodes.pop());
+            }
+            openNodes.peek().closeChildren();
+            commitBatch();
+            resolveReferences();
+            linkToParent(openNodes.peekLast());
+        } finally {
+            finished = true;
+            deleteReferencesFile();
+        }
+        LOGGER.debug("Bulk-loaded {0} nodes into workspace '{1}'", nodeCount, workspaceCache.getWorkspaceName());
+        return nodeCount;
+    }
+
+    /**
+     * Stop loading and discard the spilled references. The nodes that were already stored are left unreachable in the store.
+     */
+    public void abort() {
+        if (finished) return;
+        finished = true;
+        try {
+            if (txn != null) txn.rollback();
+        } catch (Exception e) {
+            LOGGER.debug(e, "Error while rolling back the bulk-load transaction");
+        } finally {
+            txn = null;
+            deleteReferencesFile();
+        }
+    }
+
+    private void checkNotFinished() {
+        if (finished) throw new IllegalStateException(JcrI18n.bulkLoadAlreadyFinished.text(workspaceCache.getWorkspaceName()));
+    }
+
+    private Frame openNode( NodeKey key ) {
+        for (Frame frame : openNodes) {
+            if (frame.key.equals(key)) return frame;
+        }
+        return null;
+    }
+
+    protected void close( Frame frame ) {
+        assert frame.doc != null;
+        frame.closeChildren();
+        String keyStr = frame.key.toString();
+        store(keyStr, frame.doc);
+        ++nodeCount;
+    }
+
+    protected void store( String key,
+                          EditableDocument doc ) {
+        if (txn == null) txn = begin();
+        if (documentStore.storeDocument(key, doc) != null) {
+            throw new DocumentAlreadyExistsException(key);
+        }
+        if (++storedInBatch >= batchSize) commitBatch();
+    }
+
+    protected void commitBatch() {
+        if (txn != null) {
+            commit(txn);
+            txn = null;
+        }
+        storedInBatch = 0;
+        if (!usedBinaryKeys.isEmpty()) {
+            try {
+                context.getBinaryStore().markAsUsed(usedBinaryKeys);
+            } catch (BinaryStoreException e) {
+                LOGGER.error(e, JcrI18n.errorMarkingBinaryValuesUsed, e.getMessage());
+            }
+            usedBinaryKeys.clear();
+        }
+        // Only the nodes that were stored can be indexed; the others are still open ...
+        for (Iterator<IndexEntry> iter = pendingIndexEntries.iterator(); iter.hasNext();) {
+            IndexEntry entry = iter.next();
+            if (openNode(entry.key) != null) continue;
+            indexWriter.add(workspaceCache.getWorkspaceName(), entry.key, entry.path, entry.primaryType, entry.mixinTypes,
+                            entry);
+            iter.remove();
+        }
+    }
+
+    protected void spillReferences( NodeKey referrer,
+                                    Property property,
+                                    boolean isFrozenNode ) {
+        // Like a session, count each referrer only once per property ...
+        Set<String> lines = new HashSet<>();
+        for (Object value : property) {
+            Reference reference = (Reference)value;
+            if (isFrozenNode && !reference.isWeak()) continue; // JCR 3.13.4.6
+            NodeKey target = nodeKeyFromReference(reference);
+            if (target == null) continue;
+            lines.add(target + "\t" + (reference.isWeak() ? 'W' : 'S') + "\t" + referrer);
+        }
+        try {
+            if (references == null) {
+                referencesFile = File.createTempFile("modeshape-bulk-load", ".refs");
+                references = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(referencesFile),
+                                                                       StandardCharsets.UTF_8));
+            }
+            for (String line : lines) {
+                references.write(line);
+                references.newLine();
+            }
+        } catch (IOException e) {
+            throw new SystemFailureException(e);
+        }
+    }
+
+    private NodeKey nodeKeyFromReference( Reference reference ) {
+        if (reference instanceof NodeKeyReference) {
+            return ((NodeKeyReference)reference).getNodeKey();
+        } else if (reference instanceof StringReference) {
+            return new NodeKey(reference.getString());
+        }
+        return null;
+    }
+
+    /**
+     * Apply the spilled references to the referenced documents. The file is read in chunks, so that at most
+     * {@link #REFERENCE_CHUNK_SIZE} references are kept in memory; a document referenced from several chunks is simply edited
+     * once per chunk.
+     */
+    protected void resolveReferences() {
+        if (references == null) return;
+        long dangling = 0L;
+        try {
+            references.close();
+            references = null;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(referencesFile),
+                                                                                  StandardCharsets.UTF_8))) {
+                Map<String, Referrers> chunk = new HashMap<>();
+                int count = 0;
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    Referrers referrers = chunk.get(parts[0]);
+                    if (referrers == null) {
+                        referrers = new Referrers();
+                        chunk.put(parts[0], referrers);
+                    }
+                    referrers.add(new NodeKey(parts[2]), "W".equals(parts[1]) ? ReferenceType.WEAK : ReferenceType.STRONG);
+                    if (++count >= REFERENCE_CHUNK_SIZE) {
+                        dangling += applyReferrers(chunk);
+                        chunk.clear();
+                        count = 0;
+                    }
+                }
+                dangling += applyReferrers(chunk);
+            }
+        } catch (IOException e) {
+            throw new SystemFailureException(e);
+        }
+        if (dangling > 0L) {
+            LOGGER.warn(JcrI18n.bulkLoadDanglingReferences, dangling, workspaceCache.getWorkspaceName());
+        }
+    }
+
+    private long applyReferrers( Map<String, Referrers> referrersByTarget ) {
+        long dangling = 0L;
+        List<String> batch = new ArrayList<>(batchSize);
+        for (Iterator<String> iter = referrersByTarget.keySet().iterator(); iter.hasNext();) {
+            batch.add(iter.next());
+            if (batch.size() == batchSize || !iter.hasNext()) {
+                Transaction referrersTxn = begin();
+                documentStore.prepareDocumentsForUpdate(batch);
+                for (String target : batch) {
+                    EditableDocument doc = documentStore.edit(target, false, false);
+                    if (doc == null) {
+                        ++dangling;
+                        continue;
+                    }
+                    Referrers referrers = referrersByTarget.get(target);
+                    translator.addReferrers(doc, ReferenceType.STRONG, referrers.strong);
+                    translator.addReferrers(doc, ReferenceType.WEAK, referrers.weak);
+                }
+                commit(referrersTxn);
+                // The referenced nodes may be cached, so evict them ...
+                Set<NodeKey> changed = new HashSet<>();
+                for (String target : batch) {
+                    changed.add(new NodeKey(target));
+                }
+                notifyChanged(changed);
+                batch.clear();
+            }
+        }
+        return dangling;
+    }
+
+    /**
+     * Append the blocks of children that were written for the existing parent to the parent's chain of blocks, so that all of the
+     * loaded content becomes reachable at once.
+     *
+     * @param parent the frame of the existing parent; may not be null
+     */
+    protected void linkToParent( Frame parent ) {
+        if (parent.total == 0L) return;
+        String parentKey = parent.key.toString();
+        Transaction linkTxn = begin();
+        documentStore.prepareDocumentsForUpdate(Collections.singleton(parentKey));
+        EditableDocument doc = documentStore.edit(parentKey, false, false);
+        if (doc == null) throw new DocumentNotFoundException(parentKey);
+        DocumentTranslator.ChildReferencesInfo info = translator.getChildReferencesInfo(doc);
+        EditableDocument childInfo = doc.getOrCreateDocument(CHILDREN_INFO);
+        long existing = 0L;
+        if (info == null || info.nextKey == null) {
+            // The existing children are all in the parent's document ...
+            existing = doc.getOrCreateArray(CHILDREN).size();
+            childInfo.setNumber(BLOCK_SIZE, existing);
+            childInfo.setString(NEXT_BLOCK, parent.firstBlockKey);
+        } else {
+            existing = info.totalSize;
+            EditableDocument lastBlock = documentStore.edit(info.lastKey, false, false);
+            if (lastBlock == null) throw new DocumentNotFoundException(info.lastKey);
+            lastBlock.getOrCreateDocument(CHILDREN_INFO).setString(NEXT_BLOCK, parent.firstBlockKey);
+        }
+        childInfo.setNumber(COUNT, existing + parent.total);
+        childInfo.setString(LAST_BLOCK, parent.blockKey);
+        commit(linkTxn);
+        notifyChanged(Collections.singleton(parent.key));
+    }
+
+    private void notifyChanged( Set<NodeKey> changedNodes ) {
+        RecordingChanges changes = new RecordingChanges(context.getId(), context.getProcessId(),
+                                                        workspaceCache.getRepositoryKey(), workspaceCache.getWorkspaceName(),
+                                                        journalId);
+        changes.setChangedNodes(changedNodes);
+        changes.freeze(context.getSecurityContext().getUserName(), context.getData(),
+                       context.getValueFactories().getDateFactory().create());
+        workspaceCache.changed(changes);
+    }
+
+    private Transaction begin() {
+        try {
+            return transactions.begin();
+        } catch (Exception e) {
+            throw new SystemFailureException(e);
+        }
+    }
+
+    private void commit( Transaction txn ) {
+        try {
+            txn.commit();
+        } catch (Exception e) {
+            throw new SystemFailureException(e);
+        }
+    }
+
+    private void deleteReferencesFile() {
+        if (references != null) {
+            try {
+                references.close();
+            } catch (IOException e) {
+                LOGGER.debug(e, "Error while closing '{0}'", referencesFile);
+            }
+            references = null;
+        }
+        if (referencesFile != null) {
+            if (!referencesFile.delete()) referencesFile.deleteOnExit();
+            referencesFile = null;
+        }
+    }
+
+    /**
+     * A node to which children can still be added. The first block of children of a new node is its own document, while all of
+     * the new children of the existing parent are written to separate blocks that are linked in by {@link #finish()}.
+     */
+    protected final class Frame {
+        protected final NodeKey key;
+        protected final EditableDocument doc;
+        protected final Path path;
+        private final CachedNode existing;
+        private final Map<Name, Integer> childNameCounts = new HashMap<>();
+        protected EditableDocument block;
+        protected String blockKey;
+        protected String firstBlockKey;
+        private int blockSize;
+        protected long total;
+
+        protected Frame( NodeKey key,
+                         EditableDocument doc,
+                         Path path,
+                         CachedNode existing ) {
+            this.key = key;
+            this.doc = doc;
+            this.path = path;
+            this.existing = existing;
+            this.block = doc;
+        }
+
+        /**
+         * Append a child, writing the current block first if it is full.
+         *
+         * @param ref the reference to the child; may not be null
+         * @return the same-name-sibling index of the child
+         */
+        protected int appendChild( ChildReference ref ) {
+            if (block == null) {
+                // The first new child of the existing parent ...
+                blockKey = key.withRandomId().toString();
+                firstBlockKey = blockKey;
+                block = Schematic.newDocument();
+            } else if (blockSize >= childCountTarget) {
+                String nextKey = key.withRandomId().toString();
+                EditableDocument info = block.getOrCreateDocument(CHILDREN_INFO);
+                info.setNumber(BLOCK_SIZE, blockSize);
+                info.setString(NEXT_BLOCK, nextKey);
+                if (blockKey == null) {
+                    // The first block is the node's own document, which is stored when the node is closed ...
+                    firstBlockKey = nextKey;
+                } else {
+                    store(blockKey, block);
+                }
+                blockKey = nextKey;
+                block = Schematic.newDocument();
+                blockSize = 0;
+            }
+            block.getOrCreateArray(CHILDREN).add(translator.fromChildReference(ref));
+            ++blockSize;
+            ++total;
+
+            Name name = ref.getName();
+            Integer count = childNameCounts.get(name);
+            if (count == null) {
+                count = existing != null ? existing.getChildReferences(workspaceCache).getChildCount(name) : 0;
+            }
+            childNameCounts.put(name, ++count);
+            return count;
+        }
+
+        /**
+         * Write the last block of children and record the number of children.
+         */
+        protected void closeChildren() {
+            if (blockKey != null) {
+                block.getOrCreateDocument(CHILDREN_INFO).setNumber(BLOCK_SIZE, blockSize);
+                store(blockKey, block);
+            }
+            if (doc != null && total > 0L) {
+                EditableDocument info = doc.getOrCreateDocument(CHILDREN_INFO);
+                info.setNumber(COUNT, total);
+                if (blockKey != null) info.setString(LAST_BLOCK, blockKey);
+            }
+        }
+    }
+
+    protected static final class Referrers {
+        protected final Map<NodeKey, Integer> strong = new HashMap<>();
+        protected final Map<NodeKey, Integer> weak = new HashMap<>();
+
+        protected void add( NodeKey referrer,
+                            ReferenceType type ) {
+            Map<NodeKey, Integer> counts = type == ReferenceType.WEAK ? weak : strong;
+            Integer count = counts.get(referrer);
+            counts.put(referrer, count == null ? 1 : count + 1);
+        }
+    }
+
+    protected static final class IndexEntry implements CachedNode.Properties {
+        protected final NodeKey key;
+        protected final Path path;
+        protected final Name primaryType;
+        protected final Set<Name> mixinTypes;
+        private final Map<Name, Property> properties;
+
+        protected IndexEntry( NodeKey key,
+                              Path path,
+                              Name primaryType,
+                              Set<Name> mixinTypes,
+                              Map<Name, Property> properties ) {
+            this.key = key;
+            this.path = path;
+            this.primaryType = primaryType;
+            this.mixinTypes = mixinTypes != null ? mixinTypes : Collections.<Name>emptySet();
+            this.properties = properties;
+        }
+
+        @Override
+        public Property getProperty( Name name ) {
+            return properties.get(name);
+        }
+
+        @Override
+        public Iterator<Property> iterator() {
+            return properties.values().iterator();
+        }
+    }
+}
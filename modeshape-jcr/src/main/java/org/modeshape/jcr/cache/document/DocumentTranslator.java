@@ -790,6 +790,20 @@ public class DocumentTranslator implements DocumentConstants {
         }
     }
 
+    /**
+     * Remove the reference to the given child from the supplied node document (or from any of its blocks of children), without
+     * changing the child node.
+     *
+     * @param document the document of the parent node; may not be null
+     * @param childKey the key of the child; may not be null
+     */
+    public void removeChildReference( EditableDocument document,
+                                      NodeKey childKey ) {
+        ChangedChildren changedChildren = new ChangedChildren();
+        changedChildren.remove(childKey);
+        changeChildren(document, changedChildren, null);
+    }
+
     protected long insertChildren( EditableDocument document,
                                    Map<NodeKey, Insertions> insertionsByBeforeKey,
                                    Set<NodeKey> removals,
@@ -1058,6 +1072,22 @@ public class DocumentTranslator implements DocumentConstants {
         }
     }
 
+    /**
+     * Add to the supplied document the given numbers of references from each of the referrers.
+     *
+     * @param document the document of the referenced node; may not be null
+     * @param type the type of the references; must be either {@link ReferenceType#STRONG} or {@link ReferenceType#WEAK}
+     * @param referrerCounts the number of references keyed by the referrer; may not be null
+     */
+    public void addReferrers( EditableDocument document,
+                              ReferenceType type,
+                              Map<NodeKey, Integer> referrerCounts ) {
+        assert type != ReferenceType.BOTH;
+        if (referrerCounts.isEmpty()) return;
+        EditableDocument referrers = document.getOrCreateDocument(REFERRERS);
+        updateReferrers(referrers.getOrCreateDocument(type == ReferenceType.STRONG ? STRONG : WEAK), referrerCounts);
+    }
+
     private void updateReferrers( EditableDocument owningDocument,
                                   Map<NodeKey, Integer> referrersCountDelta ) {
         for (NodeKey strongKey : referrersCountDelta.keySet()) {
@@ -1202,7 +1232,13 @@ public class DocumentTranslator implements DocumentConstants {
         return null;
     }
 
-    protected final String keyForBinaryReferenceDocument( String sha1 ) {
+    /**
+     * Get the key of the document that holds the reference count of the binary value with the supplied SHA-1 hash.
+     *
+     * @param sha1 the SHA-1 hash of the binary value; may not be null
+     * @return the document key; never null
+     */
+    protected static String keyForBinaryReferenceDocument( String sha1 ) {
         return sha1 + "-ref";
     }
 
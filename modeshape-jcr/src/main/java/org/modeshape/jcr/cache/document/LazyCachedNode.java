@@ -286,27 +286,35 @@ public class LazyCachedNode implements CachedNode, Serializable {
 
     @Override
     public Path getPath( NodeCache cache ) {
-        WorkspaceCache wsCache = workspaceCache(cache);
-        CachedNode parent = parent(wsCache);
-        if (parent != null) {
-            Path parentPath = parent.getPath(wsCache);
-            return wsCache.pathFactory().create(parentPath, getSegment(wsCache));
-        }
-        // check that the node hasn't been removed in the meantime
-        if (wsCache.getNode(key) == null) {
-            throw new NodeNotFoundException(key);
-        }
-        // This is the root node ...
-        return wsCache.rootPath();
+        return getPath(workspaceCache(cache), null);
     }
 
     @Override
     public Path getPath( PathCache pathCache ) throws NodeNotFoundException {
-        NodeCache cache = pathCache.getCache();
-        WorkspaceCache wsCache = workspaceCache(cache);
+        return getPath(workspaceCache(pathCache.getCache()), pathCache);
+    }
+
+    private Path getPath( WorkspaceCache wsCache,
+                          PathCache pathCache ) {
+        WorkspacePaths paths = wsCache.paths();
+        if (paths == null) return computePath(wsCache, pathCache);
+        // The workspace caches the paths of its nodes, so use it if possible ...
+        Path path = paths.pathFor(key);
+        if (path != null) return path;
+        long generation = paths.generation();
+        // Only cache the path if this is the current representation of an internal node (external content can change
+        // without our knowing) ...
+        boolean cacheable = wsCache.isCurrent(this) && wsCache.sourceKey().equals(key.getSourceKey());
+        path = computePath(wsCache, pathCache);
+        if (cacheable) paths.putPath(key, path, generation);
+        return path;
+    }
+
+    private Path computePath( WorkspaceCache wsCache,
+                              PathCache pathCache ) {
         CachedNode parent = parent(wsCache);
         if (parent != null) {
-            Path parentPath = pathCache.getPath(parent);
+            Path parentPath = pathCache != null ? pathCache.getPath(parent) : parent.getPath(wsCache);
             return wsCache.pathFactory().create(parentPath, getSegment(wsCache));
         }
         // check that the node hasn't been removed in the meantime
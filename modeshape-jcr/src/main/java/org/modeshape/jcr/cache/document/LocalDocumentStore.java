@@ -18,6 +18,7 @@ package org.modeshape.jcr.cache.document;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import javax.transaction.HeuristicMixedException;
@@ -34,6 +35,7 @@ import org.infinispan.schematic.SchematicDb;
 import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableDocument;
+import org.infinispan.schematic.internal.SchematicEntryLiteral;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.jcr.InfinispanUtil;
 import org.modeshape.jcr.InfinispanUtil.Combiner;
@@ -50,6 +52,7 @@ import org.modeshape.jcr.value.binary.ExternalBinaryValue;
 public class LocalDocumentStore implements DocumentStore {
 
     private final SchematicDb database;
+    private final WorkspaceOverlays overlays = new WorkspaceOverlays();
     private String localSourceKey;
 
     /**
@@ -63,11 +66,27 @@ public class LocalDocumentStore implements DocumentStore {
 
     @Override
     public boolean containsKey( String key ) {
-        return database.containsKey(key);
+        return get(key) != null;
     }
 
     @Override
     public SchematicEntry get( String key ) {
+        SchematicEntry entry = database.get(key);
+        if (entry != null) {
+            return WorkspaceOverlays.isTombstone(entry.getContent()) ? null : entry;
+        }
+        return overlays.isEmpty() ? null : sharedEntry(key);
+    }
+
+    /**
+     * Get the entry that is stored under the given key, without resolving the documents shared with copy-on-write workspaces and
+     * without hiding the tombstones of documents removed from copy-on-write workspaces. This is meant for backing up content,
+     * which must preserve those tombstones.
+     * 
+     * @param key the document key; may not be null
+     * @return the stored entry (which may be a tombstone), or null if there is no entry stored under the key
+     */
+    public SchematicEntry getStored( String key ) {
         return database.get(key);
     }
 
@@ -102,7 +121,19 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public SchematicEntry putIfAbsent( String key,
                                        Document document ) {
-        return database.putIfAbsent(key, document);
+        if (!overlays.isEmpty() && !database.containsKey(key)) {
+            SchematicEntry shared = sharedEntry(key);
+            if (shared != null) return shared;
+            beforeWrite(key);
+        }
+        SchematicEntry existing = database.putIfAbsent(key, document);
+        if (existing != null && WorkspaceOverlays.isTombstone(existing.getContent())) {
+            // The key was removed from a copy-on-write workspace, so it is really absent ...
+            beforeWrite(key);
+            database.put(key, document);
+            return null;
+        }
+        return existing;
     }
 
     /**
@@ -114,6 +145,7 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public void put( String key,
                      Document document ) {
+        beforeWrite(key);
         database.put(key, document);
     }
 
@@ -126,6 +158,16 @@ public class LocalDocumentStore implements DocumentStore {
         database.put(entryDocument);
     }
 
+    /**
+     * Store all of the supplied documents in the local db with a single cache operation. Like {@link #put(Document)}, this is
+     * meant for restoring content and therefore bypasses the workspace overlays.
+     * 
+     * @param entryDocuments the documents that each contain the metadata document, content document, and key; may not be null
+     */
+    public void putAll( Collection<Document> entryDocuments ) {
+        database.putAll(entryDocuments);
+    }
+
     /**
      * Replace the existing document and metadata at the given key with the document that is supplied. This method does nothing if
      * there is not an existing entry at the given key.
@@ -135,11 +177,25 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public void replace( String key,
                          Document document ) {
+        beforeWrite(key);
+        copyOnWrite(key);
         database.replace(key, document);
     }
 
     @Override
     public boolean remove( String key ) {
+        if (overlays.isEmpty()) {
+            return database.remove(key) != null;
+        }
+        beforeWrite(key);
+        String workspaceKey = WorkspaceOverlays.workspaceKeyOf(key, localSourceKey);
+        String sourceWorkspaceKey = workspaceKey != null ? overlays.sourceOf(workspaceKey) : null;
+        if (sourceWorkspaceKey != null && get(WorkspaceOverlays.translateKey(key, workspaceKey, sourceWorkspaceKey)) != null) {
+            // The source still has the document, so hide it from this copy-on-write workspace ...
+            boolean existed = get(key) != null;
+            database.put(key, WorkspaceOverlays.tombstone());
+            return existed;
+        }
         return database.remove(key) != null;
     }
 
@@ -151,14 +207,128 @@ public class LocalDocumentStore implements DocumentStore {
     @Override
     public EditableDocument edit( String key,
                                   boolean createIfMissing ) {
-        return database.editContent(key, createIfMissing);
+        beforeWrite(key);
+        copyOnWrite(key);
+        return withoutTombstone(database.editContent(key, createIfMissing), createIfMissing);
     }
 
     @Override
     public EditableDocument edit( String key,
                                   boolean createIfMissing,
                                   boolean acquireLock ) {
-        return database.editContent(key, createIfMissing, acquireLock);
+        beforeWrite(key);
+        copyOnWrite(key);
+        return withoutTombstone(database.editContent(key, createIfMissing, acquireLock), createIfMissing);
+    }
+
+    private EditableDocument withoutTombstone( EditableDocument document,
+                                               boolean createIfMissing ) {
+        if (!WorkspaceOverlays.isTombstone(document)) return document;
+        if (!createIfMissing) return null;
+        // Reuse the entry as if it were new ...
+        document.removeAll();
+        return document;
+    }
+
+    /**
+     * Register a copy-on-write workspace, which initially shares all of its documents with the source workspace. Reading a
+     * document that is not owned by the copy-on-write workspace returns the corresponding document of the source workspace (with
+     * the node keys translated into the copy-on-write workspace), while the first write of such a document copies it into the
+     * copy-on-write workspace. Any document of the source workspace is also copied into the copy-on-write workspace right before
+     * the source document is changed or removed, so that changes to the source workspace are never visible in the copy-on-write
+     * workspace.
+     * 
+     * @param workspaceKey the key of the copy-on-write workspace; may not be null
+     * @param sourceWorkspaceKey the key of the workspace with which the documents are shared; may not be null
+     */
+    public void addWorkspaceOverlay( String workspaceKey,
+                                     String sourceWorkspaceKey ) {
+        overlays.add(workspaceKey, sourceWorkspaceKey);
+    }
+
+    /**
+     * Unregister a copy-on-write workspace, which should only be done when the workspace is destroyed.
+     * 
+     * @param workspaceKey the key of the copy-on-write workspace; may not be null
+     */
+    public void removeWorkspaceOverlay( String workspaceKey ) {
+        overlays.remove(workspaceKey);
+    }
+
+    /**
+     * Make sure that the document with the given key is owned by its workspace, copying it from the source workspace if the
+     * document belongs to a copy-on-write workspace and has not yet been copied. All writes through this store already do this,
+     * but callers that release resources referenced by a document before removing the document (e.g., binary values) need to
+     * do this first.
+     * 
+     * @param key the document key; may not be null
+     * @return true if the document was copied, or false otherwise
+     */
+    public boolean copyOnWrite( String key ) {
+        if (overlays.isEmpty() || database.containsKey(key)) return false;
+        SchematicEntry shared = sharedEntry(key);
+        if (shared == null) return false;
+        beforeWrite(key);
+        Document copy = shared.getContent();
+        incrementBinaryReferences(copy);
+        database.put(key, copy);
+        return true;
+    }
+
+    /**
+     * Get the (translated) entry of the source workspace for a key in a copy-on-write workspace that has no document of its own.
+     * 
+     * @param key the document key; may not be null
+     * @return the entry of the source workspace with all keys translated, or null if the key doesn't belong to a copy-on-write
+     *         workspace or the source has no such document
+     */
+    private SchematicEntry sharedEntry( String key ) {
+        String workspaceKey = WorkspaceOverlays.workspaceKeyOf(key, localSourceKey);
+        if (workspaceKey == null) return null;
+        String sourceWorkspaceKey = overlays.sourceOf(workspaceKey);
+        if (sourceWorkspaceKey == null) return null;
+        // The source may itself be a copy-on-write workspace ...
+        SchematicEntry sourceEntry = get(WorkspaceOverlays.translateKey(key, workspaceKey, sourceWorkspaceKey));
+        if (sourceEntry == null) return null;
+        return new SchematicEntryLiteral(key, WorkspaceOverlays.translate(sourceEntry.getContent(), sourceWorkspaceKey,
+                                                                          workspaceKey));
+    }
+
+    /**
+     * Preserve the current document with the given key in all copy-on-write workspaces created from the document's workspace
+     * that still share the document, before the document is written.
+     * 
+     * @param key the key of the document that is about to be written; may not be null
+     */
+    private void beforeWrite( String key ) {
+        if (overlays.isEmpty()) return;
+        String workspaceKey = WorkspaceOverlays.workspaceKeyOf(key, localSourceKey);
+        if (workspaceKey == null) return;
+        for (String overlayKey : overlays.overlaysOf(workspaceKey)) {
+            String keyInOverlay = WorkspaceOverlays.translateKey(key, workspaceKey, overlayKey);
+            if (database.containsKey(keyInOverlay)) continue;
+            SchematicEntry current = get(key);
+            Document copy = WorkspaceOverlays.tombstone();
+            if (current != null) {
+                copy = WorkspaceOverlays.translate(current.getContent(), workspaceKey, overlayKey);
+                incrementBinaryReferences(copy);
+            }
+            // The overlay may itself be the source of other copy-on-write workspaces ...
+            beforeWrite(keyInOverlay);
+            database.put(keyInOverlay, copy);
+        }
+    }
+
+    private void incrementBinaryReferences( Document document ) {
+        Set<String> binaryReferenceKeys = new HashSet<>();
+        WorkspaceOverlays.collectBinaryReferenceKeys(document, binaryReferenceKeys);
+        for (String binaryReferenceKey : binaryReferenceKeys) {
+            EditableDocument usage = database.editContent(binaryReferenceKey, false);
+            if (usage != null) {
+                Long count = usage.getLong(DocumentConstants.REFERENCE_COUNT);
+                usage.setNumber(DocumentConstants.REFERENCE_COUNT, count != null ? count + 1 : 1L);
+            }
+        }
     }
 
     @Override
@@ -384,7 +554,7 @@ public class LocalDocumentStore implements DocumentStore {
                 try {
                     txnMgr.begin();
                     EditableDocument doc = db.editContent(key, false, true);
-                    if (doc != null) {
+                    if (doc != null && !WorkspaceOverlays.isTombstone(doc)) {
                         if (operation.execute(key, doc)) {
                             results.recordModified();
                         } else {
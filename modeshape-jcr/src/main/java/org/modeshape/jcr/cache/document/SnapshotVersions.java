@@ -0,0 +1,312 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+
+/**
+ * The versions of a workspace's nodes that are still needed by open {@link WorkspaceSnapshot snapshots}.
+ * <p>
+ * Each set of changes applied to the workspace cache gets the next version number, and each snapshot sees the workspace as of the
+ * version that was current when the snapshot was opened. While at least one snapshot is open, the representation of each node
+ * that is changed (or a marker for each node that is created) is retained along with the version that superseded it, so that
+ * the snapshots can continue to see the earlier representation. Versions are discarded once no open snapshot needs them, and the
+ * number of retained versions is bounded.
+ * </p>
+ * <p>
+ * The representation of a changed node is taken from the workspace cache when the node is still cached. Otherwise it is taken
+ * from the nodes that the snapshots have {@link #remember remembered} reading, so that a node read through a snapshot and then
+ * evicted from the workspace cache does not change under the snapshot. The number of remembered nodes is also bounded, and
+ * they are discarded once no snapshot is open.
+ * </p>
+ */
+@ThreadSafe
+final class SnapshotVersions {
+
+    static final int DEFAULT_MAX_RETAINED_VERSIONS = 100000;
+
+    private static final Logger LOGGER = Logger.getLogger(SnapshotVersions.class);
+    private static final long NO_OPEN_SNAPSHOTS = Long.MAX_VALUE;
+
+    private final AtomicLong version = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> openSnapshots = new TreeMap<>();
+    private volatile long oldestOpenSnapshot = NO_OPEN_SNAPSHOTS;
+    private final ConcurrentMap<NodeKey, RetainedVersion> retained = new ConcurrentHashMap<>();
+    private final AtomicInteger retainedCount = new AtomicInteger();
+    private final ConcurrentMap<NodeKey, ReadVersion> read = new ConcurrentHashMap<>();
+    private final AtomicInteger readCount = new AtomicInteger();
+    private final int maxRetainedVersions;
+
+    SnapshotVersions() {
+        this(DEFAULT_MAX_RETAINED_VERSIONS);
+    }
+
+    SnapshotVersions( int maxRetainedVersions ) {
+        assert maxRetainedVersions > 0;
+        this.maxRetainedVersions = maxRetainedVersions;
+    }
+
+    /**
+     * Register a new snapshot of the current version.
+     *
+     * @return the version seen by the snapshot
+     */
+    long open() {
+        // Wait for any changes being applied, so the snapshot sees either all or none of them ...
+        lock.writeLock().lock();
+        try {
+            long current = version.get();
+            Integer count = openSnapshots.get(current);
+            openSnapshots.put(current, count != null ? count + 1 : 1);
+            oldestOpenSnapshot = openSnapshots.keySet().iterator().next();
+            return current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregister a snapshot, and discard the retained versions that are no longer needed by any snapshot.
+     *
+     * @param snapshotVersion the version seen by the snapshot
+     */
+    void close( long snapshotVersion ) {
+        lock.writeLock().lock();
+        try {
+            Integer count = openSnapshots.remove(snapshotVersion);
+            if (count != null && count > 1) openSnapshots.put(snapshotVersion, count - 1);
+            if (openSnapshots.isEmpty()) {
+                oldestOpenSnapshot = NO_OPEN_SNAPSHOTS;
+                retained.clear();
+                retainedCount.set(0);
+                read.clear();
+                readCount.set(0);
+            } else {
+                oldestOpenSnapshot = openSnapshots.keySet().iterator().next();
+                discardVersionsSupersededBy(oldestOpenSnapshot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void discardVersionsSupersededBy( long oldestVersion ) {
+        int count = 0;
+        for (Iterator<Map.Entry<NodeKey, RetainedVersion>> iter = retained.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<NodeKey, RetainedVersion> entry = iter.next();
+            RetainedVersion newest = entry.getValue();
+            if (newest.supersededBy <= oldestVersion) {
+                iter.remove();
+                continue;
+            }
+            // The versions are ordered from newest to oldest, so cut off the older versions that no snapshot needs ...
+            ++count;
+            RetainedVersion version = newest;
+            while (version.older != null) {
+                if (version.older.supersededBy <= oldestVersion) {
+                    version.older = null;
+                } else {
+                    version = version.older;
+                    ++count;
+                }
+            }
+        }
+        retainedCount.set(count);
+    }
+
+    /**
+     * Begin applying a set of changes. Every call must be followed by a call to {@link #endChanges()}.
+     *
+     * @return the version of the changes, which is to be passed to {@link #retain}
+     */
+    long beginChanges() {
+        lock.readLock().lock();
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Get the most recent version of the changes, which a snapshot obtains before reading a node from the workspace cache and
+     * passes to {@link #remember}.
+     *
+     * @return the current version
+     */
+    long current() {
+        return version.get();
+    }
+
+    /**
+     * Finish applying a set of changes.
+     */
+    void endChanges() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * Determine whether there are any open snapshots, in which case the versions of changed nodes should be {@link #retain
+     * retained}.
+     *
+     * @return true if there is at least one open snapshot
+     */
+    boolean isRetaining() {
+        return oldestOpenSnapshot != NO_OPEN_SNAPSHOTS;
+    }
+
+    /**
+     * Retain the representation of a node that was changed, if any open snapshot might need it.
+     *
+     * @param key the key of the node; may not be null
+     * @param node the representation of the node before the changes, or null if the node did not exist before the changes
+     * @param supersededBy the version of the changes, obtained from {@link #beginChanges()}
+     */
+    void retain( NodeKey key,
+                 CachedNode node,
+                 long supersededBy ) {
+        if (oldestOpenSnapshot >= supersededBy) return;
+        if (retainedCount.get() >= maxRetainedVersions) {
+            LOGGER.debug("Unable to retain more than {0} versions for snapshots; snapshots will see the changes to '{1}'",
+                         maxRetainedVersions, key);
+            return;
+        }
+        for (;;) {
+            RetainedVersion newest = retained.get(key);
+            RetainedVersion version = new RetainedVersion(node, supersededBy, newest);
+            if (newest == null ? retained.putIfAbsent(key, version) == null : retained.replace(key, newest, version)) break;
+        }
+        retainedCount.incrementAndGet();
+    }
+
+    /**
+     * Remember the representation of a node that a snapshot read from the workspace cache, so that it can be retained if the
+     * node is changed after being evicted from the workspace cache. Nothing is remembered if the node was changed after the
+     * read began, since the representation may predate that change.
+     *
+     * @param key the key of the node; may not be null
+     * @param node the representation of the node; may be null if the node does not exist
+     * @param readAt the {@link #current() version} obtained before the node was read
+     */
+    void remember( NodeKey key,
+                   CachedNode node,
+                   long readAt ) {
+        if (node == null || !isRetaining()) return;
+        ReadVersion existing = read.get(key);
+        if (existing != null) {
+            // Either the node is already remembered, or it was changed after this read began ...
+            if (existing.node != null || existing.version > readAt) return;
+            read.replace(key, existing, new ReadVersion(node, readAt));
+            return;
+        }
+        if (readCount.get() >= maxRetainedVersions) return;
+        if (read.putIfAbsent(key, new ReadVersion(node, readAt)) == null) readCount.incrementAndGet();
+    }
+
+    /**
+     * Record that a node is being changed, and obtain the representation of the node that a snapshot read before the change.
+     *
+     * @param key the key of the node; may not be null
+     * @param supersededBy the version of the changes, obtained from {@link #beginChanges()}
+     * @return the representation read before the change, or null if the node was not remembered
+     */
+    CachedNode changed( NodeKey key,
+                        long supersededBy ) {
+        if (!isRetaining()) return null;
+        // Once the bound is reached nothing more is remembered, so no marker is needed ...
+        if (readCount.get() >= maxRetainedVersions && !read.containsKey(key)) return null;
+        // Leave a marker so that reads which began before the change don't remember an earlier representation ...
+        ReadVersion previous = read.put(key, new ReadVersion(null, supersededBy));
+        if (previous == null) {
+            readCount.incrementAndGet();
+            return null;
+        }
+        // A node read after these changes began already reflects them ...
+        return previous.version < supersededBy ? previous.node : null;
+    }
+
+    /**
+     * Find the representation of a node as seen by the snapshot of the given version.
+     *
+     * @param key the key of the node; may not be null
+     * @param snapshotVersion the version seen by the snapshot
+     * @return the retained version, or null if the node has not been changed since the snapshot's version (or if that version
+     *         could not be retained)
+     */
+    RetainedVersion versionAt( NodeKey key,
+                               long snapshotVersion ) {
+        RetainedVersion version = retained.get(key);
+        RetainedVersion result = null;
+        while (version != null && version.supersededBy > snapshotVersion) {
+            // This version was still current at the snapshot's version, but maybe an older one was too ...
+            result = version;
+            version = version.older;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of versions that are retained
+     */
+    int retainedCount() {
+        return retainedCount.get();
+    }
+
+    /**
+     * The representation of a node read by a snapshot and the version obtained before it was read, or a marker (with no
+     * representation) for the version that changed the node.
+     */
+    private static final class ReadVersion {
+        protected final CachedNode node;
+        protected final long version;
+
+        protected ReadVersion( CachedNode node,
+                               long version ) {
+            this.node = node;
+            this.version = version;
+        }
+    }
+
+    static final class RetainedVersion {
+        private final CachedNode node;
+        protected final long supersededBy;
+        protected volatile RetainedVersion older;
+
+        protected RetainedVersion( CachedNode node,
+                                   long supersededBy,
+                                   RetainedVersion older ) {
+            this.node = node;
+            this.supersededBy = supersededBy;
+            this.older = older;
+        }
+
+        /**
+         * @return the representation of the node, or null if the node did not exist
+         */
+        CachedNode node() {
+            return node;
+        }
+    }
+}
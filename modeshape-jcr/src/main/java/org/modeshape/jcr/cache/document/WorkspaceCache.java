@@ -32,8 +32,10 @@ import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
+import org.modeshape.jcr.cache.change.Change;
 import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
+import org.modeshape.jcr.cache.change.NodeAdded;
 import org.modeshape.jcr.federation.ExternalDocumentStore;
 import org.modeshape.jcr.value.NameFactory;
 import org.modeshape.jcr.value.Path;
@@ -62,6 +64,8 @@ public class WorkspaceCache implements DocumentCache {
     private final ChangeBus changeBus;
     private final ChangeSetListener systemChangeNotifier;
     private final ChangeSetListener nonSystemChangeNotifier;
+    private final SnapshotVersions versions;
+    private final WorkspacePaths paths;
     private volatile boolean closed = false;
 
     public WorkspaceCache( ExecutionContext context,
@@ -94,6 +98,8 @@ public class WorkspaceCache implements DocumentCache {
         this.pathFactory = context.getValueFactories().getPathFactory();
         this.nameFactory = context.getValueFactories().getNameFactory();
         this.nodesByKey = cache;
+        this.versions = new SnapshotVersions();
+        this.paths = new WorkspacePaths();
         if (systemWorkspace != null) {
             // This is not the system workspace, so we have to listen both asynchronously and synchronously ...
             this.systemChangeNotifier = new SystemChangeNotifier(systemWorkspace.getWorkspaceName());
@@ -124,6 +130,9 @@ public class WorkspaceCache implements DocumentCache {
         this.nodesByKey = cache;
         this.systemChangeNotifier = null;
         this.nonSystemChangeNotifier = null;
+        // snapshots can only be taken of (and paths are only cached by) the shared workspace cache ...
+        this.versions = null;
+        this.paths = null;
         //the change bus is not copied on purpose because this ctr should only be used for creating lightweight, "transient" instances
         this.changeBus = null;
     }
@@ -206,6 +215,19 @@ public class WorkspaceCache implements DocumentCache {
         return sourceKey;
     }
 
+    final boolean isCurrent( CachedNode node ) {
+        return nodesByKey.get(node.getKey()) == node;
+    }
+
+    /**
+     * Get the cache of the paths of this workspace's nodes.
+     *
+     * @return the paths, or null if this workspace cache does not cache paths
+     */
+    final WorkspacePaths paths() {
+        return paths;
+    }
+
     final void purge( Iterable<NodeKey> nodeKeys ) {
         for (NodeKey nodeKey : nodeKeys) {
             this.nodesByKey.remove(nodeKey);
@@ -269,6 +291,46 @@ public class WorkspaceCache implements DocumentCache {
         return translator.childReferenceFrom(doc);
     }
 
+    /**
+     * Find the key of the node at the supplied path. The keys of recently-resolved paths are cached, so resolving a path again
+     * does not require walking the nodes along the path.
+     *
+     * @param path the absolute and normalized path; may not be null
+     * @return the key of the node at the path, or null if there is no such node
+     */
+    public NodeKey getNodeKey( Path path ) {
+        checkNotClosed();
+        assert path.isAbsolute() && path.isNormalized();
+        if (path.isRoot()) return rootKey;
+        long generation = 0L;
+        NodeKey startKey = rootKey;
+        int start = 0;
+        if (paths != null) {
+            generation = paths.generation();
+            NodeKey key = paths.keyFor(path);
+            if (key != null) return key;
+            // Siblings are often resolved one after the other, so start with the parent if it's cached ...
+            NodeKey parentKey = paths.keyFor(path.getParent());
+            if (parentKey != null) {
+                startKey = parentKey;
+                start = path.size() - 1;
+            }
+        }
+        CachedNode node = getNode(startKey);
+        for (int i = start; node != null && i != path.size(); ++i) {
+            ChildReference ref = node.getChildReferences(this).getChild(path.getSegment(i));
+            if (ref == null) return null;
+            node = getNode(ref);
+        }
+        if (node == null) return null;
+        NodeKey key = node.getKey();
+        if (paths != null && sourceKey.equals(key.getSourceKey())) {
+            // External content can change without our knowing, so only cache the keys of internal nodes ...
+            paths.putKey(path, key, generation);
+        }
+        return key;
+    }
+
     @Override
     public Iterator<NodeKey> getAllNodeKeys() {
         return getAllNodeKeysAtAndBelow(getRootKey());
@@ -282,6 +344,7 @@ public class WorkspaceCache implements DocumentCache {
     @Override
     public void clear() {
         nodesByKey.clear();
+        if (paths != null) paths.clear();
     }
 
     protected void evictChangedNodes( ChangeSet changes ) {
@@ -290,11 +353,8 @@ public class WorkspaceCache implements DocumentCache {
                 LOGGER.trace("Cache for workspace '{0}' received {1} changes from remote sessions: {2}", workspaceName,
                              changes.size(), changes);
             }
-            // Clear this workspace's cached nodes (iteratively is okay since it's a ConcurrentMap) ...
-            for (NodeKey key : changes.changedNodes()) {
-                if (closed) break;
-                nodesByKey.remove(key);
-            }
+            removeChangedNodes(changes, false);
+            if (paths != null) paths.changed(changes);
         }
     }
 
@@ -310,16 +370,66 @@ public class WorkspaceCache implements DocumentCache {
             LOGGER.trace("Cache for workspace '{0}' received {1} changes from local sessions: {2}", workspaceName,
                          changes.size(), changes);
         }
-        // Clear this workspace's cached nodes (iteratively is okay since it's a ConcurrentMap) ...
-        for (NodeKey key : changes.changedNodes()) {
-            if (closed) break;
-            nodesByKey.remove(key);
-        }
+        removeChangedNodes(changes, true);
+        if (paths != null) paths.changed(changes);
 
         // Send the changes to the change bus so that others can see them ...
         if (changeBus != null) changeBus.notify(changes);
     }
 
+    private void removeChangedNodes( ChangeSet changes,
+                                     boolean retainCreatedNodes ) {
+        if (versions == null) {
+            // Clear this workspace's cached nodes (iteratively is okay since it's a ConcurrentMap) ...
+            for (NodeKey key : changes.changedNodes()) {
+                if (closed) break;
+                nodesByKey.remove(key);
+            }
+            return;
+        }
+        // No snapshot can be opened while the changes are applied, so each snapshot sees all or none of them ...
+        long version = versions.beginChanges();
+        try {
+            boolean retaining = versions.isRetaining();
+            for (NodeKey key : changes.changedNodes()) {
+                if (closed) break;
+                CachedNode old = nodesByKey.remove(key);
+                if (!retaining) continue;
+                // Keep the representations of the nodes that the open snapshots may still need, even if they were evicted ...
+                CachedNode read = versions.changed(key, version);
+                if (old == null) old = read;
+                if (old != null) versions.retain(key, old, version);
+            }
+            if (retaining && retainCreatedNodes) {
+                // Nodes that were created must remain absent from the snapshots ...
+                for (Change change : changes) {
+                    if (change instanceof NodeAdded) versions.retain(((NodeAdded)change).getKey(), null, version);
+                }
+            }
+        } finally {
+            versions.endChanges();
+        }
+    }
+
+    /**
+     * Obtain a read-only snapshot of this workspace cache. The snapshot sees the nodes as they were when the snapshot was
+     * taken, even as other sessions change them, and it must be {@link WorkspaceSnapshot#close() closed} when it is no longer
+     * needed.
+     * <p>
+     * The earlier representations of changed nodes are kept if they were cached or had been read through an open snapshot,
+     * so a snapshot may see changes made to nodes that no snapshot had read and that were not cached when the changes were
+     * saved (or that were changed after the bounded number of retained versions was reached).
+     * </p>
+     * 
+     * @return the snapshot; never null
+     * @throws UnsupportedOperationException if this is not a shared workspace cache
+     */
+    public WorkspaceSnapshot snapshot() {
+        checkNotClosed();
+        if (versions == null) throw new UnsupportedOperationException();
+        return new WorkspaceSnapshot(this, versions);
+    }
+
     @Override
     public NodeCache unwrap() {
         return this;
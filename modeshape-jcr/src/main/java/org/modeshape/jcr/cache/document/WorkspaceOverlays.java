@@ -0,0 +1,315 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.Document.Field;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.NodeKey;
+
+/**
+ * The registry of the copy-on-write workspaces known to a {@link LocalDocumentStore}. A copy-on-write workspace (the
+ * <i>overlay</i>) is created from an existing workspace (its <i>source</i>) without copying any documents: a document that the
+ * overlay doesn't own yet is read from the source, with all of the node keys it contains translated into the overlay workspace.
+ * <p>
+ * Node keys are translated by replacing their workspace part, so a node has the same identifier in the overlay as in the source
+ * (just as with a regular clone of a workspace). A document that is removed from an overlay while the source still has it is
+ * replaced with a {@link #tombstone() tombstone}, so that the key no longer resolves to the source document.
+ * </p>
+ */
+@ThreadSafe
+final class WorkspaceOverlays implements DocumentConstants {
+
+    private static final String TOMBSTONE_FIELD = "$overlayRemoved";
+
+    private final ConcurrentMap<String, String> sourceByOverlay = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> overlaysBySource = new ConcurrentHashMap<>();
+
+    /**
+     * Determine whether there are any copy-on-write workspaces.
+     *
+     * @return true if there are no overlays, or false otherwise
+     */
+    boolean isEmpty() {
+        return sourceByOverlay.isEmpty();
+    }
+
+    /**
+     * Register a copy-on-write workspace.
+     *
+     * @param overlayWorkspaceKey the key of the copy-on-write workspace; may not be null
+     * @param sourceWorkspaceKey the key of the workspace whose documents are shared with the overlay; may not be null
+     */
+    void add( String overlayWorkspaceKey,
+              String sourceWorkspaceKey ) {
+        assert !overlayWorkspaceKey.equals(sourceWorkspaceKey);
+        Set<String> overlays = overlaysBySource.get(sourceWorkspaceKey);
+        if (overlays == null) {
+            overlays = new CopyOnWriteArraySet<>();
+            Set<String> existing = overlaysBySource.putIfAbsent(sourceWorkspaceKey, overlays);
+            if (existing != null) overlays = existing;
+        }
+        overlays.add(overlayWorkspaceKey);
+        sourceByOverlay.put(overlayWorkspaceKey, sourceWorkspaceKey);
+    }
+
+    /**
+     * Unregister a copy-on-write workspace.
+     *
+     * @param overlayWorkspaceKey the key of the copy-on-write workspace; may not be null
+     */
+    void remove( String overlayWorkspaceKey ) {
+        String sourceWorkspaceKey = sourceByOverlay.remove(overlayWorkspaceKey);
+        if (sourceWorkspaceKey != null) {
+            Set<String> overlays = overlaysBySource.get(sourceWorkspaceKey);
+            if (overlays != null) overlays.remove(overlayWorkspaceKey);
+        }
+    }
+
+    /**
+     * Get the key of the workspace that shares its documents with the supplied copy-on-write workspace.
+     *
+     * @param workspaceKey the workspace key; may not be null
+     * @return the key of the source workspace, or null if the workspace is not a copy-on-write workspace
+     */
+    String sourceOf( String workspaceKey ) {
+        return sourceByOverlay.get(workspaceKey);
+    }
+
+    /**
+     * Get the keys of the copy-on-write workspaces that were created from the supplied workspace.
+     *
+     * @param workspaceKey the workspace key; may not be null
+     * @return the keys of the overlays; never null but possibly empty
+     */
+    Set<String> overlaysOf( String workspaceKey ) {
+        Set<String> overlays = overlaysBySource.get(workspaceKey);
+        return overlays != null ? overlays : Collections.<String>emptySet();
+    }
+
+    /**
+     * Get the workspace part of the supplied document key, if the document is a node (or children block) of the given source.
+     *
+     * @param key the document key; may not be null
+     * @param sourceKey the key of the local source; may be null if not yet known
+     * @return the workspace key, or null if the document does not belong to a workspace of the local source
+     */
+    static String workspaceKeyOf( String key,
+                                  String sourceKey ) {
+        if (sourceKey == null || !key.startsWith(sourceKey) || !NodeKey.isValidFormat(key)) return null;
+        return new NodeKey(key).getWorkspaceKey();
+    }
+
+    /**
+     * Translate the supplied key from one workspace to another.
+     *
+     * @param key the key; may be null
+     * @param fromWorkspaceKey the key of the workspace from which the key is translated; may not be null
+     * @param toWorkspaceKey the key of the workspace into which the key is translated; may not be null
+     * @return the translated key, or the supplied key if it does not belong to the workspace being translated
+     */
+    static String translateKey( String key,
+                                String fromWorkspaceKey,
+                                String toWorkspaceKey ) {
+        if (key == null || !NodeKey.isValidFormat(key)) return key;
+        NodeKey nodeKey = new NodeKey(key);
+        if (!nodeKey.getWorkspaceKey().equals(fromWorkspaceKey)) return key;
+        return nodeKey.withWorkspaceKey(toWorkspaceKey).toString();
+    }
+
+    /**
+     * Create a copy of the supplied node (or children block) document, with all of the keys of nodes in one workspace translated
+     * into another workspace. Keys of nodes in other workspaces (e.g., the system workspace) are not changed.
+     *
+     * @param document the document; may not be null
+     * @param fromWorkspaceKey the key of the workspace from which the document is translated; may not be null
+     * @param toWorkspaceKey the key of the workspace into which the document is translated; may not be null
+     * @return the translated copy of the document; never null
+     */
+    static EditableDocument translate( Document document,
+                                       String fromWorkspaceKey,
+                                       String toWorkspaceKey ) {
+        EditableDocument copy = Schematic.newDocument(document.clone());
+        if (copy.containsField(KEY)) {
+            copy.setString(KEY, translateKey(copy.getString(KEY), fromWorkspaceKey, toWorkspaceKey));
+        }
+        Object parent = copy.get(PARENT);
+        if (parent instanceof String) {
+            copy.setString(PARENT, translateKey((String)parent, fromWorkspaceKey, toWorkspaceKey));
+        } else if (parent instanceof List<?>) {
+            copy.setArray(PARENT, translateKeys((List<?>)parent, fromWorkspaceKey, toWorkspaceKey));
+        }
+        List<?> children = copy.getArray(CHILDREN);
+        if (children != null) {
+            EditableArray translated = Schematic.newArray(children.size());
+            for (Object child : children) {
+                EditableDocument childRef = Schematic.newDocument((Document)child);
+                childRef.setString(KEY, translateKey(childRef.getString(KEY), fromWorkspaceKey, toWorkspaceKey));
+                translated.add(childRef);
+            }
+            copy.setArray(CHILDREN, translated);
+        }
+        EditableDocument childrenInfo = copy.getDocument(CHILDREN_INFO);
+        if (childrenInfo != null) {
+            for (String field : new String[] {NEXT_BLOCK, LAST_BLOCK}) {
+                if (childrenInfo.containsField(field)) {
+                    childrenInfo.setString(field,
+                                           translateKey(childrenInfo.getString(field), fromWorkspaceKey, toWorkspaceKey));
+                }
+            }
+        }
+        EditableDocument referrers = copy.getDocument(REFERRERS);
+        if (referrers != null) {
+            for (String type : new String[] {STRONG, WEAK}) {
+                Document counts = referrers.getDocument(type);
+                if (counts == null) continue;
+                EditableDocument translated = Schematic.newDocument();
+                for (Field field : counts.fields()) {
+                    translated.set(translateKey(field.getName(), fromWorkspaceKey, toWorkspaceKey), field.getValue());
+                }
+                referrers.setDocument(type, translated);
+            }
+        }
+        EditableDocument properties = copy.getDocument(PROPERTIES);
+        if (properties != null) {
+            for (Field namespace : properties.fields()) {
+                EditableDocument props = properties.getDocument(namespace.getName());
+                if (props == null) continue;
+                Map<String, Object> translatedValues = new HashMap<>();
+                for (Field property : props.fields()) {
+                    Object value = translateValue(property.getValue(), fromWorkspaceKey, toWorkspaceKey);
+                    if (value != null) translatedValues.put(property.getName(), value);
+                }
+                for (Map.Entry<String, Object> entry : translatedValues.entrySet()) {
+                    props.set(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static EditableArray translateKeys( List<?> keys,
+                                                String fromWorkspaceKey,
+                                                String toWorkspaceKey ) {
+        EditableArray translated = Schematic.newArray(keys.size());
+        for (Object key : keys) {
+            translated.add(translateKey((String)key, fromWorkspaceKey, toWorkspaceKey));
+        }
+        return translated;
+    }
+
+    /**
+     * Translate the reference(s) in the supplied property value.
+     *
+     * @param value the value of the property in the document
+     * @param fromWorkspaceKey the key of the workspace from which the value is translated; may not be null
+     * @param toWorkspaceKey the key of the workspace into which the value is translated; may not be null
+     * @return the translated value, or null if the value does not contain any references
+     */
+    private static Object translateValue( Object value,
+                                          String fromWorkspaceKey,
+                                          String toWorkspaceKey ) {
+        // Arrays are also documents, so check for them first ...
+        if (value instanceof List<?>) {
+            List<?> values = (List<?>)value;
+            EditableArray translated = null;
+            for (int i = 0; i != values.size(); ++i) {
+                Object translatedValue = translateValue(values.get(i), fromWorkspaceKey, toWorkspaceKey);
+                if (translatedValue != null && translated == null) {
+                    // This is the first reference, so copy the values so far ...
+                    translated = Schematic.newArray(values.size());
+                    for (int j = 0; j != i; ++j) {
+                        translated.add(values.get(j));
+                    }
+                }
+                if (translated != null) translated.add(translatedValue != null ? translatedValue : values.get(i));
+            }
+            return translated;
+        } else if (value instanceof Document) {
+            Document doc = (Document)value;
+            for (String field : new String[] {REFERENCE_FIELD, WEAK_REFERENCE_FIELD, SIMPLE_REFERENCE_FIELD}) {
+                String key = doc.getString(field);
+                if (key != null) {
+                    EditableDocument translated = Schematic.newDocument(doc);
+                    translated.setString(field, translateKey(key, fromWorkspaceKey, toWorkspaceKey));
+                    return translated;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collect the keys of the binary reference-count documents for all of the binary values in the supplied node document.
+     *
+     * @param document the node document; may not be null
+     * @param binaryReferenceKeys the set into which the keys are placed; may not be null
+     */
+    static void collectBinaryReferenceKeys( Document document,
+                                            Set<String> binaryReferenceKeys ) {
+        Document properties = document.getDocument(PROPERTIES);
+        if (properties == null) return;
+        for (Field namespace : properties.fields()) {
+            Document props = namespace.getValueAsDocument();
+            if (props == null) continue;
+            for (Field property : props.fields()) {
+                collectBinaryReferenceKeys(property.getValue(), binaryReferenceKeys);
+            }
+        }
+    }
+
+    private static void collectBinaryReferenceKeys( Object value,
+                                                    Set<String> binaryReferenceKeys ) {
+        if (value instanceof List<?>) {
+            for (Object element : (List<?>)value) {
+                collectBinaryReferenceKeys(element, binaryReferenceKeys);
+            }
+        } else if (value instanceof Document) {
+            String sha1 = ((Document)value).getString(SHA1_FIELD);
+            if (sha1 != null) binaryReferenceKeys.add(DocumentTranslator.keyForBinaryReferenceDocument(sha1));
+        }
+    }
+
+    /**
+     * Create the document that marks a key as removed from a copy-on-write workspace.
+     *
+     * @return the tombstone document; never null
+     */
+    static Document tombstone() {
+        return Schematic.newDocument(TOMBSTONE_FIELD, Boolean.TRUE);
+    }
+
+    /**
+     * Determine whether the supplied document marks a key as removed from a copy-on-write workspace.
+     *
+     * @param document the document; may be null
+     * @return true if the document is a tombstone, or false otherwise
+     */
+    static boolean isTombstone( Document document ) {
+        return document != null && document.containsField(TOMBSTONE_FIELD);
+    }
+}
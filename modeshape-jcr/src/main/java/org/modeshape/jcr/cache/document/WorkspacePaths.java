@@ -0,0 +1,354 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.NodeMoved;
+import org.modeshape.jcr.cache.change.NodeRemoved;
+import org.modeshape.jcr.cache.change.NodeRenamed;
+import org.modeshape.jcr.cache.change.NodeReordered;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Path.Segment;
+
+/**
+ * A bounded cache of the persisted paths of the nodes in a workspace, allowing the path of a node to be found from its key (and
+ * the key of a node to be found from its path) without walking the parents or children of the node.
+ * <p>
+ * The paths are invalidated by the {@link #changed(ChangeSet) changes} that remove, move, rename or reorder nodes. Such a change
+ * can alter the same-name-sibling indexes of the node's siblings, so all of the paths at or below any sibling with the same name
+ * are invalidated. The cached paths are also organized as a tree of path segments, so that invalidating a group of siblings
+ * only visits the paths at or below those siblings. Paths and keys are only added if no such change was made while they were
+ * being computed: callers obtain the {@link #generation()} before computing a path or resolving a key, and pass it to
+ * {@link #putPath} or {@link #putKey}.
+ * </p>
+ * <p>
+ * When the cache is full, the least recently used paths are removed. Recency is approximated with the "second chance"
+ * algorithm, so that finding a path only marks it as used and never needs a lock.
+ * </p>
+ */
+@ThreadSafe
+final class WorkspacePaths {
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final ConcurrentMap<Path, Entry> keysByPath = new ConcurrentHashMap<>();
+    private final ConcurrentMap<NodeKey, Entry> pathsByKey = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxSize;
+    // The remaining fields are guarded by 'this' ...
+    private PathNode root = new PathNode(null, null);
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private int size;
+
+    WorkspacePaths() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    WorkspacePaths( int maxSize ) {
+        assert maxSize > 0;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the current generation of this cache, which changes whenever any paths are invalidated.
+     *
+     * @return the generation
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Get the cached path of the node with the supplied key.
+     *
+     * @param key the node key; may not be null
+     * @return the path, or null if the path is not cached
+     */
+    Path pathFor( NodeKey key ) {
+        Entry entry = pathsByKey.get(key);
+        if (entry == null) return null;
+        entry.used = true;
+        return entry.path;
+    }
+
+    /**
+     * Get the key of the node with the supplied path.
+     *
+     * @param path the absolute, normalized path; may not be null
+     * @return the key, or null if the path is not cached
+     */
+    NodeKey keyFor( Path path ) {
+        Entry entry = keysByPath.get(path);
+        if (entry == null) return null;
+        entry.used = true;
+        return entry.key;
+    }
+
+    /**
+     * Add the path of a node, as computed from the node's parents.
+     *
+     * @param key the node key; may not be null
+     * @param path the absolute, normalized path of the node; may not be null
+     * @param generation the {@link #generation() generation} obtained before the path was computed
+     */
+    void putPath( NodeKey key,
+                  Path path,
+                  long generation ) {
+        put(new Entry(path, key, false), generation);
+    }
+
+    /**
+     * Add the key of the node found by resolving a path. Shared nodes have multiple paths, so this does not determine the
+     * {@link #pathFor(NodeKey) path} of the node.
+     *
+     * @param path the absolute, normalized path; may not be null
+     * @param key the key of the node at that path; may not be null
+     * @param generation the {@link #generation() generation} obtained before the path was resolved
+     */
+    void putKey( Path path,
+                 NodeKey key,
+                 long generation ) {
+        put(new Entry(path, key, true), generation);
+    }
+
+    private synchronized void put( Entry entry,
+                                   long generation ) {
+        // Paths are only invalidated while holding the lock, so this can't add a path that was just invalidated ...
+        if (this.generation.get() != generation) return;
+        Entry previous = entry.byPath ? keysByPath.put(entry.path, entry) : pathsByKey.put(entry.key, entry);
+        if (previous != null) {
+            detach(previous);
+            --size;
+        }
+        entry.node = root.nodeFor(entry.path);
+        entry.node.entries.add(entry);
+        clock.add(entry);
+        if (++size > maxSize) evict();
+        if (clock.size() > 2 * maxSize) compact();
+    }
+
+    /**
+     * Invalidate the paths affected by the supplied changes.
+     *
+     * @param changes the changes; may not be null
+     */
+    void changed( ChangeSet changes ) {
+        List<Path> parents = new ArrayList<>();
+        List<Name> names = new ArrayList<>();
+        for (Change change : changes) {
+            if (change instanceof NodeRemoved) {
+                addSiblingGroup(((NodeRemoved)change).getPath(), parents, names);
+            } else if (change instanceof NodeMoved) {
+                NodeMoved moved = (NodeMoved)change;
+                addSiblingGroup(moved.getOldPath(), parents, names);
+                addSiblingGroup(moved.getNewPath(), parents, names);
+            } else if (change instanceof NodeRenamed) {
+                NodeRenamed renamed = (NodeRenamed)change;
+                Path newPath = renamed.getPath();
+                addSiblingGroup(newPath, parents, names);
+                if (newPath != null && !newPath.isRoot()) {
+                    parents.add(newPath.getParent());
+                    names.add(renamed.getOldSegment().getName());
+                }
+            } else if (change instanceof NodeReordered) {
+                NodeReordered reordered = (NodeReordered)change;
+                addSiblingGroup(reordered.getOldPath(), parents, names);
+                addSiblingGroup(reordered.getPath(), parents, names);
+            }
+        }
+        if (parents.isEmpty()) return;
+        synchronized (this) {
+            generation.incrementAndGet();
+            for (int i = 0; i != parents.size(); ++i) {
+                invalidate(parents.get(i), names.get(i));
+            }
+        }
+    }
+
+    /**
+     * Remove all of the paths.
+     */
+    synchronized void clear() {
+        generation.incrementAndGet();
+        keysByPath.clear();
+        pathsByKey.clear();
+        clock.clear();
+        root = new PathNode(null, null);
+        size = 0;
+    }
+
+    /**
+     * @return the number of paths in the cache
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private static void addSiblingGroup( Path path,
+                                         List<Path> parents,
+                                         List<Name> names ) {
+        if (path == null || path.isRoot()) return;
+        parents.add(path.getParent());
+        names.add(path.getLastSegment().getName());
+    }
+
+    private void invalidate( Path parent,
+                             Name name ) {
+        PathNode parentNode = root.find(parent);
+        if (parentNode == null) return;
+        Map<Segment, PathNode> siblings = parentNode.children.remove(name);
+        if (siblings == null) return;
+        for (PathNode sibling : siblings.values()) {
+            removeAll(sibling);
+        }
+        parentNode.pruneIfEmpty();
+    }
+
+    private void removeAll( PathNode node ) {
+        for (Entry entry : node.entries) {
+            if (entry.byPath) keysByPath.remove(entry.path, entry);
+            else pathsByKey.remove(entry.key, entry);
+            // The entry is discarded when the clock reaches it ...
+            entry.node = null;
+            --size;
+        }
+        for (Map<Segment, PathNode> children : node.children.values()) {
+            for (PathNode child : children.values()) {
+                removeAll(child);
+            }
+        }
+    }
+
+    private void evict() {
+        while (size > maxSize) {
+            Entry entry = clock.poll();
+            if (entry.node == null) continue; // already removed
+            if (entry.used) {
+                // Give the recently used entry a second chance ...
+                entry.used = false;
+                clock.add(entry);
+                continue;
+            }
+            if (entry.byPath) keysByPath.remove(entry.path, entry);
+            else pathsByKey.remove(entry.key, entry);
+            detach(entry);
+            --size;
+        }
+    }
+
+    private void compact() {
+        // Discard the invalidated entries that the clock has not yet reached ...
+        for (Iterator<Entry> iter = clock.iterator(); iter.hasNext();) {
+            if (iter.next().node == null) iter.remove();
+        }
+    }
+
+    private static void detach( Entry entry ) {
+        PathNode node = entry.node;
+        if (node == null) return;
+        node.entries.remove(entry);
+        entry.node = null;
+        node.pruneIfEmpty();
+    }
+
+    /**
+     * A key and path pair, stored in either the map of keys by path or the map of paths by key.
+     */
+    private static final class Entry {
+        protected final Path path;
+        protected final NodeKey key;
+        protected final boolean byPath;
+        protected volatile boolean used;
+        // The node in the tree of paths, or null once the entry has been removed ...
+        protected PathNode node;
+
+        protected Entry( Path path,
+                         NodeKey key,
+                         boolean byPath ) {
+            this.path = path;
+            this.key = key;
+            this.byPath = byPath;
+        }
+    }
+
+    /**
+     * A node in the tree of cached paths, holding the entries for one path. The children are grouped by name, so that a group
+     * of same-name siblings can be found without looking at the other children.
+     */
+    private static final class PathNode {
+        private final PathNode parent;
+        private final Segment segment;
+        protected final Map<Name, Map<Segment, PathNode>> children = new HashMap<>();
+        protected final List<Entry> entries = new ArrayList<>(2);
+
+        protected PathNode( PathNode parent,
+                            Segment segment ) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        protected PathNode nodeFor( Path path ) {
+            PathNode node = this;
+            for (Segment segment : path) {
+                Map<Segment, PathNode> siblings = node.children.get(segment.getName());
+                if (siblings == null) {
+                    siblings = new HashMap<>();
+                    node.children.put(segment.getName(), siblings);
+                }
+                PathNode child = siblings.get(segment);
+                if (child == null) {
+                    child = new PathNode(node, segment);
+                    siblings.put(segment, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        protected PathNode find( Path path ) {
+            PathNode node = this;
+            for (Segment segment : path) {
+                Map<Segment, PathNode> siblings = node.children.get(segment.getName());
+                node = siblings != null ? siblings.get(segment) : null;
+                if (node == null) return null;
+            }
+            return node;
+        }
+
+        protected void pruneIfEmpty() {
+            PathNode node = this;
+            while (node.parent != null && node.entries.isEmpty() && node.children.isEmpty()) {
+                Map<Segment, PathNode> siblings = node.parent.children.get(node.segment.getName());
+                siblings.remove(node.segment);
+                if (siblings.isEmpty()) node.parent.children.remove(node.segment.getName());
+                node = node.parent;
+            }
+        }
+    }
+}
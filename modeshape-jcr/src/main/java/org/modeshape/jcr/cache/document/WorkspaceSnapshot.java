@@ -0,0 +1,120 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.ChangeSet;
+
+/**
+ * A read-only view of a {@link WorkspaceCache} as it was when the snapshot was {@link WorkspaceCache#snapshot() taken}. Nodes
+ * changed by other sessions after the snapshot was taken are read from the versions retained by the workspace cache, and all
+ * other nodes are read through the workspace cache. The snapshot itself holds no nodes: the nodes it reads are remembered in
+ * the bounded {@link SnapshotVersions} of the workspace, so that they are retained if they are changed after being evicted from
+ * the workspace cache.
+ */
+@ThreadSafe
+public class WorkspaceSnapshot extends WorkspaceCache {
+
+    private final WorkspaceCache workspace;
+    private final SnapshotVersions versions;
+    private final long version;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    protected WorkspaceSnapshot( WorkspaceCache workspace,
+                                 SnapshotVersions versions ) {
+        // The nodes are never cached by the snapshot ...
+        super(workspace, new ConcurrentHashMap<NodeKey, CachedNode>());
+        this.workspace = workspace;
+        this.versions = versions;
+        this.version = versions.open();
+    }
+
+    /**
+     * Get the version of the workspace seen by this snapshot.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Determine whether this snapshot has not yet been closed.
+     *
+     * @return true if the snapshot is open, or false if it has been closed
+     */
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    /**
+     * Close this snapshot, allowing the workspace cache to discard the versions of nodes retained only for this snapshot. This
+     * method does nothing if the snapshot was already closed.
+     */
+    public void close() {
+        if (open.compareAndSet(true, false)) {
+            versions.close(version);
+        }
+    }
+
+    @Override
+    public CachedNode getNode( NodeKey key ) {
+        workspace.checkNotClosed();
+        // The retained versions are kept until the snapshot is closed, so they needn't be pinned by the snapshot ...
+        SnapshotVersions.RetainedVersion retained = versions.versionAt(key, version);
+        if (retained != null) return retained.node();
+        long readAt = versions.current();
+        CachedNode node = workspace.getNode(key);
+        // The node may have been changed while it was being read ...
+        retained = versions.versionAt(key, version);
+        if (retained != null) return retained.node();
+        versions.remember(key, node, readAt);
+        return node;
+    }
+
+    @Override
+    public ChildReference getChildReference( NodeKey parentKey,
+                                             NodeKey childKey ) {
+        // Use the snapshot's representation of the parent rather than the latest persisted child references ...
+        CachedNode parent = getNode(parentKey);
+        if (parent == null) return null;
+        ChildReferences references = parent.getChildReferences(this);
+        if (references.supportsGetChildReferenceByKey()) return references.getChild(childKey);
+        // Large or external sets of child references can only be searched efficiently in the store ...
+        return super.getChildReference(parentKey, childKey);
+    }
+
+    @Override
+    public void changed( ChangeSet changes ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        // The snapshot doesn't cache any nodes ...
+    }
+
+    @Override
+    public String toString() {
+        return getWorkspaceName() + " (snapshot at version " + version + ")";
+    }
+}
@@ -27,6 +27,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -110,6 +113,8 @@ public class WritableSessionCache extends AbstractSessionCache {
     private static final SessionNode REMOVED = new SessionNode(REMOVED_KEY, false);
     private static final int MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 4;
     private static final long PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 50L;
+    private static final long MAX_PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 1000L;
+    private static final int MAX_ATTEMPTS_TO_LOCK_NODES = 3;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private Map<NodeKey, SessionNode> changedNodes;
@@ -468,7 +473,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                     if (repeat <= 0) {
                         throw new TimeoutException(e.getMessage(), e);
                     }
-                    Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                    pauseBeforeRepeat(MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT - repeat);
                     continue;
                 } catch (NotSupportedException err) {
                     // No nested transactions are supported ...
@@ -629,7 +634,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
                         --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        pauseBeforeRepeat(MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT - repeat);
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -806,7 +811,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
                         --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        pauseBeforeRepeat(MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT - repeat);
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -945,6 +950,10 @@ public class WritableSessionCache extends AbstractSessionCache {
                         if (doc != null) translator.changeReferrers(doc, referrerChanges);
                     }
 
+                    // a node that is still shared with the source of a copy-on-write workspace must own its binary references
+                    // before they can be released
+                    documentStore.localStore().copyOnWrite(keyStr);
+
                     // if the node had any binary properties, make sure we decrement the ref count of each
                     for (Iterator<Property> propertyIterator = persisted.getProperties(persistedCache); propertyIterator.hasNext();) {
                         Property property = propertyIterator.next();
@@ -1341,7 +1350,7 @@ public class WritableSessionCache extends AbstractSessionCache {
         return changes;
     }
 
-    private WorkspaceCache lockNodes( Collection<NodeKey> changedNodesInOrder ) {
+    private WorkspaceCache lockNodes( Collection<NodeKey> changedNodesInOrder ) throws InterruptedException {
         if (changedNodesInOrder.isEmpty()) {
             return workspaceCache();
         }
@@ -1352,34 +1361,66 @@ public class WritableSessionCache extends AbstractSessionCache {
                 LOGGER.debug("Attempting to lock nodes in Infinispan: {0}", changedNodes.keySet());
             }
         }
-        // Try to acquire from the DocumentStore locks for all the nodes that we're going to change ...
-        Set<String> keysToLock = new HashSet<String>();
-
+        // Try to acquire from the DocumentStore locks for all the nodes that we're going to change. Always lock them in the
+        // same (sorted) order, so that sessions saving overlapping sets of nodes can't each hold locks that the other needs ...
+        SortedSet<NodeKey> sortedKeys = new TreeSet<NodeKey>();
         for (NodeKey key : changedNodesInOrder) {
             SessionNode node = changedNodes.get(key);
             if (node != REMOVED && !node.isNew()) {
-                String keyStr = key.toString();
-                keysToLock.add(keyStr);
+                sortedKeys.add(key);
             }
         }
-        if (!documentStore.prepareDocumentsForUpdate(keysToLock)) {
-            // try again ...
-            if (!documentStore.prepareDocumentsForUpdate(keysToLock)) {
-                throw new org.infinispan.util.concurrent.TimeoutException("Unable to acquire storage locks: " + keysToLock);
-            } else if (LOGGER.isDebugEnabled()) {
-                if (!keysToLock.isEmpty()) {
-                    LOGGER.debug("Locked the nodes: {0}", keysToLock);
+        if (sortedKeys.isEmpty()) {
+            return workspaceCache().persistedCache(changedNodesInOrder);
+        }
+        List<String> keysToLock = new ArrayList<String>(sortedKeys.size());
+        for (NodeKey key : sortedKeys) {
+            keysToLock.add(key.toString());
+        }
+
+        long start = System.nanoTime();
+        int failedAttempts = 0;
+        try {
+            while (!documentStore.prepareDocumentsForUpdate(keysToLock)) {
+                if (++failedAttempts >= MAX_ATTEMPTS_TO_LOCK_NODES) {
+                    throw new org.infinispan.util.concurrent.TimeoutException("Unable to acquire storage locks: " + keysToLock);
                 }
+                pauseBeforeRepeat(failedAttempts);
             }
-        } else if (LOGGER.isDebugEnabled()) {
-            if (!keysToLock.isEmpty()) {
-                LOGGER.debug("Locked the nodes: {0}", keysToLock);
-            }
+        } catch (org.infinispan.util.concurrent.TimeoutException e) {
+            // The save will be repeated or will fail, but either way the attempt failed ...
+            if (failedAttempts < MAX_ATTEMPTS_TO_LOCK_NODES) ++failedAttempts;
+            throw e;
+        } finally {
+            sessionContext().recordLockAcquisition(workspaceName(), keysToLock, failedAttempts, System.nanoTime() - start);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Locked the nodes: {0}", keysToLock);
         }
         // return a transient workspace cache, which contains the latest view of the nodes which will be changed
         return workspaceCache().persistedCache(changedNodesInOrder);
     }
 
+    /**
+     * Pause before repeating an attempt to acquire locks. The pause grows exponentially with the number of failed attempts, and is
+     * randomized so that the sessions contending for the same nodes do not all try again at the same time.
+     * 
+     * @param failedAttempts the number of attempts that have failed so far; must be positive
+     * @throws InterruptedException if the thread is interrupted while pausing
+     */
+    protected static void pauseBeforeRepeat( int failedAttempts ) throws InterruptedException {
+        Thread.sleep(pauseTimeBeforeRepeat(failedAttempts));
+    }
+
+    static long pauseTimeBeforeRepeat( int failedAttempts ) {
+        assert failedAttempts > 0;
+        long maxPause = Math.min(MAX_PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT,
+                                 PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT << Math.min(failedAttempts - 1, 16));
+        // Always wait at least half of the pause, so that the contending sessions do make progress ...
+        long halfPause = maxPause / 2;
+        return halfPause + ThreadLocalRandom.current().nextLong(maxPause - halfPause + 1);
+    }
+
     private Transactions.TransactionFunction binaryUsageUpdateFunction( final Set<BinaryKey> usedBinaries,
                                                                         final Set<BinaryKey> unusedBinaries ) {
         final BinaryStore binaryStore = getContext().getBinaryStore();
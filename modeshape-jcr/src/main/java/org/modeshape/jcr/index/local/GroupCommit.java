@@ -0,0 +1,383 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.mapdb.BTreeKeySerializer;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.Fun;
+import org.mapdb.Serializer;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.index.local.IndexChangeAdapters.LocalIndexChangeAdapter;
+
+/**
+ * Commits the changes made by many change sets to the local indexes in a single MapDB commit, rather than committing the
+ * (shared) MapDB database once for every index affected by every change set.
+ * <p>
+ * Each change set is appended to a small write-ahead log before the first index applies it, and every index that applies it also
+ * appends a small record naming the index. The log is synchronized to disk once the index has applied the change set. The
+ * database is committed (and the log truncated) once per time window, or sooner when the number of uncommitted change sets
+ * reaches a limit. A change set can be applied by some indexes before a commit and by others after it, so it is only replayed
+ * into the indexes that applied it since the last commit: the others have either committed it already or never saw it.
+ * </p>
+ * <p>
+ * When the provider starts after a crash, the change sets in the log are moved into the database along with the indexes that
+ * applied them, and each change set is replayed into those indexes as they are created. Each index removes its marker in the
+ * same database commit as the replayed changes, so a change set is never replayed twice into the same index.
+ * </p>
+ */
+@ThreadSafe
+final class GroupCommit {
+
+    private static final String PENDING_CHANGES = "group-commit/pending";
+    private static final String REPLAY_TARGETS = "group-commit/targets";
+    private static final int HEADER_SIZE = 12;
+    private static final byte CHANGE_SET_RECORD = 1;
+    private static final byte APPLIED_RECORD = 2;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final DB db;
+    private final File logFile;
+    private final RandomAccessFile log;
+    private final FileChannel channel;
+    private final int maxChangeSets;
+    private final BTreeMap<Long, byte[]> pending;
+    private final NavigableSet<Fun.Tuple2<Long, String>> targets;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<String> loggedChangeSets = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger uncommitted = new AtomicInteger();
+    private final CRC32 crc = new CRC32();
+    private long written = 0L;
+    private long synced = 0L;
+    private ScheduledFuture<?> scheduledCommits;
+
+    /**
+     * Create the group commit for the supplied database, recovering any change sets left in the log.
+     *
+     * @param db the database in which all the local indexes are stored; may not be null
+     * @param logFile the file used for the write-ahead log; may not be null
+     * @param maxChangeSets the maximum number of change sets that are applied before the database is committed; must be positive
+     * @throws IOException if the log cannot be read or written
+     */
+    GroupCommit( DB db,
+                 File logFile,
+                 int maxChangeSets ) throws IOException {
+        assert maxChangeSets > 0;
+        this.db = db;
+        this.logFile = logFile;
+        this.maxChangeSets = maxChangeSets;
+        if (db.exists(PENDING_CHANGES)) {
+            this.pending = db.getTreeMap(PENDING_CHANGES);
+            this.targets = db.getTreeSet(REPLAY_TARGETS);
+        } else {
+            this.pending = db.createTreeMap(PENDING_CHANGES).keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG)
+                             .valueSerializer(Serializer.BYTE_ARRAY).make();
+            this.targets = db.createTreeSet(REPLAY_TARGETS).serializer(BTreeKeySerializer.TUPLE2).make();
+        }
+        this.log = new RandomAccessFile(logFile, "rw");
+        this.channel = log.getChannel();
+        recover();
+    }
+
+    /**
+     * Move the change sets in the log into the database, where they stay until they have been replayed into the indexes that
+     * applied them.
+     *
+     * @throws IOException if the log cannot be read or truncated
+     */
+    private void recover() throws IOException {
+        long next = pending.isEmpty() ? 0L : pending.lastKey() + 1L;
+        Map<String, Long> recovered = new HashMap<>();
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0L;
+        long size = channel.size();
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            long checksum = header.getLong();
+            if (length <= 0 || position + HEADER_SIZE + length > size) break;
+            ByteBuffer content = ByteBuffer.allocate(length);
+            channel.read(content, position + HEADER_SIZE);
+            crc.reset();
+            crc.update(content.array());
+            // A partially-written record at the end of the log was never acknowledged, so it and anything after it are ignored
+            if (crc.getValue() != checksum) break;
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(content.array()))) {
+                byte type = input.readByte();
+                String changeSetId = input.readUTF();
+                if (type == CHANGE_SET_RECORD) {
+                    byte[] changeSet = new byte[input.available()];
+                    input.readFully(changeSet);
+                    recovered.put(changeSetId, next);
+                    pending.put(next++, changeSet);
+                    ++count;
+                } else {
+                    // The change set is always logged before the indexes that apply it ...
+                    Long changeSetKey = recovered.get(changeSetId);
+                    if (changeSetKey != null) targets.add(Fun.t2(changeSetKey, input.readUTF()));
+                }
+            }
+            position += HEADER_SIZE + length;
+        }
+        if (count != 0) {
+            logger.debug("Recovered {0} uncommitted change sets from the local index log at {1}", count, logFile);
+        }
+        db.commit();
+        channel.truncate(0L);
+        channel.force(false);
+    }
+
+    /**
+     * Start committing the database periodically.
+     *
+     * @param executor the executor used to run the periodic commits; may not be null
+     * @param intervalInMillis the time between commits; must be positive
+     */
+    void start( ScheduledExecutorService executor,
+                long intervalInMillis ) {
+        scheduledCommits = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    commit();
+                } catch (RuntimeException e) {
+                    logger.error(e, JcrI18n.localIndexProviderUnableToCommit, logFile);
+                }
+            }
+        }, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replay into the supplied index any recovered change sets that it applied but did not commit.
+     *
+     * @param indexId the identifier of the index, unique within the provider; may not be null
+     * @param isNew true if the index was just created and will be populated from the workspace content, in which case the
+     *        recovered change sets are not replayed
+     * @param adapter the adapter that applies change sets to the index; may not be null
+     */
+    void replay( String indexId,
+                 boolean isNew,
+                 LocalIndexChangeAdapter adapter ) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, byte[]> entry : pending.entrySet()) {
+                Long key = entry.getKey();
+                if (!targets.remove(Fun.t2(key, indexId))) continue;
+                if (!isNew) {
+                    adapter.replay(changeSetFrom(entry.getValue()));
+                }
+                if (targetsOf(key).isEmpty()) {
+                    // Every index that applied the change set has now replayed it ...
+                    pending.remove(key);
+                }
+                uncommitted.incrementAndGet();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that the supplied change set is about to be applied to an index. The change set is appended to the log unless it
+     * has already been logged since the last commit, followed by a record of the index that applies it. The database is not
+     * committed until {@link #afterChanges()} is called.
+     *
+     * @param changeSet the change set; may not be null
+     * @param indexId the identifier of the index that applies the change set, unique within the provider; may not be null
+     */
+    void beforeChanges( ChangeSet changeSet,
+                        String indexId ) {
+        lock.readLock().lock();
+        try {
+            String changeSetId = changeSet.getUUID();
+            byte[] applied = appliedRecord(changeSetId, indexId);
+            if (loggedChangeSets.add(changeSetId)) {
+                append(changeSetRecord(changeSetId, changeSet), applied);
+                uncommitted.incrementAndGet();
+            } else {
+                append(applied);
+            }
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Record that an index has applied the change set passed to the preceding {@link #beforeChanges(ChangeSet)}. This ensures
+     * the change set is durable in the log, and commits the database if too many change sets have been applied since the last
+     * commit.
+     */
+    void afterChanges() {
+        try {
+            sync();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (uncommitted.get() >= maxChangeSets) {
+            commit();
+        }
+    }
+
+    /**
+     * Commit all of the changes applied to the indexes, and truncate the log.
+     */
+    void commit() {
+        lock.writeLock().lock();
+        try {
+            if (uncommitted.get() == 0) return;
+            db.commit();
+            synchronized (this) {
+                channel.truncate(0L);
+                written = 0L;
+                synced = 0L;
+            }
+            loggedChangeSets.clear();
+            uncommitted.set(0);
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop the periodic commits, commit any remaining changes, and remove the log. This should be called only when the provider
+     * is shut down cleanly, at which point every index has replayed the recovered change sets.
+     */
+    void shutdown() {
+        if (scheduledCommits != null) {
+            scheduledCommits.cancel(false);
+            scheduledCommits = null;
+        }
+        lock.writeLock().lock();
+        try {
+            pending.clear();
+            targets.clear();
+            db.commit();
+            log.close();
+            if (!logFile.delete()) {
+                logger.debug("Unable to remove the local index log at {0}", logFile);
+            }
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings( {"unchecked", "rawtypes"} )
+    private Set<Fun.Tuple2<Long, String>> targetsOf( Long key ) {
+        return targets.subSet(new Fun.Tuple2(key, null), true, new Fun.Tuple2(key, Fun.HI), true);
+    }
+
+    private synchronized void append( byte[]... records ) {
+        int size = 0;
+        for (byte[] content : records) {
+            size += HEADER_SIZE + content.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] content : records) {
+            crc.reset();
+            crc.update(content);
+            buffer.putInt(content.length).putLong(crc.getValue()).put(content);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        }
+    }
+
+    private synchronized void sync() {
+        if (synced == written) return;
+        try {
+            channel.force(false);
+            synced = written;
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        }
+    }
+
+    private static byte[] changeSetRecord( String changeSetId,
+                                           ChangeSet changeSet ) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(CHANGE_SET_RECORD);
+            output.writeUTF(changeSetId);
+            ObjectOutputStream objects = new ObjectOutputStream(output);
+            objects.writeObject(changeSet);
+            objects.flush();
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] appliedRecord( String changeSetId,
+                                         String indexId ) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(APPLIED_RECORD);
+            output.writeUTF(changeSetId);
+            output.writeUTF(indexId);
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ChangeSet changeSetFrom( byte[] content ) {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(content))) {
+            return (ChangeSet)input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new LocalIndexException(e);
+        }
+    }
+}
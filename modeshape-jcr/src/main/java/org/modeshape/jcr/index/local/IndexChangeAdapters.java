@@ -16,6 +16,10 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.modeshape.jcr.ExecutionContext;
@@ -23,10 +27,12 @@ import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.cache.CachedNode.Properties;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.change.AbstractPropertyChange;
+import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetAdapter.NodeTypePredicate;
 import org.modeshape.jcr.cache.change.PropertyAdded;
 import org.modeshape.jcr.cache.change.PropertyChanged;
 import org.modeshape.jcr.cache.change.PropertyRemoved;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
 import org.modeshape.jcr.spi.index.provider.IndexChangeAdapter;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
@@ -251,10 +257,88 @@ public class IndexChangeAdapters {
         return new NodeTypesChangeAdapter(context, matcher, workspaceName, index);
     }
 
+    /**
+     * Create an {@link IndexChangeAdapter} implementation that handles the values of each of several properties, whose values
+     * are stored together in a composite index. A node with multiple values for some of the properties is indexed once for each
+     * combination of the values, so the number of entries for a node is the product of the number of values of its properties.
+     *
+     * @param context the execution context; may not be null
+     * @param matcher the node type matcher used to determine which nodes should be included in the index; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @param propertyNames the names of the properties, in the order of the index's columns; may not be null or empty
+     * @param factories the value factories for each property's value type; may not be null
+     * @param index the local index that should be used; may not be null
+     * @return the new {@link IndexChangeAdapter}; never null
+     */
+    public static IndexChangeAdapter forMultipleProperties( ExecutionContext context,
+                                                            NodeTypePredicate matcher,
+                                                            String workspaceName,
+                                                            List<Name> propertyNames,
+                                                            ValueFactory<?>[] factories,
+                                                            LocalCompositeIndex index ) {
+        return new CompositePropertiesChangeAdapter(context, matcher, workspaceName, propertyNames, factories, index);
+    }
+
     private IndexChangeAdapters() {
     }
 
-    protected static abstract class PathBasedChangeAdapter<T> extends IndexChangeAdapter {
+    /**
+     * The base class for the adapters of the local indexes. When the provider uses a {@link GroupCommit group commit}, each change
+     * set is logged before it is applied to the index, and the index is committed with the changes from other change sets rather
+     * than when the adapter completes its changes.
+     */
+    protected static abstract class LocalIndexChangeAdapter extends IndexChangeAdapter {
+        private volatile GroupCommit groupCommit;
+        private volatile String indexId;
+
+        protected LocalIndexChangeAdapter( ExecutionContext context,
+                                           String workspaceName,
+                                           NodeTypePredicate matcher ) {
+            super(context, workspaceName, matcher);
+        }
+
+        final void useGroupCommit( GroupCommit groupCommit,
+                                   String indexId ) {
+            this.indexId = indexId;
+            this.groupCommit = groupCommit;
+        }
+
+        @Override
+        public void notify( ChangeSet changeSet ) {
+            GroupCommit groupCommit = this.groupCommit;
+            String workspaceName = changeSet.getWorkspaceName();
+            if (groupCommit == null || workspaceName == null || !includesWorkspace(workspaceName)) {
+                super.notify(changeSet);
+                return;
+            }
+            groupCommit.beforeChanges(changeSet, indexId);
+            try {
+                super.notify(changeSet);
+            } finally {
+                groupCommit.afterChanges();
+            }
+        }
+
+        /**
+         * Apply a change set that was logged but not committed before the provider was last shut down.
+         *
+         * @param changeSet the change set; may not be null
+         */
+        final void replay( ChangeSet changeSet ) {
+            super.notify(changeSet);
+        }
+
+        /**
+         * Commit the changes made to the index, unless they are to be committed by the group commit.
+         *
+         * @param index the index; may not be null
+         */
+        protected final void commit( LocalIndex<?> index ) {
+            if (groupCommit == null) index.commit();
+        }
+    }
+
+    protected static abstract class PathBasedChangeAdapter<T> extends LocalIndexChangeAdapter {
         private final LocalDuplicateIndex<T> index;
         private final boolean includeRoot;
 
@@ -341,13 +425,13 @@ public class IndexChangeAdapters {
 
         @Override
         protected void completeChanges() {
-            index.commit();
+            commit(index);
             super.completeChanges();
         }
 
         @Override
         protected void completeWorkspaceChanges() {
-            index.commit();
+            commit(index);
             super.completeWorkspaceChanges();
         }
 
@@ -437,7 +521,7 @@ public class IndexChangeAdapters {
         return key.toString();
     }
 
-    protected static abstract class AbstractPropertyChangeAdapter<T> extends IndexChangeAdapter {
+    protected static abstract class AbstractPropertyChangeAdapter<T> extends LocalIndexChangeAdapter {
         protected final Name propertyName;
         protected final ValueFactory<T> valueFactory;
 
@@ -555,13 +639,13 @@ public class IndexChangeAdapters {
 
         @Override
         protected void completeChanges() {
-            index.commit();
+            commit(index);
             super.completeChanges();
         }
 
         @Override
         protected void completeWorkspaceChanges() {
-            index.commit();
+            commit(index);
             super.completeWorkspaceChanges();
         }
 
@@ -673,13 +757,13 @@ public class IndexChangeAdapters {
 
         @Override
         protected void completeChanges() {
-            index.commit();
+            commit(index);
             super.completeChanges();
         }
 
         @Override
         protected void completeWorkspaceChanges() {
-            index.commit();
+            commit(index);
             super.completeWorkspaceChanges();
         }
 
@@ -723,13 +807,13 @@ public class IndexChangeAdapters {
 
         @Override
         protected void completeChanges() {
-            index.commit();
+            commit(index);
             super.completeChanges();
         }
 
         @Override
         protected void completeWorkspaceChanges() {
-            index.commit();
+            commit(index);
             super.completeWorkspaceChanges();
         }
 
@@ -843,4 +927,172 @@ public class IndexChangeAdapters {
         }
     }
 
+    protected static final class CompositePropertiesChangeAdapter extends LocalIndexChangeAdapter {
+        private final List<Name> propertyNames;
+        private final ValueFactory<?>[] factories;
+        private final LocalCompositeIndex index;
+
+        public CompositePropertiesChangeAdapter( ExecutionContext context,
+                                                 NodeTypePredicate matcher,
+                                                 String workspaceName,
+                                                 List<Name> propertyNames,
+                                                 ValueFactory<?>[] factories,
+                                                 LocalCompositeIndex index ) {
+            super(context, workspaceName, matcher);
+            this.propertyNames = propertyNames;
+            this.factories = factories;
+            this.index = index;
+        }
+
+        private List<Object> convert( int column,
+                                      Property property ) {
+            if (property == null || property.isEmpty()) return Collections.emptyList();
+            List<Object> values = new ArrayList<>(property.size());
+            for (Object value : property) {
+                values.add(factories[column].create(value));
+            }
+            return values;
+        }
+
+        /**
+         * Replace the entries of the supplied node with one entry for each combination of the values of the columns.
+         *
+         * @param key the node key; may not be null
+         * @param columns the values of each column, each of which is empty if the node has no value for that column
+         */
+        private void index( NodeKey key,
+                            List<List<Object>> columns ) {
+            String nodeKey = nodeKey(key);
+            index.remove(nodeKey);
+            boolean found = false;
+            for (List<Object> values : columns) {
+                if (!values.isEmpty()) found = true;
+            }
+            if (!found) return;
+            addCombinations(nodeKey, columns, 0, new Object[columns.size()]);
+        }
+
+        private void addCombinations( String nodeKey,
+                                      List<List<Object>> columns,
+                                      int column,
+                                      Object[] values ) {
+            if (column == values.length) {
+                index.add(nodeKey, new CompositeKey(values.clone()));
+                return;
+            }
+            List<Object> columnValues = columns.get(column);
+            if (columnValues.isEmpty()) {
+                values[column] = null;
+                addCombinations(nodeKey, columns, column + 1, values);
+                return;
+            }
+            for (Object value : columnValues) {
+                values[column] = value;
+                addCombinations(nodeKey, columns, column + 1, values);
+            }
+        }
+
+        @Override
+        protected void addNode( String workspaceName,
+                                NodeKey key,
+                                Path path,
+                                Name primaryType,
+                                Set<Name> mixinTypes,
+                                Properties properties ) {
+            // Properties on new nodes are always represented as 'PropertyAdded' events, and handled via 'modifyProperties' ...
+        }
+
+        @Override
+        protected void reindexNode( String workspaceName,
+                                    NodeKey key,
+                                    Path path,
+                                    Name primaryType,
+                                    Set<Name> mixinTypes,
+                                    Properties properties,
+                                    boolean queryable ) {
+            if (!queryable || properties == null) {
+                index.remove(nodeKey(key));
+                return;
+            }
+            List<List<Object>> columns = new ArrayList<>(propertyNames.size());
+            for (Name propertyName : propertyNames) {
+                columns.add(convert(columns.size(), properties.getProperty(propertyName)));
+            }
+            index(key, columns);
+        }
+
+        @Override
+        protected void modifyProperties( NodeKey key,
+                                         Map<Name, AbstractPropertyChange> propChanges ) {
+            List<List<Object>> columns = null;
+            for (int i = 0; i != propertyNames.size(); ++i) {
+                AbstractPropertyChange propChange = propChanges.get(propertyNames.get(i));
+                if (propChange == null) continue;
+                if (columns == null) {
+                    // Merge the changes with the values of the other columns ...
+                    columns = indexedColumns(nodeKey(key));
+                }
+                if (propChange instanceof PropertyChanged) {
+                    columns.set(i, convert(i, ((PropertyChanged)propChange).getNewProperty()));
+                } else if (propChange instanceof PropertyAdded) {
+                    columns.set(i, convert(i, ((PropertyAdded)propChange).getProperty()));
+                } else if (propChange instanceof PropertyRemoved) {
+                    columns.set(i, Collections.emptyList());
+                }
+            }
+            if (columns != null) index(key, columns);
+        }
+
+        /**
+         * Get the values of each column that are currently indexed for the given node. Since the node has an entry for each
+         * combination of its values, the values of a column are the distinct values in that column of the node's entries.
+         *
+         * @param nodeKey the node key; may not be null
+         * @return the values of each column; never null
+         */
+        private List<List<Object>> indexedColumns( String nodeKey ) {
+            List<Set<Object>> distinctValues = new ArrayList<>(propertyNames.size());
+            for (int i = 0; i != propertyNames.size(); ++i) {
+                distinctValues.add(new LinkedHashSet<>());
+            }
+            for (CompositeKey indexed : index.keysFor(nodeKey)) {
+                for (int i = 0; i != indexed.size(); ++i) {
+                    if (indexed.get(i) != null) distinctValues.get(i).add(indexed.get(i));
+                }
+            }
+            List<List<Object>> columns = new ArrayList<>(distinctValues.size());
+            for (Set<Object> values : distinctValues) {
+                columns.add(new ArrayList<>(values));
+            }
+            return columns;
+        }
+
+        @Override
+        protected void removeNode( String workspaceName,
+                                   NodeKey key,
+                                   NodeKey parentKey,
+                                   Path path,
+                                   Name primaryType,
+                                   Set<Name> mixinTypes ) {
+            index.remove(nodeKey(key));
+        }
+
+        @Override
+        protected void completeChanges() {
+            commit(index);
+            super.completeChanges();
+        }
+
+        @Override
+        protected void completeWorkspaceChanges() {
+            commit(index);
+            super.completeWorkspaceChanges();
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(\"" + index.getName() + "\")";
+        }
+    }
+
 }
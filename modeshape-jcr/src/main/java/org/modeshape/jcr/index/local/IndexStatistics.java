@@ -0,0 +1,586 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.jcr.query.qom.And;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.Not;
+import javax.jcr.query.qom.Or;
+import javax.jcr.query.qom.StaticOperand;
+import org.mapdb.Bind;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.api.query.qom.Between;
+import org.modeshape.jcr.api.query.qom.SetCriteria;
+import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.index.local.MapDB.UniqueKey;
+import org.modeshape.jcr.query.model.BindVariableName;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.Literal;
+
+/**
+ * Statistics about the values in a {@link LocalMapIndex}, used to estimate the cardinality of constraints without reading the
+ * index entries that satisfy them.
+ * <p>
+ * The statistics consist of an equi-depth histogram over the index keys, a HyperLogLog sketch of the number of distinct values,
+ * and the exact counts of the most common values. They are kept up to date as entries are added and removed: the histogram
+ * bucket and most-common-value counts are adjusted, and added values are included in the sketch. The statistics are stored with
+ * the index, so they are available as soon as the index is reopened.
+ * </p>
+ * <p>
+ * Because removed values can't be taken out of the sketch and new common values are not tracked, the statistics are rebuilt from
+ * a scan of the index once the number of modifications since the last scan exceeds a fraction of the index size. The scan runs
+ * in the background, and the existing statistics continue to be used until it completes. The statistics are only unavailable
+ * when an existing index has none stored (e.g., an index created by an earlier version), until the first scan completes.
+ * </p>
+ * <p>
+ * Indexes only contain nodes that have a value for the indexed property, so there are no null values to count.
+ * </p>
+ *
+ * @param <T> the type of index key
+ */
+@ThreadSafe
+final class IndexStatistics<T> implements Bind.MapListener<T, String> {
+
+    private static final int BUCKETS = 64;
+    private static final int MOST_COMMON_VALUES = 16;
+    private static final int MIN_MODIFICATIONS = 16;
+    private static final int REBUILD_FRACTION = 10;
+    private static final int SAVE_INTERVAL = 256;
+    private static final String STATISTICS = "statistics";
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final Comparator<Map.Entry<?, Long>> BY_COUNT = new Comparator<Map.Entry<?, Long>>() {
+        @Override
+        public int compare( Map.Entry<?, Long> o1,
+                            Map.Entry<?, Long> o2 ) {
+            return o1.getValue().compareTo(o2.getValue());
+        }
+    };
+
+    private final NavigableMap<T, String> keysByValue;
+    private final Comparator<T> comparator;
+    private final Converter<T> converter;
+    private final Serializer<T> serializer;
+    private final Map<String, Object> store;
+    private final Executor executor;
+    private HyperLogLog distinctValues = new HyperLogLog();
+    private final List<T> upperBounds = new ArrayList<>(BUCKETS);
+    private final List<Long> bucketCounts = new ArrayList<>(BUCKETS);
+    private final Map<Object, Long> mostCommonValues = new HashMap<>();
+    private final Map<Object, T> mostCommonKeys = new HashMap<>();
+    private T lowest;
+    private long total;
+    private long modifications;
+    private int unsaved;
+    private boolean built;
+    private boolean rebuilding;
+    private long generation;
+
+    /**
+     * Create the statistics for an index, using those stored with the index if there are any.
+     *
+     * @param keysByValue the index entries; may not be null
+     * @param comparator the comparator for the index keys; may not be null
+     * @param converter the converter for the index keys; may not be null
+     * @param serializer the serializer for the index keys, used to store the statistics; may not be null
+     * @param store the map in which the statistics are stored with the index; may not be null
+     * @param executor the executor used to rebuild the statistics in the background; may not be null
+     */
+    IndexStatistics( NavigableMap<T, String> keysByValue,
+                     Comparator<T> comparator,
+                     Converter<T> converter,
+                     Serializer<T> serializer,
+                     Map<String, Object> store,
+                     Executor executor ) {
+        this.keysByValue = keysByValue;
+        this.comparator = comparator;
+        this.converter = converter;
+        this.serializer = serializer;
+        this.store = store;
+        this.executor = executor;
+        synchronized (this) {
+            if (load()) return;
+            if (keysByValue.isEmpty()) {
+                // A new (or empty) index, whose statistics are maintained as entries are added ...
+                built = true;
+            } else {
+                scheduleRebuild();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void update( T key,
+                                     String oldNodeKey,
+                                     String newNodeKey ) {
+        if (!built) return; // the scan will see this change
+        if (oldNodeKey == null && newNodeKey != null) {
+            added(key);
+        } else if (oldNodeKey != null && newNodeKey == null) {
+            removed(key);
+        } else {
+            return;
+        }
+        if (++modifications > Math.max(MIN_MODIFICATIONS, total / REBUILD_FRACTION)) {
+            scheduleRebuild();
+        }
+        if (++unsaved >= SAVE_INTERVAL) save();
+    }
+
+    /**
+     * Discard the statistics because all of the entries were removed from the index.
+     */
+    synchronized void reset() {
+        clear();
+        // Any scan that is in progress may have seen some of the removed entries ...
+        ++generation;
+        modifications = 0L;
+        built = true;
+        save();
+    }
+
+    /**
+     * Store the statistics with the index if they have changed since they were last stored.
+     */
+    synchronized void flush() {
+        if (built && unsaved != 0) save();
+    }
+
+    /**
+     * Estimate the number of index entries that satisfy the supplied constraint. This never reads the index entries.
+     *
+     * @param constraint the constraint; may not be null
+     * @param variables the bound variables; may not be null
+     * @return the estimated number of entries, or -1 if the statistics are not yet available
+     */
+    synchronized long estimateCardinality( Constraint constraint,
+                                           Map<String, Object> variables ) {
+        if (!built) return -1L;
+        if (total == 0L) return 0L;
+        double estimate = estimate(constraint, variables);
+        return Math.max(0L, Math.min(total, Math.round(estimate)));
+    }
+
+    private double estimate( Constraint constraint,
+                             Map<String, Object> variables ) {
+        if (constraint instanceof Between) {
+            Between between = (Between)constraint;
+            return range(converter.toLowerValue(between.getLowerBound(), variables), between.isLowerBoundIncluded(),
+                         converter.toUpperValue(between.getUpperBound(), variables), between.isUpperBoundIncluded());
+        }
+        if (constraint instanceof Comparison) {
+            return estimate((Comparison)constraint, variables);
+        }
+        if (constraint instanceof And) {
+            And and = (And)constraint;
+            double left = estimate(and.getConstraint1(), variables);
+            double right = estimate(and.getConstraint2(), variables);
+            // Overlapping ranges on the same property intersect, so neither bound is independent of the other ...
+            double independent = left * right / total;
+            return Math.min(Math.min(left, right), Math.max(left + right - total, independent));
+        }
+        if (constraint instanceof Or) {
+            Or or = (Or)constraint;
+            return estimate(or.getConstraint1(), variables) + estimate(or.getConstraint2(), variables);
+        }
+        if (constraint instanceof Not) {
+            return total - estimate(((Not)constraint).getConstraint(), variables);
+        }
+        if (constraint instanceof SetCriteria) {
+            double count = 0.0d;
+            for (StaticOperand operand : ((SetCriteria)constraint).getValues()) {
+                count += equalTo(operand, variables);
+            }
+            return count;
+        }
+        // Property existence and all other constraints are satisfied by (or can't be evaluated with) all entries ...
+        return total;
+    }
+
+    private double estimate( Comparison comparison,
+                             Map<String, Object> variables ) {
+        StaticOperand operand = comparison.getOperand2();
+        // These match the bounds used by the index operations ...
+        switch (comparison.operator()) {
+            case EQUAL_TO:
+                return equalTo(operand, variables);
+            case NOT_EQUAL_TO:
+                return total - equalTo(operand, variables);
+            case GREATER_THAN:
+                return range(converter.toUpperValue(operand, variables), false, null, false);
+            case GREATER_THAN_OR_EQUAL_TO:
+                return range(converter.toLowerValue(operand, variables), true, null, false);
+            case LESS_THAN:
+                return range(null, false, converter.toLowerValue(operand, variables), false);
+            case LESS_THAN_OR_EQUAL_TO:
+                return range(null, false, converter.toUpperValue(operand, variables), true);
+            default:
+                return total;
+        }
+    }
+
+    private double equalTo( StaticOperand operand,
+                            Map<String, Object> variables ) {
+        if (operand instanceof BindVariableName) {
+            Object value = variables.get(((BindVariableName)operand).getBindVariableName());
+            if (value instanceof Collection) {
+                double count = 0.0d;
+                for (Object each : (Collection<?>)value) {
+                    count += each != null ? equalTo(new Literal(each), variables) : equalToUncommon();
+                }
+                return count;
+            }
+            // The value of a variable may not be known when planning (e.g., the results of a subquery) ...
+            return value != null ? equalTo(new Literal(value), variables) : equalToUncommon();
+        }
+        T key = converter.toLowerValue(operand, variables);
+        if (key == null) return 0.0d;
+        Long count = mostCommonValues.get(valueOf(key));
+        return count != null ? count.longValue() : equalToUncommon();
+    }
+
+    private double equalToUncommon() {
+        // Assume the entries without a common value are spread evenly over the remaining distinct values ...
+        long commonTotal = 0L;
+        for (Long common : mostCommonValues.values()) {
+            commonTotal += common.longValue();
+        }
+        long others = Math.max(1L, Math.min(total, distinctValues.estimate()) - mostCommonValues.size());
+        return Math.max(0L, total - commonTotal) / (double)others;
+    }
+
+    private double range( T lower,
+                          boolean lowerIncluded,
+                          T upper,
+                          boolean upperIncluded ) {
+        if (lower != null && upper != null && comparator.compare(lower, upper) > 0) return 0.0d;
+        double count = 0.0d;
+        // Each bucket contains the keys greater than the previous bucket's upper bound, and up to and including its own ...
+        for (int i = 0; i != upperBounds.size(); ++i) {
+            T bucketLower = i == 0 ? lowest : upperBounds.get(i - 1);
+            boolean bucketLowerIncluded = i == 0;
+            T bucketUpper = upperBounds.get(i);
+            if (upper != null) {
+                int diff = comparator.compare(upper, bucketLower);
+                if (diff < 0 || (diff == 0 && !(upperIncluded && bucketLowerIncluded))) continue;
+            }
+            if (lower != null) {
+                int diff = comparator.compare(lower, bucketUpper);
+                if (diff > 0 || (diff == 0 && !lowerIncluded)) continue;
+            }
+            boolean coversLower = true;
+            if (lower != null) {
+                int diff = comparator.compare(lower, bucketLower);
+                coversLower = diff < 0 || (diff == 0 && (lowerIncluded || !bucketLowerIncluded));
+            }
+            boolean coversUpper = true;
+            if (upper != null) {
+                int diff = comparator.compare(upper, bucketUpper);
+                coversUpper = diff > 0 || (diff == 0 && upperIncluded);
+            }
+            long bucketCount = bucketCounts.get(i);
+            // Assume half of a partially-covered bucket satisfies the range ...
+            count += coversLower && coversUpper ? bucketCount : bucketCount / 2.0d;
+        }
+        return count;
+    }
+
+    private void added( T key ) {
+        ++total;
+        Object value = valueOf(key);
+        distinctValues.add(value);
+        Long common = mostCommonValues.get(value);
+        if (common != null) mostCommonValues.put(value, common + 1L);
+        if (upperBounds.isEmpty()) {
+            lowest = key;
+            upperBounds.add(key);
+            bucketCounts.add(1L);
+            return;
+        }
+        if (comparator.compare(key, lowest) < 0) lowest = key;
+        int last = upperBounds.size() - 1;
+        if (comparator.compare(key, upperBounds.get(last)) > 0) upperBounds.set(last, key);
+        int bucket = bucketFor(key);
+        bucketCounts.set(bucket, bucketCounts.get(bucket) + 1L);
+    }
+
+    private void removed( T key ) {
+        if (total > 0L) --total;
+        Object value = valueOf(key);
+        Long common = mostCommonValues.get(value);
+        if (common != null) {
+            if (common > 1L) {
+                mostCommonValues.put(value, common - 1L);
+            } else {
+                mostCommonValues.remove(value);
+                mostCommonKeys.remove(value);
+            }
+        }
+        if (upperBounds.isEmpty()) return;
+        int bucket = bucketFor(key);
+        long count = bucketCounts.get(bucket);
+        if (count > 0L) bucketCounts.set(bucket, count - 1L);
+    }
+
+    private int bucketFor( T key ) {
+        // Find the first bucket whose upper bound is not less than the key ...
+        int low = 0;
+        int high = upperBounds.size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(upperBounds.get(mid), key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void clear() {
+        upperBounds.clear();
+        bucketCounts.clear();
+        mostCommonValues.clear();
+        mostCommonKeys.clear();
+        distinctValues.clear();
+        lowest = null;
+        total = 0L;
+    }
+
+    private void scheduleRebuild() {
+        if (rebuilding) return;
+        rebuilding = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    rebuild();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The repository is shutting down, so the current statistics will have to do ...
+            rebuilding = false;
+        }
+    }
+
+    private void rebuild() {
+        long scanGeneration;
+        synchronized (this) {
+            scanGeneration = generation;
+        }
+        try {
+            // Scan the index without blocking the writers or the planners, which use the existing statistics meanwhile ...
+            long perBucket = Math.max(1L, (keysByValue.size() + BUCKETS - 1) / BUCKETS);
+            List<T> scannedBounds = new ArrayList<>(BUCKETS);
+            List<Long> scannedCounts = new ArrayList<>(BUCKETS);
+            HyperLogLog scannedValues = new HyperLogLog();
+            PriorityQueue<Map.Entry<T, Long>> common = new PriorityQueue<>(MOST_COMMON_VALUES + 1, BY_COUNT);
+            T scannedLowest = null;
+            long inBucket = 0L;
+            T previous = null;
+            T run = null;
+            long runLength = 0L;
+            for (T key : keysByValue.keySet()) {
+                if (scannedLowest == null) scannedLowest = key;
+                if (++inBucket == perBucket) {
+                    scannedBounds.add(key);
+                    scannedCounts.add(inBucket);
+                    inBucket = 0L;
+                }
+                // Keys are sorted, so equal values are adjacent ...
+                Object value = valueOf(key);
+                if (runLength != 0L && value.equals(valueOf(run))) {
+                    ++runLength;
+                } else {
+                    addCommonValue(common, run, runLength);
+                    scannedValues.add(value);
+                    run = key;
+                    runLength = 1L;
+                }
+                previous = key;
+            }
+            addCommonValue(common, run, runLength);
+            if (inBucket != 0L) {
+                scannedBounds.add(previous);
+                scannedCounts.add(inBucket);
+            }
+            synchronized (this) {
+                // Don't use the scan if the index was emptied while it ran ...
+                if (generation != scanGeneration) return;
+                clear();
+                upperBounds.addAll(scannedBounds);
+                bucketCounts.addAll(scannedCounts);
+                for (Map.Entry<T, Long> entry : common) {
+                    Object value = valueOf(entry.getKey());
+                    mostCommonValues.put(value, entry.getValue());
+                    mostCommonKeys.put(value, entry.getKey());
+                }
+                distinctValues = scannedValues;
+                lowest = scannedLowest;
+                // Use the total of what was actually scanned, in case the index changed during the scan ...
+                for (Long count : bucketCounts) {
+                    total += count.longValue();
+                }
+                modifications = 0L;
+                built = true;
+                save();
+            }
+        } catch (RuntimeException e) {
+            // The index was probably shut down during the scan, and the statistics will be rebuilt when it is reopened ...
+        } finally {
+            synchronized (this) {
+                rebuilding = false;
+            }
+        }
+    }
+
+    private static <T> void addCommonValue( PriorityQueue<Map.Entry<T, Long>> common,
+                                            T key,
+                                            long count ) {
+        // Values that appear once are estimated well enough from the number of distinct values ...
+        if (count < 2L) return;
+        common.add(new AbstractMap.SimpleImmutableEntry<>(key, count));
+        if (common.size() > MOST_COMMON_VALUES) common.poll();
+    }
+
+    private void save() {
+        DataOutput2 out = new DataOutput2();
+        try {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(total);
+            out.writeLong(modifications);
+            out.writeInt(upperBounds.size());
+            if (!upperBounds.isEmpty()) serializer.serialize(out, lowest);
+            for (int i = 0; i != upperBounds.size(); ++i) {
+                serializer.serialize(out, upperBounds.get(i));
+                out.writeLong(bucketCounts.get(i));
+            }
+            out.writeInt(mostCommonKeys.size());
+            for (Map.Entry<Object, T> entry : mostCommonKeys.entrySet()) {
+                serializer.serialize(out, entry.getValue());
+                out.writeLong(mostCommonValues.get(entry.getKey()));
+            }
+            out.write(distinctValues.registers);
+        } catch (IOException e) {
+            throw new LocalIndexException(e);
+        }
+        store.put(STATISTICS, out.copyBytes());
+        unsaved = 0;
+    }
+
+    private boolean load() {
+        Object stored = store.get(STATISTICS);
+        if (!(stored instanceof byte[])) return false;
+        DataInput2 in = new DataInput2((byte[])stored);
+        try {
+            if (in.readByte() != FORMAT_VERSION) return false;
+            total = in.readLong();
+            modifications = in.readLong();
+            int buckets = in.readInt();
+            if (buckets != 0) lowest = serializer.deserialize(in, -1);
+            for (int i = 0; i != buckets; ++i) {
+                upperBounds.add(serializer.deserialize(in, -1));
+                bucketCounts.add(in.readLong());
+            }
+            int common = in.readInt();
+            for (int i = 0; i != common; ++i) {
+                T key = serializer.deserialize(in, -1);
+                Object value = valueOf(key);
+                mostCommonKeys.put(value, key);
+                mostCommonValues.put(value, in.readLong());
+            }
+            in.readFully(distinctValues.registers);
+        } catch (IOException | RuntimeException e) {
+            // The stored statistics can't be read, so they will be rebuilt ...
+            clear();
+            return false;
+        }
+        built = true;
+        return true;
+    }
+
+    private static Object valueOf( Object key ) {
+        // Duplicate indexes wrap each value so that it is unique ...
+        return key instanceof UniqueKey ? ((UniqueKey<?>)key).actualKey : key;
+    }
+
+    /**
+     * A HyperLogLog sketch of the number of distinct values that have been added.
+     */
+    static final class HyperLogLog {
+        private static final int PRECISION = 12;
+        private static final int REGISTERS = 1 << PRECISION;
+
+        private final byte[] registers = new byte[REGISTERS];
+
+        void add( Object value ) {
+            long hash = hash(value.hashCode());
+            int register = (int)(hash >>> (Long.SIZE - PRECISION));
+            // The rank is the position of the first 1-bit in the remaining bits ...
+            byte rank = (byte)(Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+            if (rank > registers[register]) registers[register] = rank;
+        }
+
+        long estimate() {
+            double sum = 0.0d;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0d / (1L << register);
+                if (register == 0) ++zeros;
+            }
+            double alpha = 0.7213d / (1.0d + 1.079d / REGISTERS);
+            double estimate = alpha * REGISTERS * REGISTERS / sum;
+            if (estimate <= 2.5d * REGISTERS && zeros != 0) {
+                // Use linear counting for small cardinalities ...
+                estimate = REGISTERS * Math.log((double)REGISTERS / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        void clear() {
+            Arrays.fill(registers, (byte)0);
+        }
+
+        private static long hash( long value ) {
+            // The 64-bit finalizer from MurmurHash3, which spreads the bits of the (often poorly distributed) hash codes ...
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStatistics(total=" + total + ", buckets=" + upperBounds.size() + ", mostCommonValues=" + mostCommonValues.size()
+               + ")";
+    }
+}
@@ -16,10 +16,12 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.Arrays;
 import java.util.Map;
 import javax.jcr.query.qom.BindVariableValue;
 import javax.jcr.query.qom.StaticOperand;
 import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
 import org.modeshape.jcr.index.local.MapDB.UniqueKey;
 import org.modeshape.jcr.query.model.Literal;
 import org.modeshape.jcr.value.ValueFactory;
@@ -79,6 +81,52 @@ public class IndexValues {
         return new StandardConverter<T>(factory);
     }
 
+    /**
+     * Obtain a converter that creates the lowest and highest {@link CompositeKey composite keys} that have the operand's value in
+     * the first column.
+     *
+     * @param firstColumnConverter the converter for the first column; may not be null
+     * @param columns the number of columns in the composite keys
+     * @return the converter; never null
+     */
+    public static Converter<CompositeKey> compositeKeyConverter( Converter<?> firstColumnConverter,
+                                                                 int columns ) {
+        return new CompositeKeyConverter(firstColumnConverter, columns);
+    }
+
+    static final class CompositeKeyConverter implements Converter<CompositeKey> {
+        private final Converter<?> firstColumnConverter;
+        private final int columns;
+
+        protected CompositeKeyConverter( Converter<?> firstColumnConverter,
+                                         int columns ) {
+            this.firstColumnConverter = firstColumnConverter;
+            this.columns = columns;
+        }
+
+        @Override
+        public CompositeKey toLowerValue( StaticOperand operand,
+                                          Map<String, Object> variables ) {
+            Object value = firstColumnConverter.toLowerValue(operand, variables);
+            return value != null ? key(value, CompositeKey.LOWEST) : null;
+        }
+
+        @Override
+        public CompositeKey toUpperValue( StaticOperand operand,
+                                          Map<String, Object> variables ) {
+            Object value = firstColumnConverter.toUpperValue(operand, variables);
+            return value != null ? key(value, CompositeKey.HIGHEST) : null;
+        }
+
+        private CompositeKey key( Object firstValue,
+                                  Object remainingValues ) {
+            Object[] values = new Object[columns];
+            Arrays.fill(values, remainingValues);
+            values[0] = firstValue;
+            return new CompositeKey(values);
+        }
+    }
+
     static final class UniqueKeyConverter<T> implements Converter<UniqueKey<T>> {
         private final Converter<T> valueConverter;
 
@@ -0,0 +1,218 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import javax.jcr.query.qom.Constraint;
+import org.mapdb.BTreeKeySerializer;
+import org.mapdb.DB;
+import org.mapdb.Fun;
+import org.mapdb.Serializer;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
+import org.modeshape.jcr.spi.index.IndexConstraints;
+import org.modeshape.jcr.value.ValueComparators;
+
+/**
+ * An index over multiple properties, where each entry is a tuple of the {@link CompositeKey column values} and the node key.
+ * The entries are stored in a MapDB B-tree in column order, so that constraints with equality on a leading prefix of the
+ * columns plus a range on the next column map onto a single contiguous range of entries, which are returned in column order.
+ * <p>
+ * A node with multiple values for some of the columns has one entry for each combination of its column values. Only entries
+ * that have a value for the first column are found in the range of entries. The combinations for every indexed node are also
+ * kept in a separate set ordered by node key, so that changes to a subset of the columns can be merged with the node's other
+ * column values.
+ * </p>
+ */
+final class LocalCompositeIndex implements LocalIndex<CompositeKey> {
+
+    /**
+     * Create a new composite index.
+     *
+     * @param name the name of the index; may not be null or empty
+     * @param workspaceName the name of the workspace; may not be null
+     * @param db the database in which the index information is to be stored; may not be null
+     * @param columnNames the names of the properties for each column, in order; may not be null or empty
+     * @param converters the converters from static operands to the values of each column; may not be null
+     * @param comparators the comparators for the values of each column; may not be null
+     * @param serializers the serializers for the values of each column; may not be null
+     * @return the new index; never null
+     */
+    static LocalCompositeIndex create( String name,
+                                       String workspaceName,
+                                       DB db,
+                                       List<String> columnNames,
+                                       Converter<?>[] converters,
+                                       Comparator<?>[] comparators,
+                                       Serializer<?>[] serializers ) {
+        return new LocalCompositeIndex(name, workspaceName, db, columnNames, converters, comparators, serializers);
+    }
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final String name;
+    private final String workspace;
+    private final DB db;
+    private final List<String> columnNames;
+    private final Converter<?>[] converters;
+    private final NavigableSet<Fun.Tuple2<CompositeKey, String>> entries;
+    private final NavigableSet<Fun.Tuple2<String, CompositeKey>> keysByNode;
+    private final boolean isNew;
+
+    LocalCompositeIndex( String name,
+                         String workspaceName,
+                         DB db,
+                         List<String> columnNames,
+                         Converter<?>[] converters,
+                         Comparator<?>[] comparators,
+                         Serializer<?>[] serializers ) {
+        assert name != null;
+        assert workspaceName != null;
+        assert db != null;
+        assert columnNames.size() == converters.length;
+        this.name = name;
+        this.workspace = workspaceName;
+        this.db = db;
+        this.columnNames = columnNames;
+        this.converters = converters;
+        if (db.exists(name)) {
+            logger.debug("Reopening storage for '{0}' index in workspace '{1}'", name, workspaceName);
+            this.entries = db.getTreeSet(name);
+            this.keysByNode = db.getTreeSet(name + "/nodes");
+            this.isNew = false;
+        } else {
+            logger.debug("Creating storage for '{0}' index in workspace '{1}'", name, workspaceName);
+            final Comparator<CompositeKey> keyComparator = MapDB.compositeKeyComparator(comparators);
+            final Serializer<CompositeKey> keySerializer = MapDB.compositeKeySerializer(serializers);
+            final Comparator<Fun.Tuple2<CompositeKey, String>> entryComparator = MapDB.tupleComparator(keyComparator,
+                                                                                                        ValueComparators.STRING_COMPARATOR);
+            final BTreeKeySerializer<Fun.Tuple2<CompositeKey, String>> entrySerializer = MapDB.tupleBTreeSerializer(keyComparator,
+                                                                                                                    keySerializer,
+                                                                                                                    Serializer.STRING,
+                                                                                                                    entryComparator);
+            this.entries = db.createTreeSet(name).counterEnable().comparator(entryComparator).serializer(entrySerializer).make();
+            final Comparator<Fun.Tuple2<String, CompositeKey>> nodeComparator = MapDB.tupleComparator(ValueComparators.STRING_COMPARATOR,
+                                                                                                      keyComparator);
+            final BTreeKeySerializer<Fun.Tuple2<String, CompositeKey>> nodeSerializer = MapDB.tupleBTreeSerializer(ValueComparators.STRING_COMPARATOR,
+                                                                                                                   Serializer.STRING,
+                                                                                                                   keySerializer,
+                                                                                                                   nodeComparator);
+            this.keysByNode = db.createTreeSet(name + "/nodes").comparator(nodeComparator).serializer(nodeSerializer).make();
+            this.isNew = true;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public String getWorkspaceName() {
+        return workspace;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * Get the combinations of column values currently indexed for the given node.
+     *
+     * @param nodeKey the node key; may not be null
+     * @return the node's column values; never null but empty if the node is not in this index
+     */
+    List<CompositeKey> keysFor( String nodeKey ) {
+        List<CompositeKey> keys = new ArrayList<>();
+        for (Fun.Tuple2<String, CompositeKey> entry : entriesFor(nodeKey)) {
+            keys.add(entry.b);
+        }
+        return keys;
+    }
+
+    @SuppressWarnings( {"unchecked", "rawtypes"} )
+    private NavigableSet<Fun.Tuple2<String, CompositeKey>> entriesFor( String nodeKey ) {
+        // A null key sorts before all keys, while the HI marker sorts after all keys ...
+        return keysByNode.subSet(new Fun.Tuple2(nodeKey, null), true, new Fun.Tuple2(nodeKey, Fun.HI), true);
+    }
+
+    @Override
+    public long estimateTotalCount() {
+        return entries.size();
+    }
+
+    @Override
+    public Results filter( IndexConstraints filter ) {
+        return Operations.createCompositeFilter(entries, columnNames, converters, filter.getConstraints(), filter.getVariables())
+                         .getResults();
+    }
+
+    @Override
+    public long estimateCardinality( Constraint constraint,
+                                     Map<String, Object> variables ) {
+        return Operations.createCompositeFilter(entries, columnNames, converters, Collections.singleton(constraint), variables)
+                         .estimateCount();
+    }
+
+    @Override
+    public void add( String nodeKey,
+                     CompositeKey key ) {
+        logger.trace("Adding node '{0}' to '{1}' index with values '{2}'", nodeKey, name, key);
+        if (keysByNode.add(Fun.t2(nodeKey, key)) && key.get(0) != null) entries.add(Fun.t2(key, nodeKey));
+    }
+
+    @Override
+    public void remove( String nodeKey ) {
+        for (CompositeKey key : keysFor(nodeKey)) {
+            remove(nodeKey, key);
+        }
+    }
+
+    @Override
+    public void remove( String nodeKey,
+                        CompositeKey key ) {
+        if (keysByNode.remove(Fun.t2(nodeKey, key))) {
+            logger.trace("Removing node '{0}' from '{1}' index with values '{2}'", nodeKey, name, key);
+            entries.remove(Fun.t2(key, nodeKey));
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        entries.clear();
+        keysByNode.clear();
+    }
+
+    @Override
+    public void commit() {
+        db.commit();
+    }
+
+    @Override
+    public void shutdown( boolean destroyed ) {
+        if (destroyed) {
+            // Remove the database since the index was destroyed ...
+            db.delete(name);
+            db.delete(name + "/nodes");
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.modeshape.jcr.index.local;
 
 import java.util.Comparator;
 import java.util.NavigableMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.jcr.query.qom.StaticOperand;
 import org.mapdb.DB;
@@ -47,6 +48,7 @@ final class LocalDuplicateIndex<T> extends LocalMapIndex<UniqueKey<T>, T> {
      * @param converter the converter from {@link StaticOperand} to values being indexed; may not be null
      * @param valueSerializer the serializer for the type of value being indexed
      * @param comparator the comparator for the values; may not be null
+     * @param executor the executor used to rebuild the index statistics in the background; may not be null
      * @return the new index; never null
      */
     static <T> LocalDuplicateIndex<T> create( String name,
@@ -54,8 +56,9 @@ final class LocalDuplicateIndex<T> extends LocalMapIndex<UniqueKey<T>, T> {
                                               DB db,
                                               Converter<T> converter,
                                               Serializer<T> valueSerializer,
-                                              Comparator<T> comparator ) {
-        return new LocalDuplicateIndex<>(name, workspaceName, db, converter, valueSerializer, comparator);
+                                              Comparator<T> comparator,
+                                              Executor executor ) {
+        return new LocalDuplicateIndex<>(name, workspaceName, db, converter, valueSerializer, comparator, executor);
     }
 
     private static final String NEXT_COUNTER = "next-counter";
@@ -68,10 +71,11 @@ final class LocalDuplicateIndex<T> extends LocalMapIndex<UniqueKey<T>, T> {
                                    DB db,
                                    Converter<T> converter,
                                    Serializer<T> valueSerializer,
-                                   Comparator<T> comparator ) {
+                                   Comparator<T> comparator,
+                                   Executor executor ) {
         super(name, workspaceName, db, IndexValues.uniqueKeyConverter(converter), MapDB.uniqueKeyBTreeSerializer(valueSerializer,
                                                                                                                  comparator),
-              MapDB.uniqueKeySerializer(valueSerializer, comparator));
+              MapDB.uniqueKeySerializer(valueSerializer, comparator), executor);
         Long nextCounter = (Long)options.get(NEXT_COUNTER);
         this.counter = new AtomicLong(nextCounter != null ? nextCounter.longValue() : 0L);
     }
@@ -17,12 +17,18 @@
 package org.modeshape.jcr.index.local;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.DynamicOperand;
 import javax.jcr.query.qom.JoinCondition;
+import javax.jcr.query.qom.PropertyValue;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.modeshape.common.collection.Problems;
@@ -32,10 +38,13 @@ import org.modeshape.jcr.NodeTypes;
 import org.modeshape.jcr.NodeTypes.Supplier;
 import org.modeshape.jcr.api.index.IndexColumnDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition;
+import org.modeshape.jcr.api.query.qom.Between;
+import org.modeshape.jcr.api.query.qom.Operator;
 import org.modeshape.jcr.api.query.qom.QueryObjectModelConstants;
 import org.modeshape.jcr.api.query.qom.Relike;
 import org.modeshape.jcr.cache.change.ChangeSetAdapter.NodeTypePredicate;
 import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.And;
 import org.modeshape.jcr.query.model.Comparison;
 import org.modeshape.jcr.query.model.FullTextSearch;
 import org.modeshape.jcr.spi.index.IndexCostCalculator;
@@ -60,6 +69,7 @@ public class LocalIndexProvider extends IndexProvider {
 
     private static final Float MAX_SELECTIVITY = new Float(1.0f);
     private static final String DB_FILENAME = "local-indexes.db";
+    private static final String LOG_FILENAME = "local-indexes.log";
 
     /**
      * The directory in which the indexes are to be stored. This needs to be set, or the {@link #path} and {@link #relativeTo}
@@ -87,6 +97,19 @@ public class LocalIndexProvider extends IndexProvider {
     private boolean transactionDisable = false;
     private boolean asyncWrite = false;
     private Integer cacheSize;
+
+    /**
+     * The number of milliseconds between the commits of the changes made to all indexes, or 0 if the changes of each change set
+     * are committed when each index has applied them. When this is positive, the change sets are recorded in a write-ahead log
+     * so that the uncommitted changes are applied again if the process stops before they are committed.
+     */
+    private long groupCommitIntervalInMillis = 0L;
+    /**
+     * The maximum number of change sets that are applied to the indexes before the changes are committed, when
+     * {@link #groupCommitIntervalInMillis group commits} are used.
+     */
+    private int groupCommitMaxChangeSets = 1000;
+    private GroupCommit groupCommit;
     
     public LocalIndexProvider() {
     }
@@ -173,8 +196,19 @@ public class LocalIndexProvider extends IndexProvider {
             dbMaker.asyncWriteEnable();
             logger().debug("MapDB async writes enabled for index provider {0}", getName());
         }
-        this.db = dbMaker.make(); 
-        
+        this.db = dbMaker.make();
+
+        if (this.groupCommitIntervalInMillis > 0L) {
+            try {
+                this.groupCommit = new GroupCommit(db, new File(dir, LOG_FILENAME), Math.max(1, groupCommitMaxChangeSets));
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+            this.groupCommit.start(context().getScheduledThreadPool("modeshape-local-index-commits"),
+                                   groupCommitIntervalInMillis);
+            logger().debug("Group commits every {0} ms enabled for index provider {1}", groupCommitIntervalInMillis, getName());
+        }
+
         logger().trace("Found the index files {0} in index database for repository '{1}' at: {2}", db.getCatalog(),
                        getRepositoryName(), file.getAbsolutePath());
     }
@@ -184,6 +218,10 @@ public class LocalIndexProvider extends IndexProvider {
         logger().debug("Shutting down the local index provider '{0}' in repository '{1}'", getName(), getRepositoryName());
         if (db != null) {
             try {
+                if (groupCommit != null) {
+                    groupCommit.shutdown();
+                    groupCommit = null;
+                }
                 db.commit();
                 db.close();
             } finally {
@@ -209,6 +247,7 @@ public class LocalIndexProvider extends IndexProvider {
         ManagedLocalIndexBuilder<?> builder = ManagedLocalIndexBuilder.create(context(), defn, nodeTypesSupplier, matcher);
         logger().debug("Index provider '{0}' is creating index in workspace '{1}': {2}", getName(), workspaceName, defn);
         final ManagedLocalIndex index = builder.build(workspaceName, db);
+        useGroupCommit(index, defn, workspaceName);
         if (!index.isNew()) {
             // the index already exists, so we should not scan anything
             return index;
@@ -254,6 +293,7 @@ public class LocalIndexProvider extends IndexProvider {
         ManagedLocalIndexBuilder<?> builder = ManagedLocalIndexBuilder.create(context(), updatedDefn, nodeTypesSupplier, matcher);
         logger().debug("Index provider '{0}' is updating index in workspace '{1}': {2}", getName(), workspaceName, updatedDefn);
         final ManagedLocalIndex index = builder.build(workspaceName, db);
+        useGroupCommit(index, updatedDefn, workspaceName);
         if (index.isNew()) {
             feedback.scan(workspaceName, new IndexFeedback.IndexingCallback() {
 
@@ -285,6 +325,14 @@ public class LocalIndexProvider extends IndexProvider {
         existingIndex.shutdown(true);
     }
 
+    private void useGroupCommit( ManagedLocalIndex index,
+                                 IndexDefinition defn,
+                                 String workspaceName ) {
+        if (groupCommit != null) {
+            index.useGroupCommit(groupCommit, defn.getName() + "/" + workspaceName);
+        }
+    }
+
     private boolean isChanged( IndexDefinition defn1,
                                IndexDefinition defn2 ) {
         if (defn1.getKind() != defn2.getKind()) return true;
@@ -338,6 +386,10 @@ public class LocalIndexProvider extends IndexProvider {
             }
 
         };
+        if (!defn.hasSingleColumn()) {
+            planUseOfCompositeIndex(context, calculator, workspaceName, localIndex, defn, planner);
+            return;
+        }
         // Does this index apply to any of the ANDed constraints?
         for (Constraint constraint : calculator.andedConstraints()) {
             if (planner.indexAppliesTo(constraint)) {
@@ -370,4 +422,106 @@ public class LocalIndexProvider extends IndexProvider {
 
         }
     }
+
+    /**
+     * Plan the use of an index with multiple columns. Such an index is used for all of the ANDed constraints on its columns, but
+     * only when at least one of them constrains the first column, since only nodes with a value for the first column can be
+     * found with the index. The index returns the nodes ordered by the first column without an equality constraint, so that a
+     * query ordered by that column does not need to be sorted.
+     */
+    private void planUseOfCompositeIndex( QueryContext context,
+                                          IndexCostCalculator calculator,
+                                          String workspaceName,
+                                          ManagedLocalIndex localIndex,
+                                          IndexDefinition defn,
+                                          IndexUsage planner ) {
+        String firstColumn = defn.getColumnDefinition(0).getPropertyName();
+        List<Constraint> constraints = new ArrayList<>();
+        boolean constrainsFirstColumn = false;
+        for (Constraint constraint : calculator.andedConstraints()) {
+            if (planner.indexAppliesTo(constraint)) {
+                constraints.add(constraint);
+                if (constrainsRange(constraint, firstColumn)) constrainsFirstColumn = true;
+            }
+        }
+        if (!constrainsFirstColumn) return;
+        logger().trace("Index '{0}' in '{1}' provider applies to query in workspace '{2}' with constraints: {3}", defn.getName(),
+                       getName(), workspaceName, constraints);
+        // Estimate the cardinality of all the constraints together ...
+        org.modeshape.jcr.query.model.Constraint combined = null;
+        for (Constraint constraint : constraints) {
+            org.modeshape.jcr.query.model.Constraint next = (org.modeshape.jcr.query.model.Constraint)constraint;
+            combined = combined == null ? next : new And(combined, next);
+        }
+        long cardinality = localIndex.estimateCardinality(combined, context.getVariables());
+        long total = localIndex.estimateTotalCount();
+        Float selectivity = null;
+        if (total >= 0L) {
+            double ratio = (double)cardinality / (double)total;
+            selectivity = cardinality <= total ? new Float(ratio) : MAX_SELECTIVITY;
+        }
+        String orderedBy = null;
+        for (int i = 0; i != defn.size() && orderedBy == null; ++i) {
+            String column = defn.getColumnDefinition(i).getPropertyName();
+            if (!constrainsEquality(constraints, column)) orderedBy = column;
+        }
+        if (orderedBy == null) {
+            calculator.addIndex(defn.getName(), workspaceName, getName(), constraints, Costs.LOCAL, cardinality, selectivity);
+        } else {
+            calculator.addIndex(defn.getName(), workspaceName, getName(), constraints, Costs.LOCAL, cardinality, selectivity,
+                                IndexCostCalculator.ORDERED_BY_PARAMETER, orderedBy);
+        }
+    }
+
+    private static boolean constrainsEquality( Collection<Constraint> constraints,
+                                               String propertyName ) {
+        for (Constraint constraint : constraints) {
+            if (constrainsEquality(constraint, propertyName)) return true;
+        }
+        return false;
+    }
+
+    private static boolean constrainsEquality( Constraint constraint,
+                                               String propertyName ) {
+        if (constraint instanceof And) {
+            And and = (And)constraint;
+            return constrainsEquality(and.getConstraint1(), propertyName)
+                   || constrainsEquality(and.getConstraint2(), propertyName);
+        }
+        if (constraint instanceof Comparison) {
+            Comparison comparison = (Comparison)constraint;
+            return comparison.operator() == Operator.EQUAL_TO && isProperty(comparison.getOperand1(), propertyName);
+        }
+        return false;
+    }
+
+    private static boolean constrainsRange( Constraint constraint,
+                                            String propertyName ) {
+        if (constraint instanceof And) {
+            And and = (And)constraint;
+            return constrainsRange(and.getConstraint1(), propertyName) || constrainsRange(and.getConstraint2(), propertyName);
+        }
+        if (constraint instanceof Between) {
+            return isProperty(((Between)constraint).getOperand(), propertyName);
+        }
+        if (constraint instanceof Comparison) {
+            Comparison comparison = (Comparison)constraint;
+            switch (comparison.operator()) {
+                case EQUAL_TO:
+                case GREATER_THAN:
+                case GREATER_THAN_OR_EQUAL_TO:
+                case LESS_THAN:
+                case LESS_THAN_OR_EQUAL_TO:
+                    return isProperty(comparison.getOperand1(), propertyName);
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isProperty( DynamicOperand operand,
+                                       String propertyName ) {
+        return operand instanceof PropertyValue && propertyName.equals(((PropertyValue)operand).getPropertyName());
+    }
 }
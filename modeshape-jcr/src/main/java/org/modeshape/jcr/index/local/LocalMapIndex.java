@@ -21,6 +21,7 @@ import java.util.Comparator;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import javax.jcr.query.qom.Constraint;
 import org.mapdb.BTreeKeySerializer;
 import org.mapdb.BTreeMap;
@@ -53,18 +54,21 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
     private final DB db;
     protected final Comparator<T> comparator;
     private final boolean isNew;
+    private final IndexStatistics<T> statistics;
 
     LocalMapIndex( String name,
                    String workspaceName,
                    DB db,
                    Converter<T> converter,
                    BTreeKeySerializer<T> valueSerializer,
-                   Serializer<T> valueRawSerializer ) {
+                   Serializer<T> valueRawSerializer,
+                   Executor executor ) {
         assert name != null;
         assert workspaceName != null;
         assert db != null;
         assert converter != null;
         assert valueSerializer != null;
+        assert executor != null;
         this.name = name;
         this.workspace = workspaceName;
         this.converter = converter;
@@ -97,6 +101,11 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
 
         // Bind the map and the set together so the set is auto-updated as the map is changed ...
         Bind.mapInverse(this.keysByValue, this.valuesByKey);
+
+        // Keep the statistics used for estimating cardinalities up to date as the map is changed ...
+        this.statistics = new IndexStatistics<>(this.keysByValue, this.comparator, converter, valueRawSerializer, this.options,
+                                                executor);
+        this.keysByValue.modificationListenerAdd(this.statistics);
     }
 
     @Override
@@ -130,21 +139,27 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
     @Override
     public long estimateCardinality( Constraint constraint,
                                      Map<String, Object> variables ) {
+        long estimate = statistics.estimateCardinality(constraint, variables);
+        if (estimate >= 0L) return estimate;
+        // The statistics are still being built, so count the matching entries ...
         return Operations.createFilter(keysByValue, converter, Collections.singleton(constraint), variables).estimateCount();
     }
 
     @Override
     public void removeAll() {
         keysByValue.clear();
+        statistics.reset();
     }
 
     @Override
     public void commit() {
+        statistics.flush();
         db.commit();
     }
 
     @Override
     public void shutdown( boolean destroyed ) {
+        if (!destroyed) statistics.flush();
         if (destroyed) {
             // Remove the database since the index was destroyed ...
             db.delete(name);
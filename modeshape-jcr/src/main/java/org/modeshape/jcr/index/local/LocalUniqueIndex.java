@@ -16,6 +16,7 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.concurrent.Executor;
 import javax.jcr.query.qom.StaticOperand;
 import org.mapdb.BTreeKeySerializer;
 import org.mapdb.DB;
@@ -43,6 +44,7 @@ class LocalUniqueIndex<T> extends LocalMapIndex<T, T> {
      * @param converter the converter from {@link StaticOperand} to values being indexed; may not be null
      * @param valueSerializer the serializer for the type of value being indexed; may not be null
      * @param rawSerializer the raw value serializer for the type of value being indexed; may not be null
+     * @param executor the executor used to rebuild the index statistics in the background; may not be null
      * @return the new index; never null
      */
     static <T> LocalUniqueIndex<T> create( String name,
@@ -50,8 +52,9 @@ class LocalUniqueIndex<T> extends LocalMapIndex<T, T> {
                                            DB db,
                                            Converter<T> converter,
                                            BTreeKeySerializer<T> valueSerializer,
-                                           Serializer<T> rawSerializer ) {
-        return new LocalUniqueIndex<>(name, workspaceName, db, converter, valueSerializer, rawSerializer);
+                                           Serializer<T> rawSerializer,
+                                           Executor executor ) {
+        return new LocalUniqueIndex<>(name, workspaceName, db, converter, valueSerializer, rawSerializer, executor);
     }
 
     /**
@@ -63,14 +66,16 @@ class LocalUniqueIndex<T> extends LocalMapIndex<T, T> {
      * @param converter the converter from {@link StaticOperand} to values being indexed; may not be null
      * @param valueSerializer the serializer for the type of value being indexed; may not be null
      * @param rawSerializer the raw value serializer for the type of value being indexed; may not be null
+     * @param executor the executor used to rebuild the index statistics in the background; may not be null
      */
     protected LocalUniqueIndex( String name,
                                 String workspaceName,
                                 DB db,
                                 Converter<T> converter,
                                 BTreeKeySerializer<T> valueSerializer,
-                                Serializer<T> rawSerializer ) {
-        super(name, workspaceName, db, converter, valueSerializer, rawSerializer);
+                                Serializer<T> rawSerializer,
+                                Executor executor ) {
+        super(name, workspaceName, db, converter, valueSerializer, rawSerializer, executor);
 
     }
 
@@ -106,4 +106,18 @@ public class ManagedLocalIndex implements ManagedIndex {
     protected boolean isNew() {
         return index.isNew();
     }
+
+    /**
+     * Use the supplied group commit for all subsequent changes to this index, after first replaying any recovered changes that
+     * this index has not yet applied.
+     *
+     * @param groupCommit the group commit; may not be null
+     * @param indexId the identifier of this index, unique within the provider; may not be null
+     */
+    void useGroupCommit( GroupCommit groupCommit,
+                         String indexId ) {
+        IndexChangeAdapters.LocalIndexChangeAdapter localAdapter = (IndexChangeAdapters.LocalIndexChangeAdapter)adapter;
+        localAdapter.useGroupCommit(groupCommit, indexId);
+        groupCommit.replay(indexId, isNew(), localAdapter);
+    }
 }
@@ -16,7 +16,10 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
 import org.mapdb.BTreeKeySerializer;
 import org.mapdb.DB;
 import org.mapdb.Serializer;
@@ -32,6 +35,7 @@ import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
 import org.modeshape.jcr.cache.change.ChangeSetAdapter.NodeTypePredicate;
 import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
 import org.modeshape.jcr.index.local.MapDB.Serializers;
 import org.modeshape.jcr.spi.index.provider.IndexChangeAdapter;
 import org.modeshape.jcr.value.Name;
@@ -48,6 +52,8 @@ import org.modeshape.jcr.value.ValueFactory;
  */
 public abstract class ManagedLocalIndexBuilder<T> {
 
+    private static final String STATISTICS_THREAD_POOL = "modeshape-local-index-statistics";
+
     /**
      * Create a builder for the supplied index definition.
      *
@@ -65,7 +71,10 @@ public abstract class ManagedLocalIndexBuilder<T> {
             PropertyType actualPropertyType = determineActualPropertyType(defn.getColumnDefinition(0));
             return new SingleColumnIndexBuilder<T>(context, defn, nodeTypesSupplier, matcher, actualPropertyType);
         }
-        throw new LocalIndexException("The local provider does not support multi-column indexes");
+        @SuppressWarnings( "unchecked" )
+        ManagedLocalIndexBuilder<T> builder = (ManagedLocalIndexBuilder<T>)new CompositeIndexBuilder(context, defn,
+                                                                                                      nodeTypesSupplier, matcher);
+        return builder;
     }
 
     protected static PropertyType determineActualPropertyType( IndexColumnDefinition columnDefn ) {
@@ -147,6 +156,10 @@ public abstract class ManagedLocalIndexBuilder<T> {
 
     protected abstract Class<T> getValueClass();
 
+    protected final Executor statisticsExecutor() {
+        return context.getCachedTreadPool(STATISTICS_THREAD_POOL);
+    }
+
     protected boolean isNodeTypesIndex() {
         return false;
     }
@@ -358,7 +371,8 @@ public abstract class ManagedLocalIndexBuilder<T> {
                 case VALUE:
                     assert !isNodeTypesIndex();
                     LocalDuplicateIndex<T> dupIndex = LocalDuplicateIndex.create(indexName(), workspaceName, db, getConverter(),
-                                                                                 getSerializer(), getComparator());
+                                                                                 getSerializer(), getComparator(),
+                                                                                 statisticsExecutor());
                     if (isPrimaryTypeIndex()) {
                         // We know that the value type must be a name ...
                         LocalDuplicateIndex<Name> strIndex = (LocalDuplicateIndex<Name>)dupIndex;
@@ -397,7 +411,8 @@ public abstract class ManagedLocalIndexBuilder<T> {
                     assert !isPrimaryTypeIndex();
                     assert !isMixinTypesIndex();
                     LocalUniqueIndex<T> uidx = LocalUniqueIndex.create(indexName(), workspaceName, db, getConverter(),
-                                                                       getBTreeKeySerializer(), getSerializer());
+                                                                       getBTreeKeySerializer(), getSerializer(),
+                                                                       statisticsExecutor());
                     // This is a single type ...
                     Name propertyName = name(firstColumn().getPropertyName());
                     assert propertyName != null;
@@ -430,4 +445,109 @@ public abstract class ManagedLocalIndexBuilder<T> {
             throw new IllegalArgumentException("Unexpected index kind on: " + defn);
         }
     }
+
+    /**
+     * A builder for indexes with multiple columns, which are stored in a {@link LocalCompositeIndex}.
+     */
+    protected static class CompositeIndexBuilder extends ManagedLocalIndexBuilder<CompositeKey> {
+        private final List<Name> propertyNames = new ArrayList<>();
+        private final List<String> columnNames = new ArrayList<>();
+        private final PropertyType[] types;
+        private final Serializer<?>[] columnSerializers;
+        private final Comparator<?>[] columnComparators;
+        private final Converter<?>[] columnConverters;
+        private final ValueFactory<?>[] factories;
+        private final Serializer<CompositeKey> serializer;
+        private final Comparator<CompositeKey> comparator;
+        private final BTreeKeySerializer<CompositeKey> btreeSerializer;
+        private final Converter<CompositeKey> converter;
+
+        @SuppressWarnings( "unchecked" )
+        protected CompositeIndexBuilder( ExecutionContext context,
+                                         IndexDefinition defn,
+                                         Supplier nodeTypesSupplier,
+                                         NodeTypePredicate matcher ) {
+            super(context, defn, nodeTypesSupplier, matcher);
+            int size = defn.size();
+            types = new PropertyType[size];
+            columnSerializers = new Serializer<?>[size];
+            columnComparators = new Comparator<?>[size];
+            columnConverters = new Converter<?>[size];
+            factories = new ValueFactory<?>[size];
+            for (int i = 0; i != size; ++i) {
+                IndexColumnDefinition columnDefn = defn.getColumnDefinition(i);
+                PropertyType type = determineActualPropertyType(columnDefn);
+                ValueFactory<?> factory = this.context.getValueFactories().getValueFactory(type);
+                types[i] = type;
+                columnNames.add(columnDefn.getPropertyName());
+                propertyNames.add(name(columnDefn.getPropertyName()));
+                columnSerializers[i] = serializers.serializerFor(type.getValueClass());
+                columnComparators[i] = type.getComparator();
+                columnConverters[i] = IndexValues.converter(factory);
+                factories[i] = factory;
+            }
+            serializer = MapDB.compositeKeySerializer(columnSerializers);
+            comparator = MapDB.compositeKeyComparator(columnComparators);
+            btreeSerializer = (BTreeKeySerializer<CompositeKey>)serializers.bTreeKeySerializerFor(CompositeKey.class, comparator,
+                                                                                                  false);
+            converter = IndexValues.compositeKeyConverter(columnConverters[0], size);
+        }
+
+        @Override
+        protected Serializer<CompositeKey> getSerializer() {
+            return serializer;
+        }
+
+        @Override
+        protected BTreeKeySerializer<CompositeKey> getBTreeKeySerializer() {
+            return btreeSerializer;
+        }
+
+        @Override
+        protected Comparator<CompositeKey> getComparator() {
+            return comparator;
+        }
+
+        @Override
+        protected Converter<CompositeKey> getConverter() {
+            return converter;
+        }
+
+        @Override
+        protected Class<CompositeKey> getValueClass() {
+            return CompositeKey.class;
+        }
+
+        private boolean isPseudoColumn( IndexColumnDefinition columnDefn ) {
+            // These columns are not stored as properties on the nodes ...
+            return matches(columnDefn, JcrLexicon.PATH) || matches(columnDefn, JcrLexicon.NAME)
+                   || matches(columnDefn, ModeShapeLexicon.LOCALNAME) || matches(columnDefn, ModeShapeLexicon.DEPTH);
+        }
+
+        @Override
+        public void validate( Problems problems ) {
+            if (defn.getKind() != IndexKind.VALUE) {
+                problems.addError(JcrI18n.localIndexWithMultipleColumnsMustBeValueIndex, defn.getProviderName(),
+                                  defn.getName(), defn.getKind());
+                return;
+            }
+            for (IndexColumnDefinition columnDefn : defn) {
+                if (isPseudoColumn(columnDefn)) {
+                    problems.addError(JcrI18n.localIndexWithMultipleColumnsMustUseStoredProperties, defn.getProviderName(),
+                                      defn.getName(), columnDefn.getPropertyName());
+                }
+            }
+        }
+
+        @Override
+        public ManagedLocalIndex build( String workspaceName,
+                                        DB db ) throws LocalIndexException {
+            assert defn.getKind() == IndexKind.VALUE : "validation should prevent other kinds of multi-column indexes";
+            LocalCompositeIndex index = LocalCompositeIndex.create(indexName(), workspaceName, db, columnNames,
+                                                                   columnConverters, columnComparators, columnSerializers);
+            IndexChangeAdapter changeAdapter = IndexChangeAdapters.forMultipleProperties(context, matcher, workspaceName,
+                                                                                         propertyNames, factories, index);
+            return new ManagedLocalIndex(index, changeAdapter);
+        }
+    }
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -144,14 +145,14 @@ public class MapDB {
         @Override
         public void serialize( DataOutput out,
                                NodeKey value ) throws IOException {
-            out.writeUTF(value.toString());
+            value.write(out);
         }
 
         @Override
         public NodeKey deserialize( DataInput in,
                                     int available ) throws IOException {
-            String keyStr = in.readUTF();
-            return new NodeKey(keyStr);
+            // This also reads the keys that were written as strings ...
+            return NodeKey.read(in);
         }
 
         @Override
@@ -473,6 +474,169 @@ public class MapDB {
 
     }
 
+    public static Comparator<CompositeKey> compositeKeyComparator( Comparator<?>[] columnComparators ) {
+        return new CompositeKeyComparator(columnComparators);
+    }
+
+    public static Serializer<CompositeKey> compositeKeySerializer( Serializer<?>[] columnSerializers ) {
+        return new CompositeKeySerializer(columnSerializers);
+    }
+
+    /**
+     * The key of a multi-column index, holding one value for each column of the index. A null value denotes a node that has no
+     * value for that column. Keys used only as search bounds may also contain the {@link #LOWEST} and {@link #HIGHEST} markers,
+     * which sort before and after all other values of a column.
+     */
+    public static final class CompositeKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** The marker that sorts before all values (including absent values) of a column. Never persisted. */
+        public static final Object LOWEST = new Object() {
+            @Override
+            public String toString() {
+                return "<lowest>";
+            }
+        };
+
+        /** The marker that sorts after all values of a column. Never persisted. */
+        public static final Object HIGHEST = Fun.HI;
+
+        protected final Object[] values;
+
+        public CompositeKey( Object... values ) {
+            this.values = values;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public Object get( int column ) {
+            return values[column];
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof CompositeKey) {
+                return Arrays.equals(values, ((CompositeKey)obj).values);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    public static final class CompositeKeyComparator implements Comparator<CompositeKey>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Comparator<?>[] columnComparators;
+
+        public CompositeKeyComparator( Comparator<?>[] columnComparators ) {
+            this.columnComparators = columnComparators;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        @Override
+        public int compare( CompositeKey o1,
+                            CompositeKey o2 ) {
+            if (o1 == o2) return 0;
+            for (int i = 0; i != columnComparators.length; ++i) {
+                Object v1 = o1.values[i];
+                Object v2 = o2.values[i];
+                if (v1 == v2) continue;
+                int diff = rank(v1) - rank(v2);
+                if (diff != 0) return diff;
+                diff = ((Comparator<Object>)columnComparators[i]).compare(v1, v2);
+                if (diff != 0) return diff;
+            }
+            return 0;
+        }
+
+        private static int rank( Object value ) {
+            // Orders the markers and absent values relative to the actual values ...
+            if (value == CompositeKey.LOWEST) return 0;
+            if (value == null) return 1;
+            if (value == CompositeKey.HIGHEST) return 3;
+            return 2;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof CompositeKeyComparator) {
+                return Arrays.equals(columnComparators, ((CompositeKeyComparator)obj).columnComparators);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    public static final class CompositeKeySerializer implements Serializer<CompositeKey>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Serializer<?>[] columnSerializers;
+
+        public CompositeKeySerializer( Serializer<?>[] columnSerializers ) {
+            this.columnSerializers = columnSerializers;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        @Override
+        public void serialize( DataOutput out,
+                               CompositeKey value ) throws IOException {
+            for (int i = 0; i != columnSerializers.length; ++i) {
+                Object columnValue = value.values[i];
+                out.writeBoolean(columnValue != null);
+                if (columnValue != null) ((Serializer<Object>)columnSerializers[i]).serialize(out, columnValue);
+            }
+        }
+
+        @Override
+        public CompositeKey deserialize( DataInput in,
+                                         int available ) throws IOException {
+            Object[] values = new Object[columnSerializers.length];
+            for (int i = 0; i != columnSerializers.length; ++i) {
+                if (in.readBoolean()) values[i] = columnSerializers[i].deserialize(in, -1);
+            }
+            return new CompositeKey(values);
+        }
+
+        @Override
+        public int fixedSize() {
+            return -1;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof CompositeKeySerializer) {
+                return Arrays.equals(columnSerializers, ((CompositeKeySerializer)obj).columnSerializers);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return "CompositeKeySerializer" + Arrays.toString(columnSerializers);
+        }
+    }
+
     public static class NaturalComparator<K extends Comparable<K>> implements Comparator<K>, Serializable {
         private static final long serialVersionUID = 1L;
 
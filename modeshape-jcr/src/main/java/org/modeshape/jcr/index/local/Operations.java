@@ -16,19 +16,27 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import javax.jcr.query.qom.And;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.DynamicOperand;
 import javax.jcr.query.qom.Not;
 import javax.jcr.query.qom.Or;
 import javax.jcr.query.qom.PropertyExistence;
+import javax.jcr.query.qom.PropertyValue;
 import javax.jcr.query.qom.StaticOperand;
+import org.mapdb.Fun;
 import org.modeshape.common.collection.EmptyIterator;
 import org.modeshape.common.collection.MultiIterator;
 import org.modeshape.common.logging.Logger;
@@ -37,6 +45,7 @@ import org.modeshape.jcr.api.query.qom.Operator;
 import org.modeshape.jcr.api.query.qom.SetCriteria;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
 import org.modeshape.jcr.query.model.BindVariableName;
 import org.modeshape.jcr.query.model.Comparison;
 import org.modeshape.jcr.query.model.Literal;
@@ -153,6 +162,46 @@ class Operations {
         return builder;
     }
 
+    /**
+     * Create an {@link Results index operation} instance that will use the supplied {@link NavigableSet} of composite entries
+     * (provided by a {@link LocalCompositeIndex multi-column index}) to return all of the {@link NodeKey}s that satisfy the
+     * given constraints.
+     * <p>
+     * The constraints are used to find equality on a leading prefix of the columns plus an optional range on the next column,
+     * which together define a single contiguous range of entries. All other constraints are ignored, so the results may include
+     * nodes that do not satisfy all of the constraints. The node keys are returned in the order of the first column after the
+     * equality prefix, with the nodes that have no value for that column last, and then in the order of the remaining columns.
+     * </p>
+     *
+     * @param entries the index's set of tuples of column values and node key; may not be null
+     * @param columnNames the names of the properties for each column, in order; may not be null
+     * @param converters the converters for each column; may not be null
+     * @param constraints the constraints; may not be null but may be empty if there are no constraints
+     * @param variables the bound variables for this query; may not be null but may be empty
+     * @return the index operation; never null
+     */
+    public static FilterOperation createCompositeFilter( NavigableSet<Fun.Tuple2<CompositeKey, String>> entries,
+                                                         List<String> columnNames,
+                                                         Converter<?>[] converters,
+                                                         Collection<Constraint> constraints,
+                                                         Map<String, Object> variables ) {
+        if (entries.isEmpty()) return EMPTY_FILTER_OPERATION;
+        CompositeBounds bounds = new CompositeBounds(columnNames, converters, variables);
+        for (Constraint constraint : constraints) {
+            bounds.apply(constraint);
+        }
+        Fun.Tuple2<CompositeKey, String> from = bounds.lowest();
+        Fun.Tuple2<CompositeKey, String> to = bounds.highest();
+        if (entries.comparator().compare(from, to) > 0) return EMPTY_FILTER_OPERATION;
+        Fun.Tuple2<CompositeKey, String> absent = bounds.afterAbsentValues();
+        if (absent == null) return new CompositeOperation(Collections.singletonList(entries.subSet(from, true, to, true)));
+        // The entries without a value for the ordered column sort first, but are returned last (like ORDER BY does) ...
+        List<NavigableSet<Fun.Tuple2<CompositeKey, String>>> ranges = new ArrayList<>(2);
+        ranges.add(entries.subSet(absent, false, to, true));
+        ranges.add(entries.subSet(from, true, absent, false));
+        return new CompositeOperation(ranges);
+    }
+
     public static interface FilterOperation {
         Index.Results getResults();
 
@@ -593,6 +642,196 @@ class Operations {
         }
     }
 
+    /**
+     * The bounds of a range of entries in a composite index, built from the constraints that apply to the index's columns.
+     */
+    protected static final class CompositeBounds {
+        private final List<String> columnNames;
+        private final Converter<?>[] converters;
+        private final Map<String, Object> variables;
+        private final Object[] equalTo;
+        private final Object[] lower;
+        private final Object[] upper;
+        private final boolean[] lowerIncluded;
+        private final boolean[] upperIncluded;
+
+        protected CompositeBounds( List<String> columnNames,
+                                   Converter<?>[] converters,
+                                   Map<String, Object> variables ) {
+            this.columnNames = columnNames;
+            this.converters = converters;
+            this.variables = variables;
+            int size = columnNames.size();
+            this.equalTo = new Object[size];
+            this.lower = new Object[size];
+            this.upper = new Object[size];
+            this.lowerIncluded = new boolean[size];
+            this.upperIncluded = new boolean[size];
+        }
+
+        protected void apply( Constraint constraint ) {
+            if (constraint instanceof And) {
+                And and = (And)constraint;
+                apply(and.getConstraint1());
+                apply(and.getConstraint2());
+            } else if (constraint instanceof Between) {
+                Between between = (Between)constraint;
+                int column = columnFor(between.getOperand());
+                if (column < 0) return;
+                setLower(column, between.getLowerBound(), between.isLowerBoundIncluded());
+                setUpper(column, between.getUpperBound(), between.isUpperBoundIncluded());
+            } else if (constraint instanceof Comparison) {
+                Comparison comparison = (Comparison)constraint;
+                int column = columnFor(comparison.getOperand1());
+                if (column < 0) return;
+                StaticOperand operand = comparison.getOperand2();
+                switch (comparison.operator()) {
+                    case EQUAL_TO:
+                        equalTo[column] = converters[column].toLowerValue(operand, variables);
+                        break;
+                    case GREATER_THAN:
+                        setLower(column, operand, false);
+                        break;
+                    case GREATER_THAN_OR_EQUAL_TO:
+                        setLower(column, operand, true);
+                        break;
+                    case LESS_THAN:
+                        setUpper(column, operand, false);
+                        break;
+                    case LESS_THAN_OR_EQUAL_TO:
+                        setUpper(column, operand, true);
+                        break;
+                    default:
+                        // Other operators don't define a contiguous range, so they are evaluated higher up ...
+                        break;
+                }
+            }
+            // Any other kinds of constraints are evaluated higher up ...
+        }
+
+        private int columnFor( DynamicOperand operand ) {
+            if (operand instanceof PropertyValue) {
+                return columnNames.indexOf(((PropertyValue)operand).getPropertyName());
+            }
+            return -1;
+        }
+
+        private void setLower( int column,
+                               StaticOperand operand,
+                               boolean included ) {
+            lower[column] = converters[column].toLowerValue(operand, variables);
+            lowerIncluded[column] = included;
+        }
+
+        private void setUpper( int column,
+                               StaticOperand operand,
+                               boolean included ) {
+            upper[column] = converters[column].toUpperValue(operand, variables);
+            upperIncluded[column] = included;
+        }
+
+        private int prefixLength() {
+            int length = 0;
+            while (length < equalTo.length && equalTo[length] != null) {
+                ++length;
+            }
+            return length;
+        }
+
+        protected Fun.Tuple2<CompositeKey, String> lowest() {
+            Object[] values = new Object[equalTo.length];
+            int prefix = prefixLength();
+            System.arraycopy(equalTo, 0, values, 0, prefix);
+            if (prefix == values.length) return bound(new CompositeKey(values), false);
+            // An excluded lower bound starts after all the entries that have the bound's value ...
+            boolean after = lower[prefix] != null && !lowerIncluded[prefix];
+            values[prefix] = lower[prefix] != null ? lower[prefix] : CompositeKey.LOWEST;
+            Arrays.fill(values, prefix + 1, values.length, after ? CompositeKey.HIGHEST : CompositeKey.LOWEST);
+            return bound(new CompositeKey(values), after);
+        }
+
+        protected Fun.Tuple2<CompositeKey, String> highest() {
+            Object[] values = new Object[equalTo.length];
+            int prefix = prefixLength();
+            System.arraycopy(equalTo, 0, values, 0, prefix);
+            if (prefix == values.length) return bound(new CompositeKey(values), true);
+            // An excluded upper bound ends before all the entries that have the bound's value ...
+            boolean before = upper[prefix] != null && !upperIncluded[prefix];
+            values[prefix] = upper[prefix] != null ? upper[prefix] : CompositeKey.HIGHEST;
+            Arrays.fill(values, prefix + 1, values.length, before ? CompositeKey.LOWEST : CompositeKey.HIGHEST);
+            return bound(new CompositeKey(values), !before);
+        }
+
+        /**
+         * Get the bound that follows all of the entries in the range that have no value for the first column after the equality
+         * prefix.
+         *
+         * @return the bound, or null if the range does not include such entries
+         */
+        protected Fun.Tuple2<CompositeKey, String> afterAbsentValues() {
+            int prefix = prefixLength();
+            if (prefix == equalTo.length || lower[prefix] != null) return null;
+            Object[] values = new Object[equalTo.length];
+            System.arraycopy(equalTo, 0, values, 0, prefix);
+            Arrays.fill(values, prefix + 1, values.length, CompositeKey.HIGHEST);
+            return bound(new CompositeKey(values), true);
+        }
+
+        @SuppressWarnings( {"unchecked", "rawtypes"} )
+        private static Fun.Tuple2<CompositeKey, String> bound( CompositeKey key,
+                                                               boolean afterAllNodes ) {
+            // A null node key sorts before all node keys, while the HI marker sorts after all node keys ...
+            return afterAllNodes ? new Fun.Tuple2(key, Fun.HI) : new Fun.Tuple2(key, null);
+        }
+    }
+
+    /**
+     * The operation that returns the node keys in one or more contiguous ranges of entries in a composite index, in turn.
+     */
+    protected static final class CompositeOperation implements FilterOperation {
+        private final List<NavigableSet<Fun.Tuple2<CompositeKey, String>>> ranges;
+
+        protected CompositeOperation( List<NavigableSet<Fun.Tuple2<CompositeKey, String>>> ranges ) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public Results getResults() {
+            final Iterator<Fun.Tuple2<CompositeKey, String>> iter = MultiIterator.fromIterables(ranges);
+            // A node with multiple values for a column has several entries, which may all be in the range ...
+            final Set<String> returnedKeys = new HashSet<>();
+            final float score = 1.0f;
+            return new Results() {
+                @Override
+                public boolean getNextBatch( ResultWriter writer,
+                                             int batchSize ) {
+                    int count = 0;
+                    while (count < batchSize && iter.hasNext()) {
+                        String nodeKey = iter.next().b;
+                        if (!returnedKeys.add(nodeKey)) continue;
+                        writer.add(new NodeKey(nodeKey), score);
+                        ++count;
+                    }
+                    return iter.hasNext();
+                }
+
+                @Override
+                public void close() {
+                    // Nothing to do ...
+                }
+            };
+        }
+
+        @Override
+        public long estimateCount() {
+            long count = 0L;
+            for (NavigableSet<Fun.Tuple2<CompositeKey, String>> range : ranges) {
+                count += range.size();
+            }
+            return count;
+        }
+    }
+
     private Operations() {
     }
 
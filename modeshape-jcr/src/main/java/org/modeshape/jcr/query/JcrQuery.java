@@ -79,6 +79,11 @@ public class JcrQuery extends JcrAbstractQuery {
         this.hints.includeSystemContent = includeSystemContent;
     }
 
+    @Override
+    public void computeResultSize( boolean computeResultSize ) {
+        this.hints.computeResultSize = computeResultSize;
+    }
+
     protected QueryCommand query() {
         return query;
     }
@@ -107,8 +112,8 @@ public class JcrQuery extends JcrAbstractQuery {
     public org.modeshape.jcr.api.query.QueryResult execute() throws RepositoryException {
         context.checkValid();
         final long start = System.nanoTime();
-        // Create an executable query and set it on this object ...
-        CancellableQuery newExecutable = context.createExecutableQuery(query, hints, variables);
+        // Create an executable query and set it on this object (the planner modifies the hints, so use a copy) ...
+        CancellableQuery newExecutable = context.createExecutableQuery(query, hints.clone(), variables);
         CancellableQuery executable = executingQuery.getAndSet(newExecutable);
         if (executable == null) {
             // We are the first to call 'execute()', so use our newly-created one ...
@@ -123,11 +128,14 @@ public class JcrQuery extends JcrAbstractQuery {
         checkForProblems(result.getProblems());
         context.recordDuration(Math.abs(System.nanoTime() - start), TimeUnit.NANOSECONDS, statement, language);
         if (Query.XPATH.equals(language)) {
-            return new XPathQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+            return new XPathQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory,
+                                        hints.computeResultSize);
         } else if (Query.SQL.equals(language)) {
-            return new JcrSqlQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+            return new JcrSqlQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory,
+                                         hints.computeResultSize);
         }
-        return new JcrQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+        return new JcrQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory,
+                                  hints.computeResultSize);
     }
 
     @SuppressWarnings( "deprecation" )
@@ -145,11 +153,11 @@ public class JcrQuery extends JcrAbstractQuery {
 
         checkForProblems(result.getProblems());
         if (Query.XPATH.equals(language)) {
-            return new XPathQueryResult(context, statement, result, false, 0);
+            return new XPathQueryResult(context, statement, result, false, 0, false);
         } else if (Query.SQL.equals(language)) {
-            return new JcrSqlQueryResult(context, statement, result, false, 0);
+            return new JcrSqlQueryResult(context, statement, result, false, 0, false);
         }
-        return new JcrQueryResult(context, statement, result, false, 0);
+        return new JcrQueryResult(context, statement, result, false, 0, false);
     }
 
     @Override
@@ -65,7 +65,8 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
                               String query,
                               QueryResults results,
                               boolean restartable,
-                              int numRowsInMemory ) {
+                              int numRowsInMemory,
+                              boolean computeSize ) {
         this.context = context;
         this.results = results;
         this.queryStatement = query;
@@ -80,7 +81,8 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             BufferManager bufferMgr = context.getBufferManager();
             CachedNodeSupplier nodeCache = results.getCachedNodes();
             NodeSequence secureSequence = new SecureSequence(rows, context);
-            this.sequence = new RestartableSequence(workspace, secureSequence, bufferMgr, nodeCache, numRowsInMemory);
+            this.sequence = new RestartableSequence(workspace, secureSequence, bufferMgr, nodeCache, numRowsInMemory,
+                                                    computeSize);
         }
 
         assert this.context != null;
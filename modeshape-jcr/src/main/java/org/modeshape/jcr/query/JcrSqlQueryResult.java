@@ -40,8 +40,9 @@ public class JcrSqlQueryResult extends JcrQueryResult {
                               String query,
                               QueryResults results,
                               boolean restartable,
-                              int numRowsInMemory ) {
-        super(context, query, results, restartable, numRowsInMemory);
+                              int numRowsInMemory,
+                              boolean computeSize ) {
+        super(context, query, results, restartable, numRowsInMemory, computeSize);
         Columns resultColumns = results.getColumns();
         List<String> columnNames = new LinkedList<String>(resultColumns.getColumnNames());
         List<String> columnTypes = new LinkedList<String>(resultColumns.getColumnTypes());
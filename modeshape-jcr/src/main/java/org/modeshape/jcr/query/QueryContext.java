@@ -63,6 +63,7 @@ public class QueryContext {
     protected final BufferManager bufferManager;
     private final long id;
     private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private volatile boolean planDependsOnVariableValues = false;
 
     /**
      * Create a new context for query execution.
@@ -365,6 +366,24 @@ public class QueryContext {
         return variables;
     }
 
+    /**
+     * Record that the plan computed with this context depends upon the values of the variables (rather than just upon their
+     * names), and therefore cannot be reused when the query is executed with other values.
+     */
+    public void recordPlanDependsOnVariableValues() {
+        this.planDependsOnVariableValues = true;
+    }
+
+    /**
+     * Determine whether the plan computed with this context depends upon the values of the variables.
+     * 
+     * @return true if the plan uses the values of the variables, or false if the values are only bound when the plan is executed
+     * @see #recordPlanDependsOnVariableValues()
+     */
+    public boolean planDependsOnVariableValues() {
+        return planDependsOnVariableValues;
+    }
+
     @Override
     public int hashCode() {
         return HashCode.compute(this.typeSystem, this.schemata, this.variables);
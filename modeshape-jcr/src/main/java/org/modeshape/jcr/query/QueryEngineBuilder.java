@@ -18,6 +18,7 @@ package org.modeshape.jcr.query;
 
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.query.engine.QueryPlanCache;
 import org.modeshape.jcr.query.optimize.Optimizer;
 import org.modeshape.jcr.query.optimize.RuleBasedOptimizer;
 import org.modeshape.jcr.query.plan.CanonicalPlanner;
@@ -34,6 +35,7 @@ public abstract class QueryEngineBuilder {
     private ExecutionContext context;
     private Planner planner;
     private Optimizer optimizer;
+    private QueryPlanCache planCache;
 
     public QueryEngineBuilder() {
     }
@@ -57,6 +59,11 @@ public abstract class QueryEngineBuilder {
         return this;
     }
 
+    public QueryEngineBuilder with( QueryPlanCache planCache ) {
+        this.planCache = planCache;
+        return this;
+    }
+
     public abstract QueryEngine build();
 
     protected final RepositoryConfiguration config() {
@@ -83,6 +90,10 @@ public abstract class QueryEngineBuilder {
         return this.optimizer != null ? this.optimizer : defaultOptimizer();
     }
 
+    protected final QueryPlanCache planCache() {
+        return planCache;
+    }
+
     protected Planner defaultPlanner() {
         return new CanonicalPlanner();
     }
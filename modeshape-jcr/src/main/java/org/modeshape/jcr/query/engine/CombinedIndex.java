@@ -0,0 +1,215 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.spi.index.Index;
+import org.modeshape.jcr.spi.index.IndexConstraints;
+import org.modeshape.jcr.spi.index.ResultWriter;
+
+/**
+ * An {@link Index} that combines the results of several other indexes, each with its own constraints, into either the
+ * intersection or the union of their node keys. The node keys are combined before any node is loaded, so only the nodes that can
+ * satisfy all (or any) of the constraints are ever read from the workspace.
+ * <p>
+ * An intersection reads all of the keys of the first index (which should be the most selective), and then removes those that are
+ * not found in each of the other indexes. A union returns the distinct keys of all of the indexes, in the order they were found.
+ * </p>
+ */
+final class CombinedIndex implements Index {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Create an index that returns the node keys found in all of the supplied indexes.
+     *
+     * @param indexes the indexes, the first of which is the most selective; may not be null or empty
+     * @param constraints the constraints for each of the indexes; may not be null and must be the same size as {@code indexes}
+     * @return the combined index; never null
+     */
+    static CombinedIndex intersection( List<Index> indexes,
+                                       List<IndexConstraints> constraints ) {
+        return new CombinedIndex(true, indexes, constraints);
+    }
+
+    /**
+     * Create an index that returns the node keys found in any of the supplied indexes.
+     *
+     * @param indexes the indexes; may not be null or empty
+     * @param constraints the constraints for each of the indexes; may not be null and must be the same size as {@code indexes}
+     * @return the combined index; never null
+     */
+    static CombinedIndex union( List<Index> indexes,
+                                List<IndexConstraints> constraints ) {
+        return new CombinedIndex(false, indexes, constraints);
+    }
+
+    private final boolean intersect;
+    private final List<Index> indexes;
+    private final List<IndexConstraints> constraints;
+
+    private CombinedIndex( boolean intersect,
+                           List<Index> indexes,
+                           List<IndexConstraints> constraints ) {
+        assert !indexes.isEmpty();
+        assert indexes.size() == constraints.size();
+        this.intersect = intersect;
+        this.indexes = indexes;
+        this.constraints = constraints;
+    }
+
+    @Override
+    public String getProviderName() {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        StringBuilder sb = new StringBuilder(intersect ? IndexPlanners.INDEX_INTERSECTION_NAME : IndexPlanners.INDEX_UNION_NAME);
+        sb.append('(');
+        boolean first = true;
+        for (Index index : indexes) {
+            if (first) first = false;
+            else sb.append(',');
+            sb.append(index.getName());
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public boolean supportsFullTextConstraints() {
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        for (Index index : indexes) {
+            if (!index.isEnabled()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Results filter( IndexConstraints ignored ) {
+        // Each of the indexes is used with its own constraints ...
+        return new Results() {
+            private Iterator<Map.Entry<NodeKey, Float>> iter;
+
+            @Override
+            public boolean getNextBatch( ResultWriter writer,
+                                         int batchSize ) {
+                if (iter == null) {
+                    iter = (intersect ? intersectKeys() : unionKeys()).entrySet().iterator();
+                }
+                int count = 0;
+                while (count < batchSize && iter.hasNext()) {
+                    Map.Entry<NodeKey, Float> entry = iter.next();
+                    writer.add(entry.getKey(), entry.getValue());
+                    ++count;
+                }
+                return iter.hasNext();
+            }
+
+            @Override
+            public void close() {
+                iter = null;
+            }
+        };
+    }
+
+    protected Map<NodeKey, Float> intersectKeys() {
+        final Map<NodeKey, Float> matches = new LinkedHashMap<>();
+        read(0, new KeyCollector() {
+            @Override
+            protected void found( NodeKey key,
+                                  float score ) {
+                if (!matches.containsKey(key)) matches.put(key, score);
+            }
+        });
+        for (int i = 1; i != indexes.size() && !matches.isEmpty(); ++i) {
+            final Set<NodeKey> found = new HashSet<>();
+            read(i, new KeyCollector() {
+                @Override
+                protected void found( NodeKey key,
+                                      float score ) {
+                    if (matches.containsKey(key)) found.add(key);
+                }
+            });
+            matches.keySet().retainAll(found);
+        }
+        return matches;
+    }
+
+    protected Map<NodeKey, Float> unionKeys() {
+        final Map<NodeKey, Float> matches = new LinkedHashMap<>();
+        KeyCollector collector = new KeyCollector() {
+            @Override
+            protected void found( NodeKey key,
+                                  float score ) {
+                if (!matches.containsKey(key)) matches.put(key, score);
+            }
+        };
+        for (int i = 0; i != indexes.size(); ++i) {
+            read(i, collector);
+        }
+        return matches;
+    }
+
+    private void read( int i,
+                       KeyCollector collector ) {
+        try (Results results = indexes.get(i).filter(constraints.get(i))) {
+            while (results.getNextBatch(collector, BATCH_SIZE)) {
+                // keep reading ...
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    private static abstract class KeyCollector implements ResultWriter {
+        @Override
+        public void add( NodeKey nodeKey,
+                         float score ) {
+            found(nodeKey, score);
+        }
+
+        @Override
+        public void add( Iterable<NodeKey> nodeKeys,
+                         float score ) {
+            add(nodeKeys.iterator(), score);
+        }
+
+        @Override
+        public void add( Iterator<NodeKey> nodeKeys,
+                         float score ) {
+            while (nodeKeys.hasNext()) {
+                found(nodeKeys.next(), score);
+            }
+        }
+
+        protected abstract void found( NodeKey key,
+                                       float score );
+    }
+}
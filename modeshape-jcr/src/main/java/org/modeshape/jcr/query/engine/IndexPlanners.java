@@ -101,6 +101,10 @@ public abstract class IndexPlanners {
     public static final String DESCENDANTS_BY_PATH_INDEX_NAME = "DescendantsByPath";
     public static final String PATH_PARAMETER = "path";
     public static final String ID_PARAMETER = "id";
+    public static final String INDEX_INTERSECTION_NAME = "IndexIntersection";
+    public static final String INDEX_UNION_NAME = "IndexUnion";
+    /** The name of the parameter of an intersection or union index plan whose value is the list of combined index plans */
+    public static final String INDEX_PLANS_PARAMETER = "plans";
 
     @Immutable
     private static class StandardIndexPlanner extends IndexPlanner {
@@ -178,6 +182,8 @@ public abstract class IndexPlanners {
         Object value = null;
         if (operand instanceof BindVariableName) {
             BindVariableName varName = (BindVariableName)operand;
+            // The index parameters will hold the variable's value, so the plan can't be reused with other values ...
+            context.recordPlanDependsOnVariableValues();
             value = context.getVariables().get(varName.getBindVariableName());
         } else if (operand instanceof Literal) {
             value = ((Literal)operand).value();
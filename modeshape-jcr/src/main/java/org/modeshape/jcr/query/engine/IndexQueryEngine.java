@@ -15,8 +15,10 @@
  */
 package org.modeshape.jcr.query.engine;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.modeshape.common.logging.Logger;
@@ -35,6 +37,7 @@ import org.modeshape.jcr.query.plan.PlanHints;
 import org.modeshape.jcr.query.plan.PlanNode;
 import org.modeshape.jcr.query.plan.Planner;
 import org.modeshape.jcr.spi.index.Index;
+import org.modeshape.jcr.spi.index.IndexConstraints;
 import org.modeshape.jcr.spi.index.IndexCostCalculator;
 import org.modeshape.jcr.spi.index.IndexManager;
 import org.modeshape.jcr.spi.index.provider.IndexPlanner;
@@ -105,7 +108,7 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                 };
             }
             // Finally create the query engine ...
-            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager());
+            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager(), planCache());
         }
 
         @Override
@@ -157,8 +160,9 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer,
-                                IndexManager indexManager ) {
-        super(context, repositoryName, planner, optimizer);
+                                IndexManager indexManager,
+                                QueryPlanCache planCache ) {
+        super(context, repositoryName, planner, optimizer, planCache);
         this.indexManager = indexManager;
     }
 
@@ -173,17 +177,47 @@ public class IndexQueryEngine extends ScanningQueryEngine {
         NodeSequence sequence = super.createNodeSequenceForSource(originalQuery, context, sourceNode, indexPlan, columns, sources);
         if (sequence != null) return sequence;
 
-        // Look up the index by name ...
-        String providerName = indexPlan.getProviderName();
-        IndexProvider provider = indexManager.getProvider(providerName);
-        if (provider != null) {
+        // Look up the index by name, or combine the indexes of an intersection or union plan ...
+        Index index = indexFor(indexPlan, context);
+        if (index != null) {
             // Use the index to get a NodeSequence ...
-            Index index = provider.getIndex(indexPlan.getName(), indexPlan.getWorkspaceName());
-            if (index != null) {
-                return sources.fromIndex(index, indexPlan.getConstraints(), context.getVariables(), indexPlan.getParameters(),
-                                         context.getExecutionContext().getValueFactories(), 100);
-            }
+            return sources.fromIndex(index, indexPlan.getConstraints(), context.getVariables(), indexPlan.getParameters(),
+                                     context.getExecutionContext().getValueFactories(), 100);
         }
         return null;
     }
+
+    /**
+     * Find the index for the given plan. Plans for the {@link IndexPlanners#INDEX_INTERSECTION_NAME intersection} or
+     * {@link IndexPlanners#INDEX_UNION_NAME union} of several indexes result in an index that combines the node keys of each of
+     * the indexes, using each index with its own constraints.
+     *
+     * @param indexPlan the index plan; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @return the index, or null if the index (or one of the combined indexes) does not exist or is not enabled
+     */
+    protected Index indexFor( IndexPlan indexPlan,
+                              QueryContext context ) {
+        String providerName = indexPlan.getProviderName();
+        if (providerName == null) {
+            String name = indexPlan.getName();
+            boolean intersect = IndexPlanners.INDEX_INTERSECTION_NAME.equals(name);
+            if (!intersect && !IndexPlanners.INDEX_UNION_NAME.equals(name)) return null;
+            @SuppressWarnings( "unchecked" )
+            List<IndexPlan> plans = (List<IndexPlan>)indexPlan.getParameters().get(IndexPlanners.INDEX_PLANS_PARAMETER);
+            List<Index> indexes = new ArrayList<>(plans.size());
+            List<IndexConstraints> constraints = new ArrayList<>(plans.size());
+            for (IndexPlan plan : plans) {
+                Index index = indexFor(plan, context);
+                if (index == null || !index.isEnabled()) return null;
+                indexes.add(index);
+                constraints.add(QuerySources.indexConstraints(plan.getConstraints(), context.getVariables(),
+                                                              plan.getParameters(),
+                                                              context.getExecutionContext().getValueFactories()));
+            }
+            return intersect ? CombinedIndex.intersection(indexes, constraints) : CombinedIndex.union(indexes, constraints);
+        }
+        IndexProvider provider = indexManager.getProvider(providerName);
+        return provider != null ? provider.getIndex(indexPlan.getName(), indexPlan.getWorkspaceName()) : null;
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.query.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.HashCode;
+import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.plan.PlanHints;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.validate.Schemata;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.basic.LocalNamespaceRegistry;
+
+/**
+ * A repository-wide cache of the optimized {@link PlanNode plans} of queries, keyed by the normalized form of the query, the
+ * workspaces it is executed against, and the {@link PlanHints hints}. Bind variables are normally left unbound in the cached
+ * plans, so the same plan is reused with any variable values; the only exception are plans whose optimization depended upon the
+ * values of the variables (see {@link QueryContext#planDependsOnVariableValues()}), which are only reused with the same values.
+ * <p>
+ * The plans are only reused with the same snapshot of the node types and of the index definitions, and all the cached plans
+ * are discarded as soon as a query is executed with a newer snapshot. Queries executed by sessions with local namespace mappings
+ * are never cached, since the same query text may then refer to different names.
+ * </p>
+ */
+@ThreadSafe
+public class QueryPlanCache {
+
+    /**
+     * The default maximum number of plans kept in the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final Map<Key, CachedPlan> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int nodeTypesVersion = -1;
+    private volatile RepositoryIndexes indexes;
+
+    /**
+     * Create a new cache that holds at most {@link #DEFAULT_MAX_SIZE} plans.
+     */
+    public QueryPlanCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a new cache that holds at most the supplied number of plans, evicting the least-recently used ones.
+     *
+     * @param maxSize the maximum number of cached plans; must be positive
+     */
+    public QueryPlanCache( final int maxSize ) {
+        CheckArg.isPositive(maxSize, "maxSize");
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<Key, CachedPlan>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, CachedPlan> eldest ) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Look for a plan of the supplied query that was computed with an equivalent context. When found, the context's hints and
+     * variables are updated exactly as the planner and optimizer would have done.
+     *
+     * @param context the context in which the query is to be executed; may not be null
+     * @param query the query; may not be null
+     * @return a copy of the optimized plan that can be executed, or null if there is no such plan in the cache
+     */
+    public PlanNode get( QueryContext context,
+                         QueryCommand query ) {
+        Key key = keyFor(context, query);
+        CachedPlan cached = key != null ? plans.get(key) : null;
+        if (cached == null || !cached.isUsableWith(context.getVariables())) {
+            misses.incrementAndGet();
+            recordMiss();
+            return null;
+        }
+        hits.incrementAndGet();
+        recordHit();
+        return cached.planFor(context);
+    }
+
+    /**
+     * Store the optimized plan of the supplied query, if it can be reused by later executions.
+     *
+     * @param context the context in which the query was planned and optimized; may not be null
+     * @param query the query; may not be null
+     * @param variables the variables as they were <i>before</i> the query was planned; may not be null
+     * @param hints the hints as they were <i>before</i> the query was planned; may not be null
+     * @param optimizedPlan the optimized plan; may not be null
+     */
+    public void put( QueryContext context,
+                     QueryCommand query,
+                     Map<String, Object> variables,
+                     PlanHints hints,
+                     PlanNode optimizedPlan ) {
+        if (context.getProblems().hasProblems()) {
+            // The problems (e.g., warnings) would not be reported on subsequent executions ...
+            return;
+        }
+        Key key = keyFor(context, query, hints);
+        if (key == null) return;
+        Set<String> addedVariableNames = new HashSet<>(context.getVariables().keySet());
+        addedVariableNames.removeAll(variables.keySet());
+        Map<String, Object> boundVariables = context.planDependsOnVariableValues() ? new HashMap<>(variables) : null;
+        plans.put(key, new CachedPlan(optimizedPlan.clone(), context.getHints().clone(), addedVariableNames, boundVariables));
+    }
+
+    /**
+     * Remove all of the plans from this cache.
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    /**
+     * @return the number of plans currently in the cache
+     */
+    public int size() {
+        return plans.size();
+    }
+
+    /**
+     * @return the number of lookups that found a plan since this cache was created
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a plan since this cache was created
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups that found a plan, between 0.0 and 1.0 (inclusive)
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0L ? 0.0d : (double)hitCount / total;
+    }
+
+    /**
+     * Called whenever a lookup finds a plan. By default this method does nothing.
+     */
+    protected void recordHit() {
+        // do nothing by default
+    }
+
+    /**
+     * Called whenever a lookup does not find a plan. By default this method does nothing.
+     */
+    protected void recordMiss() {
+        // do nothing by default
+    }
+
+    private Key keyFor( QueryContext context,
+                        QueryCommand query ) {
+        return keyFor(context, query, context.getHints());
+    }
+
+    private Key keyFor( QueryContext context,
+                        QueryCommand query,
+                        PlanHints hints ) {
+        NamespaceRegistry namespaces = context.getExecutionContext().getNamespaceRegistry();
+        if (namespaces instanceof LocalNamespaceRegistry && !((LocalNamespaceRegistry)namespaces).getLocalNamespaces().isEmpty()) {
+            return null;
+        }
+        int nodeTypesVersion = context.getNodeTypes().getVersion();
+        RepositoryIndexes indexes = context.getIndexDefinitions();
+        if (nodeTypesVersion > this.nodeTypesVersion || indexes != this.indexes) {
+            // The node types or the index definitions have changed, so none of the plans will be used anymore ...
+            synchronized (this) {
+                if (nodeTypesVersion > this.nodeTypesVersion || indexes != this.indexes) {
+                    this.nodeTypesVersion = Math.max(nodeTypesVersion, this.nodeTypesVersion);
+                    this.indexes = indexes;
+                    plans.clear();
+                }
+            }
+        }
+        return new Key(query.toString(), context.getWorkspaceNames(), hints.toString(), nodeTypesVersion, context.getSchemata(),
+                       indexes);
+    }
+
+    protected static final class Key {
+        private final String query;
+        private final Set<String> workspaceNames;
+        private final String hints;
+        private final int nodeTypesVersion;
+        private final Schemata schemata;
+        private final RepositoryIndexes indexes;
+        private final int hc;
+
+        protected Key( String query,
+                       Set<String> workspaceNames,
+                       String hints,
+                       int nodeTypesVersion,
+                       Schemata schemata,
+                       RepositoryIndexes indexes ) {
+            this.query = query;
+            this.workspaceNames = workspaceNames;
+            this.hints = hints;
+            this.nodeTypesVersion = nodeTypesVersion;
+            this.schemata = schemata;
+            this.indexes = indexes;
+            this.hc = HashCode.compute(query, workspaceNames, hints);
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof Key) {
+                Key that = (Key)obj;
+                return this.hc == that.hc && this.nodeTypesVersion == that.nodeTypesVersion && this.schemata == that.schemata
+                       && this.indexes == that.indexes && this.query.equals(that.query)
+                       && this.workspaceNames.equals(that.workspaceNames) && this.hints.equals(that.hints);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return query + " in " + workspaceNames + " with " + hints;
+        }
+    }
+
+    protected static final class CachedPlan {
+        private final PlanNode plan;
+        private final PlanHints hints;
+        private final Set<String> addedVariableNames;
+        private final Map<String, Object> boundVariables;
+
+        protected CachedPlan( PlanNode plan,
+                              PlanHints hints,
+                              Set<String> addedVariableNames,
+                              Map<String, Object> boundVariables ) {
+            this.plan = plan;
+            this.hints = hints;
+            this.addedVariableNames = addedVariableNames;
+            this.boundVariables = boundVariables;
+        }
+
+        protected boolean isUsableWith( Map<String, Object> variables ) {
+            return boundVariables == null || boundVariables.equals(variables);
+        }
+
+        protected PlanNode planFor( QueryContext context ) {
+            context.getHints().setFrom(hints);
+            for (String variableName : addedVariableNames) {
+                // These are the placeholders for the subqueries ...
+                if (!context.getVariables().containsKey(variableName)) context.getVariables().put(variableName, null);
+            }
+            synchronized (plan) {
+                return plan.clone();
+            }
+        }
+    }
+}
@@ -320,33 +320,7 @@ public class QuerySources {
         if (!index.isEnabled()) {
             return null;
         }
-        final IndexConstraints indexConstraints = new IndexConstraints() {
-
-            @Override
-            public boolean hasConstraints() {
-                return !constraints.isEmpty();
-            }
-
-            @Override
-            public Collection<Constraint> getConstraints() {
-                return constraints;
-            }
-
-            @Override
-            public Map<String, Object> getVariables() {
-                return variables;
-            }
-
-            @Override
-            public ValueFactories getValueFactories() {
-                return valueFactories;
-            }
-
-            @Override
-            public Map<String, Object> getParameters() {
-                return parameters;
-            }
-        };
+        final IndexConstraints indexConstraints = indexConstraints(constraints, variables, parameters, valueFactories);
         // Return a node sequence that will lazily get the results from the index ...
         return new NodeSequence() {
             private Index.Results results;
@@ -425,6 +399,48 @@ public class QuerySources {
         };
     }
 
+    /**
+     * Create the {@link IndexConstraints} that are passed to an index.
+     *
+     * @param constraints the constraints that apply to the index; may not be null but may be empty
+     * @param variables the bound variables for this query; may not be null but may be empty
+     * @param parameters the provider-specific index parameters; may not be null, but may be empty
+     * @param valueFactories the value factories; may not be null
+     * @return the index constraints; never null
+     */
+    protected static IndexConstraints indexConstraints( final Collection<Constraint> constraints,
+                                                        final Map<String, Object> variables,
+                                                        final Map<String, Object> parameters,
+                                                        final ValueFactories valueFactories ) {
+        return new IndexConstraints() {
+
+            @Override
+            public boolean hasConstraints() {
+                return !constraints.isEmpty();
+            }
+
+            @Override
+            public Collection<Constraint> getConstraints() {
+                return constraints;
+            }
+
+            @Override
+            public Map<String, Object> getVariables() {
+                return variables;
+            }
+
+            @Override
+            public ValueFactories getValueFactories() {
+                return valueFactories;
+            }
+
+            @Override
+            public Map<String, Object> getParameters() {
+                return parameters;
+            }
+        };
+    }
+
     protected static class BatchWriter implements ResultWriter {
         private List<NodeKey> keys;
         private List<Float> scores;
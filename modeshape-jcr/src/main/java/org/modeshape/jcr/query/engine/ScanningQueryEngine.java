@@ -162,7 +162,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
         @Override
         public QueryEngine build() {
-            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer());
+            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer(), planCache());
         }
 
         @Override
@@ -178,16 +178,26 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
     protected final String repositoryName;
     protected final Planner planner;
     protected final Optimizer optimizer;
+    protected final QueryPlanCache planCache;
 
     public ScanningQueryEngine( ExecutionContext context,
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer ) {
+        this(context, repositoryName, planner, optimizer, null);
+    }
+
+    public ScanningQueryEngine( ExecutionContext context,
+                                String repositoryName,
+                                Planner planner,
+                                Optimizer optimizer,
+                                QueryPlanCache planCache ) {
         assert planner != null;
         assert optimizer != null;
         this.repositoryName = repositoryName;
         this.planner = planner;
         this.optimizer = optimizer;
+        this.planCache = planCache;
     }
 
     /**
@@ -226,9 +236,17 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                          context.getWorkspaceNames(), repositoryName, query, context.id());
         }
 
-        // Create the canonical plan ...
+        // Look for a previously optimized plan, or create the canonical plan ...
         long start = System.nanoTime();
-        PlanNode plan = planner.createPlan(context, query);
+        Map<String, Object> unplannedVariables = null;
+        PlanHints unplannedHints = null;
+        PlanNode cachedPlan = null;
+        if (planCache != null) {
+            unplannedVariables = new HashMap<>(context.getVariables());
+            unplannedHints = context.getHints().clone();
+            cachedPlan = planCache.get(context, query);
+        }
+        PlanNode plan = cachedPlan != null ? cachedPlan : planner.createPlan(context, query);
         long duration = Math.abs(System.nanoTime() - start);
         Statistics stats = new Statistics(duration);
         final String workspaceName = context.getWorkspaceNames().iterator().next();
@@ -240,14 +258,19 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         checkCancelled(context);
         Columns resultColumns = null;
         if (!context.getProblems().hasErrors()) {
-            // Optimize the plan ...
+            // Optimize the plan, unless it was already optimized ...
             start = System.nanoTime();
-            PlanNode optimizedPlan = optimizer.optimize(context, plan);
+            PlanNode optimizedPlan = cachedPlan != null ? cachedPlan : optimizer.optimize(context, plan);
             duration = Math.abs(System.nanoTime() - start);
             stats = stats.withOptimizationTime(duration);
 
             if (trace) {
-                LOGGER.trace("Computed optimized query plan for query {0}:\n{1}", context.id(), optimizedPlan);
+                LOGGER.trace("{0} optimized query plan for query {1}:\n{2}", cachedPlan != null ? "Reusing" : "Computed",
+                             context.id(), optimizedPlan);
+            }
+
+            if (planCache != null && cachedPlan == null && !context.getProblems().hasErrors()) {
+                planCache.put(context, query, unplannedVariables, unplannedHints, optimizedPlan);
             }
 
             // Find the query result columns ...
@@ -907,10 +930,11 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                             sortExtractor = RowExtractors.extractorWith(extractors);
                         }
 
-                        // Now create the sorting sequence ...
+                        // Now create the sorting sequence, which only needs to keep the first rows if there is a LIMIT ...
                         if (sortExtractor != null) {
+                            long maxRows = parent != null ? maxRowsFor(parent) : -1L;
                             rows = new SortingSequence(workspaceName, rows, sortExtractor, bufferManager, cache, pack, useHeap,
-                                                       allowDuplicates, nullOrder);
+                                                       allowDuplicates, nullOrder, maxRows);
                         }
                     }
                 }
@@ -925,6 +949,21 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return rows;
     }
 
+    /**
+     * Determine the maximum number of rows that a child of the supplied plan node needs to produce.
+     * 
+     * @param plan the plan node; may not be null
+     * @return the number of rows (including the skipped ones) if the plan node is a {@link Type#LIMIT} with a row limit, or -1
+     *         otherwise
+     */
+    protected long maxRowsFor( PlanNode plan ) {
+        if (plan.getType() != Type.LIMIT) return -1L;
+        Integer rowLimit = plan.getProperty(Property.LIMIT_COUNT, Integer.class);
+        if (rowLimit == null || rowLimit.intValue() == Integer.MAX_VALUE) return -1L;
+        Integer offset = plan.getProperty(Property.LIMIT_OFFSET, Integer.class);
+        return offset != null ? rowLimit.longValue() + offset.longValue() : rowLimit.longValue();
+    }
+
     /**
      * Create a node sequence for the given source.
      * 
@@ -941,6 +980,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                                         Columns columns,
                                                         QuerySources sources ) {
         // The indexes should already be in the correct order, from lowest cost to highest cost ...
+        List<Ordering> orderings = null;
         for (PlanNode indexNode : sourceNode.getChildren()) {
             if (indexNode.getType() != Type.INDEX) continue;
             IndexPlan index = indexNode.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
@@ -948,15 +988,50 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
             if (sequence != null) {
                 // Mark the index as being used ...
                 indexNode.setProperty(Property.INDEX_USED, Boolean.TRUE);
-                return sequence;
+                if (orderings == null || indexNode.hasProperty(Property.SORT_ORDER_BY)) return sequence;
+                return createSortedSequence(sequence, orderings, context, sourceNode, columns, sources);
             }
             // Otherwise, keep looking for an index ...
             LOGGER.debug("Skipping disabled index '{0}' from provider '{1}' in workspace(s) {2} for query: {3}", index.getName(),
                          index.getProviderName(), context.getWorkspaceNames(), originalQuery);
+            if (indexNode.hasProperty(Property.SORT_ORDER_BY)) {
+                // The SORT was removed from the plan because this index returns the results in order, so we have to sort ...
+                orderings = indexNode.getPropertyAsList(Property.SORT_ORDER_BY, Ordering.class);
+            }
         }
 
         // Grab all of the nodes ...
-        return sources.allNodes(1.0f, -1);
+        NodeSequence sequence = sources.allNodes(1.0f, -1);
+        if (orderings == null) return sequence;
+        return createSortedSequence(sequence, orderings, context, sourceNode, columns, sources);
+    }
+
+    /**
+     * Sort the nodes for the given source, when the SORT node was removed from the plan in favor of an index that could not be
+     * used.
+     * 
+     * @param sequence the unsorted sequence of nodes; may not be null
+     * @param orderings the orderings of the removed SORT node; may not be null or empty
+     * @param context the context in which the query is to be executed; may not be null
+     * @param sourceNode the {@link Type#SOURCE} plan node; may not be null
+     * @param columns the result column definition; may not be null
+     * @param sources the query sources for the repository; may not be null
+     * @return the sorted sequence; never null
+     */
+    protected NodeSequence createSortedSequence( NodeSequence sequence,
+                                                 List<Ordering> orderings,
+                                                 QueryContext context,
+                                                 PlanNode sourceNode,
+                                                 Columns columns,
+                                                 QuerySources sources ) {
+        Map<SelectorName, SelectorName> sourceNamesByAlias = new HashMap<SelectorName, SelectorName>();
+        SelectorName alias = sourceNode.getProperty(Property.SOURCE_ALIAS, SelectorName.class);
+        if (alias != null) sourceNamesByAlias.put(alias, sourceNode.getProperty(Property.SOURCE_NAME, SelectorName.class));
+        ExtractFromRow sortExtractor = createSortingExtractor(orderings, sourceNamesByAlias, context, columns, sources);
+        NullOrder nullOrder = orderings.size() == 1 ? orderings.get(0).nullOrder() : null;
+        String workspaceName = sources.getWorkspaceName();
+        return new SortingSequence(workspaceName, sequence, sortExtractor, context.getBufferManager(),
+                                   context.getNodeCache(workspaceName), false, false, true, nullOrder, -1L);
     }
 
     /**
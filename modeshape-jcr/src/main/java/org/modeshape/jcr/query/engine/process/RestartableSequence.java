@@ -47,6 +47,7 @@ public class RestartableSequence extends NodeSequence implements Restartable {
     protected final String workspaceName;
     protected final AtomicLong remainingRowCount = new AtomicLong();
     private final int targetNumRowsInMemory;
+    private final boolean computeRowCount;
     protected final int width;
     private BatchSequence batches;
     protected final AtomicLong batchSize = new AtomicLong();
@@ -55,13 +56,34 @@ public class RestartableSequence extends NodeSequence implements Restartable {
     protected boolean loadedAll = false;
     protected boolean usedOffHeap = false;
 
-    @SuppressWarnings( "unchecked" )
     public RestartableSequence( String workspaceName,
                                 NodeSequence original,
                                 final BufferManager bufferMgr,
                                 CachedNodeSupplier nodeCache,
                                 final int numRowsInMemory ) {
+        this(workspaceName, original, bufferMgr, nodeCache, numRowsInMemory, true);
+    }
+
+    /**
+     * Create a restartable sequence.
+     * 
+     * @param workspaceName the name of the workspace; may not be null
+     * @param original the original sequence; may not be null or empty
+     * @param bufferMgr the buffer manager used to store the rows that are not kept in memory; may not be null
+     * @param nodeCache the cache of nodes; may not be null
+     * @param numRowsInMemory the number of rows that are kept in memory
+     * @param computeRowCount true if {@link #getRowCount()} should load all of the remaining rows of the original sequence to
+     *        compute the number of rows, or false if it should return -1 until all of the rows have been loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    public RestartableSequence( String workspaceName,
+                                NodeSequence original,
+                                final BufferManager bufferMgr,
+                                CachedNodeSupplier nodeCache,
+                                final int numRowsInMemory,
+                                boolean computeRowCount ) {
         this.original = original;
+        this.computeRowCount = computeRowCount;
         this.workspaceName = workspaceName;
         this.width = original.width();
         assert !original.isEmpty();
@@ -104,6 +126,7 @@ public class RestartableSequence extends NodeSequence implements Restartable {
     @Override
     public long getRowCount() {
         if (batches == null) return 0L;// closed
+        if (!loadedAll && !computeRowCount) return -1L;
         loadRemaining();
         return totalSize;
     }
@@ -15,7 +15,12 @@
  */
 package org.modeshape.jcr.query.engine.process;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
 import org.mapdb.Serializer;
 import org.modeshape.common.collection.SequentialIterator;
 import org.modeshape.jcr.cache.CachedNodeSupplier;
@@ -27,14 +32,21 @@ import org.modeshape.jcr.query.engine.process.BufferedRows.BufferedRow;
 import org.modeshape.jcr.query.model.NullOrder;
 
 /**
+ * A {@link NodeSequence} that returns the rows of another sequence ordered by a value extracted from each row. The sequence
+ * normally buffers all of the rows of the other sequence, but it can also be limited to the first <i>N</i> rows (e.g., for
+ * queries with both ORDER BY and LIMIT clauses), in which case only those rows are kept in a bounded heap while the other
+ * sequence is read.
+ *
  * @author Randall Hauch (rhauch@redhat.com)
  */
 public class SortingSequence extends BufferingSequence {
 
     private final DistinctBuffer<BufferedRow> rowsWithNullKey;
     private final NullOrder nullOrder;
+    private final long maxRows;
     private Iterator<BufferedRow> bufferedRows;
     private int batchSize = 0;
+    private long topRowCount = 0L;
 
     @SuppressWarnings( {"unchecked"} )
     public SortingSequence( String workspaceName,
@@ -46,8 +58,38 @@ public class SortingSequence extends BufferingSequence {
                             boolean useHeap,
                             boolean allowDuplicates,
                             NullOrder nullOrder ) {
+        this(workspaceName, delegate, extractor, bufferMgr, nodeCache, pack, useHeap, allowDuplicates, nullOrder, -1L);
+    }
+
+    /**
+     * Create a sorting sequence that returns at most the supplied number of rows.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     * @param delegate the sequence whose rows are to be sorted; may not be null
+     * @param extractor the extractor of the values used to sort the rows; may not be null
+     * @param bufferMgr the buffer manager; may not be null
+     * @param nodeCache the cache of nodes; may not be null
+     * @param pack true if the buffers should pack the keys, or false otherwise
+     * @param useHeap true if the buffers should be kept on the heap, or false if they should be kept off-heap
+     * @param allowDuplicates true if rows with the same sort value should all be kept, or false if only one of them should be
+     * @param nullOrder the ordering of the rows with a null sort value; may be null only if the values are never null
+     * @param maxRows the maximum number of (first) rows to return, which is only used when duplicates are allowed; a
+     *        non-positive value means all rows are returned
+     */
+    @SuppressWarnings( {"unchecked"} )
+    public SortingSequence( String workspaceName,
+                            NodeSequence delegate,
+                            ExtractFromRow extractor,
+                            BufferManager bufferMgr,
+                            CachedNodeSupplier nodeCache,
+                            boolean pack,
+                            boolean useHeap,
+                            boolean allowDuplicates,
+                            NullOrder nullOrder,
+                            long maxRows ) {
         super(workspaceName, delegate, extractor, bufferMgr, nodeCache, pack, useHeap, allowDuplicates);
         this.nullOrder = nullOrder;
+        this.maxRows = allowDuplicates && maxRows > 0L ? maxRows : -1L;
         // Create the buffer into which we'll place the rows with null keys ...
         Serializer<BufferedRow> rowSerializer = (Serializer<BufferedRow>)BufferedRows.serializer(nodeCache, width);
         rowsWithNullKey = bufferMgr.createDistinctBuffer(rowSerializer).keepSize(true).useHeap(useHeap).make();
@@ -58,6 +100,7 @@ public class SortingSequence extends BufferingSequence {
         if (bufferedRows == null) {
             bufferedRows = initialize();
         }
+        if (maxRows > 0L) return topRowCount;
         return super.rowCount() + rowsWithNullKey.size();
     }
 
@@ -77,6 +120,12 @@ public class SortingSequence extends BufferingSequence {
      * @return the iterator over the buffered rows in this sequence; may be null if this sequence is empty
      */
     protected Iterator<BufferedRow> initialize() {
+        if (maxRows > 0L) {
+            List<BufferedRow> topRows = loadTop(delegate, extractor);
+            topRowCount = topRows.size();
+            remainingRowCount.set(topRowCount);
+            return topRows.iterator();
+        }
         // Load everthing into the buffer ...
         batchSize = loadAll(delegate, extractor, rowsWithNullKey);
         remainingRowCount.set(buffer.size() + rowsWithNullKey.size());
@@ -96,6 +145,97 @@ public class SortingSequence extends BufferingSequence {
         return null;
     }
 
+    /**
+     * Read all of the rows from the supplied sequence, but keep only the first {@link #maxRows} rows in a bounded heap whose
+     * head is the last of the kept rows.
+     *
+     * @param sequence the node sequence; may not be null
+     * @param extractor the extractor for the sortable value; may not be null
+     * @return the first rows in ascending order of the extracted key (with the rows with null keys in the proper place); never
+     *         null
+     */
+    protected List<BufferedRow> loadTop( NodeSequence sequence,
+                                         ExtractFromRow extractor ) {
+        final Comparator<TopRow> ascending = topRowComparator(extractor);
+        PriorityQueue<TopRow> heap = new PriorityQueue<>(11, Collections.reverseOrder(ascending));
+        long sequenceNumber = 0L;
+        Batch batch = sequence.nextBatch();
+        while (batch != null) {
+            int rowsInBatch = 0;
+            while (batch.hasNext()) {
+                batch.nextRow();
+                Object value = extractor.getValueInRow(batch);
+                if (value instanceof Object[]) {
+                    // Each of the values is sorted separately ...
+                    for (Object v : (Object[])value) {
+                        addTop(heap, ascending, v, batch, sequenceNumber++);
+                    }
+                } else {
+                    addTop(heap, ascending, value, batch, sequenceNumber++);
+                }
+                ++rowsInBatch;
+            }
+            if (batchSize == 0) batchSize = rowsInBatch;
+            batch = sequence.nextBatch();
+        }
+        List<TopRow> sorted = new ArrayList<>(heap);
+        Collections.sort(sorted, ascending);
+        List<BufferedRow> rows = new ArrayList<>(sorted.size());
+        for (TopRow top : sorted) {
+            rows.add(top.row);
+        }
+        return rows;
+    }
+
+    private void addTop( PriorityQueue<TopRow> heap,
+                         Comparator<TopRow> ascending,
+                         Object key,
+                         Batch batch,
+                         long sequenceNumber ) {
+        if (heap.size() >= maxRows) {
+            // Only copy the row if it comes before the last of the kept rows ...
+            if (ascending.compare(new TopRow(key, null, sequenceNumber), heap.peek()) >= 0) return;
+            heap.poll();
+        }
+        heap.add(new TopRow(key, createRow(batch), sequenceNumber));
+    }
+
+    private Comparator<TopRow> topRowComparator( ExtractFromRow extractor ) {
+        @SuppressWarnings( "unchecked" )
+        final Comparator<Object> keyComparator = (Comparator<Object>)extractor.getType().getComparator();
+        final int nullComparison = nullOrder == NullOrder.NULLS_FIRST ? -1 : 1;
+        return new Comparator<TopRow>() {
+            @Override
+            public int compare( TopRow row1,
+                                TopRow row2 ) {
+                int diff = 0;
+                if (row1.key == null) {
+                    diff = row2.key == null ? 0 : nullComparison;
+                } else if (row2.key == null) {
+                    diff = -nullComparison;
+                } else {
+                    diff = keyComparator.compare(row1.key, row2.key);
+                }
+                // Rows with equal keys keep the order of the delegate sequence ...
+                return diff != 0 ? diff : Long.compare(row1.sequenceNumber, row2.sequenceNumber);
+            }
+        };
+    }
+
+    protected static final class TopRow {
+        protected final Object key;
+        protected final BufferedRow row;
+        protected final long sequenceNumber;
+
+        protected TopRow( Object key,
+                          BufferedRow row,
+                          long sequenceNumber ) {
+            this.key = key;
+            this.row = row;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+
     @Override
     public void close() {
         try {
@@ -107,6 +247,7 @@ public class SortingSequence extends BufferingSequence {
 
     @Override
     public String toString() {
-        return "(sorting-sequence width=" + width() + " order=" + extractor + " " + delegate + ")";
+        String top = maxRows > 0L ? " top=" + maxRows : "";
+        return "(sorting-sequence width=" + width() + " order=" + extractor + top + " " + delegate + ")";
     }
 }
@@ -16,11 +16,14 @@
 
 package org.modeshape.jcr.query.optimize;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,7 @@ import javax.jcr.query.qom.Comparison;
 import javax.jcr.query.qom.Constraint;
 import javax.jcr.query.qom.DynamicOperand;
 import javax.jcr.query.qom.JoinCondition;
+import javax.jcr.query.qom.Or;
 import javax.jcr.query.qom.PropertyValue;
 import javax.jcr.query.qom.StaticOperand;
 import org.modeshape.common.annotation.Immutable;
@@ -53,7 +57,8 @@ import org.modeshape.jcr.value.StringFactory;
  * A rule that adds indexes below {@link Type#SOURCE} nodes. The rule uses an {@link IndexPlanner} that will actually look at the
  * AND-ed constraints for the source (that is, the constraints in the {@link Type#SELECT} above the {@link Type#SOURCE} node but
  * below an {@link Type#ACCESS} node) and produce 0 or more indexes. These indexes are then added as {@link Type#INDEX} nodes
- * below the {@link Type#SOURCE} node.
+ * below the {@link Type#SOURCE} node. Where possible, the rule also adds plans for the intersection of the most selective
+ * indexes for different AND-ed constraints, and for the union of the indexes for each of the terms of an OR-ed constraint.
  *
  * @author Randall Hauch (rhauch@redhat.com)
  */
@@ -82,6 +87,11 @@ public class AddIndexes implements OptimizerRule {
         return new AddIndexes(planners);
     }
 
+    /** The maximum number of indexes that are intersected */
+    protected static final int MAX_INTERSECTED_INDEXES = 3;
+    /** The maximum selectivity of an index that is intersected with a more selective index */
+    protected static final float MAX_INTERSECTED_SELECTIVITY = 0.5f;
+
     private final IndexPlanners planners;
 
     protected AddIndexes( IndexPlanners planner ) {
@@ -194,102 +204,12 @@ public class AddIndexes implements OptimizerRule {
                 // Add the alias ...
                 nodeTypeNames.add(selectorName.getString());
                 final List<IndexPlan> indexPlans = new LinkedList<>();
-                IndexCostCalculator calculator = new IndexCostCalculator() {
-                    @Override
-                    public Set<String> selectedNodeTypes() {
-                        return nodeTypeNames;
-                    }
-
-                    @Override
-                    public Collection<Constraint> andedConstraints() {
-                        return constraints;
-                    }
-
-                    @Override
-                    public Collection<JoinCondition> joinConditions() {
-                        return joinConditions;
-                    }
-
-                    @Override
-                    public Map<String, Object> getVariables() {
-                        return context.getVariables();
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<JoinCondition> joinConditions,
-                                          int costEstimate,
-                                          long cardinalityEstimate ) {
-                        IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, null, joinConditions,
-                                                            costEstimate, cardinalityEstimate, 1.0f, null);
-                        indexPlans.add(indexPlan);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          Map<String, Object> parameters ) {
-                        // Add a plan node for this index ...
-                        IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, constraints, null, costEstimate,
-                                                            cardinalityEstimate, selectivityEstimate, parameters);
-                        indexPlans.add(indexPlan);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate ) {
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, null);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          String parameterName,
-                                          Object parameterValue ) {
-                        Map<String, Object> params = Collections.singletonMap(parameterName, parameterValue);
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, params);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          String parameterName1,
-                                          Object parameterValue1,
-                                          String parameterName2,
-                                          Object parameterValue2 ) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put(parameterName1, parameterValue1);
-                        params.put(parameterName2, parameterValue2);
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, params);
-                    }
-                };
+                IndexCostCalculator calculator = calculator(context, nodeTypeNames, constraints, joinConditions, indexPlans);
                 // And collect the indexes from the index planner ...
                 planners.applyIndexes(context, calculator);
+                // Then see whether the indexes can be combined to satisfy more of the constraints ...
+                addUnionPlans(context, nodeTypeNames, constraints, indexPlans);
+                addIntersectionPlan(indexPlans);
                 if (!indexPlans.isEmpty()) {
                     // Sort the index plans, so the best one is first ...
                     Collections.sort(indexPlans);
@@ -306,4 +226,303 @@ public class AddIndexes implements OptimizerRule {
         }
         return plan;
     }
+
+    /**
+     * Add a plan for the union of several indexes for each OR-ed constraint that no single index can satisfy but where each of
+     * the OR-ed constraints can be satisfied by an index from a provider. The union of the node keys found by these indexes will
+     * contain all of the nodes that satisfy the OR-ed constraint.
+     *
+     * @param context the query context; may not be null
+     * @param nodeTypeNames the names of the node types selected by the query; may not be null
+     * @param constraints the AND-ed constraints; may not be null
+     * @param indexPlans the index plans found for the constraints, to which the union plans are to be added; may not be null
+     */
+    protected void addUnionPlans( QueryContext context,
+                                  Set<String> nodeTypeNames,
+                                  List<Constraint> constraints,
+                                  List<IndexPlan> indexPlans ) {
+        Collection<JoinCondition> noJoinConditions = Collections.emptyList();
+        for (Constraint constraint : constraints) {
+            if (!(constraint instanceof Or) || isSatisfiedByIndex(constraint, indexPlans)) continue;
+            List<Constraint> disjuncts = new LinkedList<>();
+            collectDisjuncts(constraint, disjuncts);
+            List<IndexPlan> unionedPlans = new ArrayList<>(disjuncts.size());
+            for (Constraint disjunct : disjuncts) {
+                List<IndexPlan> plans = new LinkedList<>();
+                Collection<Constraint> disjunctConstraints = Collections.singletonList(disjunct);
+                planners.applyIndexes(context, calculator(context, nodeTypeNames, disjunctConstraints, noJoinConditions, plans));
+                IndexPlan best = null;
+                for (IndexPlan plan : plans) {
+                    if (isCombinable(plan) && (best == null || plan.compareTo(best) < 0)) best = plan;
+                }
+                if (best == null) break;
+                unionedPlans.add(best);
+            }
+            if (unionedPlans.size() != disjuncts.size()) continue;
+            long cost = 0L;
+            long cardinality = 0L;
+            Float selectivity = 0.0f;
+            for (IndexPlan plan : unionedPlans) {
+                cost += plan.getCostEstimate();
+                if (cardinality != Long.MAX_VALUE) {
+                    long planCardinality = plan.getCardinalityEstimate();
+                    cardinality = planCardinality == Long.MAX_VALUE ? Long.MAX_VALUE : cardinality + planCardinality;
+                }
+                if (selectivity != null) {
+                    selectivity = plan.hasSelectivityEstimate() ? Math.min(selectivity + plan.getSelectivityEstimate(), 1.0f) : null;
+                }
+            }
+            Map<String, Object> params = Collections.<String, Object>singletonMap(IndexPlanners.INDEX_PLANS_PARAMETER,
+                                                                                    unionedPlans);
+            indexPlans.add(new IndexPlan(IndexPlanners.INDEX_UNION_NAME, unionedPlans.get(0).getWorkspaceName(), null,
+                                         Collections.singletonList(constraint), null, (int)Math.min(cost, Integer.MAX_VALUE),
+                                         cardinality, selectivity, params));
+        }
+    }
+
+    /**
+     * Add a plan for the intersection of the most selective indexes that each satisfy different constraints. The intersection
+     * uses the best index to find the initial set of node keys, and then uses each of the other indexes to remove the node keys
+     * that do not satisfy their constraints, all before any of the nodes are loaded.
+     *
+     * @param indexPlans the index plans found for the constraints, to which the intersection plan is to be added; may not be
+     *        null
+     */
+    protected void addIntersectionPlan( List<IndexPlan> indexPlans ) {
+        List<IndexPlan> candidates = new ArrayList<>();
+        for (IndexPlan plan : indexPlans) {
+            if (isCombinable(plan) && plan.hasSelectivityEstimate() && plan.getCardinalityEstimate() != Long.MAX_VALUE) {
+                candidates.add(plan);
+            }
+        }
+        if (candidates.size() < 2) return;
+        Collections.sort(candidates);
+        IndexPlan driving = candidates.get(0);
+        List<IndexPlan> intersectedPlans = new ArrayList<>(MAX_INTERSECTED_INDEXES);
+        intersectedPlans.add(driving);
+        Set<Constraint> intersectedConstraints = new LinkedHashSet<>(driving.getConstraints());
+        long cost = driving.getCostEstimate();
+        float selectivity = driving.getSelectivityEstimate();
+        float filterSelectivity = 1.0f;
+        for (IndexPlan plan : candidates.subList(1, candidates.size())) {
+            if (intersectedPlans.size() == MAX_INTERSECTED_INDEXES) break;
+            if (plan.getSelectivityEstimate() > MAX_INTERSECTED_SELECTIVITY) continue;
+            if (!equals(driving.getWorkspaceName(), plan.getWorkspaceName())) continue;
+            if (!Collections.disjoint(intersectedConstraints, plan.getConstraints())) continue;
+            intersectedPlans.add(plan);
+            intersectedConstraints.addAll(plan.getConstraints());
+            cost += plan.getCostEstimate();
+            selectivity *= plan.getSelectivityEstimate();
+            filterSelectivity *= plan.getSelectivityEstimate();
+        }
+        if (intersectedPlans.size() < 2) return;
+        long cardinality = (long)Math.ceil(driving.getCardinalityEstimate() * (double)filterSelectivity);
+        Map<String, Object> params = Collections.<String, Object>singletonMap(IndexPlanners.INDEX_PLANS_PARAMETER,
+                                                                                intersectedPlans);
+        indexPlans.add(new IndexPlan(IndexPlanners.INDEX_INTERSECTION_NAME, driving.getWorkspaceName(), null,
+                                     new ArrayList<>(intersectedConstraints), null, (int)Math.min(cost, Integer.MAX_VALUE),
+                                     cardinality, selectivity, params));
+    }
+
+    private static boolean isCombinable( IndexPlan plan ) {
+        // Only indexes from providers (and unions of them) can be combined, and only when they're used for constraints ...
+        boolean providerIndex = plan.getProviderName() != null || IndexPlanners.INDEX_UNION_NAME.equals(plan.getName());
+        return providerIndex && !plan.getConstraints().isEmpty() && plan.getJoinConditions().isEmpty();
+    }
+
+    private static boolean isSatisfiedByIndex( Constraint constraint,
+                                               List<IndexPlan> indexPlans ) {
+        for (IndexPlan plan : indexPlans) {
+            if (plan.getConstraints().contains(constraint)) return true;
+        }
+        return false;
+    }
+
+    private static void collectDisjuncts( Constraint constraint,
+                                          List<Constraint> disjuncts ) {
+        if (constraint instanceof Or) {
+            Or or = (Or)constraint;
+            collectDisjuncts(or.getConstraint1(), disjuncts);
+            collectDisjuncts(or.getConstraint2(), disjuncts);
+        } else {
+            disjuncts.add(constraint);
+        }
+    }
+
+    private static boolean equals( String first,
+                                   String second ) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Create a calculator that collects the index plans produced for the given constraints.
+     *
+     * @param context the query context; may not be null
+     * @param nodeTypeNames the names of the node types selected by the query; may not be null
+     * @param constraints the AND-ed constraints; may not be null
+     * @param joinConditions the join conditions; may not be null
+     * @param indexPlans the list to which the index plans are to be added; may not be null
+     * @return the calculator; never null
+     */
+    protected static IndexCostCalculator calculator( final QueryContext context,
+                                                     final Set<String> nodeTypeNames,
+                                                     final Collection<Constraint> constraints,
+                                                     final Collection<JoinCondition> joinConditions,
+                                                     final List<IndexPlan> indexPlans ) {
+        return new IndexCostCalculator() {
+            @Override
+            public Set<String> selectedNodeTypes() {
+                return nodeTypeNames;
+            }
+
+            @Override
+            public Collection<Constraint> andedConstraints() {
+                return constraints;
+            }
+
+            @Override
+            public Collection<JoinCondition> joinConditions() {
+                return joinConditions;
+            }
+
+            @Override
+            public Map<String, Object> getVariables() {
+                // the plan only depends on the values if the providers read them to estimate the cost of their indexes ...
+                return new VariableValues(context);
+            }
+
+            @Override
+            public void addIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  Collection<JoinCondition> joinConditions,
+                                  int costEstimate,
+                                  long cardinalityEstimate ) {
+                IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, null, joinConditions,
+                                                    costEstimate, cardinalityEstimate, 1.0f, null);
+                indexPlans.add(indexPlan);
+            }
+
+            @Override
+            public void addIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  Collection<Constraint> constraints,
+                                  int costEstimate,
+                                  long cardinalityEstimate,
+                                  Float selectivityEstimate,
+                                  Map<String, Object> parameters ) {
+                // Add a plan node for this index ...
+                IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, constraints, null, costEstimate,
+                                                    cardinalityEstimate, selectivityEstimate, parameters);
+                indexPlans.add(indexPlan);
+            }
+
+            @Override
+            public void addIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  Collection<Constraint> constraints,
+                                  int costEstimate,
+                                  long cardinalityEstimate,
+                                  Float selectivityEstimate ) {
+                addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
+                         selectivityEstimate, null);
+            }
+
+            @Override
+            public void addIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  Collection<Constraint> constraints,
+                                  int costEstimate,
+                                  long cardinalityEstimate,
+                                  Float selectivityEstimate,
+                                  String parameterName,
+                                  Object parameterValue ) {
+                Map<String, Object> params = Collections.singletonMap(parameterName, parameterValue);
+                addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
+                         selectivityEstimate, params);
+            }
+
+            @Override
+            public void addIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  Collection<Constraint> constraints,
+                                  int costEstimate,
+                                  long cardinalityEstimate,
+                                  Float selectivityEstimate,
+                                  String parameterName1,
+                                  Object parameterValue1,
+                                  String parameterName2,
+                                  Object parameterValue2 ) {
+                Map<String, Object> params = new HashMap<>();
+                params.put(parameterName1, parameterValue1);
+                params.put(parameterName2, parameterValue2);
+                addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
+                         selectivityEstimate, params);
+            }
+        };
+    }
+
+    /**
+     * A read-only view of the query's variables that records that the plan depends on the variables' values only when one of the
+     * values is actually read, so that plans whose cost estimates don't use the values can still be reused for other values.
+     */
+    protected static final class VariableValues extends AbstractMap<String, Object> {
+        private final QueryContext context;
+
+        protected VariableValues( QueryContext context ) {
+            this.context = context;
+        }
+
+        private Map<String, Object> variables() {
+            return context.getVariables();
+        }
+
+        @Override
+        public int size() {
+            return variables().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return variables().isEmpty();
+        }
+
+        @Override
+        public boolean containsKey( Object key ) {
+            return variables().containsKey(key);
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(variables().keySet());
+        }
+
+        @Override
+        public Object get( Object key ) {
+            context.recordPlanDependsOnVariableValues();
+            return variables().get(key);
+        }
+
+        @Override
+        public boolean containsValue( Object value ) {
+            context.recordPlanDependsOnVariableValues();
+            return variables().containsValue(value);
+        }
+
+        @Override
+        public Collection<Object> values() {
+            context.recordPlanDependsOnVariableValues();
+            return Collections.unmodifiableCollection(variables().values());
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            context.recordPlanDependsOnVariableValues();
+            return Collections.unmodifiableMap(variables()).entrySet();
+        }
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.engine.IndexPlan;
+import org.modeshape.jcr.query.model.NullOrder;
+import org.modeshape.jcr.query.model.Order;
+import org.modeshape.jcr.query.model.Ordering;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.spi.index.IndexCostCalculator;
+
+/**
+ * A rule that removes a {@link Type#SORT} node when the results below it are already in the required order, because the
+ * cheapest index of the only {@link Type#SOURCE} below the SORT node returns its nodes
+ * {@link IndexCostCalculator#ORDERED_BY_PARAMETER ordered by} the property in the (single, ascending) ordering. The orderings
+ * are moved onto the {@link Type#INDEX} node, so that the results can still be sorted should that index not be usable when
+ * the query is executed.
+ * <p>
+ * This rule must run after the {@link OrderIndexesByCost} rule.
+ * </p>
+ */
+@Immutable
+public class RemoveSortsSatisfiedByIndexes implements OptimizerRule {
+
+    public static final RemoveSortsSatisfiedByIndexes INSTANCE = new RemoveSortsSatisfiedByIndexes();
+
+    @Override
+    public PlanNode execute( QueryContext context,
+                             PlanNode plan,
+                             LinkedList<OptimizerRule> ruleStack ) {
+        for (PlanNode sort : plan.findAllAtOrBelow(Type.SORT)) {
+            PlanNode index = indexSatisfying(sort);
+            if (index == null) continue;
+            index.setProperty(Property.SORT_ORDER_BY, sort.getProperty(Property.SORT_ORDER_BY));
+            if (sort == plan) {
+                plan = sort.getFirstChild();
+                plan.removeFromParent();
+            } else {
+                sort.extractFromParent();
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Find the INDEX node whose results are in the order required by the supplied SORT node.
+     *
+     * @param sort the SORT node; may not be null
+     * @return the INDEX node, or null if the results below the SORT node must be sorted
+     */
+    protected PlanNode indexSatisfying( PlanNode sort ) {
+        // A SORT that also removes duplicates must be kept ...
+        if (sort.getChildCount() != 1 || sort.getFirstChild().getType() == Type.DUP_REMOVE) return null;
+        List<Object> orderBys = sort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class);
+        if (orderBys == null || orderBys.size() != 1 || !(orderBys.get(0) instanceof Ordering)) return null;
+        Ordering ordering = (Ordering)orderBys.get(0);
+        if (ordering.order() != Order.ASCENDING || ordering.nullOrder() != NullOrder.NULLS_LAST) return null;
+        if (!(ordering.getOperand() instanceof PropertyValue)) return null;
+        PropertyValue orderedBy = (PropertyValue)ordering.getOperand();
+
+        // The rows must all come from a single source, whose first index is the cheapest ...
+        List<PlanNode> sources = sort.findAllAtOrBelow(Type.SOURCE);
+        if (sources.size() != 1) return null;
+        PlanNode source = sources.get(0);
+        SelectorName selector = orderedBy.selectorName();
+        if (!selector.equals(source.getProperty(Property.SOURCE_NAME, SelectorName.class))
+            && !selector.equals(source.getProperty(Property.SOURCE_ALIAS, SelectorName.class))) return null;
+        PlanNode index = source.getFirstChild();
+        if (index == null || index.getType() != Type.INDEX) return null;
+        IndexPlan indexPlan = index.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+        Object indexOrderedBy = indexPlan.getParameters().get(IndexCostCalculator.ORDERED_BY_PARAMETER);
+        return orderedBy.getPropertyName().equals(indexOrderedBy) ? index : null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
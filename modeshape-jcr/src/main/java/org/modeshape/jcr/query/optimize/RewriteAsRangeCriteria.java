@@ -325,6 +325,7 @@ public class RewriteAsRangeCriteria implements OptimizerRule {
             return literal.value();
         }
         BindVariableName variable = (BindVariableName)operand;
+        context.recordPlanDependsOnVariableValues();
         return context.getVariables().get(variable.getBindVariableName());
     }
 }
@@ -83,6 +83,7 @@ public class RuleBasedOptimizer implements Optimizer {
         // Add indexes determination last ...
         populateIndexingRules(ruleStack, hints);
         ruleStack.addLast(OrderIndexesByCost.INSTANCE);
+        ruleStack.addLast(RemoveSortsSatisfiedByIndexes.INSTANCE);
     }
 
     /**
@@ -106,6 +106,14 @@ public final class PlanHints implements Serializable, Cloneable {
      */
     public int rowsKeptInMemory = 200;
 
+    /**
+     * Flag indicating whether the {@link javax.jcr.RangeIterator#getSize() size} of the node and row iterators of the results
+     * should always be computed, even when that requires reading (and buffering) all of the remaining results. When this is
+     * {@code false}, the size is only returned when it is already known and is otherwise -1, so that the results are only read
+     * as they are consumed and a client that stops early never pays for reading the rest of them. The default is {@code true}.
+     */
+    public boolean computeResultSize = true;
+
     public PlanHints() {
     }
 
@@ -127,8 +135,10 @@ public final class PlanHints implements Serializable, Cloneable {
         sb.append(", validateColumnExistance=").append(validateColumnExistance);
         sb.append(", includeSystemContent=").append(includeSystemContent);
         sb.append(", useSessionContent=").append(useSessionContent);
+        sb.append(", qualifyExpandedColumnNames=").append(qualifyExpandedColumnNames);
         sb.append(", restartable=").append(restartable);
         sb.append(", rowsKeptInMemory=").append(rowsKeptInMemory);
+        sb.append(", computeResultSize=").append(computeResultSize);
         sb.append('}');
         return sb.toString();
     }
@@ -136,24 +146,34 @@ public final class PlanHints implements Serializable, Cloneable {
     @Override
     public PlanHints clone() {
         PlanHints clone = new PlanHints();
-        clone.hasCriteria = this.hasCriteria;
-        clone.hasView = this.hasView;
-        clone.hasJoin = this.hasJoin;
-        clone.hasSort = this.hasSort;
-        clone.hasSetQuery = this.hasSetQuery;
-        clone.hasLimit = this.hasLimit;
-        clone.hasOptionalJoin = this.hasOptionalJoin;
-        clone.hasFullTextSearch = this.hasFullTextSearch;
-        clone.hasSubqueries = this.hasSubqueries;
-        clone.isExistsQuery = this.isExistsQuery;
-        clone.showPlan = this.showPlan;
-        clone.planOnly = this.planOnly;
-        clone.validateColumnExistance = this.validateColumnExistance;
-        clone.includeSystemContent = this.includeSystemContent;
-        clone.useSessionContent = this.useSessionContent;
-        clone.qualifyExpandedColumnNames = this.qualifyExpandedColumnNames;
-        clone.restartable = this.restartable;
-        clone.rowsKeptInMemory = this.rowsKeptInMemory;
+        clone.setFrom(this);
         return clone;
     }
+
+    /**
+     * Set each of the hints on this object to the value of the corresponding hint on the supplied object.
+     * 
+     * @param other the hints whose values are to be copied; may not be null
+     */
+    public void setFrom( PlanHints other ) {
+        this.hasCriteria = other.hasCriteria;
+        this.hasView = other.hasView;
+        this.hasJoin = other.hasJoin;
+        this.hasSort = other.hasSort;
+        this.hasSetQuery = other.hasSetQuery;
+        this.hasLimit = other.hasLimit;
+        this.hasOptionalJoin = other.hasOptionalJoin;
+        this.hasFullTextSearch = other.hasFullTextSearch;
+        this.hasSubqueries = other.hasSubqueries;
+        this.isExistsQuery = other.isExistsQuery;
+        this.showPlan = other.showPlan;
+        this.planOnly = other.planOnly;
+        this.validateColumnExistance = other.validateColumnExistance;
+        this.includeSystemContent = other.includeSystemContent;
+        this.useSessionContent = other.useSessionContent;
+        this.qualifyExpandedColumnNames = other.qualifyExpandedColumnNames;
+        this.restartable = other.restartable;
+        this.rowsKeptInMemory = other.rowsKeptInMemory;
+        this.computeResultSize = other.computeResultSize;
+    }
 }
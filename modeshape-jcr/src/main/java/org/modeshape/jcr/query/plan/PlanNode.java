@@ -185,7 +185,8 @@ public final class PlanNode implements Iterable<PlanNode>, Readable, Cloneable,
 
         /**
          * For SET_OPERATION nodes, the list of orderings for the results. Value is either a Collection of {@link Ordering}
-         * objects or a collection of {@link SelectorName} objects (if the sorting is being done as an input to a merge-join).
+         * objects or a collection of {@link SelectorName} objects (if the sorting is being done as an input to a merge-join). For
+         * INDEX nodes, the orderings of a SORT node that was removed because the index returns its results in that order.
          */
         SORT_ORDER_BY,
 
@@ -54,6 +54,13 @@ public interface IndexCostCalculator {
         public static final int REMOTE = 10000;
     }
 
+    /**
+     * The name of the parameter whose value is the name of the property by whose values an index returns the nodes that satisfy
+     * its constraints, in ascending order with the nodes that have no value for the property last. ModeShape does not sort the
+     * results of a query ordered only by that property when it uses such an index.
+     */
+    public static final String ORDERED_BY_PARAMETER = "orderedBy";
+
     /**
      * Get the name of the node type that the query is selecting, including aliases.
      *
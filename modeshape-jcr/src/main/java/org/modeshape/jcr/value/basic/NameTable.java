@@ -0,0 +1,148 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.basic;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.value.Name;
+
+/**
+ * A table for interning {@link Name} instances, keyed by namespace URI and local name, so that equal names can share a single
+ * canonical instance. Names do not depend on namespace prefixes, so a single table can be shared by all repositories. The table
+ * only holds weak references to the names, so names that are no longer used can be garbage collected and are interned again
+ * when next needed.
+ * <p>
+ * Looking up a name that is already in the table does not allocate any objects.
+ * </p>
+ */
+@ThreadSafe
+public final class NameTable {
+
+    private static final NameTable SHARED = new NameTable();
+
+    /**
+     * Get the table shared by all of the {@link NameValueFactory name factories}.
+     *
+     * @return the shared table; never null
+     */
+    public static NameTable shared() {
+        return SHARED;
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<String, NameReference>> namesByNamespace = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Name> collected = new ReferenceQueue<>();
+
+    /**
+     * Get the canonical name with the supplied namespace URI and local name, creating it if required.
+     *
+     * @param namespaceUri the namespace URI; may be null if the name is in the blank namespace
+     * @param localName the local name; may not be null
+     * @return the canonical name; never null
+     */
+    public Name intern( String namespaceUri,
+                        String localName ) {
+        CheckArg.isNotNull(localName, "localName");
+        // Normalize the strings the same way as BasicName, which returns the same instances when there's nothing to change ...
+        namespaceUri = namespaceUri != null ? namespaceUri.trim() : "";
+        String trimmed = localName.trim();
+        if (trimmed.length() != 0) localName = trimmed;
+
+        ConcurrentMap<String, NameReference> names = namesIn(namespaceUri);
+        NameReference ref = names.get(localName);
+        Name name = ref != null ? ref.get() : null;
+        if (name != null) return name;
+        return add(names, new BasicName(namespaceUri, localName));
+    }
+
+    /**
+     * Get the canonical instance of the supplied name, adding the supplied instance to the table if there is no such name.
+     *
+     * @param name the name; may not be null
+     * @return the canonical name; never null
+     */
+    public Name intern( Name name ) {
+        CheckArg.isNotNull(name, "name");
+        ConcurrentMap<String, NameReference> names = namesIn(name.getNamespaceUri());
+        NameReference ref = names.get(name.getLocalName());
+        Name existing = ref != null ? ref.get() : null;
+        if (existing != null) return existing;
+        return add(names, name);
+    }
+
+    /**
+     * Get the number of names in this table, including those that have been collected but not yet removed.
+     *
+     * @return the number of names
+     */
+    public int size() {
+        removeCollectedNames();
+        int size = 0;
+        for (ConcurrentMap<String, NameReference> names : namesByNamespace.values()) {
+            size += names.size();
+        }
+        return size;
+    }
+
+    private ConcurrentMap<String, NameReference> namesIn( String namespaceUri ) {
+        ConcurrentMap<String, NameReference> names = namesByNamespace.get(namespaceUri);
+        if (names == null) {
+            names = new ConcurrentHashMap<>();
+            ConcurrentMap<String, NameReference> existing = namesByNamespace.putIfAbsent(namespaceUri, names);
+            if (existing != null) names = existing;
+        }
+        return names;
+    }
+
+    private Name add( ConcurrentMap<String, NameReference> names,
+                      Name name ) {
+        removeCollectedNames();
+        String localName = name.getLocalName();
+        NameReference newRef = new NameReference(name, collected);
+        for (;;) {
+            NameReference ref = names.putIfAbsent(localName, newRef);
+            if (ref == null) return name;
+            Name existing = ref.get();
+            if (existing != null) return existing; // another thread added it first
+            // The existing name was collected, so replace it ...
+            if (names.replace(localName, ref, newRef)) return name;
+        }
+    }
+
+    private void removeCollectedNames() {
+        NameReference ref = (NameReference)collected.poll();
+        while (ref != null) {
+            ConcurrentMap<String, NameReference> names = namesByNamespace.get(ref.namespaceUri);
+            if (names != null) names.remove(ref.localName, ref);
+            ref = (NameReference)collected.poll();
+        }
+    }
+
+    private static final class NameReference extends WeakReference<Name> {
+        protected final String namespaceUri;
+        protected final String localName;
+
+        protected NameReference( Name name,
+                                 ReferenceQueue<Name> queue ) {
+            super(name, queue);
+            this.namespaceUri = name.getNamespaceUri();
+            this.localName = name.getLocalName();
+        }
+    }
+}
@@ -41,13 +41,15 @@ import org.modeshape.jcr.value.ValueFactory;
 import org.modeshape.jcr.value.ValueFormatException;
 
 /**
- * The standard {@link ValueFactory} for {@link PropertyType#NAME} values.
+ * The standard {@link ValueFactory} for {@link PropertyType#NAME} values. All of the created names are {@link NameTable#shared()
+ * interned}, so equal names are usually the same instance.
  */
 @Immutable
 public class NameValueFactory extends AbstractValueFactory<Name> implements NameFactory {
 
-    private static final Name BLANK_NAME = new BasicName("", "");
-    private static final Name ANY_NAME = new BasicName("", "*");
+    private static final NameTable NAMES = NameTable.shared();
+    private static final Name BLANK_NAME = NAMES.intern(new BasicName("", ""));
+    private static final Name ANY_NAME = NAMES.intern(new BasicName("", "*"));
 
     private final NamespaceRegistry.Holder namespaceRegistryHolder;
 
@@ -119,7 +121,7 @@ public class NameValueFactory extends AbstractValueFactory<Name> implements Name
                     }
                     String namespaceUri = this.namespaceRegistryHolder.getNamespaceRegistry().getNamespaceForPrefix("");
                     String localName = decoder.decode(value.substring(2));
-                    return new BasicName(namespaceUri, localName);
+                    return NAMES.intern(namespaceUri, localName);
                 }
                 if (closingBraceIndex > 1) {
                     // Closing brace found with chars between ...
@@ -136,7 +138,7 @@ public class NameValueFactory extends AbstractValueFactory<Name> implements Name
                     // There is no namespace prefix ...
                     String namespaceUri = this.namespaceRegistryHolder.getNamespaceRegistry().getNamespaceForPrefix("");
                     String localName = decoder.decode(value);
-                    return new BasicName(namespaceUri, localName);
+                    return NAMES.intern(namespaceUri, localName);
                 }
                 // There is a namespace ...
                 String prefix = value.substring(0, colonIndex);
@@ -150,7 +152,7 @@ public class NameValueFactory extends AbstractValueFactory<Name> implements Name
                 int nextIndexAfterColon = colonIndex + 1;
                 String localName = nextIndexAfterColon < value.length() ? value.substring(nextIndexAfterColon) : "";
                 localName = decoder.decode(localName);
-                return new BasicName(namespaceUri, localName);
+                return NAMES.intern(namespaceUri, localName);
             }
         } catch (NamespaceException err) {
             throw new ValueFormatException(value, getPropertyType(),
@@ -176,7 +178,7 @@ public class NameValueFactory extends AbstractValueFactory<Name> implements Name
         if (decoder == null) decoder = getDecoder();
         namespaceUri = namespaceUri != null ? decoder.decode(namespaceUri.trim()) : null;
         localName = decoder.decode(localName.trim());
-        return new BasicName(namespaceUri, localName);
+        return NAMES.intern(namespaceUri, localName);
     }
 
     @Override
@@ -0,0 +1,119 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.basic;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.Path;
+
+/**
+ * A bounded cache of the paths parsed from strings by a {@link PathValueFactory}.
+ * <p>
+ * A parsed path depends upon the namespace URIs to which the prefixes in the string were mapped, so each cached path records
+ * those mappings and is only returned when the supplied namespace registry still has the same mappings. This allows one cache to
+ * be shared by all of the path factories that use the same decoder, even when sessions remap prefixes.
+ * </p>
+ * <p>
+ * When the cache is full, all of the paths are removed. This is far cheaper than tracking the use of each path, and the paths
+ * that are frequently used are quickly added back.
+ * </p>
+ */
+@ThreadSafe
+final class PathCache {
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final ConcurrentMap<String, CachedPath> paths = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
+
+    PathCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    PathCache( int maxSize ) {
+        assert maxSize > 0;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the path parsed from the supplied string, if it's in the cache and was parsed with the same namespace mappings.
+     *
+     * @param value the string; may not be null
+     * @param registry the namespace registry that would be used to parse the string; may not be null
+     * @return the cached path, or null if there is no such path
+     */
+    Path get( String value,
+              NamespaceRegistry registry ) {
+        CachedPath cached = paths.get(value);
+        return cached != null && cached.hasSameNamespaces(registry) ? cached.path : null;
+    }
+
+    /**
+     * Add the path parsed from the supplied string.
+     *
+     * @param value the string; may not be null
+     * @param path the path parsed from the string; may not be null
+     * @param prefixes the distinct namespace prefixes (including the blank prefix) used to parse the string; may not be null
+     * @param namespaceUris the namespace URIs to which each of the prefixes was mapped; may not be null
+     */
+    void put( String value,
+              Path path,
+              String[] prefixes,
+              String[] namespaceUris ) {
+        assert prefixes.length == namespaceUris.length;
+        if (size.get() >= maxSize) {
+            paths.clear();
+            size.set(0);
+        }
+        if (paths.put(value, new CachedPath(path, prefixes, namespaceUris)) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the approximate number of paths in the cache
+     */
+    int size() {
+        return size.get();
+    }
+
+    private static final class CachedPath {
+        protected final Path path;
+        private final String[] prefixes;
+        private final String[] namespaceUris;
+
+        protected CachedPath( Path path,
+                              String[] prefixes,
+                              String[] namespaceUris ) {
+            this.path = path;
+            this.prefixes = prefixes;
+            this.namespaceUris = namespaceUris;
+        }
+
+        protected boolean hasSameNamespaces( NamespaceRegistry registry ) {
+            for (int i = 0; i != prefixes.length; ++i) {
+                String namespaceUri = registry.getNamespaceForPrefix(prefixes[i]);
+                if (namespaceUri == null) namespaceUri = "";
+                if (!namespaceUri.equals(namespaceUris[i])) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.InvalidPathException;
 import org.modeshape.jcr.value.IoException;
 import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NamespaceRegistry;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
 import org.modeshape.jcr.value.PathFactory;
@@ -72,6 +73,8 @@ public class PathValueFactory extends AbstractValueFactory<Path> implements Path
      */
     protected static final Pattern SEGMENT_PATTERN = Pattern.compile("([^:/]+)(:([^/\\[\\]]+))?(\\[(\\d+)])?");
 
+    private final PathCache paths;
+
     /**
      * Create a new instance.
      * 
@@ -81,12 +84,27 @@ public class PathValueFactory extends AbstractValueFactory<Path> implements Path
      */
     public PathValueFactory( TextDecoder decoder,
                              ValueFactories factories ) {
+        this(decoder, factories, new PathCache());
+    }
+
+    /**
+     * Create a new instance that shares the cache of parsed paths.
+     * 
+     * @param decoder the text decoder; may be null if the default decoder should be used
+     * @param factories the set of value factories, used to obtain the {@link ValueFactories#getStringFactory() string value
+     *        factory}; may not be null
+     * @param paths the cache of the paths parsed with the same decoder; may not be null
+     */
+    private PathValueFactory( TextDecoder decoder,
+                              ValueFactories factories,
+                              PathCache paths ) {
         super(PropertyType.PATH, decoder, factories);
+        this.paths = paths;
     }
 
     @Override
     public PathFactory with( ValueFactories valueFactories ) {
-        return super.valueFactories == valueFactories ? this : new PathValueFactory(super.getDecoder(), valueFactories);
+        return super.valueFactories == valueFactories ? this : new PathValueFactory(super.getDecoder(), valueFactories, paths);
     }
 
     /**
@@ -133,6 +151,15 @@ public class PathValueFactory extends AbstractValueFactory<Path> implements Path
             return new IdentifierPath(new IdentifierPathSegment(idName));
         }
 
+        // Paths parsed with this factory's decoder are cached ...
+        if (decoder == null) decoder = getDecoder();
+        NamespaceRegistry namespaces = null;
+        if (decoder == getDecoder()) {
+            namespaces = valueFactories.getNameFactory().getNamespaceRegistry();
+            Path cached = paths.get(value, namespaces);
+            if (cached != null) return cached;
+        }
+
         // Remove the leading delimiter ...
         if (firstChar == Path.DELIMITER) {
             trimmedValue = length > 1 ? trimmedValue.substring(1) : "";
@@ -155,9 +182,11 @@ public class PathValueFactory extends AbstractValueFactory<Path> implements Path
         if (pathSegments.length == 0) {
             throw new ValueFormatException(value, getPropertyType(), GraphI18n.validPathMayNotContainEmptySegment.text(value));
         }
-        if (decoder == null) decoder = getDecoder();
         assert pathSegments.length != 0;
         assert decoder != null;
+        // Record the namespace mappings used to create the names, so the cached path is only reused with the same mappings ...
+        List<String> prefixes = namespaces != null ? new ArrayList<String>(2) : null;
+        List<String> namespaceUris = namespaces != null ? new ArrayList<String>(2) : null;
         for (String segment : pathSegments) {
             assert segment != null;
             segment = segment.trim();
@@ -165,15 +194,50 @@ public class PathValueFactory extends AbstractValueFactory<Path> implements Path
                 throw new ValueFormatException(value, getPropertyType(), GraphI18n.validPathMayNotContainEmptySegment.text(value));
             }
             // Create the name and add a segment with it ...
-            segments.add(createSegment(segment, decoder));
+            Segment newSegment = createSegment(segment, decoder);
+            segments.add(newSegment);
+            if (prefixes != null) {
+                if (newSegment.isIdentifier()) {
+                    prefixes = null;
+                    continue;
+                }
+                String prefix = prefixOf(segment, decoder);
+                if (prefix != null && !prefixes.contains(prefix)) {
+                    prefixes.add(prefix);
+                    namespaceUris.add(newSegment.getName().getNamespaceUri());
+                }
+            }
         }
 
+        Path path = null;
         if (absolute && segments.size() == 1) {
             // Special case of a single-segment name ...
-            return new ChildPath(RootPath.INSTANCE, segments.get(0));
+            path = new ChildPath(RootPath.INSTANCE, segments.get(0));
+        } else {
+            // Create a path constructed from the supplied segments ...
+            path = new BasicPath(segments, absolute);
+        }
+        if (prefixes != null) {
+            paths.put(value, path, prefixes.toArray(new String[prefixes.size()]),
+                      namespaceUris.toArray(new String[namespaceUris.size()]));
         }
-        // Create a path constructed from the supplied segments ...
-        return new BasicPath(segments, absolute);
+        return path;
+    }
+
+    /**
+     * Determine the namespace prefix that is looked up in the namespace registry when creating the name of the supplied segment.
+     * 
+     * @param segment the trimmed segment string; may not be null or empty
+     * @param decoder the decoder; may not be null
+     * @return the prefix, which is blank for the default namespace, or null if the name doesn't depend on any prefix
+     */
+    private static String prefixOf( String segment,
+                                    TextDecoder decoder ) {
+        if (Path.SELF.equals(segment) || Path.PARENT.equals(segment)) return null;
+        if (segment.startsWith("{}")) return "";
+        if (segment.charAt(0) == '{') return null;
+        int colonIndex = segment.indexOf(':');
+        return colonIndex < 1 ? "" : decoder.decode(segment.substring(0, colonIndex));
     }
 
     String[] splitPath( String rawPath ) {
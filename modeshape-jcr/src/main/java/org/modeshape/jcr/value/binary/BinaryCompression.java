@@ -0,0 +1,177 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.util.CheckArg;
+
+/**
+ * The settings used by a binary store to compress the content of the binary values it persists. Values are compressed with the
+ * DEFLATE algorithm, unless their MIME type shows that their content is already compressed (e.g., images, audio, video and
+ * archives). Note that the {@link org.modeshape.jcr.value.BinaryKey keys} of the binary values are always computed from their
+ * uncompressed content.
+ */
+@Immutable
+public final class BinaryCompression {
+
+    /**
+     * The MIME types of the content that is never compressed by default. A MIME type ending in "/*" matches all the subtypes.
+     */
+    public static final Set<String> DEFAULT_UNCOMPRESSED_MIME_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "image/*",
+        "audio/*",
+        "video/*",
+        "application/zip",
+        "application/gzip",
+        "application/x-gzip",
+        "application/x-bzip2",
+        "application/x-xz",
+        "application/x-7z-compressed",
+        "application/x-rar-compressed",
+        "application/java-archive",
+        "application/pdf",
+        "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+        "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+        "application/vnd.oasis.opendocument.text",
+        "application/vnd.oasis.opendocument.spreadsheet",
+        "application/vnd.oasis.opendocument.presentation")));
+
+    /**
+     * The default compression level, which favors speed over the compression ratio.
+     */
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    private final int level;
+    private final Set<String> uncompressedMimeTypes;
+
+    /**
+     * Create compression settings that use the {@link #DEFAULT_LEVEL default level} and never compress the
+     * {@link #DEFAULT_UNCOMPRESSED_MIME_TYPES default MIME types}.
+     */
+    public BinaryCompression() {
+        this(DEFAULT_LEVEL, DEFAULT_UNCOMPRESSED_MIME_TYPES);
+    }
+
+    /**
+     * Create compression settings.
+     *
+     * @param level the DEFLATE compression level, between 1 (best speed) and 9 (best compression)
+     * @param uncompressedMimeTypes the MIME types of the content that should never be compressed; may be null or empty
+     */
+    public BinaryCompression( int level,
+                              Collection<String> uncompressedMimeTypes ) {
+        CheckArg.isPositive(level, "level");
+        CheckArg.isLessThanOrEqualTo(level, Deflater.BEST_COMPRESSION, "level");
+        this.level = level;
+        Set<String> types = new HashSet<>();
+        if (uncompressedMimeTypes != null) {
+            for (String type : uncompressedMimeTypes) {
+                types.add(type.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.uncompressedMimeTypes = Collections.unmodifiableSet(types);
+    }
+
+    /**
+     * @return the DEFLATE compression level, between 1 (best speed) and 9 (best compression)
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the MIME types of the content that is never compressed; never null
+     */
+    public Set<String> getUncompressedMimeTypes() {
+        return uncompressedMimeTypes;
+    }
+
+    /**
+     * Determine whether content with the supplied MIME type should be compressed.
+     *
+     * @param mimeType the MIME type of the content; may be null if it is not known
+     * @return true if the content should be compressed, or false otherwise
+     */
+    public boolean shouldCompress( String mimeType ) {
+        if (mimeType == null) return true;
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon != -1) type = type.substring(0, semicolon);
+        type = type.trim();
+        if (uncompressedMimeTypes.contains(type)) return false;
+        int slash = type.indexOf('/');
+        return slash == -1 || !uncompressedMimeTypes.contains(type.substring(0, slash) + "/*");
+    }
+
+    /**
+     * Wrap the supplied stream so that everything written to it is compressed.
+     *
+     * @param stream the stream to which the compressed content is written; may not be null
+     * @return the stream to which the uncompressed content should be written; never null
+     */
+    public OutputStream compress( OutputStream stream ) {
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(stream, deflater, AbstractBinaryStore.MEDIUM_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap the supplied stream of compressed content so that it can be read uncompressed, without reading it all at once.
+     *
+     * @param stream the stream of compressed content; may not be null
+     * @return the stream of uncompressed content; never null
+     */
+    public static InputStream decompress( InputStream stream ) {
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(stream, inflater, AbstractBinaryStore.MEDIUM_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "deflate(level=" + level + ", uncompressed=" + uncompressedMimeTypes + ")";
+    }
+}
@@ -0,0 +1,753 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.common.util.SecureHash.HashingInputStream;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.TextExtractors;
+import org.modeshape.jcr.mimetype.MimeTypeDetector;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * A {@link BinaryStore} that keeps local copies of the most recently used binary values of another (usually remote) store in a
+ * directory on the local disk. The local copies are named after their {@link BinaryKey}, and the least-recently used copies are
+ * removed once the total size of the cache exceeds the configured maximum.
+ * <p>
+ * New values are always written to the local directory. In <i>write-through</i> mode they are also stored in the underlying
+ * store before {@link #storeValue(InputStream, boolean)} returns, whereas in <i>write-back</i> mode they are copied to the
+ * underlying store in the background; the local copies are never removed while they are being copied, and any operation that
+ * changes the state of a value in the underlying store (e.g., {@link #markAsUsed(Iterable)}) first waits for the copy to
+ * complete.
+ * </p>
+ * <p>
+ * The MIME types and the extracted text are stored in the underlying store if it is an {@link AbstractBinaryStore}, but the
+ * extraction itself reads the content of the binary values from the local copies.
+ * </p>
+ */
+@ThreadSafe
+public class CachingBinaryStore extends AbstractBinaryStore {
+
+    /**
+     * The default maximum size of the local cache, in bytes (1GB).
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE_IN_BYTES = 1L << 30;
+
+    /**
+     * The default number of threads that copy new values to the underlying store in write-back mode.
+     */
+    public static final int DEFAULT_WRITE_BACK_THREADS = 4;
+
+    private static final String TEMP_FILE_PREFIX = "ms-cache-binstore";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final BinaryStore delegate;
+    private final File directory;
+    private final long maxCacheSizeInBytes;
+    private final boolean writeBack;
+    private final LruIndex index = new LruIndex();
+    private final ConcurrentMap<BinaryKey, PendingUpload> pendingUploads = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesServedLocally = new AtomicLong();
+    private final AtomicLong bytesServedRemotely = new AtomicLong();
+    private volatile ExecutorService uploader;
+
+    /**
+     * Create a write-through cache of the supplied store.
+     *
+     * @param delegate the store that holds all the binary values; may not be null
+     * @param directory the local directory in which the cached values are kept; may not be null
+     * @param maxCacheSizeInBytes the maximum total size of the cached values; must be positive
+     */
+    public CachingBinaryStore( BinaryStore delegate,
+                               File directory,
+                               long maxCacheSizeInBytes ) {
+        this(delegate, directory, maxCacheSizeInBytes, false);
+    }
+
+    /**
+     * Create a cache of the supplied store.
+     *
+     * @param delegate the store that holds all the binary values; may not be null
+     * @param directory the local directory in which the cached values are kept; may not be null
+     * @param maxCacheSizeInBytes the maximum total size of the cached values; must be positive
+     * @param writeBack true if new values should be copied to the underlying store in the background, or false if they should be
+     *        stored in the underlying store before they are returned
+     */
+    public CachingBinaryStore( BinaryStore delegate,
+                               File directory,
+                               long maxCacheSizeInBytes,
+                               boolean writeBack ) {
+        CheckArg.isNotNull(delegate, "delegate");
+        CheckArg.isNotNull(directory, "directory");
+        CheckArg.isPositive(maxCacheSizeInBytes, "maxCacheSizeInBytes");
+        this.delegate = delegate;
+        this.directory = directory;
+        this.maxCacheSizeInBytes = maxCacheSizeInBytes;
+        this.writeBack = writeBack;
+    }
+
+    /**
+     * @return the store that holds all the binary values; never null
+     */
+    public BinaryStore getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the local directory in which the cached values are kept; never null
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the maximum total size of the cached values, in bytes
+     */
+    public long getMaxCacheSizeInBytes() {
+        return maxCacheSizeInBytes;
+    }
+
+    /**
+     * @return true if new values are copied to the underlying store in the background, or false otherwise
+     */
+    public boolean isWriteBack() {
+        return writeBack;
+    }
+
+    /**
+     * @return the total size of the values currently cached on the local disk, in bytes
+     */
+    public long getCacheSizeInBytes() {
+        return index.totalSize();
+    }
+
+    /**
+     * @return the number of reads that were served from the local disk since this store was created
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads that were served from the underlying store since this store was created
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of the reads that were served from the local disk, between 0.0 and 1.0 (inclusive)
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0L ? 0.0d : (double)hitCount / total;
+    }
+
+    /**
+     * @return the number of bytes read from the local disk since this store was created
+     */
+    public long getBytesServedLocally() {
+        return bytesServedLocally.get();
+    }
+
+    /**
+     * @return the number of bytes read from the underlying store since this store was created
+     */
+    public long getBytesServedRemotely() {
+        return bytesServedRemotely.get();
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new SystemFailureException(JcrI18n.unableToCreateDirectoryForBinaryStore.text(directory, "cached binary values"));
+        }
+        // Find the values that were cached before, oldest first ...
+        List<File> cached = new ArrayList<>();
+        File[] subdirectories = directory.listFiles();
+        if (subdirectories != null) {
+            for (File subdirectory : subdirectories) {
+                File[] files = subdirectory.isDirectory() ? subdirectory.listFiles() : new File[] {subdirectory};
+                if (files == null) continue;
+                for (File file : files) {
+                    if (file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                        // Left over from a previous process ...
+                        file.delete();
+                    } else if (file.isFile() && BinaryKey.isProperlyFormattedKey(file.getName())) {
+                        cached.add(file);
+                    }
+                }
+            }
+        }
+        Collections.sort(cached, new Comparator<File>() {
+            @Override
+            public int compare( File file1,
+                                File file2 ) {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        for (File file : cached) {
+            index.add(new BinaryKey(file.getName()), file.length());
+        }
+        evict();
+        if (writeBack) {
+            uploader = Executors.newFixedThreadPool(DEFAULT_WRITE_BACK_THREADS, new NamedThreadFactory("modeshape-binary-write-back"));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        ExecutorService uploader = this.uploader;
+        if (uploader != null) {
+            try {
+                waitForUploads(new ArrayList<>(pendingUploads.keySet()));
+            } catch (BinaryStoreException e) {
+                logger.error(e, JcrI18n.errorStoringBinaryValue, e.getMessage());
+            } finally {
+                uploader.shutdown();
+                this.uploader = null;
+            }
+        }
+        delegate.shutdown();
+    }
+
+    @Override
+    public long getMinimumBinarySizeInBytes() {
+        return delegate.getMinimumBinarySizeInBytes();
+    }
+
+    @Override
+    public void setMinimumBinarySizeInBytes( long minSizeInBytes ) {
+        super.setMinimumBinarySizeInBytes(minSizeInBytes);
+        delegate.setMinimumBinarySizeInBytes(minSizeInBytes);
+    }
+
+    @Override
+    public void setTextExtractors( TextExtractors textExtractors ) {
+        super.setTextExtractors(textExtractors);
+        delegate.setTextExtractors(textExtractors);
+    }
+
+    @Override
+    public void setMimeTypeDetector( MimeTypeDetector mimeTypeDetector ) {
+        super.setMimeTypeDetector(mimeTypeDetector);
+        delegate.setMimeTypeDetector(mimeTypeDetector);
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   boolean markAsUnused ) throws BinaryStoreException {
+        return storeValue(stream, null, markAsUnused);
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   String hint,
+                                   boolean markAsUnused ) throws BinaryStoreException {
+        File tmpFile = null;
+        try {
+            // Write the contents to a temporary file, and while we do grab the SHA-1 hash and the length ...
+            HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
+            tmpFile = createTempFile();
+            IoUtil.write(hashingStream, new BufferedOutputStream(new FileOutputStream(tmpFile)), MEDIUM_BUFFER_SIZE);
+            hashingStream.close();
+            BinaryKey key = new BinaryKey(hashingStream.getHash());
+            long numberOfBytes = tmpFile.length();
+
+            if (numberOfBytes < getMinimumBinarySizeInBytes()) {
+                // The content is small enough to just store in-memory ...
+                return new InMemoryBinaryValue(this, key, IoUtil.readBytes(tmpFile));
+            }
+            if (writeBack) {
+                // Keep the local copy until it is stored in the underlying store ...
+                PendingUpload upload = new PendingUpload(key, hint, markAsUnused);
+                PendingUpload existing = pendingUploads.putIfAbsent(key, upload);
+                if (existing == null) {
+                    if (cache(tmpFile, key, numberOfBytes)) {
+                        uploader.execute(upload);
+                    } else {
+                        // There is no local copy to copy in the background, so store the value now rather than lose it ...
+                        upload.storeFrom(tmpFile);
+                    }
+                }
+                return new StoredBinaryValue(this, key, numberOfBytes);
+            }
+            BinaryValue stored;
+            try (InputStream content = new FileInputStream(tmpFile)) {
+                stored = delegate.storeValue(content, hint, markAsUnused);
+            }
+            if (stored instanceof InMemoryBinaryValue) {
+                return stored;
+            }
+            if (numberOfBytes <= maxCacheSizeInBytes) {
+                cache(tmpFile, key, numberOfBytes);
+                evict();
+            }
+            return new StoredBinaryValue(this, key, numberOfBytes);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemFailureException(e);
+        } finally {
+            if (tmpFile != null && tmpFile.exists() && !tmpFile.delete()) {
+                logger.warn(JcrI18n.unableToDeleteTemporaryFile, tmpFile.getAbsolutePath(), "");
+            }
+        }
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        File file = fileFor(key);
+        if (index.touch(key)) {
+            try {
+                InputStream stream = new CountingInputStream(new FileInputStream(file), bytesServedLocally);
+                hits.incrementAndGet();
+                return stream;
+            } catch (FileNotFoundException e) {
+                // The file was evicted in the meantime ...
+                index.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        InputStream remote = delegate.getInputStream(key);
+        try {
+            return new CachingInputStream(remote, key, createTempFile());
+        } catch (IOException e) {
+            logger.debug(e, "Unable to cache the binary value {0} locally", key);
+            return new CountingInputStream(remote, bytesServedRemotely);
+        }
+    }
+
+    @Override
+    public boolean hasBinary( BinaryKey key ) {
+        return pendingUploads.containsKey(key) || delegate.hasBinary(key);
+    }
+
+    @Override
+    public void markAsUsed( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        waitForUploads(keys);
+        delegate.markAsUsed(keys);
+    }
+
+    @Override
+    public void markAsUnused( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        waitForUploads(keys);
+        delegate.markAsUnused(keys);
+    }
+
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        waitForUploads(new ArrayList<>(pendingUploads.keySet()));
+        delegate.removeValuesUnusedLongerThan(minimumAge, unit);
+        // Remove the local copies of the values that are no longer in the underlying store ...
+        for (BinaryKey key : index.keys()) {
+            if (!delegate.hasBinary(key)) {
+                uncache(key);
+            }
+        }
+    }
+
+    @Override
+    public Iterable<BinaryKey> getAllBinaryKeys() throws BinaryStoreException {
+        waitForUploads(new ArrayList<>(pendingUploads.keySet()));
+        return delegate.getAllBinaryKeys();
+    }
+
+    @Override
+    protected String getStoredMimeType( BinaryValue binaryValue ) throws BinaryStoreException {
+        if (!(delegate instanceof AbstractBinaryStore)) return null;
+        waitForUploads(Collections.singleton(binaryValue.getKey()));
+        return ((AbstractBinaryStore)delegate).getStoredMimeType(binaryValue);
+    }
+
+    @Override
+    protected void storeMimeType( BinaryValue binaryValue,
+                                  String mimeType ) throws BinaryStoreException {
+        if (!(delegate instanceof AbstractBinaryStore)) return;
+        waitForUploads(Collections.singleton(binaryValue.getKey()));
+        ((AbstractBinaryStore)delegate).storeMimeType(binaryValue, mimeType);
+    }
+
+    @Override
+    public void storeExtractedText( BinaryValue source,
+                                    String extractedText ) throws BinaryStoreException {
+        if (!(delegate instanceof AbstractBinaryStore)) return;
+        waitForUploads(Collections.singleton(source.getKey()));
+        ((AbstractBinaryStore)delegate).storeExtractedText(source, extractedText);
+    }
+
+    @Override
+    public String getExtractedText( BinaryValue source ) throws BinaryStoreException {
+        if (!(delegate instanceof AbstractBinaryStore)) return null;
+        waitForUploads(Collections.singleton(source.getKey()));
+        return ((AbstractBinaryStore)delegate).getExtractedText(source);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingBinaryStore[" + delegate + ", directory=" + directory + ", writeBack=" + writeBack + "]";
+    }
+
+    protected File fileFor( BinaryKey key ) {
+        String name = key.toString();
+        return new File(new File(directory, name.substring(0, 2)), name);
+    }
+
+    private File createTempFile() throws IOException {
+        return File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, directory);
+    }
+
+    /**
+     * Move the supplied file into the cache, as the local copy of the value with the supplied key.
+     *
+     * @return true if the value is now cached, or false if the file could not be moved into the cache (in which case it is left
+     *         where it is)
+     */
+    protected boolean cache( File file,
+                             BinaryKey key,
+                             long size ) {
+        File cached = fileFor(key);
+        if (cached.exists()) {
+            // It's content-addressed, so the content is the same ...
+            index.add(key, size);
+            return true;
+        }
+        File parent = cached.getParentFile();
+        if ((parent.exists() || parent.mkdirs()) && file.renameTo(cached)) {
+            index.add(key, size);
+            return true;
+        }
+        logger.debug("Unable to cache the binary value {0} at {1}", key, cached);
+        return false;
+    }
+
+    protected void uncache( BinaryKey key ) {
+        if (pendingUploads.containsKey(key)) return;
+        index.remove(key);
+        File file = fileFor(key);
+        if (file.exists() && !file.delete()) {
+            logger.debug("Unable to remove the cached binary value {0} at {1}", key, file);
+        }
+    }
+
+    /**
+     * Remove the least-recently used local copies until the total size of the cache no longer exceeds the maximum.
+     */
+    protected void evict() {
+        for (BinaryKey key : index.eldestExceeding(maxCacheSizeInBytes, pendingUploads.keySet())) {
+            uncache(key);
+        }
+    }
+
+    /**
+     * Wait until the supplied values are copied to the underlying store, copying them again if a previous attempt failed.
+     */
+    private void waitForUploads( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        if (pendingUploads.isEmpty()) return;
+        for (BinaryKey key : keys) {
+            PendingUpload upload = pendingUploads.get(key);
+            if (upload != null) upload.await();
+        }
+    }
+
+    /**
+     * The copy of a new value to the underlying store, in write-back mode.
+     */
+    protected final class PendingUpload implements Runnable {
+        private final BinaryKey key;
+        private final String hint;
+        private final boolean markAsUnused;
+        private final CountDownLatch attempted = new CountDownLatch(1);
+
+        protected PendingUpload( BinaryKey key,
+                                 String hint,
+                                 boolean markAsUnused ) {
+            this.key = key;
+            this.hint = hint;
+            this.markAsUnused = markAsUnused;
+        }
+
+        @Override
+        public void run() {
+            try {
+                upload(fileFor(key));
+            } catch (BinaryStoreException e) {
+                // It is tried again by the next operation that needs it ...
+                logger.error(e, JcrI18n.unableToCopyCachedBinaryValue, key, delegate, e.getMessage());
+            } finally {
+                attempted.countDown();
+            }
+        }
+
+        /**
+         * Store the value in the underlying store from the supplied file (rather than from the local copy) in the calling thread.
+         * The value is no longer pending afterwards, even if it could not be stored.
+         */
+        protected void storeFrom( File file ) throws BinaryStoreException {
+            try {
+                upload(file);
+            } finally {
+                pendingUploads.remove(key, this);
+                attempted.countDown();
+            }
+        }
+
+        private synchronized void upload( File file ) throws BinaryStoreException {
+            if (pendingUploads.get(key) != this) return;
+            try (InputStream content = new FileInputStream(file)) {
+                delegate.storeValue(content, hint, markAsUnused);
+            } catch (IOException e) {
+                throw new BinaryStoreException(e);
+            }
+            pendingUploads.remove(key);
+            evict();
+        }
+
+        protected void await() throws BinaryStoreException {
+            try {
+                attempted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BinaryStoreException(e);
+            }
+            // Make sure it was stored, or try again ...
+            upload(fileFor(key));
+        }
+    }
+
+    /**
+     * A stream of a value read from the underlying store, which copies the content to a temporary file and moves it into the
+     * cache once the whole stream is read.
+     */
+    protected final class CachingInputStream extends FilterInputStream {
+        private final BinaryKey key;
+        private final File tmpFile;
+        private OutputStream copy;
+        private long size;
+        private boolean complete;
+
+        protected CachingInputStream( InputStream remote,
+                                      BinaryKey key,
+                                      File tmpFile ) throws IOException {
+            super(remote);
+            this.key = key;
+            this.tmpFile = tmpFile;
+            this.copy = new BufferedOutputStream(new FileOutputStream(tmpFile), MEDIUM_BUFFER_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete = true;
+            } else {
+                copy(new byte[] {(byte)b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                complete = true;
+            } else {
+                copy(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+            // Read the skipped bytes, since they must be copied ...
+            byte[] buffer = new byte[(int)Math.min(n, MEDIUM_BUFFER_SIZE)];
+            long skipped = 0L;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+                if (read == -1) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void copy( byte[] b,
+                           int off,
+                           int len ) throws IOException {
+            bytesServedRemotely.addAndGet(len);
+            size += len;
+            if (copy == null) return;
+            if (size > maxCacheSizeInBytes) {
+                // It will never fit in the cache ...
+                discardCopy();
+            } else {
+                copy.write(b, off, len);
+            }
+        }
+
+        private void discardCopy() {
+            try {
+                copy.close();
+            } catch (IOException e) {
+                logger.debug(e, "Unable to close the temporary file {0}", tmpFile);
+            }
+            copy = null;
+            tmpFile.delete();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (copy != null) {
+                    if (complete) {
+                        copy.close();
+                        copy = null;
+                        cache(tmpFile, key, size);
+                        evict();
+                    }
+                    if (copy != null || tmpFile.exists()) {
+                        // Either it was not completely read or it could not be moved into the cache ...
+                        if (copy != null) discardCopy();
+                        tmpFile.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A stream that counts the number of bytes that are read.
+     */
+    protected static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        protected CountingInputStream( InputStream stream,
+                                       AtomicLong counter ) {
+            super(stream);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) counter.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) counter.addAndGet(n);
+            return n;
+        }
+    }
+
+    /**
+     * The sizes of the cached values, in least-recently used order.
+     */
+    protected static final class LruIndex {
+        private final LinkedHashMap<BinaryKey, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+        private long totalSize;
+
+        protected synchronized boolean touch( BinaryKey key ) {
+            return sizes.get(key) != null;
+        }
+
+        protected synchronized void add( BinaryKey key,
+                                         long size ) {
+            Long previous = sizes.put(key, size);
+            totalSize += size - (previous != null ? previous : 0L);
+        }
+
+        protected synchronized void remove( BinaryKey key ) {
+            Long previous = sizes.remove(key);
+            if (previous != null) totalSize -= previous;
+        }
+
+        protected synchronized long totalSize() {
+            return totalSize;
+        }
+
+        protected synchronized Set<BinaryKey> keys() {
+            return new HashSet<>(sizes.keySet());
+        }
+
+        /**
+         * Find the least-recently used keys that have to be removed so that the total size does not exceed the supplied limit.
+         */
+        protected synchronized List<BinaryKey> eldestExceeding( long maxSize,
+                                                                Set<BinaryKey> pinned ) {
+            long size = totalSize;
+            if (size <= maxSize) return Collections.emptyList();
+            List<BinaryKey> eldest = new ArrayList<>();
+            for (Iterator<Map.Entry<BinaryKey, Long>> iter = sizes.entrySet().iterator(); iter.hasNext() && size > maxSize;) {
+                Map.Entry<BinaryKey, Long> entry = iter.next();
+                if (pinned.contains(entry.getKey())) continue;
+                eldest.add(entry.getKey());
+                size -= entry.getValue();
+            }
+            return eldest;
+        }
+    }
+}
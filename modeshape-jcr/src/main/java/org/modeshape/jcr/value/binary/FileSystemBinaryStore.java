@@ -18,6 +18,7 @@ package org.modeshape.jcr.value.binary;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,6 +32,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import javax.jcr.RepositoryException;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
@@ -52,6 +54,8 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
 
     private static final String EXTRACTED_TEXT_SUFFIX = "-extracted-text";
     private static final String MIME_TYPE_SUFFIX = "-mime-type";
+    private static final String COMPRESSED_SUFFIX = "-compressed";
+    private static final String COMPRESSED_MARKER = "deflate";
 
     private static final ConcurrentHashMap<String, FileSystemBinaryStore> INSTANCES = new ConcurrentHashMap<String, FileSystemBinaryStore>();
 
@@ -76,6 +80,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private final File trash;
     private final NamedLocks locks = new NamedLocks();
     private volatile boolean initialized = false;
+    private volatile BinaryCompression compression;
 
     protected FileSystemBinaryStore( File directory ) {
         this.directory = directory;
@@ -86,6 +91,25 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         return directory;
     }
 
+    /**
+     * Get the settings used to compress the content of the binary values stored from now on.
+     *
+     * @return the compression settings, or null if the content is not compressed
+     */
+    public BinaryCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Set the settings used to compress the content of the binary values stored from now on. The values that were already
+     * stored are read as they were stored, whether or not compression is enabled.
+     *
+     * @param compression the compression settings, or null if the content should not be compressed
+     */
+    public void setCompression( BinaryCompression compression ) {
+        this.compression = compression;
+    }
+
     @Override
     public BinaryValue storeValue( InputStream stream, boolean markAsUnused ) throws BinaryStoreException {
         File tmpFile = null;
@@ -107,7 +131,12 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                 tmpFile.delete();
                 value = new InMemoryBinaryValue(this, key, content);
             } else {
-                value = saveTempFileToStore(tmpFile, key, numberOfBytes);
+                File compressedFile = compress(tmpFile, key, numberOfBytes);
+                if (compressedFile != null) {
+                    tmpFile.delete();
+                    tmpFile = compressedFile;
+                }
+                value = saveTempFileToStore(tmpFile, key, numberOfBytes, compressedFile != null);
                 if (markAsUnused) {
                     markAsUnused(key);
                 }
@@ -129,9 +158,57 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         }
     }
 
+    /**
+     * Compress the content of the supplied file into another temporary file, if the store is configured to compress content of
+     * that MIME type and if the compressed content is smaller.
+     *
+     * @param tmpFile the temporary file with the uncompressed content; may not be null
+     * @param key the key of the content
+     * @param numberOfBytes the size of the uncompressed content
+     * @return the temporary file with the compressed content, or null if the content should be stored uncompressed
+     * @throws IOException if the content cannot be compressed
+     */
+    private File compress( File tmpFile,
+                           BinaryKey key,
+                           long numberOfBytes ) throws IOException {
+        BinaryCompression compression = this.compression;
+        if (compression == null) {
+            return null;
+        }
+        String mimeType = null;
+        try {
+            UrlBinaryValue content = new UrlBinaryValue(key.toString(), null, tmpFile.toURI().toURL(), numberOfBytes, null,
+                                                        detector());
+            mimeType = detector().mimeTypeOf(null, content);
+        } catch (RepositoryException | IOException e) {
+            logger.debug(e, "Unable to determine the MIME type of {0}; the content will be compressed", key);
+        }
+        if (!compression.shouldCompress(mimeType)) {
+            return null;
+        }
+        File compressedFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX + COMPRESSED_SUFFIX);
+        try (InputStream input = new FileInputStream(tmpFile);
+             OutputStream output = compression.compress(new BufferedOutputStream(new FileOutputStream(compressedFile)))) {
+            IoUtil.write(input, output, AbstractBinaryStore.MEDIUM_BUFFER_SIZE);
+        }
+        if (compressedFile.length() >= numberOfBytes) {
+            // It's not worth it ...
+            compressedFile.delete();
+            return null;
+        }
+        return compressedFile;
+    }
+
     private BinaryValue saveTempFileToStore( File tmpFile,
                                              BinaryKey key,
                                              long numberOfBytes ) throws BinaryStoreException {
+        return saveTempFileToStore(tmpFile, key, numberOfBytes, false);
+    }
+
+    private BinaryValue saveTempFileToStore( File tmpFile,
+                                             BinaryKey key,
+                                             long numberOfBytes,
+                                             boolean compressed ) throws BinaryStoreException {
         // Now that we know the SHA-1, find the File object that corresponds to the existing persisted file ...
         File persistedFile = findFile(directory, key, true);
 
@@ -146,13 +223,25 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                 return new StoredBinaryValue(this, key, numberOfBytes);
             }
 
+            // Record whether the content is compressed before it can be read ...
+            BinaryKey compressedKey = createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX);
+            if (compressed) {
+                storeStringAtKey(COMPRESSED_MARKER, compressedKey);
+            } else {
+                File compressedMarkerFile = findFile(directory, compressedKey, false);
+                if (compressedMarkerFile.exists() && !compressedMarkerFile.delete()) {
+                    throw new BinaryStoreException(JcrI18n.unableToPersistBinaryValueToFileSystemStore.text(key,
+                                                                                                            compressedMarkerFile));
+                }
+            }
+
             // Otherwise, we need to persist the data, which we'll do by moving our temporary file ...
             moveFileExclusively(tmpFile, persistedFile, key);
 
         } finally {
             lock.unlock();
         }
-        return new StoredBinaryValue(this, key, persistedFile.length());
+        return new StoredBinaryValue(this, key, numberOfBytes);
     }
 
     private void sleep( long millis ) {
@@ -311,7 +400,12 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         // We now know that the file (which does exist) is not being written by this process, but another
         // process might be actively writing to it. So use an InputStream that lazily obtains a shared lock
         // when the stream is used, and always releases the lock (even in the case of exceptions).
-        return new SharedLockingInputStream(key, persistedFile, locks);
+        InputStream stream = new SharedLockingInputStream(key, persistedFile, locks);
+        return isCompressed(key) ? BinaryCompression.decompress(stream) : stream;
+    }
+
+    private boolean isCompressed( BinaryKey key ) throws BinaryStoreException {
+        return findFile(directory, createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX), false).exists();
     }
 
     @SuppressWarnings( "unused" )
@@ -366,7 +460,8 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         // remove the trash file for the main binary, extracted text and mime-type
         return removeTrashFile(key) |
                removeTrashFile(createKeyFromSourceWithSuffix(key, EXTRACTED_TEXT_SUFFIX)) |
-               removeTrashFile(createKeyFromSourceWithSuffix(key, MIME_TYPE_SUFFIX));
+               removeTrashFile(createKeyFromSourceWithSuffix(key, MIME_TYPE_SUFFIX)) |
+               removeTrashFile(createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX));
     }
 
     @Override
@@ -401,6 +496,13 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
             // create a trash file for the mime-type binary
             getTrashFile(mimeTypeKey, true);
         }
+
+        BinaryKey compressedKey = createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX);
+        File compressedMarkerFile = findFile(directory, compressedKey, false);
+        if (compressedMarkerFile.exists()) {
+            // create a trash file for the compression marker
+            getTrashFile(compressedKey, true);
+        }
     }
 
     protected void touch( File file ) throws BinaryStoreException {
@@ -505,8 +607,12 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                             if (persistedFile.exists()) {
                                 // only remove the trash files if we successfully deleted the main file
                                 // otherwise we'll try this again later on
-                                if (persistedFile.delete() && removeAllTrashFilesFor(key)) {
-                                    pruneTrashRequired = true;
+                                if (persistedFile.delete()) {
+                                    // the compression marker is meaningless without the content
+                                    findFile(directory, createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX), false).delete();
+                                    if (removeAllTrashFilesFor(key)) {
+                                        pruneTrashRequired = true;
+                                    }
                                 }
                             }
                         } finally {
@@ -641,6 +747,9 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                                         // exclude extracted text
                                         BinaryKey textKey = createKeyFromSourceWithSuffix(key, EXTRACTED_TEXT_SUFFIX);
                                         keysToExclude.add(textKey);
+
+                                        // exclude compression markers
+                                        keysToExclude.add(createKeyFromSourceWithSuffix(key, COMPRESSED_SUFFIX));
                                     }
                                 }
                             }
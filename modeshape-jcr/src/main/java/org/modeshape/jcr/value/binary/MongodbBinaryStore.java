@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.JcrI18n;
@@ -43,6 +44,11 @@ import com.mongodb.ServerAddress;
  */
 public class MongodbBinaryStore extends AbstractBinaryStore {
 
+    /**
+     * The default number of chunks that are fetched from the database in each round-trip when a binary value is read.
+     */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 64;
+
     // default database name
     private static final String DEFAULT_DB_NAME = "ModeShape_BinaryStore";
 
@@ -84,6 +90,9 @@ public class MongodbBinaryStore extends AbstractBinaryStore {
     // chunk size in bytes
     protected int chunkSize = 1024;
 
+    // number of chunks fetched from the database in each round-trip when reading
+    protected int readAheadChunks = DEFAULT_READ_AHEAD_CHUNKS;
+
     public MongodbBinaryStore() {
         this.cache = TransientBinaryStore.get();
         this.database = DEFAULT_DB_NAME;
@@ -194,6 +203,26 @@ public class MongodbBinaryStore extends AbstractBinaryStore {
         this.chunkSize = chunkSize;
     }
 
+    /**
+     * Gets the number of chunks that are fetched from the database in each round-trip when a binary value is read.
+     *
+     * @return the number of chunks
+     */
+    public int getReadAheadChunks() {
+        return readAheadChunks;
+    }
+
+    /**
+     * Modifies the number of chunks that are fetched from the database in each round-trip when a binary value is read. Since
+     * the default chunk size is small, fetching many chunks at once avoids a round-trip for every chunk of large values.
+     *
+     * @param readAheadChunks the number of chunks; must be positive
+     */
+    public void setReadAheadChunks( int readAheadChunks ) {
+        CheckArg.isPositive(readAheadChunks, "readAheadChunks");
+        this.readAheadChunks = readAheadChunks;
+    }
+
     @Override
     public BinaryValue storeValue( InputStream stream,
                                    boolean markAsUnused ) throws BinaryStoreException {
@@ -475,6 +504,24 @@ public class MongodbBinaryStore extends AbstractBinaryStore {
             this.content.insert(header);
         }
 
+        @Override
+        public void write( byte[] b,
+                           int off,
+                           int len ) {
+            while (len > 0) {
+                int count = Math.min(len, buffer.length - offset);
+                System.arraycopy(b, off, buffer, offset, count);
+                offset += count;
+                off += count;
+                len -= count;
+
+                // push chunk into storage
+                if (offset == buffer.length) {
+                    flush();
+                }
+            }
+        }
+
         @Override
         public void write( int b ) {
             // fill the local buffer first
@@ -523,8 +570,37 @@ public class MongodbBinaryStore extends AbstractBinaryStore {
         private int size = 0;
 
         public ChunkInputStream( DBCollection chunks ) {
-            // execute query for selecting data chunks only
-            cursor = chunks.find(DATA_CHUNK);
+            // execute query for selecting data chunks only, fetching several of them in each round-trip
+            cursor = chunks.find(DATA_CHUNK).batchSize(Math.max(readAheadChunks, 1));
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) {
+            if (len == 0) {
+                return 0;
+            }
+            // pick up the next non-empty chunk if the current one has been consumed
+            while (offset >= size) {
+                if (!cursor.hasNext()) {
+                    // end of stream reached
+                    return -1;
+                }
+                chunk = cursor.next();
+                size = (Integer)chunk.get(FIELD_CHUNK_SIZE);
+                buffer = (byte[])chunk.get(FIELD_CHUNK_BUFFER);
+                offset = 0;
+            }
+            int count = Math.min(len, size - offset);
+            System.arraycopy(buffer, offset, b, off, count);
+            offset += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
         }
 
         @Override
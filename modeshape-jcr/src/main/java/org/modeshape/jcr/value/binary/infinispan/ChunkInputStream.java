@@ -20,9 +20,15 @@ import org.modeshape.common.logging.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
- * Merges chunks from cache and provides InputStream-feeling.
+ * Merges chunks from cache and provides InputStream-feeling. The stream can optionally read ahead, in which case the next chunks
+ * are asynchronously fetched from the cache while the current chunk is being consumed.
  */
 class ChunkInputStream extends InputStream {
 
@@ -33,6 +39,8 @@ class ChunkInputStream extends InputStream {
     private final int chunkSize;
     private final long totalSize;
     private final int chunksCount;
+    private final int readAheadChunks;
+    private final Map<Integer, Future<byte[]>> prefetchedChunks = new TreeMap<>();
 
     protected int indexInBuffer;
     protected byte[] buffer;
@@ -42,14 +50,33 @@ class ChunkInputStream extends InputStream {
                                 String key,
                                 int chunkSize,
                                 long totalSize ) {
+        this(blobCache, key, chunkSize, totalSize, 0);
+    }
+
+    /**
+     * Create a stream that fetches up to {@code readAheadChunks} chunks ahead of the chunk being read.
+     *
+     * @param blobCache the cache in which the chunks are stored
+     * @param key the key prefix of the chunks
+     * @param chunkSize the size of each chunk (except for the last one)
+     * @param totalSize the total number of bytes in all of the chunks
+     * @param readAheadChunks the maximum number of chunks that are fetched ahead; 0 if the chunks should only be fetched when
+     *        they are read
+     */
+    protected ChunkInputStream( Cache<String, byte[]> blobCache,
+                                String key,
+                                int chunkSize,
+                                long totalSize,
+                                int readAheadChunks ) {
         this.blobCache = blobCache;
+        this.readAheadChunks = Math.max(readAheadChunks, 0);
         this.key = key;
         this.chunkSize = chunkSize;
         this.totalSize = totalSize;
         this.chunkNumber = 0;
         this.indexInBuffer = 0;
         int remainderSize = (int) (totalSize % chunkSize);
-        int numberOfChunks = (int) totalSize / chunkSize;
+        int numberOfChunks = (int) (totalSize / chunkSize);
         this.chunksCount = remainderSize > 0 ? numberOfChunks + 1 : numberOfChunks;
     }
 
@@ -128,9 +155,9 @@ class ChunkInputStream extends InputStream {
         }
 
         //we need to skip past the current chunk, so find the chunk which needs to be loaded
-        long lastChunkSize = totalSize - (chunksCount - 1) * chunkSize;
+        long lastChunkSize = totalSize - (chunksCount - 1) * (long) chunkSize;
         int chunksAvailableToSkip = chunksCount - chunkNumber - 1;
-        long bytesAvailableToSkip = (chunksAvailableToSkip - 1) * chunkSize + lastChunkSize;
+        long bytesAvailableToSkip = (chunksAvailableToSkip - 1) * (long) chunkSize + lastChunkSize;
 
         long stillRequiredToSkip = n - availableInBuffer;
         int chunksToSkipOver = (int) (stillRequiredToSkip / chunkSize);
@@ -176,11 +203,46 @@ class ChunkInputStream extends InputStream {
         buffer = new byte[0];
         indexInBuffer = -1;
         chunkNumber = -1;
+        discardPrefetchedChunks(Integer.MAX_VALUE);
     }
 
     private byte[] readChunk( int chunkNumber ) {
         String chunkKey = key + "-" + chunkNumber;
+        // Discard any chunks that were skipped over ...
+        discardPrefetchedChunks(chunkNumber);
+        Future<byte[]> prefetched = prefetchedChunks.remove(chunkNumber);
+        prefetch(chunkNumber + 1);
+        if (prefetched != null) {
+            try {
+                LOGGER.debug("Read prefetched chunk {0}", chunkKey);
+                return prefetched.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.debug(e.getCause(), "Failed to prefetch chunk {0}; reading it again", chunkKey);
+            }
+        }
         LOGGER.debug("Read chunk {0}", chunkKey);
         return blobCache.get(chunkKey);
     }
+
+    private void prefetch( int firstChunkNumber ) {
+        int lastChunkNumber = Math.min(firstChunkNumber + readAheadChunks, chunksCount);
+        for (int number = firstChunkNumber; number < lastChunkNumber; ++number) {
+            if (!prefetchedChunks.containsKey(number)) {
+                prefetchedChunks.put(number, blobCache.getAsync(key + "-" + number));
+            }
+        }
+    }
+
+    private void discardPrefetchedChunks( int beforeChunkNumber ) {
+        for (Iterator<Map.Entry<Integer, Future<byte[]>>> iter = prefetchedChunks.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<Integer, Future<byte[]>> entry = iter.next();
+            if (entry.getKey() >= beforeChunkNumber) {
+                break;
+            }
+            entry.getValue().cancel(false);
+            iter.remove();
+        }
+    }
 }
@@ -17,12 +17,19 @@ package org.modeshape.jcr.value.binary.infinispan;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.infinispan.Cache;
 import org.modeshape.common.logging.Logger;
 
 /**
- * This stream writes data as chunks into separate cache entries.
+ * This stream writes data as chunks into separate cache entries. The stream can optionally write several chunks in parallel, in
+ * which case each chunk is asynchronously put into the cache and the stream only waits for the oldest chunk when too many chunks
+ * are being written; {@link #close()} always waits until all of the chunks are stored.
  */
 class ChunkOutputStream extends OutputStream {
 
@@ -35,6 +42,8 @@ class ChunkOutputStream extends OutputStream {
 
     private final ByteArrayOutputStream chunkBuffer;
     private final int chunkSize;
+    private final int parallelChunkWrites;
+    private final Deque<PendingChunk> pendingChunks = new ArrayDeque<>();
     private boolean closed;
 
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
@@ -45,11 +54,28 @@ class ChunkOutputStream extends OutputStream {
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
                                  String keyPrefix,
                                  int chunkSize ) {
+        this(blobCache, keyPrefix, chunkSize, 0);
+    }
+
+    /**
+     * Create a stream that writes up to {@code parallelChunkWrites} chunks at the same time.
+     *
+     * @param blobCache the cache in which the chunks are stored
+     * @param keyPrefix the key prefix of the chunks
+     * @param chunkSize the size of each chunk
+     * @param parallelChunkWrites the maximum number of chunks that are written asynchronously at the same time; 0 if each chunk
+     *        should be written synchronously
+     */
+    protected ChunkOutputStream( Cache<String, byte[]> blobCache,
+                                 String keyPrefix,
+                                 int chunkSize,
+                                 int parallelChunkWrites ) {
         this.blobCache = blobCache;
         this.keyPrefix = keyPrefix;
         this.chunkIndex = 0;
         this.chunkBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
         this.chunkSize = chunkSize;
+        this.parallelChunkWrites = Math.max(parallelChunkWrites, 0);
     }
 
     protected int chunksCount() {
@@ -86,19 +112,37 @@ class ChunkOutputStream extends OutputStream {
             return;
         }
         closed = true;
-        // store last chunk
-        if (chunkBuffer.size() > 0) {
-            storeBufferInBLOBCache();
+        try {
+            // store last chunk
+            if (chunkBuffer.size() > 0) {
+                storeBufferInBLOBCache();
+            }
+        } finally {
+            // and wait for all of the chunks to be stored
+            waitForPendingChunks(0);
         }
     }
 
     private void storeBufferInBLOBCache() throws IOException {
         final byte[] chunk = chunkBuffer.toByteArray();
+        final String chunkKey = keyPrefix + "-" + chunkIndex;
+        if (parallelChunkWrites > 0) {
+            LOGGER.debug("Store chunk {0} asynchronously", chunkKey);
+            pendingChunks.add(new PendingChunk(chunkKey, chunk, blobCache.putAsync(chunkKey, chunk)));
+            waitForPendingChunks(parallelChunkWrites);
+        } else {
+            storeChunk(chunkKey, chunk);
+        }
+        chunkIndex++;
+        chunkBuffer.reset();
+    }
+
+    private void storeChunk( final String chunkKey,
+                             final byte[] chunk ) throws IOException {
         try {
             new RetryOperation() {
                 @Override
                 protected boolean call() {
-                    String chunkKey = keyPrefix + "-" + chunkIndex;
                     LOGGER.debug("Store chunk {0}", chunkKey);
                     blobCache.put(chunkKey, chunk);
                     return true;
@@ -109,7 +153,35 @@ class ChunkOutputStream extends OutputStream {
         } catch (Exception e) {
             throw new IOException(e);
         }
-        chunkIndex++;
-        chunkBuffer.reset();
+    }
+
+    private void waitForPendingChunks( int maxPendingChunks ) throws IOException {
+        while (pendingChunks.size() > maxPendingChunks) {
+            PendingChunk pending = pendingChunks.poll();
+            try {
+                pending.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while storing chunk " + pending.chunkKey);
+            } catch (ExecutionException e) {
+                // Try again synchronously (and with retries) ...
+                LOGGER.debug(e.getCause(), "Failed to store chunk {0} asynchronously", pending.chunkKey);
+                storeChunk(pending.chunkKey, pending.chunk);
+            }
+        }
+    }
+
+    private static final class PendingChunk {
+        protected final String chunkKey;
+        protected final byte[] chunk;
+        protected final Future<byte[]> future;
+
+        protected PendingChunk( String chunkKey,
+                                byte[] chunk,
+                                Future<byte[]> future ) {
+            this.chunkKey = chunkKey;
+            this.chunk = chunk;
+            this.future = future;
+        }
     }
 }
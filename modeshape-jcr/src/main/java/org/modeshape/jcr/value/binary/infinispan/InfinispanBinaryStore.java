@@ -68,6 +68,16 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
 
     public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024 * 1; // 1 MB
 
+    /**
+     * The default number of chunks that are fetched ahead of the chunk being read from a binary value's stream.
+     */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 2;
+
+    /**
+     * The default number of chunks that are written to the cache at the same time when a binary value is stored.
+     */
+    public static final int DEFAULT_PARALLEL_CHUNK_WRITES = 4;
+
     private static final String META_SUFFIX = "-meta";
     private static final String DATA_SUFFIX = "-data";
     private static final String TEXT_SUFFIX = "-text";
@@ -82,6 +92,8 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
     private CacheContainer cacheContainer;
     private boolean dedicatedCacheContainer;
     private int chunkSize;
+    private int readAheadChunks;
+    private int parallelChunkWrites;
 
     private String metadataCacheName;
     private String blobCacheName;
@@ -115,6 +127,30 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
                                   String metadataCacheName,
                                   String blobCacheName,
                                   int chunkSize ) {
+        this(cacheContainer, dedicatedCacheContainer, metadataCacheName, blobCacheName, chunkSize, DEFAULT_READ_AHEAD_CHUNKS,
+             DEFAULT_PARALLEL_CHUNK_WRITES);
+    }
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param cacheContainer cache container which used for cache management
+     * @param dedicatedCacheContainer true if the cache container should be started/stopped when store is start or stopped
+     * @param metadataCacheName name of the cache used for metadata
+     * @param blobCacheName name of the cache used for store of chunked binary values
+     * @param chunkSize the size (in bytes) of a chunk
+     * @param readAheadChunks the number of chunks that are asynchronously fetched ahead of the chunk being read from a stream; 0
+     *        if the chunks should only be fetched as they are read
+     * @param parallelChunkWrites the number of chunks of a binary value that are asynchronously written at the same time; 0 if
+     *        the chunks should be written one after the other
+     */
+    public InfinispanBinaryStore( CacheContainer cacheContainer,
+                                  boolean dedicatedCacheContainer,
+                                  String metadataCacheName,
+                                  String blobCacheName,
+                                  int chunkSize,
+                                  int readAheadChunks,
+                                  int parallelChunkWrites ) {
         this.cacheContainer = cacheContainer;
         this.dedicatedCacheContainer = dedicatedCacheContainer;
         this.metadataCacheName = metadataCacheName;
@@ -123,6 +159,14 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
             throw new IllegalArgumentException("Invalid chunk size:" + chunkSize);
         }
         this.chunkSize = chunkSize;
+        if (readAheadChunks < 0) {
+            throw new IllegalArgumentException("Invalid number of read-ahead chunks:" + readAheadChunks);
+        }
+        this.readAheadChunks = readAheadChunks;
+        if (parallelChunkWrites < 0) {
+            throw new IllegalArgumentException("Invalid number of parallel chunk writes:" + parallelChunkWrites);
+        }
+        this.parallelChunkWrites = parallelChunkWrites;
     }
 
     protected final String lockKeyFrom( BinaryKey key ) {
@@ -250,7 +294,7 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
             final long lastModified = tmpFile.lastModified();
             final long fileLength = tmpFile.length();
             int bufferSize = bestBufferSize(fileLength);
-            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize);
+            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize, parallelChunkWrites);
             IoUtil.write(new FileInputStream(tmpFile), chunkOutputStream, bufferSize);
 
             Lock lock = lockFactory.writeLock(lockKeyFrom(binaryKey));
@@ -288,7 +332,8 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
         if (metadata.getLength() == 0) {
             return new ByteArrayInputStream(new byte[0]);
         }
-        return new ChunkInputStream(blobCache, dataKeyFrom(binaryKey), metadata.getChunkSize(), metadata.getLength());
+        return new ChunkInputStream(blobCache, dataKeyFrom(binaryKey), metadata.getChunkSize(), metadata.getLength(),
+                                    readAheadChunks);
     }
 
     @Override
@@ -0,0 +1,127 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.connector.filesystem;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+
+public class FileStateIndexTest {
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3600 * 1000L;
+
+    private File root;
+    private File indexDirectory;
+    private FileStateIndex index;
+
+    @Before
+    public void beforeEach() throws IOException {
+        root = new File("target/file-state-index/files");
+        indexDirectory = new File("target/file-state-index/state");
+        FileUtil.delete(root.getParentFile());
+        root.mkdirs();
+        write("a.txt", "a");
+        write("dir1/b.txt", "b");
+        write("dir2/c.txt", "c");
+        index = new FileStateIndex(indexDirectory, root, new InclusionExclusionFilenameFilter());
+    }
+
+    @After
+    public void afterEach() {
+        index.close();
+    }
+
+    @Test
+    public void shouldNotReportChangesWhenPopulatingEmptyIndex() {
+        assertThat(index.reconcile().isEmpty(), is(true));
+        assertThat(index.reconcile().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldReportOnlyTheChangesMadeWhileTheIndexWasClosed() throws IOException {
+        index.reconcile();
+        index.close();
+
+        write("new.txt", "new");
+        write("a.txt", "modified");
+        new File(root, "a.txt").setLastModified(AN_HOUR_AGO + 1000L);
+        FileUtil.delete(new File(root, "dir2"));
+
+        index = new FileStateIndex(indexDirectory, root, new InclusionExclusionFilenameFilter());
+        FileStateIndex.Reconciliation changes = index.reconcile();
+        assertThat(changes.created, is(Arrays.asList(new File(root.getAbsoluteFile(), "new.txt"))));
+        assertThat(changes.modified, is(Arrays.asList(new File(root.getAbsoluteFile(), "a.txt"))));
+        // only the top-most removed entry is reported ...
+        assertThat(changes.removed, is(Arrays.asList(new File(root.getAbsoluteFile(), "dir2"))));
+        assertThat(index.reconcile().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldServeChildNamesThatReflectTheFileSystem() throws IOException {
+        FileStateIndex.FileState state = index.stateOf(root);
+        assertThat(state.isDirectory(), is(true));
+        assertThat(new HashSet<>(state.getChildNames()), is(new HashSet<>(Arrays.asList("a.txt", "dir1", "dir2"))));
+
+        write("dir3/d.txt", "d");
+        state = index.stateOf(root);
+        assertThat(new HashSet<>(state.getChildNames()), is(new HashSet<>(Arrays.asList("a.txt", "dir1", "dir2", "dir3"))));
+        assertThat(index.stateOf(new File(root, "missing.txt")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepContentHashOnlyWhileTheFileIsUnchanged() throws IOException {
+        File file = new File(root, "a.txt");
+        FileStateIndex.FileState state = index.stateOf(file);
+        assertThat(state.getSha1(), is(nullValue()));
+        index.recordSha1(file, state, "hash");
+        assertThat(index.stateOf(file).getSha1(), is("hash"));
+
+        write("a.txt", "changed");
+        file.setLastModified(AN_HOUR_AGO + 2000L);
+        assertThat(index.stateOf(file).getSha1(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotTrustEntriesOfRecentlyModifiedFiles() throws IOException {
+        File file = new File(root, "a.txt");
+        file.setLastModified(System.currentTimeMillis());
+        FileStateIndex.FileState state = index.stateOf(file);
+        index.recordSha1(file, state, "hash");
+        assertThat(index.stateOf(file).getSha1(), is(nullValue()));
+        assertTrue(index.stateOf(file) != state);
+    }
+
+    private void write( String path,
+                        String content ) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        IoUtil.write(content, new FileOutputStream(file));
+        // make sure the entries are outside the racy window ...
+        file.setLastModified(AN_HOUR_AGO);
+        file.getParentFile().setLastModified(AN_HOUR_AGO);
+    }
+}
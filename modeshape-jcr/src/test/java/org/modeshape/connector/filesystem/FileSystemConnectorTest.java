@@ -86,6 +86,7 @@ public class FileSystemConnectorTest extends SingleUseAbstractTest {
     private Projection legacyProjection;
     private Projection noneProjection;
     private Projection pagedProjection;
+    private Projection indexedProjection;
     private Projection largeFilesProjection;
     private Projection largeFilesProjectionDefault;
     private Projection monitoringProjection;
@@ -105,13 +106,15 @@ public class FileSystemConnectorTest extends SingleUseAbstractTest {
         legacyProjection = new Projection("mutable-files-legacy", "target/federation/files-legacy");
         noneProjection = new Projection("mutable-files-none", "target/federation/files-none");
         pagedProjection = new PagedProjection("paged-files", "target/federation/paged-files");
+        indexedProjection = new PagedProjection("indexed-files", "target/federation/indexed-files");
+        FileUtil.delete(new File("target/federation/indexed-files-state"));
         largeFilesProjection = new LargeFilesProjection("large-files", "target/federation/large-files");
         largeFilesProjectionDefault = new LargeFilesProjection("large-files-default", "target/federation/large-files-default");
         monitoringProjection = new Projection("monitoring", "target/federation/monitoring");
 
         projections = new Projection[] {readOnlyProjection, readOnlyProjectionWithInclusion, readOnlyProjectionWithExclusion,
-            storeProjection, jsonProjection, legacyProjection, noneProjection, pagedProjection, largeFilesProjection,
-            largeFilesProjectionDefault, monitoringProjection};
+            storeProjection, jsonProjection, legacyProjection, noneProjection, pagedProjection, indexedProjection,
+            largeFilesProjection, largeFilesProjectionDefault, monitoringProjection};
 
         // Remove and then make the directory for our federation test ...
         for (Projection projection : projections) {
@@ -133,6 +136,7 @@ public class FileSystemConnectorTest extends SingleUseAbstractTest {
         legacyProjection.create(testRoot, "legacy");
         noneProjection.create(testRoot, "none");
         pagedProjection.create(testRoot, "pagedFiles");
+        indexedProjection.create(testRoot, "indexedFiles");
         largeFilesProjection.create(testRoot, "largeFiles");
         largeFilesProjectionDefault.create(testRoot, "largeFilesDefault");
         monitoringProjection.create(testRoot, "monitoring");
@@ -249,10 +253,20 @@ public class FileSystemConnectorTest extends SingleUseAbstractTest {
         legacyProjection.testContent(testRoot, "legacy");
         noneProjection.testContent(testRoot, "none");
         pagedProjection.testContent(testRoot, "pagedFiles");
+        indexedProjection.testContent(testRoot, "indexedFiles");
         largeFilesProjection.testContent(testRoot, "largeFiles");
         largeFilesProjectionDefault.testContent(testRoot, "largeFilesDefault");
     }
 
+    @Test
+    public void shouldReadNodesInProjectionWithFileStateIndex() throws Exception {
+        indexedProjection.testContent(testRoot, "indexedFiles");
+        // read everything again, this time from the (already populated) index ...
+        session.refresh(false);
+        indexedProjection.testContent(testRoot, "indexedFiles");
+        assertTrue(new File("target/federation/indexed-files-state").exists());
+    }
+
     @Test
     @FixFor( "MODE-1951" )
     public void shouldReadNodesInProjectionWithInclusionFilter() throws Exception {
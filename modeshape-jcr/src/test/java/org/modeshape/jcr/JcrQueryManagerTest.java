@@ -102,6 +102,7 @@ import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.query.JcrQueryResult;
+import org.modeshape.jcr.query.engine.QueryPlanCache;
 import org.modeshape.jcr.security.SimplePrincipal;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
@@ -3183,6 +3184,66 @@ public class JcrQueryManagerTest extends MultiUseAbstractTest {
         query.execute();
     }
 
+    @Test
+    public void shouldReuseQueryPlansWithDifferentBindVariableValues() throws RepositoryException {
+        QueryPlanCache planCache = repository.queryManager().getPlanCache();
+        String sql = "SELECT [car:model] FROM [car:Car] WHERE [car:year] = $year ORDER BY [car:model]";
+        long rowCount2008 = countRows("SELECT [car:model] FROM [car:Car] WHERE [car:year] = 2008");
+        long rowCount2009 = countRows("SELECT [car:model] FROM [car:Car] WHERE [car:year] = 2009");
+
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        query.bindValue("year", session.getValueFactory().createValue(2008));
+        validateQuery().rowCount(rowCount2008).hasColumns("car:model").validate(query, query.execute());
+        long hits = planCache.getHitCount();
+
+        query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        query.bindValue("year", session.getValueFactory().createValue(2009));
+        validateQuery().rowCount(rowCount2009).hasColumns("car:model").validate(query, query.execute());
+        query.bindValue("year", session.getValueFactory().createValue(2008));
+        validateQuery().rowCount(rowCount2008).hasColumns("car:model").validate(query, query.execute());
+        assertThat(planCache.getHitCount(), is(hits + 2L));
+    }
+
+    @Test
+    public void shouldReturnFirstSortedRowsWhenLimitingSortedQuery() throws RepositoryException {
+        String sql = "SELECT [car:model] FROM [car:Car] ORDER BY [jcr:path] DESC";
+        List<String> allPaths = pathsOf(session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2).execute());
+        assertThat(allPaths.size() > 5, is(true));
+
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql + " LIMIT 3 OFFSET 2", Query.JCR_SQL2);
+        assertThat(pathsOf(query.execute()), is(allPaths.subList(2, 5)));
+    }
+
+    @Test
+    public void shouldNotComputeResultSizeUnlessRequested() throws RepositoryException {
+        String sql = "SELECT [car:model] FROM [car:Car] ORDER BY [car:model]";
+        org.modeshape.jcr.api.query.Query query = (org.modeshape.jcr.api.query.Query)session.getWorkspace().getQueryManager()
+                                                                                             .createQuery(sql, Query.JCR_SQL2);
+        query.computeResultSize(false);
+        RowIterator rows = query.execute().getRows();
+        assertThat(rows.getSize(), is(-1L));
+        long count = 0L;
+        while (rows.hasNext()) {
+            rows.nextRow();
+            ++count;
+        }
+        assertThat(rows.getSize(), is(count));
+        assertThat(count, is(countRows(sql)));
+    }
+
+    private List<String> pathsOf( QueryResult result ) throws RepositoryException {
+        List<String> paths = new ArrayList<>();
+        for (RowIterator rows = result.getRows(); rows.hasNext();) {
+            paths.add(rows.nextRow().getPath());
+        }
+        return paths;
+    }
+
+    private long countRows( String sql ) throws RepositoryException {
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        return query.execute().getRows().getSize();
+    }
+
     @FixFor( "MODE-1145" )
     @Test
     public void shouldParseFincayraQuery() throws Exception {
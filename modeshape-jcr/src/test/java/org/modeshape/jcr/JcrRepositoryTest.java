@@ -30,10 +30,15 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -325,6 +330,79 @@ public class JcrRepositoryTest {
         System.out.println(history);
     }
 
+    @Test
+    public void shouldTrackMostContendedNodes() throws Exception {
+        RepositoryStatistics statistics = repository.getRepositoryStatistics();
+        statistics.recordLockAcquisition("default", Arrays.asList("a", "b"), 0, 1L, MILLISECONDS);
+        assertThat(statistics.getMostContendedNodes().isEmpty(), is(true));
+
+        statistics.recordLockAcquisition("default", Arrays.asList("a"), 1, 10L, MILLISECONDS);
+        statistics.recordLockAcquisition("default", Arrays.asList("b"), 3, 20L, MILLISECONDS);
+        statistics.recordLockAcquisition("default", Arrays.asList("c"), 2, 20L, MILLISECONDS);
+        Map<String, Long> contended = statistics.getMostContendedNodes();
+        assertThat(new ArrayList<String>(contended.keySet()), is(Arrays.asList("b", "c", "a")));
+        assertThat(contended.get("b"), is(3L));
+        assertThat(contended.get("a"), is(1L));
+
+        // Each failed attempt is only charged to one of the nodes being locked ...
+        statistics.recordLockAcquisition("default", Arrays.asList("d", "e", "f"), 4, 20L, MILLISECONDS);
+        contended = statistics.getMostContendedNodes();
+        long total = 0L;
+        for (Long count : contended.values()) {
+            total += count;
+        }
+        assertThat(total, is(10L));
+    }
+
+    @Test
+    public void shouldSaveOverlappingChangesConcurrently() throws Exception {
+        final int nodeCount = 10;
+        session = repository.login();
+        Node parent = session.getRootNode().addNode("parent");
+        for (int i = 0; i != nodeCount; ++i) {
+            parent.addNode("node" + i);
+        }
+        session.save();
+
+        // Each session changes all of the nodes, but in a different order ...
+        final int sessionCount = 4;
+        final CyclicBarrier barrier = new CyclicBarrier(sessionCount);
+        List<Callable<Void>> savers = new ArrayList<Callable<Void>>();
+        for (int s = 0; s != sessionCount; ++s) {
+            final int sessionNumber = s;
+            savers.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    JcrSession session = repository.login();
+                    try {
+                        for (int i = 0; i != nodeCount; ++i) {
+                            int index = sessionNumber % 2 == 0 ? i : nodeCount - 1 - i;
+                            session.getNode("/parent/node" + index).setProperty("session", sessionNumber);
+                        }
+                        barrier.await();
+                        session.save();
+                    } finally {
+                        session.logout();
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(sessionCount);
+        try {
+            for (Future<Void> result : executor.invokeAll(savers, 30, SECONDS)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        session.refresh(false);
+        long value = session.getNode("/parent/node0").getProperty("session").getLong();
+        for (int i = 1; i != nodeCount; ++i) {
+            assertThat(session.getNode("/parent/node" + i).getProperty("session").getLong(), is(value));
+        }
+    }
+
     /**
      * Skipping this test because it purposefully runs over 60 minutes (!!!), mostly just waiting for the statistics thread to
      * wake up once every 5 seconds.
@@ -35,9 +35,12 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.Binary;
 import javax.jcr.Item;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.NamespaceException;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -120,6 +123,208 @@ public class JcrSessionTest extends SingleUseAbstractTest {
         assertEquals(1, propertyIterator.getSize());
     }
 
+    @Test
+    public void shouldSaveChangesInManySessionsAsynchronously() throws Exception {
+        List<JcrSession> sessions = new ArrayList<>();
+        List<Future<Void>> saves = new ArrayList<>();
+        for (int i = 0; i != 4; ++i) {
+            JcrSession batchSession = repository.login();
+            Node batch = batchSession.getRootNode().addNode("batch" + i);
+            for (int j = 0; j != 50; ++j) {
+                batch.addNode("node" + j).setProperty("value", j);
+            }
+            sessions.add(batchSession);
+            saves.add(batchSession.saveAsync());
+        }
+        for (int i = 0; i != saves.size(); ++i) {
+            assertThat(saves.get(i).get(10, TimeUnit.SECONDS), is(nullValue()));
+            assertThat(sessions.get(i).hasPendingChanges(), is(false));
+            sessions.get(i).logout();
+        }
+        for (int i = 0; i != saves.size(); ++i) {
+            assertThat(session.getNode("/batch" + i).getNodes().getSize(), is(50L));
+        }
+        assertThat(session.saveAsync().isDone(), is(true));
+    }
+
+    @Test
+    public void shouldWaitForAsynchronousSaveBeforeChangingSession() throws Exception {
+        for (int i = 0; i != 200; ++i) {
+            session.getRootNode().addNode("saved" + i).setProperty("value", i);
+        }
+        Future<Void> save = session.saveAsync();
+        // Changing the session must wait until the pending changes have been saved ...
+        session.getRootNode().addNode("unsaved");
+        assertThat(save.isDone(), is(true));
+        assertThat(save.get(), is(nullValue()));
+        assertThat(session.hasPendingChanges(), is(true));
+
+        JcrSession other = repository.login();
+        try {
+            assertThat(other.getRootNode().hasNode("saved199"), is(true));
+            assertThat(other.getRootNode().hasNode("unsaved"), is(false));
+            session.save();
+            other.refresh(false);
+            assertThat(other.getRootNode().hasNode("unsaved"), is(true));
+        } finally {
+            other.logout();
+        }
+    }
+
+    @Test
+    public void shouldReportFailureOfAsynchronousSaveThroughFuture() throws Exception {
+        Node referenceableNode = session.getRootNode().addNode("referenceable");
+        referenceableNode.addMixin(JcrMixLexicon.REFERENCEABLE.toString());
+        session.getRootNode().addNode("node1").setProperty("ref", referenceableNode);
+        session.saveAsync().get();
+
+        referenceableNode.remove();
+        Future<Void> save = session.saveAsync();
+        try {
+            save.get();
+            fail("Expected a referential integrity exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(ReferentialIntegrityException.class)));
+        }
+        // The changes should still be in the session ...
+        assertThat(session.hasPendingChanges(), is(true));
+        session.refresh(false);
+        assertThat(session.getRootNode().hasNode("referenceable"), is(true));
+    }
+
+    @Test
+    public void shouldSeeContentAsItWasWhenSnapshotWasTaken() throws Exception {
+        Node parent = session.getRootNode().addNode("parent");
+        parent.setProperty("value", 1L);
+        parent.addNode("childA");
+        session.save();
+
+        JcrSession snapshot = session.snapshot();
+        JcrSession other = repository.login();
+        try {
+            Node otherParent = other.getNode("/parent");
+            otherParent.setProperty("value", 2L);
+            otherParent.getNode("childA").remove();
+            otherParent.addNode("childB");
+            other.save();
+
+            // The snapshot should still see the content as it was ...
+            Node snapshotParent = snapshot.getNode("/parent");
+            assertThat(snapshotParent.getProperty("value").getLong(), is(1L));
+            assertThat(snapshotParent.hasNode("childA"), is(true));
+            assertThat(snapshotParent.hasNode("childB"), is(false));
+            assertThat(snapshotParent.getNodes().getSize(), is(1L));
+            assertThat(snapshot.nodeExists("/parent/childB"), is(false));
+
+            // But other sessions should see the changes ...
+            session.refresh(false);
+            assertThat(session.getNode("/parent").getProperty("value").getLong(), is(2L));
+            assertThat(session.nodeExists("/parent/childA"), is(false));
+            assertThat(session.nodeExists("/parent/childB"), is(true));
+        } finally {
+            snapshot.logout();
+            other.logout();
+        }
+
+        // A new snapshot should see the changes ...
+        JcrSession newSnapshot = session.snapshot();
+        try {
+            assertThat(newSnapshot.getNode("/parent").getProperty("value").getLong(), is(2L));
+            assertThat(newSnapshot.nodeExists("/parent/childB"), is(true));
+        } finally {
+            newSnapshot.logout();
+        }
+    }
+
+    @Test
+    public void shouldSeeSameContentWhenRereadingNodesChangedAfterSnapshotReadThem() throws Exception {
+        Node parent = session.getRootNode().addNode("parent");
+        parent.setProperty("value", 1L);
+        session.save();
+
+        JcrSession snapshot = session.snapshot();
+        JcrSession other = repository.login();
+        try {
+            // Read the node through the snapshot before it is changed ...
+            assertThat(snapshot.getNode("/parent").getProperty("value").getLong(), is(1L));
+            for (long value = 2L; value <= 4L; ++value) {
+                other.getNode("/parent").setProperty("value", value);
+                other.save();
+                snapshot.refresh(false);
+                assertThat(snapshot.getNode("/parent").getProperty("value").getLong(), is(1L));
+            }
+        } finally {
+            snapshot.logout();
+            other.logout();
+        }
+    }
+
+    @Test
+    public void shouldResolvePathsAfterOtherSessionsMoveRenameReorderAndRemoveNodes() throws Exception {
+        Node parent = session.getRootNode().addNode("parent");
+        parent.addNode("child").addNode("grandchild");
+        parent.addNode("child").addNode("grandchild");
+        parent.addNode("other");
+        session.getRootNode().addNode("target");
+        session.save();
+
+        // Resolve the paths (and the paths of the nodes) so that they're cached ...
+        String id1 = session.getNode("/parent/child[1]/grandchild").getIdentifier();
+        String id2 = session.getNode("/parent/child[2]/grandchild").getIdentifier();
+        assertThat(session.getNodeByIdentifier(id2).getPath(), is("/parent/child[2]/grandchild"));
+        String otherId = session.getNode("/parent/other").getIdentifier();
+
+        // Removing the first same-name-sibling changes the path of the second ...
+        JcrSession other = repository.login();
+        try {
+            other.getNode("/parent/child[1]").remove();
+            other.save();
+        } finally {
+            other.logout();
+        }
+        assertThat(session.nodeExists("/parent/child[2]/grandchild"), is(false));
+        assertThat(session.getNode("/parent/child/grandchild").getIdentifier(), is(id2));
+        assertThat(session.getNodeByIdentifier(id2).getPath(), is("/parent/child/grandchild"));
+        assertThat(session.nodeExists(session.getNodeByIdentifier(id2).getPath()), is(true));
+        try {
+            session.getNodeByIdentifier(id1);
+            fail("Expected the node to have been removed");
+        } catch (ItemNotFoundException e) {
+            // expected
+        }
+
+        // Moving and renaming changes the paths of the nodes below ...
+        other = repository.login();
+        try {
+            other.move("/parent/child", "/target/moved");
+            other.move("/parent/other", "/parent/renamed");
+            other.save();
+        } finally {
+            other.logout();
+        }
+        assertThat(session.nodeExists("/parent/child/grandchild"), is(false));
+        assertThat(session.getNode("/target/moved/grandchild").getIdentifier(), is(id2));
+        assertThat(session.getNodeByIdentifier(id2).getPath(), is("/target/moved/grandchild"));
+        assertThat(session.nodeExists("/parent/other"), is(false));
+        assertThat(session.getNodeByIdentifier(otherId).getPath(), is("/parent/renamed"));
+
+        // Reordering same-name-siblings changes their indexes ...
+        Node target = session.getNode("/target");
+        target.addNode("moved");
+        session.save();
+        String id3 = session.getNode("/target/moved[2]").getIdentifier();
+        other = repository.login();
+        try {
+            other.getNode("/target").orderBefore("moved[2]", "moved[1]");
+            other.save();
+        } finally {
+            other.logout();
+        }
+        assertThat(session.getNode("/target/moved[1]").getIdentifier(), is(id3));
+        assertThat(session.getNodeByIdentifier(id3).getPath(), is("/target/moved"));
+        assertThat(session.getNodeByIdentifier(id2).getPath(), is("/target/moved[2]/grandchild"));
+    }
+
     @Test
     @FixFor( "MODE-1956" )
     public void shouldDecodeNameWithUnicodeSubstitutionCharacters() {
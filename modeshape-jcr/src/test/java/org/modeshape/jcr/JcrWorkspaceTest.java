@@ -858,6 +858,77 @@ public class JcrWorkspaceTest extends SingleUseAbstractTest {
         printWorkspace(workspace, includeSystem, Integer.MAX_VALUE);
     }
 
+    @Test
+    public void shouldCreateCopyOnWriteWorkspaceWithContentOfSourceWorkspace() throws Exception {
+        Node target = session.getNode("/b");
+        target.addMixin("mix:referenceable");
+        session.getNode("/a").setProperty("ref", target);
+        session.save();
+
+        workspace.createCopyOnWriteWorkspace("cow", workspaceName);
+        Session cowSession = repository.login("cow");
+        try {
+            assertThat(cowSession.getNode("/a/b/c").getProperty("stringProperty").getString(), is("value"));
+            assertThat(cowSession.getNode("/a/b").getIdentifier(), is(session.getNode("/a/b").getIdentifier()));
+            assertThat(cowSession.getNode("/a").getProperty("ref").getNode().getPath(), is("/b"));
+            assertThat(cowSession.getNode("/b").getReferences().getSize(), is(1L));
+            assertThat(cowSession.getNode("/jcr:system").getPath(), is("/jcr:system"));
+
+            String sql = "SELECT * FROM [nt:unstructured] WHERE [stringProperty] = 'value'";
+            Query query = cowSession.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+            assertThat(query.execute().getNodes().nextNode().getPath(), is("/a/b/c"));
+        } finally {
+            cowSession.logout();
+        }
+    }
+
+    @Test
+    public void shouldNotShareChangesBetweenCopyOnWriteWorkspaceAndSourceWorkspace() throws Exception {
+        session.getNode("/b").setProperty("binary", session.getValueFactory()
+                                                           .createBinary(new ByteArrayInputStream(new byte[10000])));
+        session.save();
+
+        workspace.createCopyOnWriteWorkspace("cow", workspaceName);
+        Session cowSession = repository.login("cow");
+        try {
+            // Change the copy-on-write workspace ...
+            cowSession.getNode("/a/b/c").setProperty("stringProperty", "changed");
+            cowSession.getNode("/a").addNode("d");
+            cowSession.getNode("/b").remove();
+            cowSession.save();
+
+            assertThat(session.getNode("/a/b/c").getProperty("stringProperty").getString(), is("value"));
+            assertThat(session.getNode("/a").hasNode("d"), is(false));
+            assertThat(session.getNode("/b").getProperty("binary").getBinary().getSize(), is(10000L));
+
+            // Change the source workspace ...
+            session.getNode("/a/b").remove();
+            session.getRootNode().addNode("e");
+            session.save();
+
+            assertThat(cowSession.getNode("/a/b/c").getProperty("stringProperty").getString(), is("changed"));
+            assertThat(cowSession.getNode("/a/d").getPath(), is("/a/d"));
+            assertThat(cowSession.getRootNode().hasNode("b"), is(false));
+            assertThat(cowSession.getRootNode().hasNode("e"), is(false));
+        } finally {
+            cowSession.logout();
+        }
+
+        // Reading the workspace with a new session must see the same content ...
+        cowSession = repository.login("cow");
+        try {
+            assertThat(cowSession.getNode("/a/b/c").getProperty("stringProperty").getString(), is("changed"));
+            assertThat(cowSession.getRootNode().hasNode("b"), is(false));
+        } finally {
+            cowSession.logout();
+        }
+
+        // Removing the copy-on-write workspace doesn't affect the source workspace ...
+        workspace.deleteWorkspace("cow");
+        assertThat(session.getNode("/b").getProperty("binary").getBinary().getSize(), is(10000L));
+        assertThat(session.getNode("/e").getPath(), is("/e"));
+    }
+
     protected void printWorkspace( String workspaceName,
                                    boolean includeSystem,
                                    int maxDepthToPrint ) throws Exception {
@@ -32,9 +32,12 @@ import java.util.concurrent.Future;
 import javax.jcr.Node;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
+import javax.jcr.query.QueryResult;
 import javax.jcr.query.Row;
 import org.junit.Test;
 import org.modeshape.common.FixFor;
+import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.api.index.IndexDefinitionTemplate;
 import org.modeshape.jcr.api.index.IndexManager;
 import org.modeshape.jcr.api.query.Query;
 import org.modeshape.jcr.query.engine.IndexPlanners;
@@ -671,6 +674,191 @@ public class LocalIndexProviderTest extends AbstractLocalIndexProviderTest {
         validateQuery().rowCount(1L).useIndex("titleIndex").validate(query, query.execute());
     }
 
+    @Test
+    public void shouldUseMultiColumnIndexForEqualityOnFirstColumnAndRangeOnSecondColumn() throws Exception {
+        registerNodeTypes("cnd/notionalTypes.cnd");
+        IndexDefinitionTemplate template = indexManager().createIndexDefinitionTemplate();
+        template.setName("stringAndLongIndex");
+        template.setKind(IndexKind.VALUE);
+        template.setNodeTypeName("notion:typed");
+        template.setProviderName(PROVIDER_NAME);
+        template.setSynchronous(useSynchronousIndexes());
+        template.setAllWorkspaces();
+        template.setColumnDefinitions(indexManager().createIndexColumnDefinitionTemplate()
+                                                    .setPropertyName("notion:stringProperty").setColumnType(PropertyType.STRING),
+                                      indexManager().createIndexColumnDefinitionTemplate()
+                                                    .setPropertyName("notion:longProperty").setColumnType(PropertyType.LONG));
+        indexManager().registerIndex(template, false);
+
+        Node root = session().getRootNode();
+        for (int i = 0; i != 6; ++i) {
+            Node node = root.addNode("notionalObject" + i, "notion:typed");
+            node.setProperty("notion:stringProperty", i % 2 == 0 ? "even" : "odd");
+            node.setProperty("notion:longProperty", (long)i);
+        }
+        waitForIndexes();
+        session.save();
+        waitForIndexes();
+
+        Query query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'even'");
+        validateQuery().rowCount(3L).useIndex("stringAndLongIndex").validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'even' AND [notion:longProperty] > 1");
+        validateQuery().rowCount(2L).useIndex("stringAndLongIndex").validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'odd' "
+                             + "AND [notion:longProperty] BETWEEN 1 EXCLUSIVE AND 5");
+        validateQuery().rowCount(2L).useIndex("stringAndLongIndex").validate(query, query.execute());
+
+        // Changing one of the columns keeps the other column's value ...
+        Node node = root.getNode("notionalObject2");
+        node.setProperty("notion:stringProperty", "odd");
+        session.save();
+        waitForIndexes();
+
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'odd' AND [notion:longProperty] = 2");
+        validateQuery().rowCount(1L).useIndex("stringAndLongIndex").validate(query, query.execute());
+
+        // A constraint on only the second column can't use the index ...
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:longProperty] = 2");
+        validateQuery().rowCount(1L).useNoIndexes().validate(query, query.execute());
+    }
+
+    @Test
+    public void shouldNotSortResultsOrderedByMultiColumnIndex() throws Exception {
+        registerNodeTypes("cnd/notionalTypes.cnd");
+        IndexDefinitionTemplate template = indexManager().createIndexDefinitionTemplate();
+        template.setName("stringAndLongIndex");
+        template.setKind(IndexKind.VALUE);
+        template.setNodeTypeName("notion:typed");
+        template.setProviderName(PROVIDER_NAME);
+        template.setSynchronous(useSynchronousIndexes());
+        template.setAllWorkspaces();
+        template.setColumnDefinitions(indexManager().createIndexColumnDefinitionTemplate()
+                                                    .setPropertyName("notion:stringProperty").setColumnType(PropertyType.STRING),
+                                      indexManager().createIndexColumnDefinitionTemplate()
+                                                    .setPropertyName("notion:longProperty").setColumnType(PropertyType.LONG));
+        indexManager().registerIndex(template, false);
+        waitForIndexes();
+
+        long[] values = {4L, 10L, 2L, 1L, 0L, 3L};
+        Node root = session().getRootNode();
+        for (int i = 0; i != values.length; ++i) {
+            Node node = root.addNode("notionalObject" + i, "notion:typed");
+            node.setProperty("notion:stringProperty", i % 2 == 0 ? "even" : "odd");
+            node.setProperty("notion:longProperty", values[i]);
+        }
+        root.addNode("notionalObjectWithoutLong", "notion:typed").setProperty("notion:stringProperty", "even");
+        session.save();
+        waitForIndexes();
+
+        // The index returns the nodes in the order of the second column, with the nodes without a value last ...
+        Query query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'even' "
+                                   + "ORDER BY [notion:longProperty]");
+        QueryResult result = query.execute();
+        validateQuery().useIndex("stringAndLongIndex")
+                       .hasNodesAtPaths("/notionalObject4", "/notionalObject2", "/notionalObject0", "/notionalObjectWithoutLong")
+                       .validate(query, result);
+        assertThat(planOf(result).contains("Sort"), is(false));
+
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'odd' AND [notion:longProperty] > 1 "
+                             + "ORDER BY [notion:longProperty]");
+        result = query.execute();
+        validateQuery().useIndex("stringAndLongIndex").hasNodesAtPaths("/notionalObject5", "/notionalObject1")
+                       .validate(query, result);
+        assertThat(planOf(result).contains("Sort"), is(false));
+
+        // But the index can't order the nodes by the first column, or in descending order ...
+        query = jcrSql2Query("SELECT * FROM [notion:typed] WHERE [notion:stringProperty] = 'odd' "
+                             + "ORDER BY [notion:longProperty] DESC");
+        result = query.execute();
+        validateQuery().useIndex("stringAndLongIndex")
+                       .hasNodesAtPaths("/notionalObject1", "/notionalObject5", "/notionalObject3").validate(query, result);
+        assertThat(planOf(result).contains("Sort"), is(true));
+    }
+
+    private String planOf( QueryResult result ) {
+        return ((org.modeshape.jcr.api.query.QueryResult)result).getPlan();
+    }
+
+    @Test
+    public void shouldIntersectAndUnionIndexesForConstraintsOnDifferentProperties() throws Exception {
+        registerValueIndex("colorIndex", "nt:unstructured", null, "*", "color", PropertyType.STRING);
+        registerValueIndex("sizeIndex", "nt:unstructured", null, "*", "size", PropertyType.STRING);
+        waitForIndexes();
+
+        String[] colors = {"red", "blue", "green", "yellow"};
+        String[] sizes = {"small", "medium", "large", "x-large", "xx-large"};
+        Node root = session().getRootNode();
+        for (int i = 0; i != 40; ++i) {
+            Node node = root.addNode("node" + i);
+            node.setProperty("color", colors[i % colors.length]);
+            node.setProperty("size", sizes[i % sizes.length]);
+        }
+        session.save();
+        waitForIndexes();
+
+        // Only the nodes found by both indexes are loaded ...
+        Query query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [color] = 'red' AND [size] = 'small'");
+        validateQuery().rowCount(2L).considerIndexes("colorIndex", "sizeIndex", IndexPlanners.INDEX_INTERSECTION_NAME)
+                       .useIndex(IndexPlanners.INDEX_INTERSECTION_NAME).validate(query, query.execute());
+
+        // Neither index can satisfy the OR-ed constraint alone ...
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [color] = 'red' OR [size] = 'small'");
+        validateQuery().rowCount(16L).considerIndexes(IndexPlanners.INDEX_UNION_NAME).useIndex(IndexPlanners.INDEX_UNION_NAME)
+                       .validate(query, query.execute());
+    }
+
+    @Test
+    public void shouldUseMultiColumnIndexForEachValueOfMultiValuedProperties() throws Exception {
+        IndexDefinitionTemplate template = indexManager().createIndexDefinitionTemplate();
+        template.setName("tagAndSizeIndex");
+        template.setKind(IndexKind.VALUE);
+        template.setNodeTypeName("nt:unstructured");
+        template.setProviderName(PROVIDER_NAME);
+        template.setSynchronous(useSynchronousIndexes());
+        template.setAllWorkspaces();
+        template.setColumnDefinitions(indexManager().createIndexColumnDefinitionTemplate().setPropertyName("tag")
+                                                    .setColumnType(PropertyType.STRING),
+                                      indexManager().createIndexColumnDefinitionTemplate().setPropertyName("size")
+                                                    .setColumnType(PropertyType.LONG));
+        indexManager().registerIndex(template, false);
+        waitForIndexes();
+
+        Node root = session().getRootNode();
+        Node node1 = root.addNode("node1");
+        node1.setProperty("tag", new String[] {"red", "green", "blue"});
+        node1.setProperty("size", new String[] {"1", "2", "3"}, PropertyType.LONG);
+        Node node2 = root.addNode("node2");
+        node2.setProperty("tag", new String[] {"green", "yellow"});
+        node2.setProperty("size", 5L);
+        session.save();
+        waitForIndexes();
+
+        // Later values of the multi-valued properties are indexed, and each node is returned only once ...
+        Query query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] = 'blue'");
+        validateQuery().rowCount(1L).useIndex("tagAndSizeIndex").hasNodesAtPaths("/node1").validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] = 'blue' AND [size] = 3");
+        validateQuery().rowCount(1L).useIndex("tagAndSizeIndex").hasNodesAtPaths("/node1").validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] = 'green' AND [size] > 1");
+        validateQuery().rowCount(2L).useIndex("tagAndSizeIndex").validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] > 'a'");
+        validateQuery().rowCount(2L).useIndex("tagAndSizeIndex").validate(query, query.execute());
+
+        // Changing one of the properties keeps all of the values of the other ...
+        node1.setProperty("size", new String[] {"7"}, PropertyType.LONG);
+        session.save();
+        waitForIndexes();
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] = 'blue' AND [size] = 7");
+        validateQuery().rowCount(1L).useIndex("tagAndSizeIndex").hasNodesAtPaths("/node1").validate(query, query.execute());
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] WHERE [tag] = 'red' AND [size] = 3");
+        validateQuery().rowCount(0L).useIndex("tagAndSizeIndex").validate(query, query.execute());
+    }
+
     @FixFor( "MODE-2314" )
     @Test
     public void shouldIndexNodeAfterChange() throws Exception {
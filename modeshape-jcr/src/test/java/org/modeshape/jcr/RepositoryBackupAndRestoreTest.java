@@ -31,6 +31,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.jcr.Binary;
 import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
@@ -41,10 +42,13 @@ import javax.jcr.query.QueryResult;
 import javax.transaction.NotSupportedException;
 import javax.transaction.SystemException;
 import javax.transaction.TransactionManager;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.Document;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.modeshape.common.FixFor;
+import org.modeshape.common.collection.SimpleProblems;
 import org.modeshape.common.statistic.Stopwatch;
 import org.modeshape.common.util.FileUtil;
 import org.modeshape.common.util.IoUtil;
@@ -272,7 +276,139 @@ public class RepositoryBackupAndRestoreTest extends SingleUseAbstractTest {
         queryContentInWorkspace(repository(), null);
     }
 
+    @Test
+    public void shouldBackupAndRestoreRepositoryFromManyBackupFiles() throws Exception {
+        loadContent();
+        loadBinaryContent();
+
+        // Write only a few documents into each file, so that the restore reads many files concurrently ...
+        BackupOptions backupOptions = new BackupOptions() {
+            @Override
+            public long documentsPerFile() {
+                return 7L;
+            }
+        };
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory, backupOptions);
+        assertNoProblems(problems);
+        assertTrue(new File(backupDirectory, "documents_000010.bin.gz").exists());
+
+        session().getRootNode().addNode("node-not-in-backup");
+        session().save();
+
+        JcrSession newSession = repository().login();
+        try {
+            Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory);
+            assertNoProblems(restoreProblems);
+        } finally {
+            newSession.logout();
+        }
+
+        assertWorkspaces(repository(), "default", "ws2", "ws3");
+        assertContentInWorkspace(repository(), "default");
+        assertContentInWorkspace(repository(), "ws2");
+        assertContentInWorkspace(repository(), "ws3");
+        assertContentNotInWorkspace(repository(), "default", "/node-not-in-backup");
+        assertFilesInWorkspcae("default");
+        assertFilesInWorkspcae("ws3");
+        queryContentInWorkspace(repository(), null);
+    }
+
+    @Test
+    public void shouldRestoreTheCopyOfADocumentFromTheLastChangeFile() throws Exception {
+        Node node = session().getRootNode().addNode("changing");
+        node.setProperty("value", "first");
+        session().save();
+        String key = ((AbstractJcrNode)node).key().toString();
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+        Document older = documentInBackup(backupDirectory, key);
+
+        node.setProperty("value", "second");
+        session().save();
+        problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory2);
+        assertNoProblems(problems);
+        Document newer = documentInBackup(backupDirectory2, key);
+
+        // Record the document as changed several times while the backup was made, with the newest copy in the last file ...
+        File changeDirectory = new File(backupDirectory2, "changes");
+        FileUtil.delete(changeDirectory);
+        changeDirectory.mkdirs();
+        BackupDocumentWriter writer = new BackupDocumentWriter(changeDirectory, "documents", 2000L, false, new SimpleProblems());
+        for (int i = 0; i != 2000; ++i) {
+            writer.write(older);
+        }
+        writer.write(newer);
+        writer.close();
+        assertTrue(new File(changeDirectory, "documents_000002.bin").exists());
+
+        JcrSession newSession = repository().login();
+        try {
+            Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory2);
+            assertNoProblems(restoreProblems);
+        } finally {
+            newSession.logout();
+        }
+
+        newSession = repository().login();
+        try {
+            assertThat(newSession.getNode("/changing").getProperty("value").getString(), is("second"));
+        } finally {
+            newSession.logout();
+        }
+    }
+
     @FixFor( "MODE-2309" )
+    @Test
+    public void shouldBackupAndRestoreNodesRemovedFromCopyOnWriteWorkspace() throws Exception {
+        String removedId = session().getRootNode().addNode("a").addNode("b").getIdentifier();
+        session().getRootNode().addNode("c");
+        session().save();
+        session().getWorkspace().createCopyOnWriteWorkspace("cow", session().getWorkspace().getName());
+        JcrSession cowSession = repository().login("cow");
+        try {
+            cowSession.getNode("/a/b").remove();
+            cowSession.getNode("/c").remove();
+            cowSession.save();
+        } finally {
+            cowSession.logout();
+        }
+
+        // Make the backup, and check that there are no problems ...
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+
+        // Restore the content from the backup into our current repository ...
+        JcrSession newSession = repository().login();
+        try {
+            Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory);
+            assertNoProblems(restoreProblems);
+        } finally {
+            newSession.logout();
+        }
+
+        // The removed nodes must not be shared again from the source workspace ...
+        cowSession = repository().login("cow");
+        try {
+            assertThat(cowSession.getNode("/a").hasNode("b"), is(false));
+            assertThat(cowSession.getRootNode().hasNode("c"), is(false));
+            try {
+                cowSession.getNodeByIdentifier(removedId);
+                fail("The node removed from the copy-on-write workspace should not exist after restoring");
+            } catch (ItemNotFoundException e) {
+                // expected
+            }
+        } finally {
+            cowSession.logout();
+        }
+        newSession = repository().login();
+        try {
+            assertThat(newSession.getNode("/a/b").getPath(), is("/a/b"));
+            assertThat(newSession.getNode("/c").getPath(), is("/c"));
+        } finally {
+            newSession.logout();
+        }
+    }
+
     @Test
     public void shouldBackupAndRestoreRepositoryWithLineBreaksInPropertyValues() throws Exception {
         // Load the content and verify it's there ...
@@ -334,6 +470,20 @@ public class RepositoryBackupAndRestoreTest extends SingleUseAbstractTest {
         assertContentInWorkspace(repository(), "ws3");
     }
 
+    private Document documentInBackup( File directory,
+                                       String key ) {
+        BackupDocumentReader reader = new BackupDocumentReader(directory, "documents", new SimpleProblems());
+        try {
+            for (Document doc = reader.read(); doc != null; doc = reader.read()) {
+                Document metadata = doc.getDocument(SchematicEntry.FieldName.METADATA);
+                if (metadata != null && key.equals(metadata.getString(SchematicEntry.FieldName.ID))) return doc;
+            }
+        } finally {
+            reader.close();
+        }
+        throw new AssertionError("No document with key " + key + " in the backup at " + directory);
+    }
+
     private File extractZip( String zipFile, File destination ) throws IOException {
         File backupDir = null;
         final int bufferSize = 2048;
@@ -38,6 +38,7 @@ import org.modeshape.jcr.RepositoryConfiguration.Security;
 import org.modeshape.jcr.RepositoryConfiguration.TransactionMode;
 import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
 
 public class RepositoryConfigurationTest {
     private boolean print = false;
@@ -148,6 +149,21 @@ public class RepositoryConfigurationTest {
         assertNotValid(1, "config/composite-binary-storage-without-default.json");
     }
 
+    @Test
+    public void shouldSuccessfullyValidateCompressedFileBinaryStorageConfiguration() throws Exception {
+        assertValid("config/compressed-file-binary-storage.json");
+        RepositoryConfiguration config = RepositoryConfiguration.read("config/compressed-file-binary-storage.json");
+        FileSystemBinaryStore store = (FileSystemBinaryStore)config.getBinaryStorage().getBinaryStore();
+        assertThat(store.getCompression().getLevel(), is(6));
+        assertThat(store.getCompression().shouldCompress("image/png"), is(false));
+        assertThat(store.getCompression().shouldCompress("application/pdf"), is(true));
+    }
+
+    @Test
+    public void shouldSuccessfullyValidateCachedBinaryStorageConfiguration() {
+        assertValid("config/cached-binary-storage.json");
+    }
+
     @Test
     public void shouldSuccessfullyValidateCustomBinaryStorageConfiguration() {
         assertValid("config/custom-binary-storage.json");
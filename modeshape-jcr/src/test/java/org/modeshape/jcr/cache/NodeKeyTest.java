@@ -0,0 +1,148 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.Test;
+
+public class NodeKeyTest {
+
+    private static final String SOURCE = NodeKey.keyForSourceName("source");
+    private static final String WORKSPACE = NodeKey.keyForSourceName("workspace");
+
+    @Test
+    public void shouldHaveSameRepresentationWhenCreatedFromStringOrParts() {
+        String uuid = UUID.randomUUID().toString();
+        NodeKey fromString = new NodeKey(SOURCE + WORKSPACE + uuid);
+        NodeKey fromParts = new NodeKey(SOURCE, WORKSPACE, uuid);
+        assertThat(fromString, is(fromParts));
+        assertThat(fromString.hashCode(), is(fromParts.hashCode()));
+        assertThat(fromString.compareTo(fromParts), is(0));
+        assertThat(fromParts.toString(), is(SOURCE + WORKSPACE + uuid));
+        assertThat(fromParts.getSourceKey(), is(SOURCE));
+        assertThat(fromParts.getWorkspaceKey(), is(WORKSPACE));
+        assertThat(fromParts.getIdentifier(), is(uuid));
+    }
+
+    @Test
+    public void shouldShareSourceAndWorkspaceKeys() {
+        NodeKey key1 = new NodeKey(SOURCE + WORKSPACE + UUID.randomUUID().toString());
+        NodeKey key2 = new NodeKey(new String(SOURCE), new String(WORKSPACE), UUID.randomUUID().toString());
+        NodeKey key3 = new NodeKey(SOURCE + WORKSPACE + "someIdentifier");
+        assertThat(key2.getSourceKey(), is(sameInstance(key1.getSourceKey())));
+        assertThat(key2.getWorkspaceKey(), is(sameInstance(key1.getWorkspaceKey())));
+        assertThat(key3.getWorkspaceKey(), is(sameInstance(key1.getWorkspaceKey())));
+    }
+
+    @Test
+    public void shouldPreserveIdentifiersThatAreNotLowercaseUuids() {
+        String uuid = UUID.randomUUID().toString();
+        for (String identifier : new String[] {"root", uuid.toUpperCase(), uuid + "x", "/path/to/file.txt"}) {
+            NodeKey key = new NodeKey(SOURCE, WORKSPACE, identifier);
+            assertThat(key.getIdentifier(), is(identifier));
+            assertThat(key.toString(), is(SOURCE + WORKSPACE + identifier));
+            assertThat(key, is(new NodeKey(key.toString())));
+        }
+        assertThat(new NodeKey(SOURCE, WORKSPACE, uuid.toUpperCase()), is(not(new NodeKey(SOURCE, WORKSPACE, uuid))));
+    }
+
+    @Test
+    public void shouldChangeWorkspaceAndIdentifier() {
+        NodeKey key = new NodeKey(SOURCE, WORKSPACE, UUID.randomUUID().toString());
+        String otherWorkspace = NodeKey.keyForSourceName("other");
+        NodeKey moved = key.withWorkspaceKey(otherWorkspace);
+        assertThat(moved.toString(), is(SOURCE + otherWorkspace + key.getIdentifier()));
+        assertThat(moved, is(new NodeKey(moved.toString())));
+
+        NodeKey random = key.withRandomId();
+        assertThat(random.getSourceKey(), is(SOURCE));
+        assertThat(random.getWorkspaceKey(), is(WORKSPACE));
+        assertThat(NodeKey.isValidRandomIdentifier(random.getIdentifier()), is(true));
+        assertThat(random, is(new NodeKey(random.toString())));
+    }
+
+    @Test
+    public void shouldOrderKeysTheSameAsTheirStringRepresentations() {
+        Random random = new Random(17);
+        List<NodeKey> keys = new ArrayList<>();
+        for (int i = 0; i != 200; ++i) {
+            String source = i % 3 == 0 ? SOURCE : NodeKey.keyForSourceName("source" + (i % 5));
+            String identifier = i % 7 == 0 ? "id" + i : new UUID(random.nextLong(), random.nextLong()).toString();
+            keys.add(new NodeKey(source, WORKSPACE, identifier));
+        }
+        for (NodeKey key1 : keys) {
+            for (NodeKey key2 : keys) {
+                int expected = Integer.signum(key1.toString().compareTo(key2.toString()));
+                assertThat(Integer.signum(key1.compareTo(key2)), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void shouldWriteAndReadBinaryForm() throws IOException {
+        NodeKey compact = new NodeKey(SOURCE, WORKSPACE, UUID.randomUUID().toString());
+        NodeKey other = new NodeKey(SOURCE, WORKSPACE, "someIdentifier");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        compact.write(output);
+        int compactSize = bytes.size();
+        other.write(output);
+        // Keys used to be written as strings, and they must still be readable ...
+        output.writeUTF(compact.toString());
+        output.flush();
+        assertThat(compactSize < compact.toString().length(), is(true));
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(NodeKey.read(input), is(compact));
+        assertThat(NodeKey.read(input), is(other));
+        assertThat(NodeKey.read(input), is(compact));
+        assertThat(input.available(), is(0));
+    }
+
+    @Test
+    public void shouldSerializeAndDeserialize() throws Exception {
+        NodeKey compact = new NodeKey(SOURCE, WORKSPACE, UUID.randomUUID().toString());
+        NodeKey other = new NodeKey(SOURCE, WORKSPACE, "someIdentifier");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(compact);
+            output.writeObject(other);
+        }
+        // The string representation is serialized, so that other versions can read the keys ...
+        assertThat(new String(bytes.toByteArray(), "UTF-8").contains(compact.toString()), is(true));
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            NodeKey key = (NodeKey)input.readObject();
+            assertThat(key, is(compact));
+            assertThat(key.toString(), is(compact.toString()));
+            assertThat(key.compareTo(compact), is(0));
+            assertThat(input.readObject(), is((Object)other));
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -93,6 +94,13 @@ public abstract class AbstractSessionCacheTest extends AbstractNodeCacheTest {
             public String journalId() {
                 return null;
             }
+
+            @Override
+            public void recordLockAcquisition( String workspaceName,
+                                               List<String> keys,
+                                               int failedAttempts,
+                                               long durationInNanos ) {
+            }
         };
     }
 
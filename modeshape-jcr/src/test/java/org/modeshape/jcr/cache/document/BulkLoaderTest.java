@@ -0,0 +1,114 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.util.Collections;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.JcrMixLexicon;
+import org.modeshape.jcr.JcrNtLexicon;
+import org.modeshape.jcr.SingleUseAbstractTest;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+
+public class BulkLoaderTest extends SingleUseAbstractTest {
+
+    @Test
+    public void shouldLoadChildrenInMultipleBlocks() throws Exception {
+        jcrSession().getRootNode().addNode("existing");
+        jcrSession().save();
+
+        BulkLoader loader = repository.createBulkLoader(null, "/");
+        NameFactory names = loader.getContext().getValueFactories().getNameFactory();
+        PropertyFactory properties = loader.getContext().getPropertyFactory();
+        int count = BulkLoader.DEFAULT_CHILD_COUNT_TARGET * 2 + 500;
+        NodeKey folder = loader.addNode(loader.getParentKey(), names.create("bulk"), null, JcrNtLexicon.UNSTRUCTURED, null,
+                                        null);
+        for (int i = 0; i != count; ++i) {
+            Property prop = properties.create(names.create("index"), (long)i);
+            NodeKey child = loader.addNode(folder, names.create("child" + i), null, JcrNtLexicon.UNSTRUCTURED, null,
+                                           Collections.singleton(prop));
+            if (i % 1000 == 0) {
+                loader.addNode(child, names.create("grandchild"), null, JcrNtLexicon.UNSTRUCTURED, null, null);
+            }
+        }
+        assertThat(loader.finish(), is((long)count + 4L));
+
+        Node bulk = jcrSession().getNode("/bulk");
+        assertThat(bulk.getNodes().getSize(), is((long)count));
+        assertThat(jcrSession().getNode("/bulk/child2499").getProperty("index").getLong(), is(2499L));
+        assertThat(jcrSession().getNode("/bulk/child2000/grandchild").getPath(), is("/bulk/child2000/grandchild"));
+        assertThat(jcrSession().getRootNode().hasNode("existing"), is(true));
+
+        // Check that the children are read in order across the blocks ...
+        NodeIterator iter = bulk.getNodes();
+        for (int i = 0; i != count; ++i) {
+            assertThat(iter.nextNode().getName(), is("child" + i));
+        }
+    }
+
+    @Test
+    public void shouldResolveReferencesToNodesLoadedLater() throws Exception {
+        BulkLoader loader = repository.createBulkLoader(null, "/");
+        ExecutionContext context = loader.getContext();
+        NameFactory names = context.getValueFactories().getNameFactory();
+        PropertyFactory properties = context.getPropertyFactory();
+
+        NodeKey targetKey = loader.getParentKey().withRandomId();
+        Property reference = properties.create(names.create("ref"),
+                                               context.getValueFactories().getReferenceFactory().create(targetKey, false));
+        loader.addNode(loader.getParentKey(), names.create("referrer"), null, JcrNtLexicon.UNSTRUCTURED, null,
+                       Collections.singleton(reference));
+        Property uuid = properties.create(JcrLexicon.UUID, targetKey.getIdentifier());
+        loader.addNode(loader.getParentKey(), names.create("target"), targetKey, JcrNtLexicon.UNSTRUCTURED,
+                       Collections.<Name>singleton(JcrMixLexicon.REFERENCEABLE), Collections.singleton(uuid));
+        loader.finish();
+
+        Node target = jcrSession().getNode("/target");
+        assertThat(jcrSession().getNode("/referrer").getProperty("ref").getNode().getPath(), is("/target"));
+        assertThat(target.getReferences().getSize(), is(1L));
+        assertThat(target.getReferences().nextProperty().getParent().getPath(), is("/referrer"));
+    }
+
+    @Test
+    public void shouldRejectNodesThatAreNotAddedInDepthFirstOrder() throws Exception {
+        BulkLoader loader = repository.createBulkLoader(null, "/");
+        NameFactory names = loader.getContext().getValueFactories().getNameFactory();
+        NodeKey first = loader.addNode(loader.getParentKey(), names.create("first"), null, JcrNtLexicon.UNSTRUCTURED, null,
+                                       null);
+        loader.addNode(loader.getParentKey(), names.create("second"), null, JcrNtLexicon.UNSTRUCTURED, null, null);
+        loader.addNode(loader.getParentKey(), names.create("second"), null, JcrNtLexicon.UNSTRUCTURED, null, null);
+        try {
+            loader.addNode(first, names.create("child"), null, JcrNtLexicon.UNSTRUCTURED, null, null);
+            fail("Should not add a child to a node that was already written");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        loader.finish();
+        assertThat(jcrSession().getNode("/first").getNodes().getSize(), is(0L));
+        assertThat(jcrSession().getNode("/second").getPath(), is("/second"));
+        assertThat(jcrSession().getNode("/second[2]").getIndex(), is(2));
+    }
+}
@@ -15,14 +15,22 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import org.junit.Test;
 import org.modeshape.jcr.bus.RepositoryChangeBus;
 import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.value.Name;
 
 public class WorkspaceCacheTest extends AbstractNodeCacheTest {
 
@@ -47,4 +55,25 @@ public class WorkspaceCacheTest extends AbstractNodeCacheTest {
         super.shutdownCache(cache);
         executor.shutdown();
     }
+
+    @Test
+    public void shouldRetainNodesReadThroughSnapshotsWhenTheyAreEvictedBeforeBeingChanged() {
+        WorkspaceCache workspaceCache = (WorkspaceCache)cache;
+        WorkspaceSnapshot snapshot = workspaceCache.snapshot();
+        try {
+            CachedNode read = snapshot.getNode(ROOT_KEY_WS1);
+            // Evict the node, and then change it ...
+            workspaceCache.clear();
+            RecordingChanges changes = new RecordingChanges("session", "process", "repo", "ws", null);
+            changes.nodeChanged(ROOT_KEY_WS1, path("/"), name("mode:root"), Collections.<Name>emptySet());
+            changes.setChangedNodes(Collections.singleton(ROOT_KEY_WS1));
+            changes.freeze("user", null, context.getValueFactories().getDateFactory().create());
+            workspaceCache.changed(changes);
+
+            assertThat(snapshot.getNode(ROOT_KEY_WS1), is(sameInstance(read)));
+            assertThat(workspaceCache.getNode(ROOT_KEY_WS1), is(not(sameInstance(read))));
+        } finally {
+            snapshot.close();
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+
+public class WorkspacePathsTest {
+
+    private static final String SOURCE = NodeKey.keyForSourceName("source");
+    private static final String WORKSPACE = NodeKey.keyForWorkspaceName("workspace");
+
+    private ExecutionContext context;
+    private WorkspacePaths paths;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        paths = new WorkspacePaths(8);
+    }
+
+    @Test
+    public void shouldInvalidateOnlyThePathsAtOrBelowTheChangedSiblings() {
+        paths = new WorkspacePaths(100);
+        NodeKey a = cache("/a");
+        NodeKey b1 = cache("/a/b");
+        NodeKey b2 = cache("/a/b[2]");
+        NodeKey c = cache("/a/b[2]/c");
+        NodeKey d = cache("/a/d");
+        NodeKey e = cache("/e");
+
+        RecordingChanges changes = new RecordingChanges("session", "process", "repository", "workspace", null);
+        changes.nodeRemoved(b1, a, path("/a/b"), name("nt:unstructured"), Collections.<Name>emptySet(), null, null);
+        changes.freeze("user", null, context.getValueFactories().getDateFactory().create());
+        paths.changed(changes);
+
+        // All of the paths of the same-name siblings, and the paths below them, are invalidated ...
+        assertThat(paths.pathFor(b1), is(nullValue()));
+        assertThat(paths.pathFor(b2), is(nullValue()));
+        assertThat(paths.pathFor(c), is(nullValue()));
+        assertThat(paths.keyFor(path("/a/b[2]/c")), is(nullValue()));
+        // But the other paths are not ...
+        assertThat(paths.pathFor(a), is(path("/a")));
+        assertThat(paths.pathFor(d), is(path("/a/d")));
+        assertThat(paths.pathFor(e), is(path("/e")));
+        assertThat(paths.keyFor(path("/a/d")), is(d));
+        // Each node has both a cached path and a cached key ...
+        assertThat(paths.size(), is(6));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedPathsWhenFull() {
+        NodeKey first = cache("/first");
+        NodeKey second = cache("/second");
+        for (int i = 0; i != 2; ++i) {
+            cache("/node" + i);
+        }
+        assertThat(paths.size(), is(8));
+
+        // Use the first path, and then add more paths ...
+        assertThat(paths.pathFor(first), is(path("/first")));
+        cache("/more");
+        assertThat(paths.size(), is(8));
+        assertThat(paths.pathFor(first), is(path("/first")));
+        assertThat(paths.pathFor(second), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotAddPathsComputedBeforeAnInvalidation() {
+        long generation = paths.generation();
+        paths.clear();
+        NodeKey key = newKey();
+        paths.putPath(key, path("/a"), generation);
+        assertThat(paths.pathFor(key), is(nullValue()));
+        assertThat(paths.size(), is(0));
+    }
+
+    private NodeKey cache( String path ) {
+        NodeKey key = newKey();
+        long generation = paths.generation();
+        paths.putPath(key, path(path), generation);
+        paths.putKey(path(path), key, generation);
+        return key;
+    }
+
+    private NodeKey newKey() {
+        return new NodeKey(SOURCE, WORKSPACE, UUID.randomUUID().toString());
+    }
+
+    private Path path( String path ) {
+        return context.getValueFactories().getPathFactory().create(path);
+    }
+
+    private Name name( String name ) {
+        return context.getValueFactories().getNameFactory().create(name);
+    }
+}
@@ -57,6 +57,18 @@ public class WritableSessionCacheTest extends AbstractSessionCacheTest {
     public void shouldWarmUpSystem() {
     }
 
+    @Test
+    public void shouldPauseLongerAfterEachFailedAttemptToLockNodes() {
+        for (int i = 0; i != 100; ++i) {
+            long first = WritableSessionCache.pauseTimeBeforeRepeat(1);
+            assertThat(first >= 25L && first <= 50L, is(true));
+            long second = WritableSessionCache.pauseTimeBeforeRepeat(2);
+            assertThat(second >= 50L && second <= 100L, is(true));
+            long last = WritableSessionCache.pauseTimeBeforeRepeat(100);
+            assertThat(last >= 500L && last <= 1000L, is(true));
+        }
+    }
+
     @Test
     public void shouldAllowSessionToCreateAndAccessToNewPropertyOnExistingNodeBeforeSave() {
         // Make sure the property does not exist ...
@@ -25,6 +25,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import javax.jcr.query.qom.Constraint;
 import org.junit.Before;
 import org.mapdb.BTreeKeySerializer;
@@ -55,12 +56,20 @@ public abstract class AbstractLocalIndexTest {
     protected ExecutionContext context;
     protected DB db;
     protected String propertyName = "indexedProperty";
+    protected Executor executor;
 
     @Before
     public void beforeEach() {
         context = new ExecutionContext();
         db = DBMaker.newMemoryDB().make();
         serializers = MapDB.serializers(context.getValueFactories());
+        // Rebuild the statistics immediately, so that the estimates are predictable ...
+        executor = new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                command.run();
+            }
+        };
     }
 
     protected void loadLongIndex( LocalUniqueIndex<Long> index,
@@ -100,17 +109,22 @@ public abstract class AbstractLocalIndexTest {
         BTreeKeySerializer<T> keySerializer = (BTreeKeySerializer<T>)serializers.bTreeKeySerializerFor(type.getValueClass(),
                                                                                                        type.getComparator(),
                                                                                                        false);
-        return new LocalUniqueIndex<T>("myIndex", "myWorkspace", db, converter, keySerializer, serializer);
+        return new LocalUniqueIndex<T>("myIndex", "myWorkspace", db, converter, keySerializer, serializer, executor);
     }
 
-    @SuppressWarnings( "unchecked" )
     protected <T> LocalDuplicateIndex<T> duplicateValueIndex( Class<T> valueType ) {
+        return duplicateValueIndex("myIndex", valueType);
+    }
+
+    @SuppressWarnings( "unchecked" )
+    protected <T> LocalDuplicateIndex<T> duplicateValueIndex( String name,
+                                                              Class<T> valueType ) {
         PropertyType type = PropertyType.discoverType(valueType);
         Comparator<T> comparator = (Comparator<T>)type.getComparator();
         ValueFactory<T> valueFactory = (ValueFactory<T>)context.getValueFactories().getValueFactory(type);
         Converter<T> converter = IndexValues.converter(valueFactory);
         Serializer<T> serializer = (Serializer<T>)serializers.serializerFor(type.getValueClass());
-        return new LocalDuplicateIndex<T>("myIndex", "myWorkspace", db, converter, serializer, comparator);
+        return new LocalDuplicateIndex<T>(name, "myWorkspace", db, converter, serializer, comparator, executor);
     }
 
     public <T> void assertNoMatch( LocalUniqueIndex<T> index,
@@ -193,6 +207,20 @@ public abstract class AbstractLocalIndexTest {
         return constraints(new Comparison(dynOp, op, statOp));
     }
 
+    protected long estimate( LocalIndex<?> index,
+                             Operator op,
+                             Object literalValue ) {
+        return index.estimateCardinality(constraints(propertyName, op, literalValue).getConstraints().iterator().next(),
+                                         Collections.<String, Object>emptyMap());
+    }
+
+    protected void assertEstimate( long actual,
+                                   long expected,
+                                   long tolerance ) {
+        assertTrue("Estimate " + actual + " is not within " + tolerance + " of " + expected,
+                   Math.abs(actual - expected) <= tolerance);
+    }
+
     protected IndexConstraints constraints( final Constraint comparison ) {
         return new IndexConstraints() {
             @Override
@@ -0,0 +1,214 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapdb.DBMaker;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetAdapter.NodeTypePredicate;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.index.local.IndexChangeAdapters.LocalIndexChangeAdapter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+
+public class GroupCommitTest extends AbstractLocalIndexTest {
+
+    private static final String WORKSPACE = "myWorkspace";
+    private static final String INDEX_ID = "myIndex/" + WORKSPACE;
+    private static final String OTHER_INDEX_ID = "otherIndex/" + WORKSPACE;
+    private static final NodeTypePredicate ALL_NODES = new NodeTypePredicate() {
+        @Override
+        public boolean matchesType( Name primaryType,
+                                    Set<Name> mixinTypes ) {
+            return true;
+        }
+
+        @Override
+        public boolean isQueryable( Name primaryType,
+                                    Set<Name> mixinTypes ) {
+            return true;
+        }
+    };
+
+    private File directory;
+    private File logFile;
+    private GroupCommit groupCommit;
+    private LocalDuplicateIndex<String> index;
+    private LocalIndexChangeAdapter adapter;
+    private LocalDuplicateIndex<String> otherIndex;
+    private LocalIndexChangeAdapter otherAdapter;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        directory = new File("target/group-commit-test");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        logFile = new File(directory, "indexes.log");
+    }
+
+    @After
+    public void afterEach() {
+        if (!db.isClosed()) db.close();
+    }
+
+    @Test
+    public void shouldCommitOnceTheMaximumNumberOfChangeSetsHaveBeenApplied() throws Exception {
+        open(2);
+        adapter.notify(nodeCreated(1, "a"));
+        assertThat(logFile.length() > 0L, is(true));
+        adapter.notify(nodeCreated(2, "b"));
+        assertThat(logFile.length(), is(0L));
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+        assertMatch(index, Operator.EQUAL_TO, "b", 2);
+    }
+
+    @Test
+    public void shouldReplayUncommittedChangeSetsAfterCrash() throws Exception {
+        open(100);
+        // New indexes are populated from the workspace content, so make sure the index already exists ...
+        db.commit();
+        adapter.notify(nodeCreated(1, "a"));
+        adapter.notify(nodeCreated(2, "b"));
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+
+        // Stop without committing the database ...
+        db.close();
+
+        open(100);
+        assertNoMatch(index, Operator.EQUAL_TO, "a");
+        groupCommit.replay(INDEX_ID, index.isNew(), adapter);
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+        assertMatch(index, Operator.EQUAL_TO, "b", 2);
+
+        // Change a value and commit, and then make sure the change set is not replayed a second time ...
+        adapter.notify(propertyChanged(1, "a", "c"));
+        groupCommit.commit();
+        db.close();
+
+        open(100);
+        groupCommit.replay(INDEX_ID, index.isNew(), adapter);
+        assertNoMatch(index, Operator.EQUAL_TO, "a");
+        assertMatch(index, Operator.EQUAL_TO, "c", 1);
+    }
+
+    @Test
+    public void shouldReplayChangeSetsOnlyIntoIndexesThatHaveNotCommittedThem() throws Exception {
+        open(100);
+        db.commit();
+        // One index applies and commits the change set before the other index sees it ...
+        ChangeSet changeSet = nodeCreated(1, "a");
+        adapter.notify(changeSet);
+        groupCommit.commit();
+        otherAdapter.notify(changeSet);
+        assertMatch(otherIndex, Operator.EQUAL_TO, "a", 1);
+
+        // Stop without committing the database ...
+        db.close();
+
+        open(100);
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+        assertNoMatch(otherIndex, Operator.EQUAL_TO, "a");
+        groupCommit.replay(INDEX_ID, index.isNew(), adapter);
+        groupCommit.replay(OTHER_INDEX_ID, otherIndex.isNew(), otherAdapter);
+        // The first index must not get a second entry for the node ...
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+        assertMatch(otherIndex, Operator.EQUAL_TO, "a", 1);
+    }
+
+    @Test
+    public void shouldNotReplayChangeSetsAfterCleanShutdown() throws Exception {
+        open(100);
+        adapter.notify(nodeCreated(1, "a"));
+        groupCommit.shutdown();
+        assertThat(logFile.exists(), is(false));
+        db.close();
+
+        open(100);
+        groupCommit.replay(INDEX_ID, index.isNew(), adapter);
+        assertMatch(index, Operator.EQUAL_TO, "a", 1);
+    }
+
+    private void open( int maxChangeSets ) throws Exception {
+        db = DBMaker.newFileDB(new File(directory, "indexes.db")).make();
+        groupCommit = new GroupCommit(db, logFile, maxChangeSets);
+        index = duplicateValueIndex(String.class);
+        adapter = (LocalIndexChangeAdapter)IndexChangeAdapters.forSingleValuedProperty(context, ALL_NODES, WORKSPACE,
+                                                                                      name(propertyName),
+                                                                                      context.getValueFactories()
+                                                                                             .getStringFactory(), index);
+        adapter.useGroupCommit(groupCommit, INDEX_ID);
+        otherIndex = duplicateValueIndex("otherIndex", String.class);
+        otherAdapter = (LocalIndexChangeAdapter)IndexChangeAdapters.forSingleValuedProperty(context, ALL_NODES, WORKSPACE,
+                                                                                           name(propertyName),
+                                                                                           context.getValueFactories()
+                                                                                                  .getStringFactory(),
+                                                                                           otherIndex);
+        otherAdapter.useGroupCommit(groupCommit, OTHER_INDEX_ID);
+    }
+
+    private ChangeSet nodeCreated( int id,
+                                   String value ) {
+        RecordingChanges changes = changes();
+        NodeKey key = new NodeKey(key(id));
+        Path path = context.getValueFactories().getPathFactory().create("/node" + id);
+        Property property = property(value);
+        changes.nodeCreated(key, new NodeKey(key("root")), path, name("nt:unstructured"), Collections.<Name>emptySet(),
+                            Collections.singletonMap(property.getName(), property));
+        // Properties on new nodes are also recorded as added properties ...
+        changes.propertyAdded(key, name("nt:unstructured"), Collections.<Name>emptySet(), path, property);
+        return freeze(changes);
+    }
+
+    private ChangeSet propertyChanged( int id,
+                                       String oldValue,
+                                       String newValue ) {
+        RecordingChanges changes = changes();
+        changes.propertyChanged(new NodeKey(key(id)), name("nt:unstructured"), Collections.<Name>emptySet(),
+                                context.getValueFactories().getPathFactory().create("/node" + id), property(newValue),
+                                property(oldValue));
+        return freeze(changes);
+    }
+
+    private RecordingChanges changes() {
+        return new RecordingChanges("session", context.getProcessId(), "repository", WORKSPACE, "journal");
+    }
+
+    private ChangeSet freeze( RecordingChanges changes ) {
+        changes.freeze("user", null, context.getValueFactories().getDateFactory().create());
+        return changes;
+    }
+
+    private Property property( String value ) {
+        return context.getPropertyFactory().create(name(propertyName), value);
+    }
+
+    private Name name( String name ) {
+        return context.getValueFactories().getNameFactory().create(name);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import org.junit.Test;
+import org.mapdb.Serializer;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.index.local.MapDB.CompositeKey;
+import org.modeshape.jcr.query.model.And;
+import org.modeshape.jcr.query.model.Between;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.Constraint;
+import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.spi.index.ResultWriter;
+import org.modeshape.jcr.spi.index.provider.Filter;
+import org.modeshape.jcr.value.PropertyType;
+
+public class LocalCompositeIndexTest extends AbstractLocalIndexTest {
+
+    private static final String CATEGORY = "category";
+    private static final String PRICE = "price";
+
+    @Test
+    public void shouldFindNodesWithEqualityOnPrefixAndRangeOnNextColumn() {
+        LocalCompositeIndex index = categoryAndPriceIndex();
+        loadIndex(index);
+        assertThat(index.estimateTotalCount(), is(5L));
+
+        // Results are returned in the order of the columns ...
+        assertMatch(index, compare(CATEGORY, Operator.EQUAL_TO, "books"), 1, 2, 3);
+        assertMatch(index, compare(CATEGORY, Operator.EQUAL_TO, "music"), 5, 4);
+        assertMatch(index, compare(CATEGORY, Operator.GREATER_THAN, "books"), 5, 4);
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "books"), compare(PRICE, Operator.EQUAL_TO, 20L)), 2);
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "books"), compare(PRICE, Operator.GREATER_THAN, 10L)), 2, 3);
+        assertMatch(index,
+                    and(compare(CATEGORY, Operator.EQUAL_TO, "books"),
+                        and(compare(PRICE, Operator.GREATER_THAN_OR_EQUAL_TO, 10L), compare(PRICE, Operator.LESS_THAN, 30L))),
+                    1, 2);
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "books"), between(PRICE, 15L, 30L)), 2, 3);
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "books"), compare(PRICE, Operator.LESS_THAN, 10L)));
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "games"), compare(PRICE, Operator.EQUAL_TO, 10L)));
+
+        // A constraint on a column that doesn't follow the constrained prefix is left for the query to evaluate ...
+        assertMatch(index, compare(PRICE, Operator.EQUAL_TO, 10L), 1, 2, 3, 5, 4);
+    }
+
+    @Test
+    public void shouldReplaceEntriesWhenColumnValuesChange() {
+        LocalCompositeIndex index = categoryAndPriceIndex();
+        loadIndex(index);
+
+        index.remove(key(2));
+        index.add(key(2), new CompositeKey("music", 20L));
+        assertThat(index.estimateTotalCount(), is(5L));
+        assertMatch(index, compare(CATEGORY, Operator.EQUAL_TO, "books"), 1, 3);
+        assertMatch(index, compare(CATEGORY, Operator.EQUAL_TO, "music"), 5, 4, 2);
+
+        index.remove(key(4));
+        assertMatch(index, compare(CATEGORY, Operator.EQUAL_TO, "music"), 5, 2);
+        assertThat(index.keysFor(key(4)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldKeepValuesOfNodesWithoutValueForFirstColumn() {
+        LocalCompositeIndex index = categoryAndPriceIndex();
+        loadIndex(index);
+        assertThat(index.keysFor(key(6)), is(Arrays.asList(new CompositeKey(null, 10L))));
+
+        // Once the first column has a value, the node can be found ...
+        index.remove(key(6));
+        index.add(key(6), new CompositeKey("books", 10L));
+        assertMatch(index, and(compare(CATEGORY, Operator.EQUAL_TO, "books"), compare(PRICE, Operator.EQUAL_TO, 10L)), 1, 6);
+    }
+
+    @Test
+    public void shouldFindNodesByAnyOfTheirValuesAndReturnEachNodeOnce() {
+        LocalCompositeIndex index = categoryAndPriceIndex();
+        loadIndex(index);
+
+        // A node with multiple values has an entry for each combination of the values ...
+        index.add(key(7), new CompositeKey("games", 25L));
+        index.add(key(7), new CompositeKey("games", 35L));
+        index.add(key(7), new CompositeKey("toys", 25L));
+        index.add(key(7), new CompositeKey("toys", 35L));
+        assertThat(index.keysFor(key(7)).size(), is(4));
+
+        assertResults(index, compare(CATEGORY, Operator.EQUAL_TO, "toys"), 7);
+        assertResults(index, and(compare(CATEGORY, Operator.EQUAL_TO, "games"), compare(PRICE, Operator.EQUAL_TO, 35L)), 7);
+        assertResults(index, compare(CATEGORY, Operator.GREATER_THAN, "books"), 7, 5, 4);
+
+        index.remove(key(7));
+        assertThat(index.keysFor(key(7)).isEmpty(), is(true));
+        assertResults(index, compare(CATEGORY, Operator.GREATER_THAN, "books"), 5, 4);
+    }
+
+    protected LocalCompositeIndex categoryAndPriceIndex() {
+        PropertyType[] types = {PropertyType.STRING, PropertyType.LONG};
+        Converter<?>[] converters = new Converter<?>[types.length];
+        Comparator<?>[] comparators = new Comparator<?>[types.length];
+        Serializer<?>[] columnSerializers = new Serializer<?>[types.length];
+        for (int i = 0; i != types.length; ++i) {
+            converters[i] = IndexValues.converter(context.getValueFactories().getValueFactory(types[i]));
+            comparators[i] = types[i].getComparator();
+            columnSerializers[i] = serializers.serializerFor(types[i].getValueClass());
+        }
+        return LocalCompositeIndex.create("myIndex", "myWorkspace", db, Arrays.asList(CATEGORY, PRICE), converters,
+                                          comparators, columnSerializers);
+    }
+
+    protected void loadIndex( LocalCompositeIndex index ) {
+        index.add(key(1), new CompositeKey("books", 10L));
+        index.add(key(2), new CompositeKey("books", 20L));
+        index.add(key(3), new CompositeKey("books", 30L));
+        index.add(key(4), new CompositeKey("music", 15L));
+        index.add(key(5), new CompositeKey("music", 5L));
+        // This node has no category, so it can't be found ...
+        index.add(key(6), new CompositeKey(null, 10L));
+    }
+
+    protected Constraint compare( String propertyName,
+                                  Operator op,
+                                  Object value ) {
+        return new Comparison(new PropertyValue(selector(), propertyName), op, new Literal(value));
+    }
+
+    protected Constraint between( String propertyName,
+                                  Object lower,
+                                  Object upper ) {
+        return new Between(new PropertyValue(selector(), propertyName), new Literal(lower), new Literal(upper));
+    }
+
+    protected Constraint and( Constraint left,
+                              Constraint right ) {
+        return new And(left, right);
+    }
+
+    protected void assertMatch( LocalCompositeIndex index,
+                                Constraint constraint,
+                                int... keys ) {
+        assertResults(index, constraint, keys);
+        assertThat(index.estimateCardinality(constraint, Collections.<String, Object>emptyMap()), is((long)keys.length));
+    }
+
+    protected void assertResults( LocalCompositeIndex index,
+                                  Constraint constraint,
+                                  int... keys ) {
+        LinkedList<String> expectedValues = keyList(keys);
+        Filter.Results results = index.filter(constraints(constraint));
+        ResultWriter writer = verify(expectedValues);
+        for (;;) {
+            if (!results.getNextBatch(writer, Integer.MAX_VALUE)) break;
+        }
+        assertTrue("Not all expected values were found in results: " + expectedValues, expectedValues.isEmpty());
+    }
+}
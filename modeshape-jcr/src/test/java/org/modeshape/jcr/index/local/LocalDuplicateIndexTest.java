@@ -144,4 +144,29 @@ public class LocalDuplicateIndexTest extends AbstractLocalIndexTest {
         assertNoMatch(index, Operator.EQUAL_TO, 30L);
         assertThat(index.estimateTotalCount(), is(8L));
     }
+
+    @Test
+    public void shouldEstimateCardinalityOfSkewedValuesFromStatistics() {
+        LocalDuplicateIndex<Long> index = duplicateValueIndex(Long.class);
+        // Half of the nodes have the same value, and the others all have different values ...
+        for (int i = 1; i <= 2000; ++i) {
+            index.add(key(i), i % 2 == 0 ? 0L : (long)i);
+        }
+        assertThat(estimate(index, Operator.EQUAL_TO, 0L), is(1000L));
+        assertThat(estimate(index, Operator.NOT_EQUAL_TO, 0L), is(1000L));
+        assertThat(estimate(index, Operator.EQUAL_TO, 501L), is(1L));
+        assertEstimate(estimate(index, Operator.GREATER_THAN, 1000L), 500L, 32L);
+        assertEstimate(estimate(index, Operator.LESS_THAN_OR_EQUAL_TO, 1000L), 1500L, 32L);
+
+        // The statistics are maintained as values are added and removed ...
+        for (int i = 2001; i <= 3000; ++i) {
+            index.add(key(i), 0L);
+        }
+        for (int i = 1; i <= 1000; i += 2) {
+            index.remove(key(i));
+        }
+        assertThat(estimate(index, Operator.EQUAL_TO, 0L), is(2000L));
+        assertEstimate(estimate(index, Operator.GREATER_THAN, 1000L), 500L, 48L);
+        assertEstimate(estimate(index, Operator.LESS_THAN, 1000L), 2000L, 48L);
+    }
 }
@@ -19,6 +19,9 @@ package org.modeshape.jcr.index.local;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import org.junit.Test;
 import org.modeshape.jcr.api.query.qom.Operator;
 
@@ -143,4 +146,64 @@ public class LocalUniqueIndexTest extends AbstractLocalIndexTest {
         assertNoMatch(index, Operator.EQUAL_TO, 30L);
         assertThat(index.estimateTotalCount(), is(8L));
     }
+
+    @Test
+    public void shouldEstimateCardinalityOfRangesFromStatistics() {
+        LocalUniqueIndex<Long> index = uniqueValueIndex(Long.class);
+        loadLongIndex(index, 1000);
+        assertThat(estimate(index, Operator.EQUAL_TO, 50L), is(1L));
+        assertEstimate(estimate(index, Operator.LESS_THAN, 5000L), 499L, 16L);
+        assertEstimate(estimate(index, Operator.GREATER_THAN_OR_EQUAL_TO, 2500L), 751L, 16L);
+        assertThat(estimate(index, Operator.GREATER_THAN, 10000L), is(0L));
+
+        // Remove the lower half of the values ...
+        for (int i = 1; i <= 500; ++i) {
+            index.remove(key(i));
+        }
+        assertEstimate(estimate(index, Operator.LESS_THAN, 5000L), 0L, 16L);
+        assertEstimate(estimate(index, Operator.GREATER_THAN_OR_EQUAL_TO, 2500L), 500L, 16L);
+    }
+
+    @Test
+    public void shouldUseStatisticsStoredWithIndexWhenReopened() {
+        LocalUniqueIndex<Long> index = uniqueValueIndex(Long.class);
+        loadLongIndex(index, 1000);
+        index.shutdown(false);
+
+        // Reopen the index, which should not need to scan the entries ...
+        final List<Runnable> rebuilds = new ArrayList<>();
+        executor = new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                rebuilds.add(command);
+            }
+        };
+        index = uniqueValueIndex(Long.class);
+        assertThat(index.isNew(), is(false));
+        assertThat(estimate(index, Operator.EQUAL_TO, 50L), is(1L));
+        assertEstimate(estimate(index, Operator.LESS_THAN, 5000L), 499L, 16L);
+        assertThat(rebuilds.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldRebuildStatisticsInBackgroundWhileUsingExistingStatistics() {
+        final List<Runnable> rebuilds = new ArrayList<>();
+        executor = new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                rebuilds.add(command);
+            }
+        };
+        LocalUniqueIndex<Long> index = uniqueValueIndex(Long.class);
+        loadLongIndex(index, 1000);
+
+        // Only one rebuild is requested, and the estimates come from the incrementally-maintained statistics meanwhile ...
+        assertThat(rebuilds.size(), is(1));
+        assertThat(estimate(index, Operator.GREATER_THAN, 10000L), is(0L));
+        assertThat(estimate(index, Operator.GREATER_THAN_OR_EQUAL_TO, 10L), is(1000L));
+
+        rebuilds.remove(0).run();
+        assertEstimate(estimate(index, Operator.LESS_THAN, 5000L), 499L, 16L);
+        assertEstimate(estimate(index, Operator.GREATER_THAN_OR_EQUAL_TO, 2500L), 751L, 16L);
+    }
 }
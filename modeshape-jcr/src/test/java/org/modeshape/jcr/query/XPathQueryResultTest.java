@@ -55,7 +55,8 @@ public class XPathQueryResultTest {
         when(graphResult.getRows()).thenReturn(NodeSequence.emptySequence(1));
 
         PlanHints hints = new PlanHints();
-        result = new XPathQueryResult(context, query, graphResult, hints.restartable, hints.rowsKeptInMemory);
+        result = new XPathQueryResult(context, query, graphResult, hints.restartable, hints.rowsKeptInMemory,
+                                      hints.computeResultSize);
     }
 
     @Test
@@ -59,6 +59,20 @@ public class RestartableSequenceTest extends AbstractNodeSequenceTest {
         assertSameOrder(restartable, allNodes(), true);
     }
 
+    @Test
+    public void shouldOnlyReturnRowCountOnceAllRowsAreLoadedIfNotComputingRowCount() {
+        int numRowsInMemory = 4;
+        int numRowsInBatch = 4;
+        NodeSequence batches = allNodes(1.0f, numRowsInBatch);
+        RestartableSequence restartable = new RestartableSequence(workspaceName(), batches, bufferMgr, cache, numRowsInMemory,
+                                                                  false);
+        assertThat(restartable.getRowCount(), is(-1L));
+        assertSameOrder(restartable, allNodes(), false);
+        assertThat(restartable.getRowCount(), is(countRows(allNodes())));
+        restartable.restart();
+        assertSameOrder(restartable, allNodes(), true);
+    }
+
     protected void assertSameOrder( NodeSequence sequence,
                                     NodeSequence expected,
                                     boolean closeRestartable ) {
@@ -123,6 +123,55 @@ public class SortingSequenceTest extends AbstractNodeSequenceTest {
         assertSorted(sorted, extractor);
     }
 
+    @Test
+    public void shouldKeepOnlyFirstRowsOfSortedSequence() {
+        boolean useHeap = true;
+        boolean pack = false;
+        boolean allowDups = true;
+        long maxRows = 5L;
+        ExtractFromRow extractor = RowExtractors.extractPath(0, cache, types);
+        SortingSequence sorted = new SortingSequence(workspaceName(), allNodes(), extractor, bufferMgr, cache, pack, useHeap,
+                                                     allowDups, NullOrder.NULLS_LAST, maxRows);
+        assertThat(sorted.getRowCount(), is(maxRows));
+        List<Object> firstValues = sortedValues(new SortingSequence(workspaceName(), allNodes(), extractor, bufferMgr, cache,
+                                                                    pack, useHeap, allowDups, NullOrder.NULLS_LAST));
+        assertThat(sortedValues(sorted), is(firstValues.subList(0, (int)maxRows)));
+    }
+
+    @Test
+    public void shouldKeepOnlyFirstRowsOfSortedSequenceWithNullSortValues() {
+        boolean useHeap = true;
+        boolean pack = false;
+        boolean allowDups = true;
+        ExtractFromRow extractor = RowExtractors.extractPropertyValue(name("propC"), 0, cache, types.getStringFactory());
+        for (NullOrder nullOrder : NullOrder.values()) {
+            List<Object> allValues = sortedValues(new SortingSequence(workspaceName(), allNodes(), extractor, bufferMgr, cache,
+                                                                      pack, useHeap, allowDups, nullOrder));
+            for (int maxRows = 1; maxRows <= allValues.size() + 1; ++maxRows) {
+                SortingSequence sorted = new SortingSequence(workspaceName(), allNodes(), extractor, bufferMgr, cache, pack,
+                                                             useHeap, allowDups, nullOrder, maxRows);
+                assertThat(sortedValues(sorted), is(allValues.subList(0, Math.min(maxRows, allValues.size()))));
+            }
+        }
+    }
+
+    protected List<Object> sortedValues( NodeSequence sequence ) {
+        ExtractFromRow extractor = ((SortingSequence)sequence).extractor;
+        List<Object> values = new ArrayList<Object>();
+        try {
+            Batch batch = null;
+            while ((batch = sequence.nextBatch()) != null) {
+                while (batch.hasNext()) {
+                    batch.nextRow();
+                    values.add(extractor.getValueInRow(batch));
+                }
+            }
+        } finally {
+            sequence.close();
+        }
+        return values;
+    }
+
     protected void assertSorted( NodeSequence sequence,
                                  ExtractFromRow extractor ) {
         List<Object> values = new ArrayList<Object>();
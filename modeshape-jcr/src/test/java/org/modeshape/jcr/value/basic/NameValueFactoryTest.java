@@ -176,6 +176,16 @@ public class NameValueFactoryTest extends BaseValueFactoryTest {
         assertThat(name.getString(NO_OP_ENCODER), is("{http://www.modeshape.org/namespace}"));
     }
 
+    @Test
+    public void shouldReturnInternedNames() {
+        name = nameFactory.create("dna:something");
+        assertThat(nameFactory.create("dna:something") == name, is(true));
+        assertThat(nameFactory.create("{http://www.modeshape.org/namespace}something") == name, is(true));
+        assertThat(nameFactory.create("http://www.modeshape.org/namespace", "something") == name, is(true));
+        assertThat(NameTable.shared().intern(new BasicName("http://www.modeshape.org/namespace", "something")) == name, is(true));
+        assertThat(nameFactory.create("dna:somethingElse") == name, is(false));
+    }
+
     @Ignore
     @Test
     public void shouldCreateFromNonEncodedString() {
@@ -136,6 +136,26 @@ public class PathValueFactoryTest extends BaseValueFactoryTest {
         assertThat(splits, is(correctSplits));
     }
 
+    @Test
+    public void shouldReuseParsedPathsUntilNamespacePrefixIsRemapped() {
+        path = factory.create("/a/dna:b/c");
+        assertThat(factory.create("/a/dna:b/c") == path, is(true));
+        assertThat(factory.create(" /a/dna:b/c ") == path, is(false));
+
+        // Change the namespace for the prefix, and the path should be parsed again ...
+        registry.register("dna", "http://www.modeshape.org/other");
+        path2 = factory.create("/a/dna:b/c");
+        assertThat(path2 == path, is(false));
+        assertThat(path2.getSegment(1).getName().getNamespaceUri(), is("http://www.modeshape.org/other"));
+        assertThat(factory.create("/a/dna:b/c") == path2, is(true));
+
+        // Also change the default namespace ...
+        registry.register("", "http://www.modeshape.org/default");
+        path = factory.create("/a/dna:b/c");
+        assertThat(path == path2, is(false));
+        assertThat(path.getSegment(0).getName().getNamespaceUri(), is("http://www.modeshape.org/default"));
+    }
+
     @Test( expected = ValueFormatException.class )
     public void shouldThrowValueFormatExceptionOnMalformedName() {
         factory.splitPath("/jcr:foo/{foobar");
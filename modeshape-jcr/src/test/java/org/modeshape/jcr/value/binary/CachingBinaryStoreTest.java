@@ -0,0 +1,246 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * Unit test for {@link CachingBinaryStore}
+ */
+public class CachingBinaryStoreTest extends AbstractBinaryStoreTest {
+
+    private static final int MIN_BINARY_SIZE = 20;
+    private static final Random RANDOM = new Random();
+
+    private File directory;
+    private File cacheDirectory;
+    private FileSystemBinaryStore cachedStore;
+    private CachingBinaryStore store;
+
+    @Before
+    public void beforeEach() {
+        directory = new File("target/cachedfsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        cacheDirectory = new File("target/cachingbs/");
+        FileUtil.delete(cacheDirectory);
+        cachedStore = new FileSystemBinaryStore(directory);
+        store = newStore(AbstractBinaryStore.DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES * 10, false);
+    }
+
+    @After
+    public void afterEach() {
+        store.shutdown();
+        FileUtil.delete(directory);
+        FileUtil.delete(cacheDirectory);
+    }
+
+    @Override
+    protected BinaryStore getBinaryStore() {
+        return store;
+    }
+
+    protected CachingBinaryStore newStore( long maxCacheSizeInBytes,
+                                           boolean writeBack ) {
+        CachingBinaryStore store = new CachingBinaryStore(cachedStore, cacheDirectory, maxCacheSizeInBytes, writeBack);
+        store.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        store.start();
+        return store;
+    }
+
+    @Override
+    @Test( expected = BinaryStoreException.class )
+    public void shouldStoreZeroLengthBinary() throws BinaryStoreException, IOException {
+        // the file system binary store will not store a 0 byte size content
+        super.shouldStoreZeroLengthBinary();
+    }
+
+    @Test
+    public void shouldServeStoredValuesFromTheLocalDisk() throws Exception {
+        byte[] content = randomContent(1024);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        assertTrue(cachedStore.hasBinary(value.getKey()));
+
+        assertArrayEquals(content, read(value.getKey()));
+        assertArrayEquals(content, read(value.getKey()));
+        assertThat(store.getHitCount(), is(2L));
+        assertThat(store.getMissCount(), is(0L));
+        assertThat(store.getBytesServedLocally(), is(2L * content.length));
+        assertThat(store.getBytesServedRemotely(), is(0L));
+        assertThat(store.getHitRatio(), is(1.0d));
+    }
+
+    @Test
+    public void shouldCacheValuesReadFromTheCachedStore() throws Exception {
+        byte[] content = randomContent(1024);
+        BinaryKey key = cachedStore.storeValue(new ByteArrayInputStream(content), false).getKey();
+
+        assertArrayEquals(content, read(key));
+        assertThat(store.getMissCount(), is(1L));
+        assertThat(store.getBytesServedRemotely(), is((long)content.length));
+        assertThat(store.getCacheSizeInBytes(), is((long)content.length));
+
+        assertArrayEquals(content, read(key));
+        assertThat(store.getHitCount(), is(1L));
+        assertThat(store.getBytesServedLocally(), is((long)content.length));
+        assertThat(store.getHitRatio(), is(0.5d));
+    }
+
+    @Test
+    public void shouldNotCacheValuesThatAreOnlyPartiallyRead() throws Exception {
+        byte[] content = randomContent(1024);
+        BinaryKey key = cachedStore.storeValue(new ByteArrayInputStream(content), false).getKey();
+
+        try (InputStream stream = store.getInputStream(key)) {
+            assertThat(stream.read(new byte[10]), is(10));
+        }
+        assertThat(store.getCacheSizeInBytes(), is(0L));
+        assertArrayEquals(content, read(key));
+        assertThat(store.getMissCount(), is(2L));
+        assertThat(store.getCacheSizeInBytes(), is((long)content.length));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedValues() throws Exception {
+        store.shutdown();
+        store = newStore(2500, false);
+        BinaryKey first = store.storeValue(new ByteArrayInputStream(randomContent(1000)), false).getKey();
+        BinaryKey second = store.storeValue(new ByteArrayInputStream(randomContent(1000)), false).getKey();
+        // Use the first one, so that the second is the least-recently used ...
+        read(first);
+        BinaryKey third = store.storeValue(new ByteArrayInputStream(randomContent(1000)), false).getKey();
+        assertThat(store.getCacheSizeInBytes(), is(2000L));
+
+        read(first);
+        read(third);
+        assertThat(store.getHitCount(), is(3L));
+        read(second);
+        assertThat(store.getMissCount(), is(1L));
+        assertTrue(store.getCacheSizeInBytes() <= 2500L);
+    }
+
+    @Test
+    public void shouldNotCacheValuesLargerThanTheCache() throws Exception {
+        store.shutdown();
+        store = newStore(500, false);
+        byte[] content = randomContent(1000);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        assertThat(store.getCacheSizeInBytes(), is(0L));
+        assertArrayEquals(content, read(key));
+        assertThat(store.getCacheSizeInBytes(), is(0L));
+        assertThat(store.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void shouldReuseCachedValuesAfterRestart() throws Exception {
+        byte[] content = randomContent(1024);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        store.shutdown();
+
+        store = newStore(AbstractBinaryStore.DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES * 10, false);
+        assertThat(store.getCacheSizeInBytes(), is((long)content.length));
+        assertArrayEquals(content, read(key));
+        assertThat(store.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldCopyValuesToTheCachedStoreInTheBackground() throws Exception {
+        store.shutdown();
+        store = newStore(AbstractBinaryStore.DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES * 10, true);
+        byte[] content = randomContent(1024);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), true).getKey();
+        assertTrue(store.hasBinary(key));
+        assertArrayEquals(content, read(key));
+
+        // Marking the value as used waits for the copy ...
+        store.markAsUsed(Arrays.asList(key));
+        assertTrue(cachedStore.hasBinary(key));
+        assertArrayEquals(content, IoUtil.readBytes(cachedStore.getInputStream(key)));
+        assertThat(store.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldStoreValuesImmediatelyInWriteBackModeWhenTheyCannotBeCached() throws Exception {
+        store.shutdown();
+        store = newStore(AbstractBinaryStore.DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES * 10, true);
+        byte[] content = randomContent(1024);
+        BinaryKey expectedKey = new BinaryKey(SecureHash.getHash(Algorithm.SHA_1, content));
+        // Prevent the local copy from being created by putting a file where its directory should be ...
+        File blocker = store.fileFor(expectedKey).getParentFile();
+        assertTrue(blocker.createNewFile());
+
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        assertThat(key, is(expectedKey));
+        assertThat(store.getCacheSizeInBytes(), is(0L));
+        assertTrue(cachedStore.hasBinary(key));
+        assertArrayEquals(content, IoUtil.readBytes(cachedStore.getInputStream(key)));
+        store.markAsUsed(Arrays.asList(key));
+    }
+
+    @Test
+    public void shouldRemoveCachedValuesRemovedFromTheCachedStore() throws Exception {
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(randomContent(1024)), true).getKey();
+        Thread.sleep(100);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        assertFalse(store.hasBinary(key));
+        assertThat(store.getCacheSizeInBytes(), is(0L));
+    }
+
+    @Test
+    public void shouldLoadCachedBinaryStoreFromConfiguration() throws Exception {
+        RepositoryConfiguration config = RepositoryConfiguration.read("config/cached-binary-storage.json");
+        BinaryStore configured = config.getBinaryStorage().getBinaryStore();
+        assertThat(configured, is(instanceOf(CachingBinaryStore.class)));
+        CachingBinaryStore caching = (CachingBinaryStore)configured;
+        assertThat(caching.getDelegate(), is(instanceOf(FileSystemBinaryStore.class)));
+        assertThat(caching.getMaxCacheSizeInBytes(), is(10485760L));
+        assertThat(caching.isWriteBack(), is(true));
+    }
+
+    private byte[] read( BinaryKey key ) throws Exception {
+        try (InputStream stream = store.getInputStream(key)) {
+            return IoUtil.readBytes(stream);
+        }
+    }
+
+    private static byte[] randomContent( int size ) {
+        byte[] content = new byte[size];
+        RANDOM.nextBytes(content);
+        return content;
+    }
+}
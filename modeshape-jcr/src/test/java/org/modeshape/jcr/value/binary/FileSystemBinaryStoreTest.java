@@ -58,7 +58,9 @@ import org.modeshape.common.util.IoUtil;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.jcr.api.Binary;
+import org.modeshape.jcr.mimetype.MimeTypeDetector;
 import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -120,6 +122,8 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
 
     @After
     public void afterClass() {
+        store.setCompression(null);
+        store.setMimeTypeDetector(null);
         FileUtil.delete(directory);
     }
 
@@ -210,6 +214,63 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         assertThat(countTrashFiles(), is(0));
     }
 
+    @Test
+    public void shouldCompressContentButKeepKeyAndSizeOfUncompressedContent() throws Exception {
+        store.setCompression(new BinaryCompression());
+        store.setMimeTypeDetector(mimeTypeDetector("text/plain"));
+        byte[] content = compressibleContent();
+        BinaryKey key = BinaryKey.keyFor(content);
+
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        assertThat(value.getKey(), is(key));
+        assertThat(value.getSize(), is((long)content.length));
+        assertThat(store.findFile(directory, key, false).length() < content.length / 4, is(true));
+        assertThat(IoUtil.readBytes(store.getInputStream(key)), is(content));
+        assertThat(store.getAllBinaryKeys(), is((Iterable<BinaryKey>)Collections.singleton(key)));
+
+        // The compressed values can still be read once compression is disabled ...
+        store.setCompression(null);
+        assertThat(IoUtil.readBytes(store.getInputStream(key)), is(content));
+    }
+
+    @Test
+    public void shouldNotCompressContentWithExcludedMimeType() throws Exception {
+        store.setCompression(new BinaryCompression());
+        store.setMimeTypeDetector(mimeTypeDetector("image/png"));
+        byte[] content = compressibleContent();
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        assertThat(store.findFile(directory, key, false).length(), is((long)content.length));
+        assertThat(IoUtil.readBytes(store.getInputStream(key)), is(content));
+    }
+
+    @Test
+    public void shouldRemoveCompressedValuesThatAreUnused() throws Exception {
+        store.setCompression(new BinaryCompression());
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(compressibleContent()), true).getKey();
+        Thread.sleep(1100L); // Sleep more than a second, since modified times may only be accurate to nearest second ...
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+        assertThat(store.hasBinary(key), is(false));
+        assertThat(countStoredFiles(), is(0));
+    }
+
+    private static byte[] compressibleContent() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i != 1000; ++i) {
+            content.append("<node name=\"node").append(i).append("\" type=\"nt:unstructured\"/>\n");
+        }
+        return content.toString().getBytes();
+    }
+
+    private static MimeTypeDetector mimeTypeDetector( final String mimeType ) {
+        return new MimeTypeDetector() {
+            @Override
+            public String mimeTypeOf( String name,
+                                      javax.jcr.Binary binaryValue ) {
+                return mimeType;
+            }
+        };
+    }
+
     @Test
     public void shouldStoreLargeFile() throws Exception {
         print = true;
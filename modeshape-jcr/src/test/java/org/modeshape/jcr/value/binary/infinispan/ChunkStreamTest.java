@@ -158,6 +158,41 @@ public class ChunkStreamTest {
         assertArrayEquals("Invalid data read from the stream", data, storedData);
     }
 
+    @Test
+    public void shouldStreamMultipleChunksWithParallelWritesAndReadAhead() throws Exception {
+        int smallChunkSize = 1024;
+        byte[] data = new byte[smallChunkSize * 20 + 17];
+        RANDOM.nextBytes(data);
+        BinaryKey dataKey = BinaryKey.keyFor(data);
+
+        ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey.toString(), smallChunkSize, 3);
+        IoUtil.write(new ByteArrayInputStream(data), chunkOutputStream, 700);
+        assertEquals(21, chunkOutputStream.chunksCount());
+
+        ChunkInputStream chunkInputStream = new ChunkInputStream(blobCache, dataKey.toString(), smallChunkSize, data.length, 4);
+        assertArrayEquals("Invalid data read from the stream", data, IoUtil.readBytes(chunkInputStream));
+    }
+
+    @Test
+    public void shouldCorrectlyReadAfterSkippingChunksWithReadAhead() throws Exception {
+        int smallChunkSize = 1024;
+        byte[] data = new byte[smallChunkSize * 10];
+        RANDOM.nextBytes(data);
+        BinaryKey dataKey = BinaryKey.keyFor(data);
+
+        ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey.toString(), smallChunkSize, 2);
+        IoUtil.write(new ByteArrayInputStream(data), chunkOutputStream);
+
+        ChunkInputStream chunkInputStream = new ChunkInputStream(blobCache, dataKey.toString(), smallChunkSize, data.length, 2);
+        assertEquals(data[0] & 0xff, chunkInputStream.read());
+        // skip past the chunks that have been read ahead
+        int skipped = smallChunkSize * 5;
+        assertEquals(skipped, chunkInputStream.skip(skipped));
+        byte[] expected = new byte[data.length - skipped - 1];
+        System.arraycopy(data, skipped + 1, expected, 0, expected.length);
+        assertArrayEquals("Invalid data read from the stream", expected, IoUtil.readBytes(chunkInputStream));
+    }
+
     @Test
     @FixFor( "MODE-1752" )
     public void shouldSkipMultipleChunks() throws Exception {
@@ -107,6 +107,14 @@ public interface SchematicDb extends Lifecycle {
      */
     void put( Document entryDocument );
 
+    /**
+     * Store each of the supplied documents and their metadata with a single cache operation.
+     *
+     * @param entryDocuments the documents that each contain the metadata document, content document, and key
+     * @see #put(Document)
+     */
+    void putAll( Collection<Document> entryDocuments );
+
     /**
      * Store the supplied document and metadata at the given key.
      * 
@@ -17,6 +17,8 @@
 package org.infinispan.schematic.internal;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
 import org.infinispan.context.Flag;
@@ -90,21 +92,32 @@ public class CacheSchematicDb implements SchematicDb {
 
     @Override
     public void put( Document entryDocument ) {
+        SchematicEntry newEntry = entryFor(entryDocument);
+        // use storeForWriting because we don't care about the return type - i.e. we're doing a local put
+        storeForWriting.put(newEntry.getMetadata().getString(FieldName.ID), newEntry);
+    }
+
+    @Override
+    public void putAll( Collection<Document> entryDocuments ) {
+        Map<String, SchematicEntry> newEntries = new HashMap<>(entryDocuments.size());
+        for (Document entryDocument : entryDocuments) {
+            SchematicEntry newEntry = entryFor(entryDocument);
+            newEntries.put(newEntry.getMetadata().getString(FieldName.ID), newEntry);
+        }
+        storeForWriting.putAll(newEntries);
+    }
+
+    private SchematicEntry entryFor( Document entryDocument ) {
         Document metadata = entryDocument.getDocument(FieldName.METADATA);
         Object content = entryDocument.get(FieldName.CONTENT);
-        if (metadata == null || content == null) {
+        if (metadata == null || !(content instanceof Document)) {
             throw new IllegalArgumentException("The supplied document is not of the required format");
         }
         String key = metadata.getString(FieldName.ID);
         if (key == null) {
             throw new IllegalArgumentException("The supplied document is not of the required format");
         }
-        SchematicEntry newEntry = null;
-        if (content instanceof Document) {
-            newEntry = new SchematicEntryLiteral(metadata, (Document)content);
-        }
-        // use storeForWriting because we don't care about the return type - i.e. we're doing a local put
-        storeForWriting.put(key, newEntry);
+        return new SchematicEntryLiteral(metadata, (Document)content);
     }
 
     @Override
@@ -15,6 +15,8 @@
  */
 package org.modeshape.sequencer.ddl;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,6 +30,7 @@ import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.text.ParsingException;
 import org.modeshape.common.text.Position;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.sequencer.ddl.dialect.derby.DerbyDdlParser;
 import org.modeshape.sequencer.ddl.dialect.oracle.OracleDdlParser;
@@ -168,6 +171,41 @@ public class DdlParsers {
         return astRoot;
     }
 
+    /**
+     * Parse the DDL read from the supplied reader using the specified parser. Parsers that extend {@link StandardDdlParser}
+     * tokenize the content lazily as it is read, so very large DDL content never has to be held in memory; other parsers are
+     * given the whole content.
+     * 
+     * @param ddl the reader for the DDL being parsed (cannot be <code>null</code>)
+     * @param parserId the identifier of the parser to use (cannot be <code>null</code> or empty)
+     * @return the root tree {@link AstNode}
+     * @throws ParsingException if there is an error parsing the supplied DDL content
+     * @throws IOException if there is an error reading the DDL content
+     */
+    public AstNode parseUsing( final Reader ddl,
+                               final String parserId ) throws ParsingException, IOException {
+        CheckArg.isNotNull(ddl, "ddl");
+        CheckArg.isNotEmpty(parserId, "parserId");
+
+        DdlParser parser = getParser(parserId);
+
+        if (parser == null) {
+            throw new ParsingException(Position.EMPTY_CONTENT_POSITION, DdlSequencerI18n.unknownParser.text(parserId));
+        }
+
+        // create DDL root node
+        AstNode astRoot = createDdlStatementsContainer(parserId);
+
+        // parse
+        if (parser instanceof StandardDdlParser) {
+            ((StandardDdlParser)parser).parse(ddl, astRoot);
+        } else {
+            parser.parse(IoUtil.read(ddl), astRoot, null);
+        }
+
+        return astRoot;
+    }
+
     /**
      * Parse the supplied DDL using multiple parsers, returning the result of each parser with its score in the order of highest
      * scoring to lowest scoring.
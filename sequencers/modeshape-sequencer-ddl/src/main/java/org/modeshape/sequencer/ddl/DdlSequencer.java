@@ -17,6 +17,7 @@ package org.modeshape.sequencer.ddl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
@@ -188,9 +189,15 @@ public class DdlSequencer extends Sequencer {
 
         // Perform the parsing
         final AstNode rootNode;
-        DdlParsers parsers = createParsers(getParserList());
+        List<DdlParser> parserList = getParserList();
+        DdlParsers parsers = createParsers(parserList);
         try (InputStream stream = ddlContent.getStream()) {
-            rootNode = parsers.parse(IoUtil.read(stream), fileName);
+            if (parserList.size() == 1) {
+                // There's no need to score the content, so it can be streamed through the only parser ...
+                rootNode = parsers.parseUsing(new InputStreamReader(stream), parserList.get(0).getId());
+            } else {
+                rootNode = parsers.parse(IoUtil.read(stream), fileName);
+            }
         } catch (ParsingException e) {
             LOGGER.error(e, DdlSequencerI18n.errorParsingDdlContent, e.getLocalizedMessage());
             return false;
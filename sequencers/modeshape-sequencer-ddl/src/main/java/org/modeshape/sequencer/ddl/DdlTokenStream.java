@@ -15,9 +15,12 @@
  */
 package org.modeshape.sequencer.ddl;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import org.modeshape.common.CommonI18n;
@@ -107,6 +110,70 @@ public class DdlTokenStream extends TokenStream {
         return reTypedTokens;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This re-types the streamed tokens in exactly the same way as {@link #initializeTokens(List)}, looking ahead only as many
+     * tokens as needed to match the registered statement start phrases.
+     * </p>
+     * 
+     * @see org.modeshape.common.text.TokenStream#initializeTokens(java.util.Iterator)
+     */
+    @Override
+    protected Iterator<Token> initializeTokens( final Iterator<Token> tokens ) {
+        return new Iterator<Token>() {
+            private final LinkedList<Token> lookahead = new LinkedList<Token>();
+            // the number of following tokens that are part of a statement start phrase and that are not re-typed
+            private int phraseRemainder = 0;
+
+            @Override
+            public boolean hasNext() {
+                return !lookahead.isEmpty() || tokens.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                Token token = lookahead.isEmpty() ? tokens.next() : lookahead.removeFirst();
+                if (phraseRemainder > 0) {
+                    --phraseRemainder;
+                    return token;
+                }
+                if (!isKeyWord(token.value())) return token;
+                Token retypedToken = token.withType(DdlTokenizer.KEYWORD);
+                for (String[] nextStmtStart : registeredStatementStartPhrases) {
+                    if (matchesPhrase(token, nextStmtStart)) {
+                        phraseRemainder = nextStmtStart.length - 1;
+                        return retypedToken.withType(DdlTokenizer.STATEMENT_KEY);
+                    }
+                }
+                return retypedToken;
+            }
+
+            private boolean matchesPhrase( Token first,
+                                           String[] phrase ) {
+                for (int j = 0; j < phrase.length; j++) {
+                    Token token = j == 0 ? first : lookahead(j - 1);
+                    if (token == null) return false;
+                    if (!phrase[j].equalsIgnoreCase(token.value()) && !phrase[j].equals(ANY_VALUE)) return false;
+                }
+                return true;
+            }
+
+            private Token lookahead( int index ) {
+                while (lookahead.size() <= index) {
+                    if (!tokens.hasNext()) return null;
+                    lookahead.add(tokens.next());
+                }
+                return lookahead.get(index);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     /**
      * @param content
      * @param tokenizer
@@ -118,6 +185,21 @@ public class DdlTokenStream extends TokenStream {
         super(content, tokenizer, caseSensitive);
     }
 
+    /**
+     * Create a DDL token stream that lazily tokenizes the content read from the supplied reader, so that very large DDL content
+     * does not need to be held in memory.
+     * 
+     * @param content the reader for the DDL content; may not be null
+     * @param tokenizer the tokenizer; may not be null
+     * @param caseSensitive true if matching should be case-sensitive, or false otherwise
+     * @see TokenStream#TokenStream(Reader, Tokenizer, boolean)
+     */
+    public DdlTokenStream( Reader content,
+                           Tokenizer tokenizer,
+                           boolean caseSensitive ) {
+        super(content, tokenizer, caseSensitive);
+    }
+
     /**
      * Register a phrase representing the start of a DDL statement
      * <p>
@@ -209,7 +291,8 @@ public class DdlTokenStream extends TokenStream {
         } else {
             currentMarkedPosition = null;
         }
-
+        // When streaming, make sure the content since the mark is kept for 'getMarkedContent()' ...
+        retainContentFrom(currentMarkedPosition);
     }
 
     /**
@@ -104,6 +104,7 @@ import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_TABLE_CONSTRAI
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_TABLE_REFERENCE;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.VALUE;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.WITH_GRANT_OPTION;
+import java.io.Reader;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -281,6 +282,44 @@ public class StandardDdlParser implements DdlParser, DdlConstants, DdlConstants.
             tokens.start();
         }
 
+        parseStatements(tokens, rootNode);
+    }
+
+    /**
+     * Parses the DDL content read from the supplied reader, adding child {@link AstNode}s and properties to the supplied root.
+     * Unlike {@link #parse(String, AstNode, Object)}, the content is lazily tokenized by a {@link DdlTokenStream#isStreaming()
+     * streaming} token stream, so that neither the whole DDL content nor all of its tokens need to be held in memory at once.
+     * 
+     * @param ddl the reader for the DDL content; may not be null
+     * @param rootNode the top level {@link AstNode}; may not be null
+     * @throws ParsingException if there is an error parsing the supplied DDL content
+     */
+    public void parse( Reader ddl,
+                       AstNode rootNode ) throws ParsingException {
+        CheckArg.isNotNull(ddl, "ddl");
+        CheckArg.isNotNull(rootNode, "rootNode");
+        problems.clear();
+        setRootNode(rootNode);
+
+        boolean includeComments = false;
+        // Always close the stream, so that its tokenizer thread stops even if parsing fails ...
+        try (DdlTokenStream tokens = new DdlTokenStream(ddl, DdlTokenStream.ddlTokenizer(includeComments), false)) {
+            initializeTokenStream(tokens);
+            tokens.start();
+
+            parseStatements(tokens, rootNode);
+        }
+    }
+
+    /**
+     * Parses all of the statements in the supplied (already started) token stream, adding child {@link AstNode}s to the root.
+     * 
+     * @param tokens the {@link DdlTokenStream} representing the tokenized DDL content; may not be null
+     * @param rootNode the top level {@link AstNode}; may not be null
+     * @throws ParsingException if there is an error parsing the supplied DDL content
+     */
+    protected void parseStatements( DdlTokenStream tokens,
+                                    AstNode rootNode ) throws ParsingException {
         testPrint("\n== >> StandardDdlParser.parse() PARSING STARTED: ");
 
         // Simply move to the next statement start (registered prior to tokenizing).
@@ -509,7 +548,20 @@ public class StandardDdlParser implements DdlParser, DdlConstants, DdlConstants.
         int deltaLength = ((String)secondNode.getProperty(DDL_EXPRESSION)).length();
         Position startPosition = new Position(firstStartIndex, 1, 0);
         Position endPosition = new Position((secondStartIndex + deltaLength), 1, 0);
-        String source = tokens.getContentBetween(startPosition, endPosition);
+        String source = null;
+        if (tokens.isStreaming()) {
+            // Only the most recent content is retained, so build on the first node's expression ...
+            String firstExpression = (String)firstNode.getProperty(DDL_EXPRESSION);
+            try {
+                Position firstEndPosition = new Position(firstStartIndex + firstExpression.length(), 1, 0);
+                source = firstExpression + tokens.getContentBetween(firstEndPosition, endPosition);
+            } catch (IllegalStateException e) {
+                // The content between the nodes is no longer available ...
+                source = firstExpression + SPACE + secondNode.getProperty(DDL_EXPRESSION);
+            }
+        } else {
+            source = tokens.getContentBetween(startPosition, endPosition);
+        }
         firstNode.setProperty(DDL_EXPRESSION, source);
         firstNode.setProperty(DDL_LENGTH, source.length());
     }
@@ -24,6 +24,7 @@ import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_CREATE_SCHEMA_
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_DROP_SCHEMA_STATEMENT;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_PROBLEM;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_UNKNOWN_STATEMENT;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
@@ -183,6 +184,25 @@ public class DdlParsersTest extends DdlParserTestHelper {
         assertThat("ORACLE", is((String)this.rootNode.getProperty(StandardDdlLexicon.PARSER_ID)));
     }
 
+    @Test
+    public void shouldParseHugeOracleFileFromReaderUsingOracleParser() throws Exception {
+        printTest("shouldParseHugeOracleFileFromReaderUsingOracleParser()");
+
+        final String content = getFileContent(DDL_TEST_FILE_PATH + "dialect/oracle/huge.ddl");
+        final AstNode expected = this.parsers.parseUsing(content, OracleDdlParser.ID);
+        this.rootNode = this.parsers.parseUsing(new StringReader(content), OracleDdlParser.ID);
+
+        assertThat(OracleDdlParser.ID, is((String)this.rootNode.getProperty(StandardDdlLexicon.PARSER_ID)));
+        assertThat(this.rootNode.getChildCount(), is(expected.getChildCount()));
+        for (int i = 0; i != expected.getChildCount(); ++i) {
+            AstNode expectedChild = expected.getChild(i);
+            AstNode child = this.rootNode.getChild(i);
+            assertThat(child.getName(), is(expectedChild.getName()));
+            assertThat(child.getProperty(StandardDdlLexicon.DDL_EXPRESSION),
+                       is(expectedChild.getProperty(StandardDdlLexicon.DDL_EXPRESSION)));
+        }
+    }
+
     @Test
     public void shouldReturnBuiltInParsers() {
         printTest("shouldReturnBuiltInParsers()");
@@ -16,9 +16,22 @@
 
 package org.modeshape.sequencer.zip;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import javax.jcr.Binary;
 import javax.jcr.NamespaceRegistry;
@@ -27,12 +40,19 @@ import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.api.nodetype.NodeTypeManager;
 import org.modeshape.jcr.api.sequencer.Sequencer;
 
 /**
  * A sequencer that processes and extract the files and folders from ZIP archive files.
+ * <p>
+ * The content of each file in the archive is streamed straight into the repository's binary store, so entries of any size can be
+ * sequenced without buffering them in memory. When {@link #setMaxParallelEntries(int) configured} to do so, the sequencer instead
+ * copies the archive to a local temporary file and stores the content of multiple entries concurrently.
+ * </p>
  * 
  * @author Horia Chiorean
  */
@@ -43,6 +63,27 @@ public class ZipSequencer extends Sequencer {
         public static final String ZIP = "application/zip";
     }
 
+    private int maxParallelEntries = 1;
+
+    /**
+     * @return the maximum number of archive entries whose content is stored concurrently; 1 or less means the entries are
+     *         sequenced one at a time as they are read from the archive
+     */
+    public int getMaxParallelEntries() {
+        return maxParallelEntries;
+    }
+
+    /**
+     * Sets the maximum number of archive entries whose content is stored concurrently. Values larger than 1 require a copy of the
+     * archive in a local temporary file, since the entries are then read with random access.
+     * 
+     * @param maxParallelEntries the maximum number of entries stored concurrently; 1 or less means that the archive is read and
+     *        sequenced one entry at a time
+     */
+    public void setMaxParallelEntries( int maxParallelEntries ) {
+        this.maxParallelEntries = maxParallelEntries;
+    }
+
     @Override
     public void initialize( NamespaceRegistry registry,
                             NodeTypeManager nodeTypeManager ) throws RepositoryException, IOException {
@@ -57,6 +98,10 @@ public class ZipSequencer extends Sequencer {
         Binary binaryValue = inputProperty.getBinary();
         CheckArg.isNotNull(binaryValue, "binary");
 
+        if (maxParallelEntries > 1) {
+            return executeInParallel(binaryValue, outputNode, context);
+        }
+
         try (ZipInputStream zipInputStream = new ZipInputStream(binaryValue.getStream())){
             ZipEntry entry = zipInputStream.getNextEntry();
             outputNode = createTopLevelNode(outputNode);
@@ -96,9 +141,15 @@ public class ZipSequencer extends Sequencer {
         // on session pre-save the appropriate properties should be set automatically
         contentNode.addMixin(JcrConstants.MIX_LAST_MODIFIED);
 
-        // set the content bytes
-        byte[] contentBytes = readContent(zipInputStream);
-        org.modeshape.jcr.api.Binary contentBinary = context.valueFactory().createBinary(contentBytes);
+        // stream the content of the entry into the binary store, making sure it doesn't close the zip stream
+        org.modeshape.jcr.api.Binary contentBinary = context.valueFactory().createBinary(new EntryInputStream(zipInputStream),
+                                                                                         null);
+        setFileContent(contentNode, entry, contentBinary);
+    }
+
+    private void setFileContent( Node contentNode,
+                                 ZipEntry entry,
+                                 org.modeshape.jcr.api.Binary contentBinary ) throws RepositoryException, IOException {
         contentNode.setProperty(JcrConstants.JCR_DATA, contentBinary);
 
         // Figure out the mime type ...
@@ -109,21 +160,78 @@ public class ZipSequencer extends Sequencer {
     }
 
     /**
-     * Reads the content from the {@link ZipInputStream}, making sure it doesn't close the stream.
+     * Sequences the archive by copying it to a temporary file and then storing the content of the entries concurrently. The nodes
+     * are still created (in the order of the entries) on the calling thread, since the session must not be used concurrently.
      * 
-     * @param zipInputStream the input stream
-     * @return the content
-     * @throws IOException if there is a problem reading the stream
+     * @param binaryValue the binary value of the archive
+     * @param outputNode the output node
+     * @param context the sequencing context
+     * @return true if the archive was sequenced
+     * @throws Exception if there is a problem reading the archive or storing the content of its entries
      */
-    private byte[] readContent( ZipInputStream zipInputStream ) throws IOException {
-        int bufferLength = 1024;
-        byte[] buffer = new byte[bufferLength];
-        int n;
-        ByteArrayOutputStream baout = new ByteArrayOutputStream();
-        while ((n = zipInputStream.read(buffer, 0, bufferLength)) > -1) {
-            baout.write(buffer, 0, n);
+    private boolean executeInParallel( Binary binaryValue,
+                                       Node outputNode,
+                                       final Context context ) throws Exception {
+        File tempFile = File.createTempFile("modeshape-zip-sequencer", ".zip");
+        ExecutorService executor = null;
+        try {
+            IoUtil.write(binaryValue.getStream(), new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try (final ZipFile zipFile = new ZipFile(tempFile)) {
+                executor = Executors.newFixedThreadPool(maxParallelEntries, new NamedThreadFactory("modeshape-zip-sequencer"));
+                outputNode = createTopLevelNode(outputNode);
+
+                List<ZipEntry> fileEntries = new ArrayList<ZipEntry>();
+                List<Node> contentNodes = new ArrayList<Node>();
+                List<Future<org.modeshape.jcr.api.Binary>> contentBinaries = new ArrayList<Future<org.modeshape.jcr.api.Binary>>();
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    Node zipEntryNode = createZipEntryPath(outputNode, entry);
+                    if (entry.isDirectory()) continue;
+
+                    Node contentNode = zipEntryNode.addNode(JcrConstants.JCR_CONTENT, JcrConstants.NT_RESOURCE);
+                    // on session pre-save the appropriate properties should be set automatically
+                    contentNode.addMixin(JcrConstants.MIX_LAST_MODIFIED);
+                    fileEntries.add(entry);
+                    contentNodes.add(contentNode);
+                    contentBinaries.add(executor.submit(new Callable<org.modeshape.jcr.api.Binary>() {
+                        @Override
+                        public org.modeshape.jcr.api.Binary call() throws Exception {
+                            return context.valueFactory().createBinary(zipFile.getInputStream(entry), null);
+                        }
+                    }));
+                }
+
+                for (int i = 0; i != fileEntries.size(); ++i) {
+                    try {
+                        setFileContent(contentNodes.get(i), fileEntries.get(i), contentBinaries.get(i).get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Exception) throw (Exception)cause;
+                        throw e;
+                    }
+                }
+                return true;
+            }
+        } finally {
+            if (executor != null) executor.shutdownNow();
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * An input stream for the content of the current {@link ZipInputStream} entry, which does not close the zip stream when it
+     * is closed.
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+        protected EntryInputStream( InputStream zipInputStream ) {
+            super(zipInputStream);
+        }
+
+        @Override
+        public void close() {
+            // the zip stream remains open for the next entry
         }
-        return baout.toByteArray();
     }
 
     /**
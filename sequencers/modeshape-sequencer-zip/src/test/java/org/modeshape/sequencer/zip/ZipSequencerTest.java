@@ -98,6 +98,36 @@ public class ZipSequencerTest extends AbstractSequencerTest {
         assertNode(path + "/testFolder/testInnerFolder/MODE-960-fix2.patch/jcr:content", JcrConstants.NT_RESOURCE);
     }
 
+    @Test
+    public void shouldSequenceZipEntriesInParallel() throws Exception {
+        String filename = "test-files.zip";
+        Node parent = createNodeWithContentFromFile("parallel/" + filename, filename);
+        Node outputNode = parent.getNode("jcr:content");
+
+        Node outputZip = getOutputNode(rootNode, "parallelZip/" + filename);
+        assertNotNull(outputZip);
+        assertEquals(ZipLexicon.FILE, outputZip.getPrimaryNodeType().getName());
+        assertSequencingEventInfo(outputNode, session.getUserID(), "Parallel ZIP sequencer", outputNode.getPath(), "/parallelZip");
+
+        String path = "/parallelZip/test-files.zip";
+        assertNode(path + "/MODE-966-fix.patch/jcr:content", JcrConstants.NT_RESOURCE);
+        assertNode(path + "/testFolder", JcrConstants.NT_FOLDER);
+        assertNode(path + "/testFolder/MODE-962-fix.patch/jcr:content", JcrConstants.NT_RESOURCE);
+        assertNode(path + "/testFolder/testInnerFolder", JcrConstants.NT_FOLDER);
+        assertNode(path + "/testFolder/testInnerFolder/MODE-960-fix.patch/jcr:content", JcrConstants.NT_RESOURCE);
+        assertNode(path + "/testFolder/testInnerFolder/MODE-960-fix2.patch/jcr:content", JcrConstants.NT_RESOURCE);
+
+        // the content of the entries should match the content sequenced one entry at a time
+        createNodeWithContentFromFile(filename, filename);
+        assertNotNull(getOutputNode(rootNode, "zip/" + filename));
+        for (String entry : new String[] {"MODE-966-fix.patch", "testFolder/MODE-962-fix.patch",
+            "testFolder/testInnerFolder/MODE-960-fix.patch", "testFolder/testInnerFolder/MODE-960-fix2.patch"}) {
+            String contentPath = "/" + entry + "/jcr:content/jcr:data";
+            assertEquals(session.getProperty("/zip/test-files.zip" + contentPath).getString(),
+                         session.getProperty(path + contentPath).getString());
+        }
+    }
+
     @Test
     public void shouldFailIfZipCorrupted() throws Throwable {
         String filename = "corrupt.zip";
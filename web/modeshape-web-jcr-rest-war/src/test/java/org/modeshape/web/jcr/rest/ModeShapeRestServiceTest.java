@@ -42,6 +42,7 @@ import org.modeshape.common.FixFor;
 import org.modeshape.common.util.FileUtil;
 import org.modeshape.common.util.IoUtil;
 import org.modeshape.web.jcr.rest.form.FileUploadForm;
+import org.modeshape.web.jcr.rest.handler.RestBatchHandler;
 import org.modeshape.web.jcr.rest.handler.RestBinaryHandler;
 
 /**
@@ -113,6 +114,10 @@ public class ModeShapeRestServiceTest extends AbstractRestTest {
         return RestHelper.urlFrom(REPOSITORY_NAME + "/" + RestHelper.RESTORE_METHOD_NAME);
     }
 
+    protected String batchUrl() {
+        return RestHelper.urlFrom(REPOSITORY_NAME + "/default/" + RestHelper.BATCH_METHOD_NAME);
+    }
+
 
     @Test
     public void shouldNotServeContentToUnauthorizedUser() throws Exception {
@@ -462,6 +467,33 @@ public class ModeShapeRestServiceTest extends AbstractRestTest {
         doDelete("delete/multiple_nodes_delete.json", itemsUrl()).isOk();
     }
 
+    @Test
+    public void shouldApplyNdJsonBatchOperations() throws Exception {
+        doPost((String)null, itemsUrl(TEST_NODE)).isCreated();
+        String response = postStream(fileStream("batch/operations_request.ndjson"), batchUrl() + "?saveEvery=2",
+                                     RestBatchHandler.NDJSON_MEDIA_TYPE).isOk().contentAsString();
+        String[] results = response.trim().split("\n");
+        assertEquals(5, results.length);
+        for (int i = 0; i < results.length; i++) {
+            JSONObject result = new JSONObject(results[i]);
+            assertEquals(i, result.getInt("index"));
+            assertEquals("saved", result.getString("status"));
+        }
+        doGet(itemsUrl(TEST_NODE, "child", "prop")).isOk().isJSONObjectLikeFile("get/batch_child_prop.json");
+        doGet(itemsUrl(TEST_NODE, "other")).isNotFound();
+        doGet(itemsUrl(TEST_NODE, "child", "other")).isNotFound();
+    }
+
+    @Test
+    public void shouldStopBatchOnFirstFailedOperation() throws Exception {
+        doPost((String)null, itemsUrl(TEST_NODE)).isCreated();
+        doPost("batch/failed_operations_request.json", batchUrl() + "?saveEvery=2").isOk()
+                                                                                .isJSONArrayLikeFile("batch/failed_operations_response.json");
+        doGet(itemsUrl(TEST_NODE, "second")).isOk();
+        doGet(itemsUrl(TEST_NODE, "third")).isNotFound();
+        doGet(itemsUrl(TEST_NODE, "fourth")).isNotFound();
+    }
+
     private String binaryUrl( String... additionalPathSegments ) {
         return RestHelper.urlFrom(REPOSITORY_NAME + "/default/" + RestHelper.BINARY_METHOD_NAME, additionalPathSegments);
     }
@@ -17,6 +17,7 @@
 package org.modeshape.web.jcr.rest;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import javax.jcr.Binary;
 import javax.jcr.Property;
@@ -46,6 +47,7 @@ import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.api.BackupOptions;
 import org.modeshape.jcr.api.RestoreOptions;
 import org.modeshape.web.jcr.rest.form.FileUploadForm;
+import org.modeshape.web.jcr.rest.handler.RestBatchHandler;
 import org.modeshape.web.jcr.rest.handler.RestBinaryHandler;
 import org.modeshape.web.jcr.rest.handler.RestItemHandler;
 import org.modeshape.web.jcr.rest.handler.RestNodeHandler;
@@ -97,6 +99,12 @@ import org.modeshape.web.jcr.rest.model.RestWorkspaces;
  * <td>POST, PUT, DELETE</td>
  * </tr>
  * <tr>
+ * <td>/resources/{repositoryName}/{workspaceName}/batch</td>
+ * <td>applies a stream of add/set/remove/move operations, saving every {@code saveEvery} operations and returning the
+ * outcome of each operation. The body of the request is expected to be either new-line delimited JSON or a JSON array</td>
+ * <td>POST</td>
+ * </tr>
+ * <tr>
  * <tr>
  * <td>/resources/{repositoryName}/{workspaceName}/nodes/{id}</td>
  * <td>accesses/updates/deletes the with the given identifier. For POST and PUT, the body of the request is expected to be valid
@@ -143,6 +151,7 @@ public final class ModeShapeRestService {
     private RestQueryHandler queryHandler = new RestQueryHandler();
     private RestBinaryHandler binaryHandler = new RestBinaryHandler();
     private RestNodeTypeHandler nodeTypeHandler = new RestNodeTypeHandler();
+    private RestBatchHandler batchHandler = new RestBatchHandler();
 
     /**
      * Returns the list of JCR repositories available on this server
@@ -464,6 +473,42 @@ public final class ModeShapeRestService {
         return itemHandler.addItems(request, rawRepositoryName, rawWorkspaceName, requestContent);
     }
 
+    /**
+     * Applies a stream of operations via a single session, saving the session every {@code saveEvery} operations. The body of the
+     * request is expected to be either a sequence of new-line delimited JSON objects (when the content type is
+     * {@value RestBatchHandler#NDJSON_MEDIA_TYPE}) or a JSON array of objects, where each object has one of the forms:
+     * <ul>
+     * <li>{ "op" : "add", "path" : "node_path", "body" : { node_body } }</li>
+     * <li>{ "op" : "set", "path" : "item_path", "body" : { item_body } }</li>
+     * <li>{ "op" : "remove", "path" : "item_path" }</li>
+     * <li>{ "op" : "move", "path" : "node_path", "destination" : "new_node_path" }</li>
+     * </ul>
+     * The operations are read and applied one at a time, and the outcome of each one is written back in the same format as the
+     * request, without building the representation of the modified items.
+     *
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded repository name
+     * @param rawWorkspaceName the URL-encoded workspace name
+     * @param saveEvery the number of operations after which the session is saved; a value smaller than 1 means that the session
+     *        is saved only once, after all the operations
+     * @param requestBody the stream of operations
+     * @return a {@code non-null} {@link Response} which writes the outcome of each operation.
+     * @throws IOException if the operations cannot be read from the request
+     * @throws RepositoryException if any other error occurs
+     * @see RestBatchHandler
+     */
+    @POST
+    @Consumes( {RestBatchHandler.NDJSON_MEDIA_TYPE, MediaType.APPLICATION_JSON} )
+    @Path( "{repositoryName}/{workspaceName}/" + RestHelper.BATCH_METHOD_NAME )
+    @Produces( {RestBatchHandler.NDJSON_MEDIA_TYPE, MediaType.APPLICATION_JSON} )
+    public Response postBatch( @Context HttpServletRequest request,
+                               @PathParam( "repositoryName" ) String rawRepositoryName,
+                               @PathParam( "workspaceName" ) String rawWorkspaceName,
+                               @QueryParam( "saveEvery" ) @DefaultValue( "" + RestBatchHandler.DEFAULT_SAVE_EVERY ) int saveEvery,
+                               InputStream requestBody ) throws RepositoryException, IOException {
+        return batchHandler.applyOperations(request, rawRepositoryName, rawWorkspaceName, requestBody, saveEvery);
+    }
+
     /**
      * Deletes the item at {@code path}.
      *
@@ -58,6 +58,7 @@ public final class RestHelper {
     public static final String UPLOAD_METHOD_NAME = "upload";
     public static final String BACKUP_METHOD_NAME = "backup";
     public static final String RESTORE_METHOD_NAME = "restore";
+    public static final String BATCH_METHOD_NAME = "batch";
     
     private static final List<String> ALL_METHODS = Arrays.asList(BINARY_METHOD_NAME,
                                                                   ITEMS_METHOD_NAME,
@@ -114,6 +114,14 @@ public abstract class ItemHandler extends AbstractHandler {
         return newNode;
     }
 
+    protected String newNodeName( String path ) {
+        int lastSlashInd = path.lastIndexOf('/');
+        String name = lastSlashInd == -1 ? path : path.substring(lastSlashInd + 1);
+        // Remove any SNS index ...
+        name = name.replaceAll("\\[\\d+\\]$", "");
+        return name;
+    }
+
     protected List<JSONChild> getChildren( JSONObject jsonNode ) throws JSONException {
         List<JSONChild> children;
         try {
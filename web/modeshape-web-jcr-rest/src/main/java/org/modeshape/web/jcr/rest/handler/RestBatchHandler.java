@@ -0,0 +1,358 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.web.jcr.rest.handler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * An extension to the {@link ItemHandler} which is used by {@link org.modeshape.web.jcr.rest.ModeShapeRestService} to apply a
+ * stream of operations on items, using a single {@link Session}.
+ * <p>
+ * The operations are read one at a time from the body of the request, which is either a sequence of new-line delimited JSON
+ * objects (when the content type is {@value #NDJSON_MEDIA_TYPE}) or a JSON array of objects. Each operation is an object of the
+ * form:
+ * <ul>
+ * <li>{ "op" : "add", "path" : "node_path", "body" : { node_body } }</li>
+ * <li>{ "op" : "set", "path" : "item_path", "body" : { item_body } }</li>
+ * <li>{ "op" : "remove", "path" : "item_path" }</li>
+ * <li>{ "op" : "move", "path" : "node_path", "destination" : "new_node_path" }</li>
+ * </ul>
+ * where the bodies have the same format as the ones used when creating or updating a single item. The session is saved every
+ * time a configurable number of operations have been applied, and the outcome of each operation is written back (in the same
+ * format as the request) as a compact object of the form <code>{ "index" : 0, "status" : "saved" }</code>.
+ * </p>
+ * <p>
+ * All of the operations are applied and saved before the response is returned, since the session and the body of the request are
+ * only available until then. Only the outcomes of the operations are kept in the meantime, as one range per saved batch, so the
+ * memory used does not grow with the number of operations.
+ * </p>
+ * <p>
+ * Processing stops at the first operation that cannot be applied or at the first batch that cannot be saved. The unsaved
+ * changes are discarded in that case, and the operations of the current batch are reported as {@code discarded} or
+ * {@code failed}; the operations of all the previous batches remain saved.
+ * </p>
+ */
+public final class RestBatchHandler extends ItemHandler {
+
+    /**
+     * The media type of new-line delimited JSON content.
+     */
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * The default number of operations applied between two consecutive saves of the session.
+     */
+    public static final int DEFAULT_SAVE_EVERY = 1000;
+
+    private static final String OPERATION_KEY = "op";
+    private static final String PATH_KEY = "path";
+    private static final String BODY_KEY = "body";
+    private static final String DESTINATION_KEY = "destination";
+
+    private static final String INDEX_KEY = "index";
+    private static final String STATUS_KEY = "status";
+    private static final String MESSAGE_KEY = "message";
+
+    private static final String SAVED_STATUS = "saved";
+    private static final String DISCARDED_STATUS = "discarded";
+    private static final String FAILED_STATUS = "failed";
+
+    /**
+     * Applies the operations from the body of the request, and returns the outcome of each of them.
+     *
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param repositoryName the URL-encoded repository name
+     * @param workspaceName the URL-encoded workspace name
+     * @param requestBody the stream of operations, either as new-line delimited JSON or as a JSON array; may not be null
+     * @param saveEvery the number of operations after which the session is saved; values smaller than 1 mean that the session is
+     *        saved only once, after all the operations have been applied
+     * @return a {@code non-null} {@link Response} which writes the outcome of each operation
+     * @throws RepositoryException if the session cannot be obtained
+     * @throws IOException if the operations cannot be read from the request
+     */
+    public Response applyOperations( HttpServletRequest request,
+                                     String repositoryName,
+                                     String workspaceName,
+                                     InputStream requestBody,
+                                     int saveEvery ) throws RepositoryException, IOException {
+        Session session = getSession(request, repositoryName, workspaceName);
+        final boolean ndjson = isNdJson(request.getContentType());
+        Reader operations = new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8));
+        int batchSize = saveEvery < 1 ? Integer.MAX_VALUE : saveEvery;
+        // The session is logged out once this method returns, so everything must be applied and saved now ...
+        final List<Result> results = new Batch(session, new OperationReader(operations), batchSize).run();
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write( OutputStream outputStream ) throws IOException {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                new ResultWriter(writer, ndjson).write(results);
+            }
+        };
+        return Response.ok(output, ndjson ? NDJSON_MEDIA_TYPE : MediaType.APPLICATION_JSON).build();
+    }
+
+    private boolean isNdJson( String contentType ) {
+        return contentType != null && contentType.toLowerCase().startsWith(NDJSON_MEDIA_TYPE);
+    }
+
+    protected void applyOperation( Session session,
+                                   JSONObject operation ) throws RepositoryException, JSONException {
+        String op = operation.getString(OPERATION_KEY);
+        String path = absPath(operation.getString(PATH_KEY));
+        switch (op) {
+            case "add": {
+                Node parentNode = (Node)session.getItem(parentPath(path));
+                JSONObject body = operation.has(BODY_KEY) ? operation.getJSONObject(BODY_KEY) : new JSONObject();
+                addNode(parentNode, newNodeName(path), body);
+                break;
+            }
+            case "set": {
+                updateItem(itemAtPath(path, session), operation.getJSONObject(BODY_KEY));
+                break;
+            }
+            case "remove": {
+                doDelete(path, session);
+                break;
+            }
+            case "move": {
+                session.move(path, absPath(operation.getString(DESTINATION_KEY)));
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Unknown batch operation: " + op);
+            }
+        }
+    }
+
+    /**
+     * Applies the operations read from a request, saving the session every {@code saveEvery} operations.
+     */
+    private final class Batch {
+        private final Session session;
+        private final OperationReader operations;
+        private final int saveEvery;
+        private final List<Result> results = new ArrayList<>();
+        private int firstUnsaved = 0;
+        private int unsaved = 0;
+
+        protected Batch( Session session,
+                         OperationReader operations,
+                         int saveEvery ) {
+            this.session = session;
+            this.operations = operations;
+            this.saveEvery = saveEvery;
+        }
+
+        protected List<Result> run() throws IOException {
+            int index = 0;
+            while (true) {
+                try {
+                    String operation = operations.next();
+                    if (operation == null) {
+                        break;
+                    }
+                    applyOperation(session, new JSONObject(operation));
+                    ++unsaved;
+                } catch (JSONException | RepositoryException | RuntimeException e) {
+                    logger.debug(e, "Cannot apply batch operation {0}", index);
+                    discardUnsaved(DISCARDED_STATUS, null);
+                    results.add(new Result(index, index, FAILED_STATUS, e.getMessage()));
+                    return results;
+                }
+                ++index;
+                if (unsaved >= saveEvery && !save()) {
+                    return results;
+                }
+            }
+            save();
+            return results;
+        }
+
+        private boolean save() {
+            if (unsaved == 0) {
+                return true;
+            }
+            try {
+                session.save();
+            } catch (RepositoryException | RuntimeException e) {
+                logger.debug(e, "Cannot save batch operations");
+                discardUnsaved(FAILED_STATUS, e.getMessage());
+                return false;
+            }
+            addUnsaved(SAVED_STATUS, null);
+            return true;
+        }
+
+        private void discardUnsaved( String status,
+                                     String message ) {
+            try {
+                session.refresh(false);
+            } catch (RepositoryException e) {
+                logger.debug(e, "Cannot discard the unsaved batch operations");
+            }
+            addUnsaved(status, message);
+        }
+
+        private void addUnsaved( String status,
+                                 String message ) {
+            if (unsaved > 0) {
+                results.add(new Result(firstUnsaved, firstUnsaved + unsaved - 1, status, message));
+            }
+            firstUnsaved += unsaved;
+            unsaved = 0;
+        }
+    }
+
+    /**
+     * The outcome of a consecutive range of operations.
+     */
+    private static final class Result {
+        protected final int first;
+        protected final int last;
+        protected final String status;
+        protected final String message;
+
+        protected Result( int first,
+                          int last,
+                          String status,
+                          String message ) {
+            this.first = first;
+            this.last = last;
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Reads the top-level JSON objects from a stream, one at a time, ignoring any whitespace, commas or square brackets between
+     * them. This accepts both new-line delimited JSON and JSON arrays of objects, without reading the entire stream in memory.
+     */
+    protected static final class OperationReader {
+        private final Reader reader;
+
+        protected OperationReader( Reader reader ) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return the next JSON object, or null if there are no more objects in the stream
+         * @throws IOException if the stream cannot be read
+         * @throws JSONException if the stream does not contain a well-formed sequence of objects
+         */
+        protected String next() throws IOException, JSONException {
+            int c;
+            while ((c = reader.read()) != '{') {
+                if (c == -1) {
+                    return null;
+                }
+                if (!Character.isWhitespace(c) && c != ',' && c != '[' && c != ']') {
+                    throw new JSONException("Expected a JSON object but found '" + (char)c + "'");
+                }
+            }
+            StringBuilder object = new StringBuilder().append('{');
+            int depth = 1;
+            boolean inString = false;
+            boolean escaped = false;
+            while (depth > 0) {
+                c = reader.read();
+                if (c == -1) {
+                    throw new JSONException("Unterminated JSON object: " + object);
+                }
+                object.append((char)c);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{') {
+                    ++depth;
+                } else if (c == '}') {
+                    --depth;
+                }
+            }
+            return object.toString();
+        }
+    }
+
+    /**
+     * Writes the results of the operations either as new-line delimited JSON or as a JSON array.
+     */
+    private static final class ResultWriter {
+        private final Writer writer;
+        private final boolean ndjson;
+
+        protected ResultWriter( Writer writer,
+                                boolean ndjson ) {
+            this.writer = writer;
+            this.ndjson = ndjson;
+        }
+
+        protected void write( List<Result> results ) throws IOException {
+            if (!ndjson) {
+                writer.write('[');
+            }
+            boolean first = true;
+            try {
+                for (Result result : results) {
+                    for (int index = result.first; index <= result.last; ++index) {
+                        JSONObject object = new JSONObject().put(INDEX_KEY, index).put(STATUS_KEY, result.status);
+                        if (result.message != null) {
+                            object.put(MESSAGE_KEY, result.message);
+                        }
+                        if (!ndjson && !first) {
+                            writer.write(',');
+                        }
+                        writer.write(object.toString());
+                        writer.write('\n');
+                        first = false;
+                    }
+                }
+            } catch (JSONException e) {
+                throw new IOException(e);
+            }
+            if (!ndjson) {
+                writer.write(']');
+            }
+            writer.flush();
+        }
+    }
+}
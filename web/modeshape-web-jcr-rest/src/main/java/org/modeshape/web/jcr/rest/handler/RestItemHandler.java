@@ -116,14 +116,6 @@ public final class RestItemHandler extends ItemHandler {
         return properties;
     }
 
-    private String newNodeName( String path ) {
-        int lastSlashInd = path.lastIndexOf('/');
-        String name = lastSlashInd == -1 ? path : path.substring(lastSlashInd + 1);
-        // Remove any SNS index ...
-        name = name.replaceAll("\\[\\d+\\]$", "");
-        return name;
-    }
-
     /**
      * Updates the properties at the path.
      * <p>